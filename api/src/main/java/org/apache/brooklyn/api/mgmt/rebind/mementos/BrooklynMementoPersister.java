@@ -96,6 +96,10 @@ public interface BrooklynMementoPersister {
     /** inserts an additional delta to be written on the next delta request */
     @Beta
     void queueDelta(Delta delta);
+    /** whether {@link #delta(Delta, PersistenceExceptionHandler)} can write just the changed attributes of an entity
+     * (as a patch included in the delta by the caller), rather than requiring its full memento */
+    @Beta
+    boolean isEntityAttributesPatchSupported();
 
     void enableWriteAccess();
     void disableWriteAccess(boolean graceful);
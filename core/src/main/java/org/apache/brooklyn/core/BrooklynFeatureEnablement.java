@@ -103,7 +103,36 @@ public class BrooklynFeatureEnablement {
     public static final String FEATURE_SSH_ASYNC_EXEC = FEATURE_PROPERTY_PREFIX+".ssh.asyncExec";
 
     public static final String FEATURE_VALIDATE_LOCATION_SSH_KEYS = "brooklyn.validate.locationSshKeys";
+
+    /**
+     * Whether subscription events are queued in a mailbox per subscriber and delivered in batches by a single task,
+     * rather than submitting one task per event per subscription. Ordering per subscriber is preserved either way.
+     * Subscriptions may additionally ask for superseded attribute values to be coalesced, 
+     * with the {@code coalesceEvents} subscription flag.
+     */
+    public static final String FEATURE_SUBSCRIPTION_BATCHED_DELIVERY = FEATURE_PROPERTY_PREFIX+".subscriptions.batchedDelivery";
     
+    /**
+     * When persisting an entity whose only changes are to attributes, write just those attributes
+     * (as a patch applied on top of the entity's memento when loading) rather than the whole entity.
+     */
+    public static final String FEATURE_INCREMENTAL_ENTITY_PERSISTENCE = FEATURE_PROPERTY_PREFIX+".persistence.incrementalEntityAttributes";
+
+    /**
+     * Whether {@link org.apache.brooklyn.feed.http.HttpFeed}s (that do not say otherwise) poll asynchronously,
+     * handing their requests to the management context's shared {@link org.apache.brooklyn.feed.http.HttpPollExecutor}
+     * rather than blocking an execution manager thread for each request.
+     */
+    public static final String FEATURE_HTTP_FEED_ASYNC_POLLING = FEATURE_PROPERTY_PREFIX+".feed.http.asyncPolling";
+
+    /**
+     * Whether {@code execCommands} on an {@link org.apache.brooklyn.location.ssh.SshMachineLocation} runs (short) commands
+     * through a long-lived shell session on the ssh connection, rather than opening a new session for each.
+     * 
+     * @see org.apache.brooklyn.util.core.internal.ssh.SshTool#PROP_PERSISTENT_SHELL
+     */
+    public static final String FEATURE_SSH_PERSISTENT_SHELL = FEATURE_PROPERTY_PREFIX+".ssh.persistentShell";
+
     private static final Map<String, Boolean> FEATURE_ENABLEMENTS = Maps.newLinkedHashMap();
 
     private static final Object MUTEX = new Object();
@@ -125,6 +154,10 @@ public class BrooklynFeatureEnablement {
         setDefault(FEATURE_AUTO_FIX_CATALOG_REF_ON_REBIND, false);
         setDefault(FEATURE_SSH_ASYNC_EXEC, false);
         setDefault(FEATURE_VALIDATE_LOCATION_SSH_KEYS, true);
+        setDefault(FEATURE_SUBSCRIPTION_BATCHED_DELIVERY, false);
+        setDefault(FEATURE_INCREMENTAL_ENTITY_PERSISTENCE, false);
+        setDefault(FEATURE_HTTP_FEED_ASYNC_POLLING, false);
+        setDefault(FEATURE_SSH_PERSISTENT_SHELL, false);
     }
     
     static {
@@ -624,6 +624,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
         previouslyOwned = true;
         
         getApplication();
+        getManagementSupport().getEntityChangeListener().onApplicationChanged();
         
         return this;
     }
@@ -637,6 +638,7 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             if (!Entities.isNoLongerManaged(oldParent)) 
                 oldParent.removeChild(getProxyIfAvailable());
         }
+        getManagementSupport().getEntityChangeListener().onApplicationChanged();
     }
     
     /**
@@ -1121,6 +1123,9 @@ public abstract class AbstractEntity extends AbstractBrooklynObject implements E
             
             attributesInternal.remove(attribute);
             entityType.removeSensor(attribute);
+            
+            // a removal cannot be persisted as an attribute patch, so the entity is persisted in full
+            getManagementSupport().getEntityChangeListener().onChanged();
         }
 
         @Override
@@ -34,6 +34,7 @@ import org.apache.brooklyn.util.guava.SerializablePredicate;
 import org.apache.brooklyn.util.javalang.Reflections;
 import org.apache.brooklyn.util.text.StringPredicates;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
@@ -137,7 +138,7 @@ public class EntityPredicates {
     // ---------------------------
 
     public static Predicate<Entity> applicationIdEqualTo(final String val) {
-        return applicationIdSatisfies(Predicates.equalTo(val));
+        return new ApplicationIdEqualTo(val);
     }
 
     public static Predicate<Entity> applicationIdSatisfies(final Predicate<? super String> condition) {
@@ -159,6 +160,26 @@ public class EntityPredicates {
         }
     }
 
+    /** Exposes the application id, so the entity manager can find candidates using its index. */
+    @Beta
+    public static class ApplicationIdEqualTo implements SerializablePredicate<Entity> {
+        protected final String val;
+        protected ApplicationIdEqualTo(String val) {
+            this.val = val;
+        }
+        public String getApplicationId() {
+            return val;
+        }
+        @Override
+        public boolean apply(@Nullable Entity input) {
+            return (input != null) && Objects.equal(input.getApplicationId(), val);
+        }
+        @Override
+        public String toString() {
+            return "applicationIdEqualTo("+val+")";
+        }
+    }
+
     /** @deprecated since 0.7.0 kept only to allow conversion of anonymous inner classes */
     @SuppressWarnings("unused") @Deprecated 
     private static Predicate<Entity> applicationIdEqualToOld(final String val) {
@@ -280,13 +301,18 @@ public class EntityPredicates {
         return new ImplementsInterface(typeRegex);
     }
 
-    protected static class ImplementsInterface implements SerializablePredicate<Entity> {
+    public static class ImplementsInterface implements SerializablePredicate<Entity> {
         protected final Pattern pattern;
 
         public ImplementsInterface(String typeRegex) {
             this.pattern = Pattern.compile(typeRegex);
         }
 
+        @Beta
+        public Pattern getPattern() {
+            return pattern;
+        }
+
         @Override
         public boolean apply(@Nullable Entity input) {
             if (input == null) return false;
@@ -301,6 +327,67 @@ public class EntityPredicates {
 
     // ---------------------------
 
+    /**
+     * Returns a predicate that matches entities which are instances of the given type
+     * (for entity proxies, that means implementing the given interface).
+     */
+    @Beta
+    public static Predicate<Entity> isInstanceOf(Class<?> type) {
+        return new IsInstanceOf(type);
+    }
+
+    /** Exposes the type, so the entity manager can find candidates using its index. */
+    @Beta
+    public static class IsInstanceOf implements SerializablePredicate<Entity> {
+        protected final Class<?> type;
+        protected IsInstanceOf(Class<?> type) {
+            this.type = type;
+        }
+        public Class<?> getType() {
+            return type;
+        }
+        @Override
+        public boolean apply(@Nullable Entity input) {
+            return type.isInstance(input);
+        }
+        @Override
+        public String toString() {
+            return "isInstanceOf("+type.getName()+")";
+        }
+    }
+
+    // ---------------------------
+
+    /**
+     * Returns a predicate that matches entities which have the given tag.
+     */
+    @Beta
+    public static Predicate<Entity> hasTag(Object tag) {
+        return new HasTag(tag);
+    }
+
+    /** Exposes the tag, so the entity manager can find candidates using its index. */
+    @Beta
+    public static class HasTag implements SerializablePredicate<Entity> {
+        protected final Object tag;
+        protected HasTag(Object tag) {
+            this.tag = tag;
+        }
+        public Object getTag() {
+            return tag;
+        }
+        @Override
+        public boolean apply(@Nullable Entity input) {
+            return (input != null) && input.tags().containsTag(tag);
+        }
+        @Override
+        public String toString() {
+            return "hasTag("+tag+")";
+        }
+    }
+
+    // ---------------------------
+
     /**
      * Returns a predicate that determines if a given entity is a direct child of this {@code parent}.
      */
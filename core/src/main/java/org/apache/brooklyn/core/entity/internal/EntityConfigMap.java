@@ -26,6 +26,9 @@ import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -42,9 +45,11 @@ import org.apache.brooklyn.util.core.flags.SetFromFlag;
 import org.apache.brooklyn.util.core.flags.TypeCoercions;
 import org.apache.brooklyn.util.core.internal.ConfigKeySelfExtracting;
 import org.apache.brooklyn.util.guava.Maybe;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -69,6 +74,22 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
     private final ConfigBag localConfigBag;
     private final ConfigBag inheritedConfigBag;
 
+    /** resolved values of config (where plain immutable values), by the key that was asked for */
+    private final ConcurrentMap<ConfigKey<?>, ResolvedConfig> resolvedConfig = new ConcurrentHashMap<ConfigKey<?>, ResolvedConfig>();
+    private final AtomicLong resolvedConfigGeneration = new AtomicLong();
+    private final AtomicLong resolvedConfigHits = new AtomicLong();
+    private final AtomicLong resolvedConfigMisses = new AtomicLong();
+
+    private static class ResolvedConfig {
+        /** the entity type's key when resolved, which determines the value if the entity type has since changed */
+        final ConfigKey<?> ownKey;
+        final Object value;
+        ResolvedConfig(ConfigKey<?> ownKey, Object value) {
+            this.ownKey = ownKey;
+            this.value = value;
+        }
+    }
+
     public EntityConfigMap(AbstractEntity entity) {
         // Not using ConcurrentMap, because want to (continue to) allow null values.
         // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
@@ -104,6 +125,19 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
             inheritance = getDefaultInheritance(); 
         }
         
+        // Plain immutable values are memoized (unless a default was supplied by the caller), 
+        // as config is read far more often than it changes
+        boolean memoizable = (defaultValue == null);
+        long generation = resolvedConfigGeneration.get();
+        if (memoizable) {
+            ResolvedConfig memo = resolvedConfig.get(key);
+            if (memo != null && memo.ownKey == ownKey) {
+                resolvedConfigHits.incrementAndGet();
+                return (T) memo.value;
+            }
+            resolvedConfigMisses.incrementAndGet();
+        }
+        
         // TODO We're notifying of config-changed because currently persistence needs to know when the
         // attributeWhenReady is complete (so it can persist the result).
         // Long term, we'll just persist tasks properly so the call to onConfigChanged will go!
@@ -111,6 +145,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         // Don't use groovy truth: if the set value is e.g. 0, then would ignore set value and return default!
         if (ownKey instanceof ConfigKeySelfExtracting) {
             Object rawval = ownConfig.get(key);
+            Object resolvedFrom = rawval;
             T result = null;
             boolean complete = false;
             if (((ConfigKeySelfExtracting<T>)ownKey).isSet(ownConfig)) {
@@ -120,15 +155,18 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
             } else if (isInherited(ownKey, inheritance) && 
                     ((ConfigKeySelfExtracting<T>)ownKey).isSet(inheritedConfig)) {
                 ExecutionContext exec = entity.getExecutionContext();
+                resolvedFrom = inheritedConfig.get(ownKey);
                 result = ((ConfigKeySelfExtracting<T>)ownKey).extractValue(inheritedConfig, exec);
                 complete = true;
             } else if (localConfigBag.containsKey(ownKey)) {
                 // TODO configBag.get doesn't handle tasks/attributeWhenReady - it only uses TypeCoercions
                 result = localConfigBag.get(ownKey);
+                resolvedFrom = localConfigBag.getStringKey(ownKey.getName());
                 complete = true;
             } else if (isInherited(ownKey, inheritance) && 
                     inheritedConfigBag.containsKey(ownKey)) {
                 result = inheritedConfigBag.get(ownKey);
+                resolvedFrom = inheritedConfigBag.getStringKey(ownKey.getName());
                 complete = true;
             }
 
@@ -136,12 +174,49 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
                 entity.getManagementSupport().getEntityChangeListener().onConfigChanged(key);
             }
             if (complete) {
+                if (memoizable) memoize(key, ownKey, resolvedFrom, result, generation);
                 return result;
             }
         } else {
             LOG.warn("Config key {} of {} is not a ConfigKeySelfExtracting; cannot retrieve value; returning default", ownKey, this);
+            memoizable = false;
         }
-        return TypeCoercions.coerce((defaultValue != null) ? defaultValue : ownKey.getDefaultValue(), key.getTypeToken());
+        T result = TypeCoercions.coerce((defaultValue != null) ? defaultValue : ownKey.getDefaultValue(), key.getTypeToken());
+        if (memoizable) memoize(key, ownKey, ownKey.getDefaultValue(), result, generation);
+        return result;
+    }
+
+    private void memoize(ConfigKey<?> key, ConfigKey<?> ownKey, Object resolvedFrom, Object result, long generation) {
+        // anything else (e.g. tasks, suppliers, collections) could resolve differently next time
+        if (!isImmutableValue(resolvedFrom) || !isImmutableValue(result)) return;
+        ResolvedConfig memo = new ResolvedConfig(ownKey, result);
+        resolvedConfig.put(key, memo);
+        if (resolvedConfigGeneration.get() != generation) {
+            // config changed while we were resolving; the value we memoized may be stale
+            resolvedConfig.remove(key, memo);
+        }
+    }
+
+    /** values which resolve to themselves, and cannot be modified by whoever gets them */
+    private static boolean isImmutableValue(Object val) {
+        return val == null || val instanceof String || val instanceof Boolean || val instanceof Enum || val instanceof Character
+                || val instanceof Duration || val instanceof Integer || val instanceof Long || val instanceof Double 
+                || val instanceof Float || val instanceof Short || val instanceof Byte;
+    }
+
+    /** Discards memoized config values; to be called whenever own or inherited config changes. */
+    private void invalidateResolvedConfig() {
+        resolvedConfigGeneration.incrementAndGet();
+        resolvedConfig.clear();
+    }
+
+    /** Counts of config lookups answered from (and missing) the memo of resolved values, and its current size. */
+    @Beta
+    public Map<String, Object> getResolvedConfigMetrics() {
+        return MutableMap.<String, Object>of(
+                "hits", resolvedConfigHits.get(), 
+                "misses", resolvedConfigMisses.get(), 
+                "size", resolvedConfig.size());
     }
 
     private <T> boolean isInherited(ConfigKey<T> key) {
@@ -207,6 +282,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
             oldVal = ownConfig.put(key, val);
             localConfigBag.put((ConfigKey<Object>)key, v);
         }
+        invalidateResolvedConfig();
         entity.config().refreshInheritedConfigOfChildren();
         return oldVal;
     }
@@ -216,6 +292,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         localConfigBag.clear();
         ownConfig.putAll(vals);
         localConfigBag.putAll(vals);
+        invalidateResolvedConfig();
     }
     
     public void setInheritedConfig(Map<ConfigKey<?>, ?> valsO, ConfigBag configBagVals) {
@@ -265,6 +342,7 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
                 inheritedConfigBag.putStringKey(name, value);
             }
         }
+        invalidateResolvedConfig();
     }
     
     private Map<ConfigKey<?>, ?> filterUninheritable(Map<ConfigKey<?>, ?> vals) {
@@ -281,16 +359,19 @@ public class EntityConfigMap extends AbstractConfigMapImpl {
         localConfigBag.putAll(vals);
         // quick fix for problem that ownConfig can get out of synch
         ownConfig.putAll(localConfigBag.getAllConfigAsConfigKeyMap());
+        invalidateResolvedConfig();
     }
 
     public void removeFromLocalBag(String key) {
         localConfigBag.remove(key);
         ownConfig.remove(key);
+        invalidateResolvedConfig();
     }
 
     public void clearInheritedConfig() {
         inheritedConfig.clear();
         inheritedConfigBag.clear();
+        invalidateResolvedConfig();
     }
 
     @Override
@@ -21,6 +21,7 @@ package org.apache.brooklyn.core.feed;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
+import java.util.Map;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.mgmt.rebind.RebindSupport;
@@ -34,9 +35,13 @@ import org.apache.brooklyn.core.mgmt.rebind.BasicFeedRebindSupport;
 import org.apache.brooklyn.core.objs.AbstractEntityAdjunct;
 import org.apache.brooklyn.util.javalang.JavaClassNames;
 import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
+import com.google.common.collect.ImmutableMap;
+
 /** 
  * Captures common fields and processes for sensor feeds.
  * These generally poll or subscribe to get sensor values for an entity.
@@ -203,6 +208,13 @@ public abstract class AbstractFeed extends AbstractEntityAdjunct implements Feed
         return isActivated() && !isSuspended() && !isDestroyed() && getPoller()!=null && getPoller().isRunning();
     }
 
+    /** @see Poller#getMaxScheduleDrifts() */
+    @Beta
+    public Map<String, Duration> getMaxScheduleDrifts() {
+        Poller<?> poller = getPoller();
+        return (poller == null) ? ImmutableMap.<String, Duration>of() : poller.getMaxScheduleDrifts();
+    }
+
     @Override
     public RebindSupport<FeedMemento> getRebindSupport() {
         return new BasicFeedRebindSupport(this);
@@ -22,6 +22,11 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -38,6 +43,7 @@ import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 
 
@@ -60,37 +66,58 @@ public class Poller<V> {
     private volatile boolean started = false;
     
     private static class PollJob<V> {
+        final Callable<V> job;
         final PollHandler<? super V> handler;
         final Duration pollPeriod;
         final Runnable wrappedJob;
-        private boolean loggedPreviousException = false;
+        /** if non-null, the job is run by this executor rather than in the scheduled task */
+        final Executor executor;
+        /** whether the job has been handed to the executor and its result not yet handled */
+        final AtomicBoolean inFlight = new AtomicBoolean();
+        private volatile boolean loggedPreviousException = false;
         
-        PollJob(final Callable<V> job, final PollHandler<? super V> handler, Duration period) {
+        PollJob(final Callable<V> job, final PollHandler<? super V> handler, Duration period, @Nullable Executor executor) {
+            this.job = job;
             this.handler = handler;
             this.pollPeriod = period;
+            this.executor = executor;
             
             wrappedJob = new Runnable() {
                 public void run() {
+                    V val;
                     try {
-                        V val = job.call();
-                        loggedPreviousException = false;
-                        if (handler.checkSuccess(val)) {
-                            handler.onSuccess(val);
-                        } else {
-                            handler.onFailure(val);
-                        }
+                        val = job.call();
                     } catch (Exception e) {
-                        if (loggedPreviousException) {
-                            if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", new Object[] {job, e, handler});
-                        } else {
-                            if (log.isDebugEnabled()) log.debug("PollJob for {} handling {} using {}", new Object[] {job, e, handler});
-                            loggedPreviousException = true;
-                        }
-                        handler.onException(e);
+                        handleException(e);
+                        return;
                     }
+                    handleResult(val);
                 }
             };
         }
+        
+        void handleResult(V val) {
+            try {
+                loggedPreviousException = false;
+                if (handler.checkSuccess(val)) {
+                    handler.onSuccess(val);
+                } else {
+                    handler.onFailure(val);
+                }
+            } catch (Exception e) {
+                handleException(e);
+            }
+        }
+        
+        void handleException(Exception e) {
+            if (loggedPreviousException) {
+                if (log.isTraceEnabled()) log.trace("PollJob for {}, repeated consecutive failures, handling {} using {}", new Object[] {job, e, handler});
+            } else {
+                if (log.isDebugEnabled()) log.debug("PollJob for {} handling {} using {}", new Object[] {job, e, handler});
+                loggedPreviousException = true;
+            }
+            handler.onException(e);
+        }
     }
     
     /** @deprecated since 0.7.0, pass in whether should run onlyIfServiceUp */
@@ -115,10 +142,20 @@ public class Poller<V> {
         scheduleAtFixedRate(job, handler, Duration.millis(period));
     }
     public void scheduleAtFixedRate(Callable<V> job, PollHandler<? super V> handler, Duration period) {
+        scheduleAtFixedRate(job, handler, period, null);
+    }
+    /**
+     * As {@link #scheduleAtFixedRate(Callable, PollHandler, Duration)}, but if an executor is supplied then each poll
+     * is handed to it, with the handler called in a task of the entity when the job completes, so the scheduled task
+     * does not wait for the job.
+     * A poll is skipped if the previous one has not yet completed (or if the executor rejects it).
+     */
+    @Beta
+    public void scheduleAtFixedRate(Callable<V> job, PollHandler<? super V> handler, Duration period, @Nullable Executor executor) {
         if (started) {
             throw new IllegalStateException("Cannot schedule additional tasks after poller has started");
         }
-        PollJob<V> foo = new PollJob<V>(job, handler, period);
+        PollJob<V> foo = new PollJob<V>(job, handler, period, executor);
         pollJobs.add(foo);
     }
 
@@ -150,7 +187,11 @@ public class Poller<V> {
                                 if (onlyIfServiceUp && !Boolean.TRUE.equals(entity.getAttribute(Attributes.SERVICE_UP))) {
                                         return null;
                                 }
-                                pollJob.wrappedJob.run();
+                                if (pollJob.executor != null) {
+                                    submitToExecutor(pollJob);
+                                } else {
+                                    pollJob.wrappedJob.run();
+                                }
                                 return null; 
                             } } );
                         BrooklynTaskTags.setTransient(task);
@@ -168,6 +209,62 @@ public class Poller<V> {
         }
     }
     
+    private void submitToExecutor(final PollJob<V> pollJob) {
+        if (!pollJob.inFlight.compareAndSet(false, true)) {
+            if (log.isTraceEnabled()) log.trace("Skipping poll {} for {}, as previous poll still in progress", pollJob.handler.getDescription(), entity);
+            return;
+        }
+        try {
+            pollJob.executor.execute(new Runnable() {
+                public void run() {
+                    boolean handling = false;
+                    try {
+                        if (!started) return;
+                        V val = null;
+                        Exception failure = null;
+                        try {
+                            val = pollJob.job.call();
+                        } catch (Exception e) {
+                            failure = e;
+                        }
+                        submitHandler(pollJob, val, failure);
+                        handling = true;
+                    } finally {
+                        if (!handling) pollJob.inFlight.set(false);
+                    }
+                }
+                public String toString() {
+                    return "poll "+pollJob.handler.getDescription()+" for "+entity;
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pollJob.inFlight.set(false);
+            if (log.isDebugEnabled()) log.debug("Skipping poll {} for {}, as rejected by {}: {}", new Object[] {pollJob.handler.getDescription(), entity, pollJob.executor, e});
+        }
+    }
+    
+    /** Handles the result of a job run by an executor in a task of the entity, as for synchronous polls. */
+    private void submitHandler(final PollJob<V> pollJob, final V val, final Exception failure) {
+        Task<?> task = Tasks.builder().dynamic(false).displayName(pollJob.handler.getDescription())
+                .description("Handling result of poll for "+entity)
+                .body(new Runnable() {
+                    public void run() {
+                        try {
+                            if (!started) return;
+                            if (failure != null) {
+                                pollJob.handleException(failure);
+                            } else {
+                                pollJob.handleResult(val);
+                            }
+                        } finally {
+                            pollJob.inFlight.set(false);
+                        }
+                    }})
+                .build();
+        BrooklynTaskTags.setTransient(task);
+        ((EntityInternal)entity).getExecutionContext().submit(task);
+    }
+    
     public void stop() {
         if (log.isDebugEnabled()) log.debug("Stopping poll for {} (using {})", new Object[] {entity, this});
         if (!started) { 
@@ -200,6 +297,20 @@ public class Poller<V> {
         return started && hasActiveTasks;
     }
     
+    /**
+     * For each poll job that has run, the most that any of its runs has been late compared to its schedule,
+     * keyed by the job's description.
+     */
+    @Beta
+    public Map<String, Duration> getMaxScheduleDrifts() {
+        Map<String, Duration> result = MutableMap.of();
+        for (ScheduledTask task : tasks) {
+            Duration drift = task.getMaxScheduleDrift();
+            if (drift != null) result.put(task.getDisplayName(), drift);
+        }
+        return result;
+    }
+    
     protected boolean isEmpty() {
         return pollJobs.isEmpty();
     }
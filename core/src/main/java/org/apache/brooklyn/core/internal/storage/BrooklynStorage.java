@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.internal.storage;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
 import com.google.common.annotations.Beta;
@@ -92,6 +93,20 @@ public interface BrooklynStorage {
      */
     <K,V> ConcurrentMap<K,V> getMap(String id);
 
+    /**
+     * Returns the entries for the given keys of the map with this name (as per {@link #getMap(String)}),
+     * fetched together where the storage-medium supports it. Keys without an entry are not in the result.
+     */
+    @Beta
+    <K,V> Map<K,V> getAll(String id, Set<K> keys);
+
+    /**
+     * Puts the given entries in the map with this name (as per {@link #getMap(String)}), 
+     * together where the storage-medium supports it.
+     */
+    @Beta
+    <K,V> void putAll(String id, Map<? extends K, ? extends V> values);
+
     /**
      * Removes the data stored against this id, whether it is a map, ref or whatever.
      */
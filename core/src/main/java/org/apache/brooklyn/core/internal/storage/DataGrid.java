@@ -22,6 +22,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 
 public interface DataGrid {
@@ -32,6 +33,19 @@ public interface DataGrid {
      */
     <K,V> ConcurrentMap<K,V> getMap(String id);
 
+    /**
+     * Returns the entries for the given keys of the map with this id, fetched together where the datagrid
+     * supports it (rather than one call per key). Keys without an entry are not in the result.
+     */
+    @Beta
+    <K,V> Map<K,V> getAll(String id, Set<K> keys);
+
+    /**
+     * Puts the given entries in the map with this id, together where the datagrid supports it.
+     */
+    @Beta
+    <K,V> void putAll(String id, Map<? extends K, ? extends V> values);
+
     /**
      * Deletes the map for this id, if it exists; otherwise a no-op.
      */
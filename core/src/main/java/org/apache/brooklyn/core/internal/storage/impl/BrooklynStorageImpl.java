@@ -22,6 +22,7 @@ import java.lang.ref.WeakReference;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.core.internal.storage.BrooklynStorage;
@@ -103,6 +104,16 @@ public class BrooklynStorageImpl implements BrooklynStorage {
         return datagrid.<K,V>getMap(id);
     }
     
+    @Override
+    public <K, V> Map<K, V> getAll(String id, Set<K> keys) {
+        return datagrid.<K,V>getAll(id, keys);
+    }
+    
+    @Override
+    public <K, V> void putAll(String id, Map<? extends K, ? extends V> values) {
+        datagrid.<K,V>putAll(id, values);
+    }
+    
     @Override
     public void remove(String id) {
         datagrid.remove(id);
@@ -53,6 +53,22 @@ public class InmemoryDatagrid implements DataGrid {
         }
     }
     
+    @Override
+    public <K, V> Map<K, V> getAll(String id, Set<K> keys) {
+        ConcurrentMap<K, V> map = getMap(id);
+        Map<K, V> result = Maps.newLinkedHashMap();
+        for (K key : keys) {
+            // may have null values
+            if (map.containsKey(key)) result.put(key, map.get(key));
+        }
+        return result;
+    }
+    
+    @Override
+    public <K, V> void putAll(String id, Map<? extends K, ? extends V> values) {
+        this.<K, V>getMap(id).putAll(values);
+    }
+    
     // TODO Not doing Maps.newConcurrentMap() because needs to store null values.
     // Easy to avoid for Refererence<?> but harder for entity ConfigMap where the user
     // can insert null values.
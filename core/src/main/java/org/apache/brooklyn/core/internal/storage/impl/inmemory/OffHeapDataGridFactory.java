@@ -0,0 +1,39 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.internal.storage.impl.inmemory;
+
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.internal.storage.DataGrid;
+import org.apache.brooklyn.core.internal.storage.DataGridFactory;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Creates an {@link OffHeapDatagrid}, configured from the management context's properties.
+ */
+@Beta
+public class OffHeapDataGridFactory implements DataGridFactory {
+
+    @Override
+    public DataGrid newDataGrid(ManagementContextInternal managementContext) {
+        StringConfigMap config = managementContext.getConfig();
+        return new OffHeapDatagrid(config.getConfig(OffHeapDatagrid.CACHE_SIZE), config.getConfig(OffHeapDatagrid.SEGMENT_SIZE));
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.internal.storage.impl.inmemory;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.internal.storage.DataGrid;
+import org.apache.brooklyn.core.internal.storage.impl.inmemory.OffHeapStore.Slot;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Maps;
+
+/**
+ * An implementation of datagrid within a single JVM, like {@link InmemoryDatagrid}, but which holds values
+ * serialized in direct (off-heap) memory, so that large amounts of sensor and config state do not add to the
+ * heap which the java garbage collector has to scan.
+ * <p>
+ * The most recently used values are also kept deserialized on the heap (up to {@link #CACHE_SIZE} of them),
+ * and gets of those return the same instance each time; other gets return a new copy of the value.
+ * Values which cannot be serialized, and those which refer to entities, locations or other
+ * {@link BrooklynObject}s, are kept on the heap as they are.
+ * <p>
+ * To use, set {@code org.apache.brooklyn.core.internal.storage.DataGridFactory} to {@link OffHeapDataGridFactory}.
+ */
+@Beta
+public class OffHeapDatagrid implements DataGrid {
+
+    private static final Logger LOG = LoggerFactory.getLogger(OffHeapDatagrid.class);
+
+    @Beta
+    public static final ConfigKey<Integer> CACHE_SIZE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.storage.offheap.cacheSize",
+            "The maximum number of recently used values to also keep deserialized on the heap",
+            10000);
+
+    @Beta
+    public static final ConfigKey<Integer> SEGMENT_SIZE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.storage.offheap.segmentSize",
+            "The number of bytes of direct memory to reserve at a time (rounded up to a power of two); "
+            + "larger values are held in direct memory of their own",
+            1024*1024);
+
+    private static enum Marker {
+        NULL,
+        /** returned when decoding a slot which has since been released, so the caller should look again */
+        RELEASED;
+    }
+
+    private final Map<String,OffHeapMap<?,?>> maps = Maps.newLinkedHashMap();
+    private final AtomicInteger creationCounter = new AtomicInteger();
+    private final OffHeapStore store;
+    private final Cache<Slot, Object> cache;
+    private final ConcurrentMap<Class<?>, Boolean> serializableClasses = Maps.newConcurrentMap();
+
+    private final AtomicLong serializationCount = new AtomicLong();
+    private final AtomicLong serializationNanos = new AtomicLong();
+    private final AtomicLong deserializationCount = new AtomicLong();
+    private final AtomicLong deserializationNanos = new AtomicLong();
+    private final AtomicLong onHeapCount = new AtomicLong();
+
+    public OffHeapDatagrid() {
+        this(CACHE_SIZE.getDefaultValue(), SEGMENT_SIZE.getDefaultValue());
+    }
+
+    public OffHeapDatagrid(int cacheSize, int segmentSize) {
+        store = new OffHeapStore(segmentSize);
+        cache = CacheBuilder.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <K, V> ConcurrentMap<K, V> getMap(String id) {
+        synchronized (maps) {
+            OffHeapMap<K, V> result = (OffHeapMap<K, V>) maps.get(id);
+            if (result == null) {
+                result = new OffHeapMap<K, V>(this);
+                maps.put(id, result);
+                creationCounter.incrementAndGet();
+            }
+            return result;
+        }
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(String id, Set<K> keys) {
+        ConcurrentMap<K, V> map = getMap(id);
+        Map<K, V> result = Maps.newLinkedHashMap();
+        for (K key : keys) {
+            // may have null values
+            if (map.containsKey(key)) result.put(key, map.get(key));
+        }
+        return result;
+    }
+
+    @Override
+    public <K, V> void putAll(String id, Map<? extends K, ? extends V> values) {
+        this.<K, V>getMap(id).putAll(values);
+    }
+
+    @Override
+    public void remove(String id) {
+        OffHeapMap<?, ?> map;
+        synchronized (maps) {
+            map = maps.remove(id);
+        }
+        // release its memory
+        if (map != null) map.clear();
+    }
+
+    @Override
+    public void terminate() {
+        List<OffHeapMap<?, ?>> toClear;
+        synchronized (maps) {
+            toClear = ImmutableList.copyOf(maps.values());
+            maps.clear();
+        }
+        for (OffHeapMap<?, ?> map : toClear) {
+            map.clear();
+        }
+        cache.invalidateAll();
+        store.clear();
+    }
+
+    @Override
+    public Map<String, Object> getDatagridMetrics() {
+        int size;
+        synchronized (maps) {
+            size = maps.size();
+        }
+        CacheStats cacheStats = cache.stats();
+        long serialized = serializationCount.get();
+        long deserialized = deserializationCount.get();
+        return MutableMap.<String, Object>builder()
+                .put("size", size)
+                .put("createCount", creationCounter.get())
+                .put("offHeapBytesUsed", store.getUsedBytes())
+                .put("offHeapBytesReserved", store.getReservedBytes())
+                .put("onHeapValueCount", onHeapCount.get())
+                .put("cacheSize", cache.size())
+                .put("cacheHits", cacheStats.hitCount())
+                .put("cacheMisses", cacheStats.missCount())
+                .put("cacheHitRate", cacheStats.hitRate())
+                .put("serializationCount", serialized)
+                .put("serializationMeanNanos", (serialized > 0) ? serializationNanos.get() / serialized : 0)
+                .put("deserializationCount", deserialized)
+                .put("deserializationMeanNanos", (deserialized > 0) ? deserializationNanos.get() / deserialized : 0)
+                .build();
+    }
+
+    @Override
+    public Set<String> getKeys() {
+        return maps.keySet();
+    }
+
+    /**
+     * Returns what to hold in a map for the given value: a slot holding it serialized,
+     * or (if it cannot be serialized) the value itself, or a marker for null.
+     */
+    Object encode(Object value) {
+        if (value == null) return Marker.NULL;
+        long start = System.nanoTime();
+        byte[] bytes;
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ObjectOutputStream oos = new CheckingObjectOutputStream(out);
+            oos.writeObject(value);
+            oos.close();
+            bytes = out.toByteArray();
+        } catch (IOException e) {
+            if (LOG.isTraceEnabled()) LOG.trace("Keeping value on heap, as it cannot be serialized: "+value+" ("+e+")");
+            onHeapCount.incrementAndGet();
+            return value;
+        }
+        Slot result = store.store(bytes);
+        serializationNanos.addAndGet(System.nanoTime() - start);
+        serializationCount.incrementAndGet();
+        cache.put(result, value);
+        return result;
+    }
+
+    /**
+     * Returns the value held (as returned by {@link #encode(Object)}), or {@link Marker#RELEASED} if it was held
+     * in a slot which has since been released.
+     */
+    Object decode(Object stored) {
+        if (stored == Marker.NULL) return null;
+        if (!(stored instanceof Slot)) return stored;
+
+        Slot slot = (Slot) stored;
+        Object result = cache.getIfPresent(slot);
+        if (result != null) return result;
+
+        byte[] bytes = slot.read();
+        if (bytes == null) return Marker.RELEASED;
+        long start = System.nanoTime();
+        try {
+            ObjectInputStream ois = new ClassLoaderObjectInputStream(new ByteArrayInputStream(bytes));
+            result = ois.readObject();
+            ois.close();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+        deserializationNanos.addAndGet(System.nanoTime() - start);
+        deserializationCount.incrementAndGet();
+        cache.put(slot, result);
+        // in case released concurrently, as it would then never be used (or invalidated) again
+        if (slot.isReleased()) cache.invalidate(slot);
+        return result;
+    }
+
+    boolean isReleased(Object decoded) {
+        return decoded == Marker.RELEASED;
+    }
+
+    /** Frees the memory for something returned by {@link #encode(Object)}, once it is no longer in a map. */
+    void release(Object stored) {
+        if (stored instanceof Slot) {
+            Slot slot = (Slot) stored;
+            if (store.release(slot)) cache.invalidate(slot);
+        } else if (stored != Marker.NULL && stored != null) {
+            onHeapCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Only serializes values whose classes will be found again when deserializing, and does not
+     * copy {@link BrooklynObject}s (the value is then kept on the heap).
+     */
+    private class CheckingObjectOutputStream extends ObjectOutputStream {
+        CheckingObjectOutputStream(OutputStream out) throws IOException {
+            super(out);
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof BrooklynObject) {
+                throw new NotSerializableException("not copying "+obj);
+            }
+            Class<?> clazz = obj.getClass();
+            Boolean resolvable = serializableClasses.get(clazz);
+            if (resolvable == null) {
+                resolvable = isResolvable(clazz);
+                serializableClasses.putIfAbsent(clazz, resolvable);
+            }
+            if (!resolvable) {
+                throw new NotSerializableException("class not visible to datagrid: "+clazz.getName());
+            }
+            return obj;
+        }
+
+        private boolean isResolvable(Class<?> clazz) {
+            try {
+                return Class.forName(clazz.getName(), false, OffHeapDatagrid.class.getClassLoader()) == clazz;
+            } catch (ClassNotFoundException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class ClassLoaderObjectInputStream extends ObjectInputStream {
+        ClassLoaderObjectInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            try {
+                return Class.forName(desc.getName(), false, OffHeapDatagrid.class.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                return super.resolveClass(desc);
+            }
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.internal.storage.impl.inmemory;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+/**
+ * A map of {@link OffHeapDatagrid}, holding the keys on the heap and the values as encoded by the datagrid.
+ * Accepts null values.
+ * <p>
+ * As for {@link org.apache.brooklyn.core.internal.storage.impl.ConcurrentMapAcceptingNullVals},
+ * {@link #values()} and {@link #entrySet()} return immutable snapshots of the map's contents.
+ */
+class OffHeapMap<K, V> extends AbstractMap<K, V> implements ConcurrentMap<K, V> {
+
+    private final OffHeapDatagrid datagrid;
+    private final ConcurrentMap<K, Object> delegate = Maps.newConcurrentMap();
+
+    OffHeapMap(OffHeapDatagrid datagrid) {
+        this.datagrid = datagrid;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        while (true) {
+            Object stored = delegate.get(key);
+            if (stored == null) return null;
+            Object result = datagrid.decode(stored);
+            // else replaced concurrently, so look again
+            if (!datagrid.isReleased(result)) return (V) result;
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Object old = delegate.put(key, datagrid.encode(value));
+        return decodeAndRelease(old);
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> vals) {
+        for (Map.Entry<? extends K, ? extends V> entry : vals.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public V remove(Object key) {
+        return decodeAndRelease(delegate.remove(key));
+    }
+
+    @Override
+    public void clear() {
+        for (K key : delegate.keySet()) {
+            // no need to decode the values
+            Object old = delegate.remove(key);
+            if (old != null) datagrid.release(old);
+        }
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        Object encoded = datagrid.encode(value);
+        while (true) {
+            Object existing = delegate.putIfAbsent(key, encoded);
+            if (existing == null) return null;
+            Object result = datagrid.decode(existing);
+            if (!datagrid.isReleased(result)) {
+                datagrid.release(encoded);
+                return uncheckedCast(result);
+            }
+        }
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        Object encoded = datagrid.encode(value);
+        Object old = delegate.replace(key, encoded);
+        if (old == null) {
+            datagrid.release(encoded);
+            return null;
+        }
+        return decodeAndRelease(old);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        while (true) {
+            Object stored = delegate.get(key);
+            if (stored == null) return false;
+            Object current = datagrid.decode(stored);
+            if (datagrid.isReleased(current)) continue;
+            if (!Objects.equal(current, value)) return false;
+            if (delegate.remove(key, stored)) {
+                datagrid.release(stored);
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        Object encoded = null;
+        while (true) {
+            Object stored = delegate.get(key);
+            if (stored != null) {
+                Object current = datagrid.decode(stored);
+                if (datagrid.isReleased(current)) continue;
+                if (Objects.equal(current, oldValue)) {
+                    if (encoded == null) encoded = datagrid.encode(newValue);
+                    if (delegate.replace(key, stored, encoded)) {
+                        datagrid.release(stored);
+                        return true;
+                    }
+                    continue;
+                }
+            }
+            if (encoded != null) datagrid.release(encoded);
+            return false;
+        }
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (V v : values()) {
+            if (Objects.equal(v, value)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return new AbstractSet<K>() {
+            @Override
+            public Iterator<K> iterator() {
+                final Iterator<K> iter = delegate.keySet().iterator();
+                return new Iterator<K>() {
+                    private K last;
+                    @Override
+                    public boolean hasNext() {
+                        return iter.hasNext();
+                    }
+                    @Override
+                    public K next() {
+                        last = iter.next();
+                        return last;
+                    }
+                    @Override
+                    public void remove() {
+                        // through the map, so that the value's memory is released
+                        if (last == null) throw new IllegalStateException();
+                        OffHeapMap.this.remove(last);
+                        last = null;
+                    }
+                };
+            }
+            @Override
+            public boolean contains(Object o) {
+                return delegate.containsKey(o);
+            }
+            @Override
+            public boolean remove(Object o) {
+                boolean result = delegate.containsKey(o);
+                OffHeapMap.this.remove(o);
+                return result;
+            }
+            @Override
+            public int size() {
+                return delegate.size();
+            }
+            @Override
+            public void clear() {
+                OffHeapMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<V> values() {
+        // Note that returns an immutable snapshot
+        List<V> result = new ArrayList<V>(delegate.size());
+        for (Map.Entry<K, V> entry : entrySet()) {
+            result.add(entry.getValue());
+        }
+        return Collections.unmodifiableCollection(result);
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        // Note that returns an immutable snapshot
+        Set<Map.Entry<K, V>> result = new LinkedHashSet<Map.Entry<K, V>>(delegate.size());
+        for (K key : delegate.keySet()) {
+            // a key removed concurrently is skipped; but null is also a valid value
+            V value = get(key);
+            if (value != null || delegate.containsKey(key)) {
+                result.add(new AbstractMap.SimpleEntry<K, V>(key, value));
+            }
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    private V decodeAndRelease(Object stored) {
+        if (stored == null) return null;
+        // only the caller which removed it from the map will release it, so it is still there to decode
+        Object result = datagrid.decode(stored);
+        datagrid.release(stored);
+        return uncheckedCast(result);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V uncheckedCast(Object value) {
+        return (V) value;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.internal.storage.impl.inmemory;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
+
+/**
+ * Holds byte arrays in direct (off-heap) memory, for {@link OffHeapDatagrid}.
+ * <p>
+ * Memory is reserved in segments, split into slots whose sizes are powers of two; the slots of released
+ * values are re-used for values of the same size class. Values bigger than a segment get a buffer of their own.
+ */
+class OffHeapStore {
+
+    static final int MIN_SLOT_SIZE = 64;
+
+    /** Where a value is held; the bytes can be read until the slot is {@link #release(Slot) released}. */
+    static class Slot {
+        private final ByteBuffer buffer;
+        private final int segment;
+        private final int offset;
+        private final int length;
+        private final int sizeClass;
+        private boolean released;
+
+        private Slot(ByteBuffer buffer, int segment, int offset, int length, int sizeClass) {
+            this.buffer = buffer;
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+            this.sizeClass = sizeClass;
+        }
+
+        /** The bytes held, or null if the slot has been released (and so may hold another value). */
+        synchronized byte[] read() {
+            if (released) return null;
+            byte[] result = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(result);
+            return result;
+        }
+
+        synchronized boolean isReleased() {
+            return released;
+        }
+
+        private synchronized boolean markReleased() {
+            if (released) return false;
+            released = true;
+            return true;
+        }
+    }
+
+    private final int segmentSize;
+    private final List<ByteBuffer> segments = Lists.newArrayList();
+    /** free offsets by size class, each encoded as segment index and offset */
+    private final Deque<Long>[] freeSlots;
+    private int currentSegmentUsed;
+    private long reservedBytes;
+    private long usedBytes;
+    private long largeValueBytes;
+
+    @SuppressWarnings("unchecked")
+    OffHeapStore(int segmentSize) {
+        Preconditions.checkArgument(segmentSize >= MIN_SLOT_SIZE, "segmentSize must be at least %s", MIN_SLOT_SIZE);
+        // round up to a power of two, so a segment is exactly filled by slots of any size class
+        this.segmentSize = Integer.highestOneBit(segmentSize - 1) << 1;
+        int numSizeClasses = Integer.numberOfTrailingZeros(this.segmentSize / MIN_SLOT_SIZE) + 1;
+        freeSlots = new Deque[numSizeClasses];
+        for (int i = 0; i < numSizeClasses; i++) {
+            freeSlots[i] = new ArrayDeque<Long>();
+        }
+        currentSegmentUsed = this.segmentSize;
+    }
+
+    /** Copies the given bytes into off-heap memory. */
+    Slot store(byte[] data) {
+        Slot result = allocate(data.length);
+        ByteBuffer view = result.buffer.duplicate();
+        view.position(result.offset);
+        view.put(data);
+        return result;
+    }
+
+    private synchronized Slot allocate(int length) {
+        if (length > segmentSize) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(length);
+            largeValueBytes += length;
+            return new Slot(buffer, -1, 0, length, -1);
+        }
+        int sizeClass = sizeClass(length);
+        int slotSize = MIN_SLOT_SIZE << sizeClass;
+        Long free = freeSlots[sizeClass].poll();
+        Slot result;
+        if (free != null) {
+            int segment = (int) (free >>> 32);
+            result = new Slot(segments.get(segment), segment, (int) (long) free, length, sizeClass);
+        } else {
+            if (currentSegmentUsed + slotSize > segmentSize) {
+                // slots are aligned to their size, so all of the rest of this segment can go in smaller slots
+                freeRestOfCurrentSegment();
+                segments.add(ByteBuffer.allocateDirect(segmentSize));
+                reservedBytes += segmentSize;
+                currentSegmentUsed = 0;
+            }
+            int segment = segments.size() - 1;
+            result = new Slot(segments.get(segment), segment, currentSegmentUsed, length, sizeClass);
+            currentSegmentUsed += slotSize;
+        }
+        usedBytes += slotSize;
+        return result;
+    }
+
+    private void freeRestOfCurrentSegment() {
+        if (segments.isEmpty()) return;
+        int segment = segments.size() - 1;
+        while (currentSegmentUsed < segmentSize) {
+            // the largest slot aligned at this offset which fits
+            int alignedClass = Integer.numberOfTrailingZeros(currentSegmentUsed / MIN_SLOT_SIZE);
+            int fittingClass = Integer.numberOfTrailingZeros(Integer.highestOneBit((segmentSize - currentSegmentUsed) / MIN_SLOT_SIZE));
+            int sizeClass = Math.min(alignedClass, fittingClass);
+            freeSlots[sizeClass].push(((long) segment << 32) | currentSegmentUsed);
+            currentSegmentUsed += MIN_SLOT_SIZE << sizeClass;
+        }
+    }
+
+    /** Makes the memory of the slot available for other values; returns false if already released. */
+    boolean release(Slot slot) {
+        if (!slot.markReleased()) return false;
+        synchronized (this) {
+            if (slot.sizeClass < 0) {
+                largeValueBytes -= slot.length;
+            } else if (slot.segment < segments.size() && segments.get(slot.segment) == slot.buffer) {
+                usedBytes -= MIN_SLOT_SIZE << slot.sizeClass;
+                freeSlots[slot.sizeClass].push(((long) slot.segment << 32) | slot.offset);
+            }
+        }
+        return true;
+    }
+
+    /** Drops all the segments; slots not yet released can no longer be read. */
+    synchronized void clear() {
+        segments.clear();
+        for (Deque<Long> free : freeSlots) {
+            free.clear();
+        }
+        currentSegmentUsed = segmentSize;
+        reservedBytes = 0;
+        usedBytes = 0;
+        largeValueBytes = 0;
+    }
+
+    /** Bytes of direct memory reserved in segments. */
+    synchronized long getReservedBytes() {
+        return reservedBytes;
+    }
+
+    /** Bytes of direct memory in use by values (including rounding up to the size of their slot). */
+    synchronized long getUsedBytes() {
+        return usedBytes + largeValueBytes;
+    }
+
+    private static int sizeClass(int length) {
+        if (length <= MIN_SLOT_SIZE) return 0;
+        return 32 - Integer.numberOfLeadingZeros((length - 1) / MIN_SLOT_SIZE);
+    }
+}
@@ -94,6 +94,9 @@ public abstract class AbstractSubscriptionManager implements SubscriptionManager
      * <li>subscriberExecutionManagerTag - a tag to pass to execution manager (without setting any execution semantics / TaskPreprocessor);
      *      if not supplied and there is a subscriber, this will be inferred from the subscriber and set up with SingleThreadedScheduler
      * <li>eventFilter - a Predicate&lt;SensorEvent&gt; instance to filter what events are delivered
+     * <li>coalesceEvents - if true, and events are being delivered in batches (which is not done for a supplied
+     *      subscriberExecutionManagerTag), an event not yet delivered is superseded by a later event from the same 
+     *      producer and sensor (so the subscriber sees only the latest value)
      * </ul>
      * 
      * @see SubscriptionManager#subscribe(Map, Entity, Sensor, SensorEventListener)
@@ -27,7 +27,9 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NavigableSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -51,6 +53,7 @@ import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.CompletedTaskRecord;
 import org.apache.brooklyn.util.core.task.ExecutionListener;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
@@ -63,6 +66,7 @@ import org.slf4j.LoggerFactory;
 import com.google.common.base.Objects;
 import com.google.common.annotations.Beta;
 import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
 
 /**
  * Deletes record of old tasks, to prevent space leaks and the eating up of more and more memory.
@@ -80,6 +84,10 @@ import com.google.common.collect.Iterables;
  * and keeping at most 100000 tasks in the system,
  * max 1000 tasks per entity, 50 per effector within that entity, and 50 per other non-effector tag
  * within that entity (or global if not attached to an entity).
+ * <p>
+ * If {@link #INCREMENTAL} is set, completed tasks are indexed by completion time as they complete, along with
+ * the tags they had, so that each collection looks only at the oldest tasks and at the tags which have had
+ * tasks added, rather than at all tasks in memory.
  * 
  * @author aled
  */
@@ -133,6 +141,49 @@ public class BrooklynGarbageCollector {
             "the duration after which a completed task will be automatically deleted", 
             Duration.days(30));
     
+    /**
+     * Completed tasks are kept (until deleted according to the limits above) only as a compact 
+     * {@link CompletedTaskRecord} once they have been completed for this long; null (the default) to keep the tasks themselves.
+     * As a record keeps the task's result only as a summary, enabling this changes what {@link Task#get()} returns
+     * for older tasks, e.g. as reported by the REST API.
+     */
+    @Beta
+    public static final ConfigKey<Duration> COMPACT_TASK_AGE = ConfigKeys.newDurationConfigKey(
+            "brooklyn.gc.compactTaskAge", 
+            "the duration after which a completed task is replaced by a compact record of it "
+            + "(with its result and any error kept only as a summary, so changing what task results report); "
+            + "null (the default) to never compact", 
+            null);
+    
+    /**
+     * The maximum estimated memory, in bytes, to be used by the compact records of completed tasks
+     * (see {@link #COMPACT_TASK_AGE}); the oldest records are deleted when this is exceeded. 
+     * Tasks not yet compacted do not count towards it.
+     */
+    @Beta
+    public static final ConfigKey<Long> MAX_COMPACTED_TASKS_SIZE = ConfigKeys.newLongConfigKey(
+            "brooklyn.gc.maxCompactedTasksSize", 
+            "the maximum estimated memory, in bytes, to be used by compact records of completed tasks, "
+            + "beyond which the oldest are deleted; null for no limit other than the task limits above", 
+            64L*1024*1024);
+    
+    /**
+     * Whether to index tasks as they complete, so the time taken by each collection depends on the number of tasks
+     * to be deleted and on the number of tags which have had tasks added, rather than on the number of tasks in memory.
+     * The limits above apply in the same way. Read on startup.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> INCREMENTAL = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.gc.incremental", 
+            "whether to index tasks as they complete so that each collection need not look at all tasks", 
+            false);
+    
+    /** 
+     * Number of indexed tasks re-checked on each incremental collection, for tasks deleted other than by this collector
+     * (e.g. as children of a deleted task) and for subtasks whose submitter has been deleted. 
+     */
+    protected static final int INCREMENTAL_SWEEP_SIZE = 10000;
+    
     protected final static Comparator<Task<?>> TASKS_OLDEST_FIRST_COMPARATOR = new Comparator<Task<?>>() {
         @Override public int compare(Task<?> t1, Task<?> t2) {
             long end1 = t1.getEndTimeUtc();
@@ -152,12 +203,24 @@ public class BrooklynGarbageCollector {
     private final boolean doSystemGc;
     private volatile boolean running = true;
     
+    private final boolean incremental;
+    /** completed tasks which were not deleted on completion, oldest first; only maintained if {@link #INCREMENTAL} */
+    private final ConcurrentSkipListSet<CompletedTaskEntry> completedTasksByAge = new ConcurrentSkipListSet<CompletedTaskEntry>();
+    /** tags of tasks completed since the last collection, whose capacity must be checked; only maintained if {@link #INCREMENTAL} */
+    private final Set<Object> tagsToCheck = Sets.newConcurrentHashSet();
+    // the following are guarded by this, as is gcTasks
+    private CompletedTaskEntry lastCompacted;
+    private CompletedTaskEntry lastSwept;
+    private Integer lastMaxTasksPerTag;
+    private Integer lastMaxTasksPerEntity;
+    
     public BrooklynGarbageCollector(BrooklynProperties brooklynProperties, BasicExecutionManager executionManager, BrooklynStorage storage) {
         this.executionManager = executionManager;
         this.storage = storage;
         this.brooklynProperties = brooklynProperties;
 
         doSystemGc = brooklynProperties.getConfig(DO_SYSTEM_GC);
+        incremental = brooklynProperties.getConfig(INCREMENTAL);
         
         executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
                 @Override public Thread newThread(Runnable r) {
@@ -229,7 +292,8 @@ public class BrooklynGarbageCollector {
             "tasks: " +
             executionManager.getNumActiveTasks()+" active, "+
             executionManager.getNumIncompleteTasks()+" unfinished; "+
-            executionManager.getNumInMemoryTasks()+" remembered, "+
+            executionManager.getNumInMemoryTasks()+" remembered ("+
+            executionManager.getNumCompactedTasks()+" compacted), "+
             executionManager.getTotalTasksSubmitted()+" total submitted)";
     }
     
@@ -262,6 +326,16 @@ public class BrooklynGarbageCollector {
     public void onTaskDone(Task<?> task) {
         if (shouldDeleteTaskImmediately(task)) {
             executionManager.deleteTask(task);
+        } else if (incremental) {
+            indexCompletedTask(task);
+        }
+    }
+    
+    protected void indexCompletedTask(Task<?> task) {
+        long endTime = task.getEndTimeUtc();
+        completedTasksByAge.add(new CompletedTaskEntry(endTime>0 ? endTime : System.currentTimeMillis(), task.getId()));
+        for (Object tag: task.getTags()) {
+            if (!isTagIgnoredForGc(tag)) tagsToCheck.add(tag);
         }
     }
     
@@ -329,11 +403,17 @@ public class BrooklynGarbageCollector {
             // caller has changed period, reschedule on next run
             scheduleCollector(false);
         }
+        
+        if (incremental) return gcTasksIncrementally();
     
         expireUnmanagedEntityTasks();
         expireAgedTasks();
         expireTransientTasks();
         
+        Duration compactTaskAge = brooklynProperties.getConfig(COMPACT_TASK_AGE);
+        if (compactTaskAge!=null) compactCompletedTasks(compactTaskAge);
+        int deletedCompacted = expireCompactedTasks();
+        
         // now look at overcapacity tags, non-entity tags first
         
         Set<Object> taskTags = executionManager.getTaskTags();
@@ -370,7 +450,7 @@ public class BrooklynGarbageCollector {
             }
         }
         
-        int deletedCount = 0;
+        int deletedCount = deletedCompacted;
         deletedCount += expireOverCapacityTagsInCategory(taskNonEntityTagsOverCapacity, taskAllTagsOverCapacity, TagCategory.NON_ENTITY_NORMAL, false);
         deletedCount += expireOverCapacityTagsInCategory(taskEntityTagsOverCapacity, taskAllTagsOverCapacity, TagCategory.ENTITY, true);
         deletedCount += expireSubTasksWhoseSubmitterIsExpired();
@@ -381,6 +461,26 @@ public class BrooklynGarbageCollector {
         
         return deletedCount;
     }
+    
+    /**
+     * As {@link #gcTasks()}, but using the index of completed tasks: aged tasks and tasks over the global limit are
+     * taken from the oldest end of the index, and tag limits are checked only for tags which have had tasks completed
+     * since the last collection (or for all tags if the limits have changed).
+     */
+    protected int gcTasksIncrementally() {
+        expireUnmanagedEntityTasks();
+        int deletedCount = expireAgedTasksIncrementally();
+        expireTransientTasks();
+        
+        Duration compactTaskAge = brooklynProperties.getConfig(COMPACT_TASK_AGE);
+        if (compactTaskAge!=null) compactCompletedTasksIncrementally(compactTaskAge);
+        deletedCount += expireCompactedTasks();
+        
+        deletedCount += expireOverCapacityTagsIncrementally();
+        deletedCount += expireIfOverCapacityGloballyIncrementally();
+        deletedCount += sweepCompletedTasks(INCREMENTAL_SWEEP_SIZE, compactTaskAge);
+        return deletedCount;
+    }
 
     protected static boolean isTagIgnoredForGc(Object tag) {
         if (tag == null) return true;
@@ -436,6 +536,27 @@ public class BrooklynGarbageCollector {
         }
     }
     
+    protected int expireAgedTasksIncrementally() {
+        long cutoff = System.currentTimeMillis() - brooklynProperties.getConfig(MAX_TASK_AGE).toMilliseconds();
+        int deleted = 0;
+        for (Iterator<CompletedTaskEntry> ei = completedTasksByAge.iterator(); ei.hasNext(); ) {
+            CompletedTaskEntry entry = ei.next();
+            if (entry.endTimeUtc >= cutoff) break;
+            Task<?> task = executionManager.getTask(entry.taskId);
+            if (task==null) {
+                // deleted already, e.g. along with its parent
+                ei.remove();
+                continue;
+            }
+            // subtasks are deleted with their parent
+            if (BrooklynTaskTags.isSubTask(task)) continue;
+            executionManager.deleteTask(task);
+            ei.remove();
+            deleted++;
+        }
+        return deleted;
+    }
+    
     protected void expireTransientTasks() {
         Set<Task<?>> transientTasks = executionManager.getTasksWithTag(BrooklynTaskTags.TRANSIENT_TASK_TAG);
         for (Task<?> t: transientTasks) {
@@ -444,6 +565,93 @@ public class BrooklynGarbageCollector {
         }
     }
     
+    /**
+     * Replaces tasks which completed at least the given time ago with compact records of them
+     * (see {@link BasicExecutionManager#compactTask(Task)}), returning the number compacted.
+     */
+    @Beta
+    public int compactCompletedTasks(Duration minAge) {
+        Collection<Task<?>> tasksToCompact = MutableList.of();
+        try {
+            for (Task<?> task: executionManager.allTasksLive()) {
+                if (task instanceof CompletedTaskRecord || !task.isDone()) continue;
+                if (task.getEndTimeUtc() > 0 && minAge.isLongerThan(Duration.sinceUtc(task.getEndTimeUtc()))) continue;
+                tasksToCompact.add(task);
+            }
+        } catch (ConcurrentModificationException e) {
+            // compact what we've found so far
+            LOG.debug("Got CME inspecting tasks to compact, with "+tasksToCompact.size()+" found: "+e);
+        }
+        
+        int count = 0;
+        for (Task<?> task: tasksToCompact) {
+            if (executionManager.compactTask(task) instanceof CompletedTaskRecord) count++;
+        }
+        if (LOG.isDebugEnabled() && count>0)
+            LOG.debug("brooklyn-gc compacted "+count+" completed tasks");
+        return count;
+    }
+    
+    /**
+     * Deletes the oldest compact records of tasks while their total estimated size is over {@link #MAX_COMPACTED_TASKS_SIZE},
+     * returning the number deleted.
+     */
+    protected int expireCompactedTasks() {
+        Long maxSize = brooklynProperties.getConfig(MAX_COMPACTED_TASKS_SIZE);
+        if (maxSize==null) return 0;
+        int count = executionManager.expireCompactedTasks(maxSize);
+        if (LOG.isDebugEnabled() && count>0)
+            LOG.debug("brooklyn-gc deleted "+count+" compacted tasks, as over "+maxSize+" bytes");
+        return count;
+    }
+    
+    protected void compactCompletedTasksIncrementally(Duration minAge) {
+        long cutoff = System.currentTimeMillis() - minAge.toMilliseconds();
+        NavigableSet<CompletedTaskEntry> entries = (lastCompacted==null) ? completedTasksByAge : completedTasksByAge.tailSet(lastCompacted, false);
+        int count = 0;
+        for (CompletedTaskEntry entry: entries) {
+            if (entry.endTimeUtc > cutoff) break;
+            Task<?> task = executionManager.getTask(entry.taskId);
+            if (task!=null && !(task instanceof CompletedTaskRecord) && executionManager.compactTask(task) instanceof CompletedTaskRecord) count++;
+            lastCompacted = entry;
+        }
+        if (LOG.isDebugEnabled() && count>0)
+            LOG.debug("brooklyn-gc compacted "+count+" completed tasks");
+    }
+    
+    /**
+     * Looks at the next batch of indexed tasks (continuing from where the previous sweep finished), 
+     * dropping those which have been deleted, deleting subtasks whose submitter has been deleted,
+     * and compacting any which were missed because they were indexed late.
+     */
+    protected int sweepCompletedTasks(int maxToCheck, Duration compactTaskAge) {
+        boolean checkSubmitters = brooklynProperties.getConfig(CHECK_SUBTASK_SUBMITTERS);
+        long compactCutoff = (compactTaskAge!=null) ? System.currentTimeMillis() - compactTaskAge.toMilliseconds() : -1;
+        
+        NavigableSet<CompletedTaskEntry> entries = (lastSwept==null) ? completedTasksByAge : completedTasksByAge.tailSet(lastSwept, false);
+        Iterator<CompletedTaskEntry> ei = entries.iterator();
+        int checked = 0;
+        int deleted = 0;
+        while (checked < maxToCheck && ei.hasNext()) {
+            CompletedTaskEntry entry = ei.next();
+            checked++;
+            lastSwept = entry;
+            Task<?> task = executionManager.getTask(entry.taskId);
+            if (task==null) {
+                ei.remove();
+            } else if (checkSubmitters && isSubmitterExpired(task)) {
+                executionManager.deleteTask(task);
+                ei.remove();
+                deleted++;
+            } else if (entry.endTimeUtc <= compactCutoff && !(task instanceof CompletedTaskRecord)) {
+                executionManager.compactTask(task);
+            }
+        }
+        // start again from the oldest next time
+        if (!ei.hasNext()) lastSwept = null;
+        return deleted;
+    }
+    
     protected int expireSubTasksWhoseSubmitterIsExpired() {
         // ideally we wouldn't have this; see comments on CHECK_SUBTASK_SUBMITTERS
         if (!brooklynProperties.getConfig(CHECK_SUBTASK_SUBMITTERS))
@@ -454,10 +662,7 @@ public class BrooklynGarbageCollector {
         try {
             for (Task<?> task: allTasks) {
                 if (!task.isDone()) continue;
-                Task<?> submitter = task.getSubmittedByTask();
-                // if we've leaked, ie a subtask which is not a child task, 
-                // and the submitter is GC'd, then delete this also
-                if (submitter!=null && submitter.isDone() && executionManager.getTask(submitter.getId())==null) {
+                if (isSubmitterExpired(task)) {
                     tasksToDelete.add(task);
                 }
             }
@@ -473,6 +678,19 @@ public class BrooklynGarbageCollector {
         return tasksToDelete.size();
     }
     
+    /** whether the task was submitted by another task, which has been deleted */
+    protected boolean isSubmitterExpired(Task<?> task) {
+        // if we've leaked, ie a subtask which is not a child task, 
+        // and the submitter is GC'd, then delete this also
+        Task<?> submitter = task.getSubmittedByTask();
+        if (submitter==null && task instanceof CompletedTaskRecord && ((CompletedTaskRecord)task).getSubmittedByTaskId()!=null) {
+            // a record refers to its submitter only weakly; if that has been garbage collected 
+            // then it must have completed and been deleted
+            return true;
+        }
+        return submitter!=null && submitter.isDone() && executionManager.getTask(submitter.getId())==null;
+    }
+    
     protected enum TagCategory { 
         ENTITY, NON_ENTITY_NORMAL;
         
@@ -586,6 +804,121 @@ public class BrooklynGarbageCollector {
         return deleted;
     }
 
+    /**
+     * As {@link #expireOverCapacityTagsInCategory(Map, Map, TagCategory, boolean)} for each category, 
+     * but considering only tasks with a tag which has had tasks completed since the last collection 
+     * (or with any tag, if the limits have changed).
+     */
+    protected int expireOverCapacityTagsIncrementally() {
+        int maxTasksPerEntity = brooklynProperties.getConfig(MAX_TASKS_PER_ENTITY);
+        int maxTasksPerTag = brooklynProperties.getConfig(MAX_TASKS_PER_TAG);
+        
+        Collection<Object> tags = MutableList.of();
+        if (!Objects.equal(lastMaxTasksPerEntity, maxTasksPerEntity) || !Objects.equal(lastMaxTasksPerTag, maxTasksPerTag)) {
+            // any tag may now be over capacity
+            tagsToCheck.clear();
+            tags.addAll(executionManager.getTaskTags());
+            lastMaxTasksPerEntity = maxTasksPerEntity;
+            lastMaxTasksPerTag = maxTasksPerTag;
+        } else {
+            for (Iterator<Object> ti = tagsToCheck.iterator(); ti.hasNext(); ) {
+                tags.add(ti.next());
+                ti.remove();
+            }
+        }
+        if (tags.isEmpty()) return 0;
+        
+        // number of tasks over capacity (negative if under) for each tag looked at in this collection, 
+        // computed the first time the tag is seen and then decremented as tasks are deleted
+        Map<Object,AtomicInteger> tagsOverCapacity = MutableMap.of();
+        int deleted = 0;
+        deleted += expireOverCapacityTagsInCategoryIncrementally(tags, tagsOverCapacity, TagCategory.NON_ENTITY_NORMAL, maxTasksPerTag, maxTasksPerEntity);
+        deleted += expireOverCapacityTagsInCategoryIncrementally(tags, tagsOverCapacity, TagCategory.ENTITY, maxTasksPerTag, maxTasksPerEntity);
+        return deleted;
+    }
+    
+    protected int expireOverCapacityTagsInCategoryIncrementally(Collection<Object> tags, Map<Object,AtomicInteger> tagsOverCapacity, TagCategory category, int maxTasksPerTag, int maxTasksPerEntity) {
+        // tasks without any of these tags over capacity are not candidates for deletion, 
+        // as none of their tags in this category can have gone over capacity since the last collection
+        Set<Task<?>> tasksToConsider = MutableSet.of();
+        for (Object tag: tags) {
+            if (!category.acceptsTag(tag)) continue;
+            if (getOverCapacity(tag, tagsOverCapacity, maxTasksPerTag, maxTasksPerEntity).get() <= 0) continue;
+            Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+            if (tasksWithTag!=null) tasksToConsider.addAll(tasksWithTag);
+        }
+        if (tasksToConsider.isEmpty()) return 0;
+        
+        // as in expireOverCapacityTagsInCategory, delete tasks oldest first if all their tags in this category 
+        // are over capacity, and if any is under capacity give grace to the others
+        List<Task<?>> tasksToConsiderDeleting = MutableList.of();
+        for (Task<?> task: tasksToConsider) {
+            if (!task.isDone()) continue;
+            
+            Set<Object> taskTags = task.getTags();
+            int categoryTags = 0, tooFullCategoryTags = 0;
+            for (Object tag: taskTags) {
+                if (isTagIgnoredForGc(tag)) continue;
+                // get the count for all tags before deleting anything, so deletions are counted for each tag
+                AtomicInteger over = getOverCapacity(tag, tagsOverCapacity, maxTasksPerTag, maxTasksPerEntity);
+                if (category.acceptsTag(tag)) {
+                    categoryTags++;
+                    if (over.get() > 0) tooFullCategoryTags++;
+                }
+            }
+            if (tooFullCategoryTags>0) {
+                if (categoryTags==tooFullCategoryTags) {
+                    tasksToConsiderDeleting.add(task);
+                } else {
+                    for (Object tag: taskTags) {
+                        if (category.acceptsTag(tag)) {
+                            AtomicInteger over = tagsOverCapacity.get(tag);
+                            if (over.get() > 0) over.decrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+        
+        Collections.sort(tasksToConsiderDeleting, TASKS_OLDEST_FIRST_COMPARATOR);
+        int deleted = 0;
+        for (Task<?> task: tasksToConsiderDeleting) {
+            boolean delete = true;
+            for (Object tag: task.getTags()) {
+                if (category.acceptsTag(tag) && getOverCapacity(tag, tagsOverCapacity, maxTasksPerTag, maxTasksPerEntity).get() <= 0) {
+                    // no longer over capacity in this tag
+                    delete = false;
+                    break;
+                }
+            }
+            if (delete) {
+                deleted++;
+                executionManager.deleteTask(task);
+                if (task.getEndTimeUtc() > 0) completedTasksByAge.remove(new CompletedTaskEntry(task.getEndTimeUtc(), task.getId()));
+                for (Object tag: task.getTags()) {
+                    AtomicInteger over = tagsOverCapacity.get(tag);
+                    if (over!=null) over.decrementAndGet();
+                }
+            }
+        }
+        
+        if (LOG.isDebugEnabled() && deleted>0)
+            LOG.debug("brooklyn-gc deleted "+deleted+" tasks in over-capacity "+category+" tag categories, "
+                    + "of "+tasksToConsider.size()+" tasks with tags to check");
+        return deleted;
+    }
+    
+    private AtomicInteger getOverCapacity(Object tag, Map<Object,AtomicInteger> tagsOverCapacity, int maxTasksPerTag, int maxTasksPerEntity) {
+        AtomicInteger result = tagsOverCapacity.get(tag);
+        if (result==null) {
+            Set<Task<?>> tasksWithTag = executionManager.tasksWithTagLiveOrNull(tag);
+            int size = (tasksWithTag==null) ? 0 : tasksWithTag.size();
+            result = new AtomicInteger(size - ((tag instanceof WrappedEntity) ? maxTasksPerEntity : maxTasksPerTag));
+            tagsOverCapacity.put(tag, result);
+        }
+        return result;
+    }
+
     protected int expireIfOverCapacityGlobally() {
         Collection<Task<?>> tasksLive = executionManager.allTasksLive();
         if (tasksLive.size() <= brooklynProperties.getConfig(MAX_TASKS_GLOBAL))
@@ -621,5 +954,56 @@ public class BrooklynGarbageCollector {
             LOG.debug("brooklyn-gc deleted "+numDeleted+" tasks as was over global limit, now have "+executionManager.allTasksLive().size());
         return numDeleted;
     }
-
+    
+    protected int expireIfOverCapacityGloballyIncrementally() {
+        int maxTasksGlobal = brooklynProperties.getConfig(MAX_TASKS_GLOBAL);
+        if (executionManager.getNumInMemoryTasks() <= maxTasksGlobal)
+            return 0;
+        
+        // as in expireIfOverCapacityGlobally, delete the oldest completed tasks until the number completed is within the limit
+        long numToDelete = executionManager.getNumInMemoryTasks() - executionManager.getNumIncompleteTasks() - maxTasksGlobal;
+        int numDeleted = 0;
+        for (Iterator<CompletedTaskEntry> ei = completedTasksByAge.iterator(); numDeleted < numToDelete && ei.hasNext(); ) {
+            Task<?> task = executionManager.getTask(ei.next().taskId);
+            ei.remove();
+            if (task==null) continue;
+            executionManager.deleteTask(task);
+            numDeleted++;
+        }
+        if (LOG.isDebugEnabled() && numDeleted>0)
+            LOG.debug("brooklyn-gc deleted "+numDeleted+" tasks as was over global limit, now have "+executionManager.getNumInMemoryTasks());
+        return numDeleted;
+    }
+    
+    /** a completed task in the index, ordered by the time it completed and then by id */
+    private static class CompletedTaskEntry implements Comparable<CompletedTaskEntry> {
+        final long endTimeUtc;
+        final String taskId;
+        
+        CompletedTaskEntry(long endTimeUtc, String taskId) {
+            this.endTimeUtc = endTimeUtc;
+            this.taskId = taskId;
+        }
+        
+        @Override
+        public int compareTo(CompletedTaskEntry o) {
+            if (endTimeUtc != o.endTimeUtc) return (endTimeUtc < o.endTimeUtc) ? -1 : 1;
+            return taskId.compareTo(o.taskId);
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            return (obj instanceof CompletedTaskEntry) && compareTo((CompletedTaskEntry)obj)==0;
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(endTimeUtc, taskId);
+        }
+        
+        @Override
+        public String toString() {
+            return taskId+"@"+endTimeUtc;
+        }
+    }
 }
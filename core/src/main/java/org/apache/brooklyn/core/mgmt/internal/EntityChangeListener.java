@@ -35,6 +35,7 @@ public interface EntityChangeListener {
         @Override public void onLocationsChanged() {}
         @Override public void onMembersChanged() {}
         @Override public void onTagsChanged() {}
+        @Override public void onApplicationChanged() {}
         @Override public void onChildrenChanged() {}
         @Override public void onPolicyAdded(Policy policy) {}
         @Override public void onPolicyRemoved(Policy policy) {}
@@ -56,6 +57,8 @@ public interface EntityChangeListener {
     
     void onTagsChanged();
 
+    void onApplicationChanged();
+
     void onMembersChanged();
 
     void onChildrenChanged();
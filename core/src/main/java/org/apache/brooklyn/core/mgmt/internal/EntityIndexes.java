@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.util.javalang.Reflections;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Indexes of the managed entities (their proxies) by type, by tag and by application,
+ * for {@link LocalEntityManager} to answer queries without testing every entity.
+ * <p>
+ * The type index includes all the superclasses and interfaces of both the entity and its proxy.
+ * Reads do not block; updates (on management, unmanagement and changes of tags or of application) are synchronized.
+ */
+class EntityIndexes {
+
+    private static class IndexedEntity {
+        final Entity proxy;
+        final Set<Class<?>> types;
+        String applicationId;
+        Set<Object> tags;
+
+        IndexedEntity(Entity proxy, Set<Class<?>> types, String applicationId, Set<Object> tags) {
+            this.proxy = proxy;
+            this.types = types;
+            this.applicationId = applicationId;
+            this.tags = tags;
+        }
+    }
+
+    private final Map<String, IndexedEntity> entitiesById = Maps.newHashMap();
+    private final ConcurrentMap<Class<?>, Set<Entity>> byType = Maps.newConcurrentMap();
+    private final ConcurrentMap<Object, Set<Entity>> byTag = Maps.newConcurrentMap();
+    private final ConcurrentMap<String, Set<Entity>> byApplicationId = Maps.newConcurrentMap();
+
+    /** Indexes the entity, replacing any previous entry for its id. */
+    synchronized void add(Entity proxy, Entity realEntity) {
+        remove(proxy.getId());
+
+        Set<Class<?>> types = Sets.newLinkedHashSet();
+        addTypes(realEntity.getClass(), types);
+        addTypes(proxy.getClass(), types);
+        IndexedEntity entry = new IndexedEntity(proxy, ImmutableSet.copyOf(types), realEntity.getApplicationId(), realEntity.tags().getTags());
+        entitiesById.put(proxy.getId(), entry);
+
+        for (Class<?> type : entry.types) {
+            addTo(byType, type, proxy);
+        }
+        for (Object tag : entry.tags) {
+            addTo(byTag, tag, proxy);
+        }
+        if (entry.applicationId != null) {
+            addTo(byApplicationId, entry.applicationId, proxy);
+        }
+    }
+
+    synchronized void remove(String id) {
+        IndexedEntity entry = entitiesById.remove(id);
+        if (entry == null) return;
+
+        for (Class<?> type : entry.types) {
+            removeFrom(byType, type, entry.proxy);
+        }
+        for (Object tag : entry.tags) {
+            removeFrom(byTag, tag, entry.proxy);
+        }
+        if (entry.applicationId != null) {
+            removeFrom(byApplicationId, entry.applicationId, entry.proxy);
+        }
+    }
+
+    /** Re-indexes the tags of the entity, if it is indexed. */
+    synchronized void updateTags(String id, Set<Object> tags) {
+        IndexedEntity entry = entitiesById.get(id);
+        if (entry == null) return;
+
+        for (Object tag : Sets.difference(entry.tags, tags)) {
+            removeFrom(byTag, tag, entry.proxy);
+        }
+        for (Object tag : Sets.difference(tags, entry.tags)) {
+            addTo(byTag, tag, entry.proxy);
+        }
+        entry.tags = ImmutableSet.copyOf(tags);
+    }
+
+    /** Re-indexes the application of the entity, if it is indexed. */
+    synchronized void updateApplicationId(String id, @Nullable String applicationId) {
+        IndexedEntity entry = entitiesById.get(id);
+        if (entry == null || Objects.equal(entry.applicationId, applicationId)) return;
+
+        if (entry.applicationId != null) {
+            removeFrom(byApplicationId, entry.applicationId, entry.proxy);
+        }
+        if (applicationId != null) {
+            addTo(byApplicationId, applicationId, entry.proxy);
+        }
+        entry.applicationId = applicationId;
+    }
+
+    Collection<Entity> getByType(Class<?> type) {
+        return get(byType, type);
+    }
+
+    Collection<Entity> getByTag(Object tag) {
+        return get(byTag, tag);
+    }
+
+    Collection<Entity> getByApplicationId(String applicationId) {
+        return get(byApplicationId, applicationId);
+    }
+
+    /**
+     * Returns entities including all those which could match the given predicate (but perhaps others too),
+     * if it is one which the indexes can answer; otherwise returns null, so all entities must be tested.
+     */
+    @Nullable
+    Collection<Entity> getCandidates(Predicate<?> filter) {
+        if (filter instanceof EntityPredicates.IsInstanceOf) {
+            return getByType(((EntityPredicates.IsInstanceOf)filter).getType());
+        } else if (filter instanceof EntityPredicates.HasTag) {
+            return getByTag(((EntityPredicates.HasTag)filter).getTag());
+        } else if (filter instanceof EntityPredicates.ApplicationIdEqualTo) {
+            String applicationId = ((EntityPredicates.ApplicationIdEqualTo)filter).getApplicationId();
+            return (applicationId == null) ? null : getByApplicationId(applicationId);
+        } else if (filter instanceof EntityPredicates.ImplementsInterface) {
+            // the types indexed are few compared to the entities
+            Pattern pattern = ((EntityPredicates.ImplementsInterface)filter).getPattern();
+            Set<Entity> result = Sets.newLinkedHashSet();
+            for (Map.Entry<Class<?>, Set<Entity>> entry : byType.entrySet()) {
+                if (entry.getKey().isInterface() && pattern.matcher(entry.getKey().getName()).matches()) {
+                    result.addAll(entry.getValue());
+                }
+            }
+            return result;
+        } else {
+            return null;
+        }
+    }
+
+    synchronized void clear() {
+        entitiesById.clear();
+        byType.clear();
+        byTag.clear();
+        byApplicationId.clear();
+    }
+
+    private static void addTypes(Class<?> clazz, Set<Class<?>> result) {
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            result.add(type);
+        }
+        result.addAll(Reflections.getAllInterfaces(clazz));
+    }
+
+    private static <K> Collection<Entity> get(ConcurrentMap<K, Set<Entity>> index, K key) {
+        Set<Entity> result = index.get(key);
+        return (result == null) ? ImmutableSet.<Entity>of() : result;
+    }
+
+    private static <K> void addTo(ConcurrentMap<K, Set<Entity>> index, K key, Entity entity) {
+        Set<Entity> entities = index.get(key);
+        if (entities == null) {
+            entities = Sets.newConcurrentHashSet();
+            index.put(key, entities);
+        }
+        entities.add(entity);
+    }
+
+    private static <K> void removeFrom(ConcurrentMap<K, Set<Entity>> index, K key, Entity entity) {
+        Set<Entity> entities = index.get(key);
+        if (entities != null) {
+            entities.remove(entity);
+            // so that types (and their class loaders) and old tags are not held on to
+            if (entities.isEmpty()) index.remove(key);
+        }
+    }
+}
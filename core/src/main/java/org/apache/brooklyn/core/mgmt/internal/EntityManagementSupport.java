@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.mgmt.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -400,6 +401,16 @@ public class EntityManagementSupport {
     public EntityChangeListener getEntityChangeListener() {
         return entityChangeListener;
     }
+
+    /**
+     * Counts of this entity's config lookups answered from the memo of resolved values (hits), and those which
+     * had to be resolved (misses), for diagnosing the cost of config-heavy entities.
+     */
+    @Beta
+    @SuppressWarnings("deprecation")
+    public Map<String, Object> getConfigCacheMetrics() {
+        return entity.getConfigMap().getResolvedConfigMetrics();
+    }
     
     private class EntityChangeListenerImpl implements EntityChangeListener {
         @Override
@@ -416,9 +427,14 @@ public class EntityManagementSupport {
         }
         @Override
         public void onTagsChanged() {
+            ((EntityManagerInternal)getManagementContext().getEntityManager()).onTagsChanged(entity);
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
         @Override
+        public void onApplicationChanged() {
+            ((EntityManagerInternal)getManagementContext().getEntityManager()).onApplicationChanged(entity);
+        }
+        @Override
         public void onMembersChanged() {
             getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
         }
@@ -457,7 +473,7 @@ public class EntityManagementSupport {
             // TODO Could make this more efficient by inspecting the attribute to decide if needs persisted
             // immediately, or not important, or transient (e.g. do we really need to persist 
             // request-per-second count for rebind purposes?!)
-            getManagementContext().getRebindManager().getChangeListener().onChanged(entity);
+            ((RebindManagerInternal)getManagementContext().getRebindManager()).onAttributeChanged(entity, attribute);
         }
         @Override
         public void onConfigChanged(ConfigKey<?> key) {
@@ -22,6 +22,8 @@ import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.mgmt.EntityManager;
 
+import com.google.common.annotations.Beta;
+
 public interface EntityManagerInternal extends EntityManager, BrooklynObjectManagerInternal<Entity> {
 
     /** gets all entities currently known to the application, including entities that are not yet managed */
@@ -29,4 +31,12 @@ public interface EntityManagerInternal extends EntityManager, BrooklynObjectMana
 
     public Iterable<String> getEntityIds();
     
+    /** Called when the tags of the given entity have changed, so that any index of entities by tag can be updated. */
+    @Beta
+    void onTagsChanged(Entity entity);
+    
+    /** Called when the parent of the given entity has changed, so that any index of entities by application can be updated. */
+    @Beta
+    void onApplicationChanged(Entity entity);
+    
 }
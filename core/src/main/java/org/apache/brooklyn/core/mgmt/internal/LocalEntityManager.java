@@ -24,6 +24,7 @@ import groovy.util.ObservableList;
 import java.lang.reflect.Proxy;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -96,17 +97,20 @@ public class LocalEntityManager implements EntityManagerInternal {
     protected final ConcurrentMap<String,Entity> entityProxiesById = Maps.newConcurrentMap();
     
     /** Real managed entities */
-    protected final Map<String,Entity> entitiesById = Maps.newLinkedHashMap();
+    protected final ConcurrentMap<String,Entity> entitiesById = Maps.newConcurrentMap();
     
     /** Management mode for each entity */
-    protected final Map<String,ManagementTransitionMode> entityModesById = Collections.synchronizedMap(Maps.<String,ManagementTransitionMode>newLinkedHashMap());
+    protected final ConcurrentMap<String,ManagementTransitionMode> entityModesById = Maps.newConcurrentMap();
 
-    /** Proxies of the managed entities */
+    /** Proxies of the managed entities; guarded by itself, as it is not thread-safe */
     protected final ObservableList entities = new ObservableList();
     
     /** Proxies of the managed entities that are applications */
     protected final Set<Application> applications = Sets.newConcurrentHashSet();
 
+    /** Proxies of the managed entities indexed by type, tag and application, for {@link #findEntities(Predicate)} */
+    private final EntityIndexes entityIndexes = new EntityIndexes();
+
     private final BrooklynStorage storage;
     private final Map<String,String> entityTypes;
     private final Set<String> applicationIds;
@@ -192,19 +196,53 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     @Override
     public Collection<Entity> getEntitiesInApplication(Application application) {
-        Predicate<Entity> predicate = EntityPredicates.applicationIdEqualTo(application.getId());
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        return findEntitiesInApplication(application, Predicates.alwaysTrue());
     }
 
+    /**
+     * Where the filter is one of {@link EntityPredicates#isInstanceOf(Class)}, {@link EntityPredicates#hasTag(Object)},
+     * {@link EntityPredicates#applicationIdEqualTo(String)} or {@link EntityPredicates#hasInterfaceMatching(String)},
+     * only the entities indexed under that type, tag or application are tested; for other filters all entities are.
+     */
     @Override
     public Collection<Entity> findEntities(Predicate<? super Entity> filter) {
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), filter));
+        Collection<Entity> candidates = entityIndexes.getCandidates(filter);
+        if (candidates == null) candidates = entityProxiesById.values();
+        return ImmutableList.copyOf(Iterables.filter(candidates, filter));
     }
     
     @Override
     public Collection<Entity> findEntitiesInApplication(Application application, Predicate<? super Entity> filter) {
-        Predicate<Entity> predicate = Predicates.and(EntityPredicates.applicationIdEqualTo(application.getId()), filter);
-        return ImmutableList.copyOf(Iterables.filter(entityProxiesById.values(), predicate));
+        // the index is only a hint, as an entity's application may have changed since it was indexed
+        Predicate<Entity> inApplication = EntityPredicates.applicationIdEqualTo(application.getId());
+        return ImmutableList.copyOf(Iterables.filter(entityIndexes.getByApplicationId(application.getId()), 
+                Predicates.and(inApplication, filter)));
+    }
+
+    /** Returns the managed entities which are instances of the given type (or whose proxies are). */
+    @Beta
+    public Collection<Entity> getEntitiesOfType(Class<?> type) {
+        return ImmutableList.copyOf(entityIndexes.getByType(type));
+    }
+
+    /** Returns the managed entities which have the given tag. */
+    @Beta
+    public Collection<Entity> getEntitiesWithTag(Object tag) {
+        return ImmutableList.copyOf(entityIndexes.getByTag(tag));
+    }
+
+    /** Updates the index of tags, when those of the given entity have changed. */
+    @Override
+    public void onTagsChanged(Entity entity) {
+        entityIndexes.updateTags(entity.getId(), entity.tags().getTags());
+    }
+
+    /** Updates the index of applications, when that of the given entity (and so perhaps of its descendants) may have changed. */
+    @Override
+    public void onApplicationChanged(Entity entity) {
+        for (Entity descendant : Entities.descendants(entity)) {
+            entityIndexes.updateApplicationId(descendant.getId(), descendant.getApplicationId());
+        }
     }
 
     @Override
@@ -252,7 +290,11 @@ public class LocalEntityManager implements EntityManagerInternal {
     
     @Override
     public void setManagementTransitionMode(Entity item, ManagementTransitionMode mode) {
-        entityModesById.put(item.getId(), mode);
+        if (mode == null) {
+            entityModesById.remove(item.getId());
+        } else {
+            entityModesById.put(item.getId(), mode);
+        }
     }
     
     // TODO synchronization issues here. We guard with isManaged(), but if another thread executing 
@@ -294,12 +336,13 @@ public class LocalEntityManager implements EntityManagerInternal {
      * and also to collect many entities when doing a big rebind,
      * ensuring all have #manageNonRecursive called before calling #onManagementStarted.
      * 
-     * it would be better to have a manageAll(Map<Entity,ManagementTransitionMode> items)
-     * method which did that in two phases, allowing us to selectively rebind, 
+     * it would be better to use manageAll(Map<Entity,ManagementTransitionMode> items)
+     * which does that in two phases, allowing us to selectively rebind, 
      * esp when we come to want supporting different modes and different brooklyn nodes.
      * 
-     * the impl of manageAll could sort them with parents before children,
-     * (and manageRecursive could simply populate a map and delegate to manageAll).
+     * manageAll sorts them with parents before children,
+     * (and manageRecursive could simply populate a map and delegate to manageAll,
+     * once nothing relies on children added during a parent's onManagementStarting being managed).
      * 
      * manageRebindRoot would then go, and the (few) callers would construct the map.
      * 
@@ -318,47 +361,7 @@ public class LocalEntityManager implements EntityManagerInternal {
             if (mode==null) {
                 setManagementTransitionMode(it, mode = initialMode);
             }
-            
-            Boolean isReadOnlyFromEntity = it.getManagementSupport().isReadOnlyRaw();
-            if (isReadOnlyFromEntity==null) {
-                if (mode.isReadOnly()) {
-                    // should have been marked by rebinder
-                    log.warn("Read-only entity "+it+" not marked as such on call to manage; marking and continuing");
-                }
-                it.getManagementSupport().setReadOnly(mode.isReadOnly());
-            } else {
-                if (!isReadOnlyFromEntity.equals(mode.isReadOnly())) {
-                    log.warn("Read-only status at entity "+it+" ("+isReadOnlyFromEntity+") not consistent with management mode "+mode);
-                }
-            }
-            
-            if (it.getManagementSupport().isDeployed()) {
-                if (mode.wasNotLoaded()) {
-                    // silently bail out
-                    return false;
-                } else {
-                    if (mode.wasPrimary() && mode.isPrimary()) {
-                        // active partial rebind; continue
-                    } else if (mode.wasReadOnly() && mode.isReadOnly()) {
-                        // reload in RO mode
-                    } else {
-                        // on initial non-RO rebind, should not have any deployed instances
-                        log.warn("Already deployed "+it+" when managing "+mode+"/"+initialMode+"; ignoring this and all descendants");
-                        return false;
-                    }
-                }
-            }
-            
-            // check RO status is consistent
-            boolean isNowReadOnly = Boolean.TRUE.equals( ((EntityInternal)it).getManagementSupport().isReadOnly() );
-            if (mode.isReadOnly()!=isNowReadOnly) {
-                throw new IllegalStateException("Read-only status mismatch for "+it+": "+mode+" / RO="+isNowReadOnly);
-            }
-
-            allEntities.add(it);
-            preManageNonRecursive(it, mode);
-            it.getManagementSupport().onManagementStarting( new ManagementTransitionInfo(managementContext, mode) ); 
-            return manageNonRecursive(it, mode);
+            return manageWithStartingCallback(it, mode, initialMode, allEntities);
         } };
         boolean isRecursive = true;
         if (initialMode.wasPrimary() && initialMode.isPrimary()) {
@@ -381,6 +384,106 @@ public class LocalEntityManager implements EntityManagerInternal {
             recursively(e, manageEntity);
         }
         
+        onManagementStartedAll(allEntities);
+    }
+
+    /**
+     * Manages all the given entities, in the given modes, as one batch: each is registered (after its
+     * {@code onManagementStarting}), parents before children, and only then is {@code onManagementStarted}
+     * called on each. Unlike {@link #manage(Entity)} this does not walk the entities' descendants, so the
+     * caller chooses exactly what to manage (e.g. a whole subtree, or just some entities when rebinding);
+     * but an entity whose parent was not managed here (e.g. because it was already deployed) is skipped.
+     */
+    @Beta
+    public void manageAll(Map<? extends Entity, ManagementTransitionMode> items) {
+        List<Entity> ordered = Lists.newArrayList(items.keySet());
+        // parents before children
+        Collections.sort(ordered, new Comparator<Entity>() {
+            @Override public int compare(Entity o1, Entity o2) {
+                return Integer.compare(depth(o1), depth(o2));
+            }});
+
+        for (Entity e : ordered) {
+            checkManagementAllowed(e);
+        }
+        
+        List<EntityInternal> allEntities = Lists.newArrayListWithCapacity(ordered.size());
+        Set<String> skippedIds = Sets.newHashSet();
+        for (Entity e : ordered) {
+            Entity parent = e.getParent();
+            if (parent != null && skippedIds.contains(parent.getId())) {
+                skippedIds.add(e.getId());
+                continue;
+            }
+            Entity otherPreregistered = preRegisteredEntitiesById.get(e.getId());
+            EntityInternal it = (EntityInternal) (otherPreregistered != null ? otherPreregistered : e);
+            ManagementTransitionMode mode = checkNotNull(items.get(e), "mode for %s", e);
+            setManagementTransitionMode(it, mode);
+            if (!manageWithStartingCallback(it, mode, mode, allEntities)) {
+                skippedIds.add(e.getId());
+            }
+        }
+        
+        onManagementStartedAll(allEntities);
+    }
+
+    private static int depth(Entity e) {
+        int result = 0;
+        for (Entity ancestor = e.getParent(); ancestor != null; ancestor = ancestor.getParent()) {
+            result++;
+        }
+        return result;
+    }
+
+    /**
+     * Checks the entity can be managed in the given mode, then registers it as pre-managed, calls its
+     * {@code onManagementStarting} and registers it as managed, adding it to {@code allEntities}.
+     * Returns false if its descendants should not be managed.
+     */
+    private boolean manageWithStartingCallback(EntityInternal it, ManagementTransitionMode mode, ManagementTransitionMode initialMode, List<EntityInternal> allEntities) {
+        Boolean isReadOnlyFromEntity = it.getManagementSupport().isReadOnlyRaw();
+        if (isReadOnlyFromEntity==null) {
+            if (mode.isReadOnly()) {
+                // should have been marked by rebinder
+                log.warn("Read-only entity "+it+" not marked as such on call to manage; marking and continuing");
+            }
+            it.getManagementSupport().setReadOnly(mode.isReadOnly());
+        } else {
+            if (!isReadOnlyFromEntity.equals(mode.isReadOnly())) {
+                log.warn("Read-only status at entity "+it+" ("+isReadOnlyFromEntity+") not consistent with management mode "+mode);
+            }
+        }
+        
+        if (it.getManagementSupport().isDeployed()) {
+            if (mode.wasNotLoaded()) {
+                // silently bail out
+                return false;
+            } else {
+                if (mode.wasPrimary() && mode.isPrimary()) {
+                    // active partial rebind; continue
+                } else if (mode.wasReadOnly() && mode.isReadOnly()) {
+                    // reload in RO mode
+                } else {
+                    // on initial non-RO rebind, should not have any deployed instances
+                    log.warn("Already deployed "+it+" when managing "+mode+"/"+initialMode+"; ignoring this and all descendants");
+                    return false;
+                }
+            }
+        }
+        
+        // check RO status is consistent
+        boolean isNowReadOnly = Boolean.TRUE.equals( ((EntityInternal)it).getManagementSupport().isReadOnly() );
+        if (mode.isReadOnly()!=isNowReadOnly) {
+            throw new IllegalStateException("Read-only status mismatch for "+it+": "+mode+" / RO="+isNowReadOnly);
+        }
+
+        allEntities.add(it);
+        preManageNonRecursive(it, mode);
+        it.getManagementSupport().onManagementStarting( new ManagementTransitionInfo(managementContext, mode) ); 
+        return manageNonRecursive(it, mode);
+    }
+
+    private void onManagementStartedAll(List<EntityInternal> allEntities) {
         for (EntityInternal it : allEntities) {
             if (!it.getManagementSupport().isFullyManaged()) {
                 ManagementTransitionMode mode = getLastManagementTransitionMode(it.getId());
@@ -471,6 +574,7 @@ public class LocalEntityManager implements EntityManagerInternal {
         preRegisteredEntitiesById.remove(e.getId());
         preManagedEntitiesById.remove(e.getId());
         entityProxiesById.remove(e.getId());
+        entityIndexes.remove(e.getId());
         entitiesById.remove(e.getId());
         entityModesById.remove(e.getId());
     }
@@ -595,7 +699,7 @@ public class LocalEntityManager implements EntityManagerInternal {
     /**
      * Whether the entity is in the process of being managed.
      */
-    private synchronized boolean isPreManaged(Entity e) {
+    private boolean isPreManaged(Entity e) {
         return preManagedEntitiesById.containsKey(e.getId());
     }
 
@@ -607,7 +711,7 @@ public class LocalEntityManager implements EntityManagerInternal {
      * attempt fails then this reference to the entity will eventually be discarded (if no-one else holds 
      * a reference).
      */
-    private synchronized boolean preManageNonRecursive(Entity e, ManagementTransitionMode mode) {
+    private boolean preManageNonRecursive(Entity e, ManagementTransitionMode mode) {
         Entity realE = toRealEntity(e);
         
         Object old = preManagedEntitiesById.put(e.getId(), realE);
@@ -630,9 +734,14 @@ public class LocalEntityManager implements EntityManagerInternal {
     /**
      * Should ensure that the entity is now managed somewhere, and known about in all the lists.
      * Returns true if the entity has now become managed; false if it was already managed (anything else throws exception)
+     * <p>
+     * Not synchronized, so that managing one entity does not hold up managing (or looking up) others:
+     * when coming from an unloaded state the entity's id is claimed atomically, so concurrent calls for
+     * the same id are still rejected.
      */
-    private synchronized boolean manageNonRecursive(Entity e, ManagementTransitionMode mode) {
-        Entity old = entitiesById.get(e.getId());
+    private boolean manageNonRecursive(Entity e, ManagementTransitionMode mode) {
+        Entity realE = toRealEntity(e);
+        Entity old = mode.wasNotLoaded() ? entitiesById.putIfAbsent(e.getId(), realE) : entitiesById.put(e.getId(), realE);
         
         if (old!=null && mode.wasNotLoaded()) {
             if (old.equals(e)) {
@@ -645,12 +754,12 @@ public class LocalEntityManager implements EntityManagerInternal {
 
         BrooklynLogging.log(log, BrooklynLogging.levelDebugOrTraceIfReadOnly(e),
             "{} starting management of entity {}", this, e);
-        Entity realE = toRealEntity(e);
         
         Entity oldProxy = entityProxiesById.get(e.getId());
         Entity proxyE;
         if (oldProxy!=null) {
             if (mode.wasNotLoaded()) {
+                entitiesById.remove(e.getId(), realE);
                 throw new IllegalStateException("call to manage entity "+e+" from unloaded state ("+mode+") but already had proxy "+oldProxy+" already known under that id at "+this);
             }
             // make the old proxy point at this new delegate
@@ -661,16 +770,19 @@ public class LocalEntityManager implements EntityManagerInternal {
             proxyE = toProxyEntityIfAvailable(e);
         }
         entityProxiesById.put(e.getId(), proxyE);
+        entityIndexes.add(proxyE, realE);
         entityTypes.put(e.getId(), realE.getClass().getName());
-        entitiesById.put(e.getId(), realE);
 
         preManagedEntitiesById.remove(e.getId());
         if ((e instanceof Application) && (e.getParent()==null)) {
             applications.add((Application)proxyE);
             applicationIds.add(e.getId());
         }
-        if (!entities.contains(proxyE)) 
-            entities.add(proxyE);
+        synchronized (entities) {
+            // a new proxy cannot be in the list yet, so only search (which is linear) when re-using one
+            if (oldProxy==null || !entities.contains(proxyE)) 
+                entities.add(proxyE);
+        }
         
         if (old!=null && old!=e) {
             // passing the transition info will ensure the right shutdown steps invoked for old instance
@@ -717,30 +829,30 @@ public class LocalEntityManager implements EntityManagerInternal {
             log.debug("No relations being updated on unmanage of read only {}", e);
         }
 
-        synchronized (this) {
-            Entity proxyE = toProxyEntityIfAvailable(e);
-            if (e instanceof Application) {
-                applications.remove(proxyE);
-                applicationIds.remove(e.getId());
-            }
+        Entity proxyE = toProxyEntityIfAvailable(e);
+        if (e instanceof Application) {
+            applications.remove(proxyE);
+            applicationIds.remove(e.getId());
+        }
 
+        synchronized (entities) {
             entities.remove(proxyE);
-            entityProxiesById.remove(e.getId());
-            entityModesById.remove(e.getId());
-            Object old = entitiesById.remove(e.getId());
+        }
+        entityProxiesById.remove(e.getId());
+        entityModesById.remove(e.getId());
+        Object old = entitiesById.remove(e.getId());
 
-            entityTypes.remove(e.getId());
-            if (old==null) {
-                log.warn("{} call to stop management of unknown entity (already unmanaged?) {}; ignoring", this, e);
-                return false;
-            } else if (!old.equals(e)) {
-                // shouldn't happen...
-                log.error("{} call to stop management of entity {} removed different entity {}", new Object[] { this, e, old });
-                return true;
-            } else {
-                if (log.isDebugEnabled()) log.debug("{} stopped management of entity {}", this, e);
-                return true;
-            }
+        entityTypes.remove(e.getId());
+        if (old==null) {
+            log.warn("{} call to stop management of unknown entity (already unmanaged?) {}; ignoring", this, e);
+            return false;
+        } else if (!old.equals(e)) {
+            // shouldn't happen...
+            log.error("{} call to stop management of entity {} removed different entity {}", new Object[] { this, e, old });
+            return true;
+        } else {
+            if (log.isDebugEnabled()) log.debug("{} stopped management of entity {}", this, e);
+            return true;
         }
     }
 
@@ -23,8 +23,9 @@ import static org.apache.brooklyn.util.JavaGroovyEquivalents.groovyTruth;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.join;
 import static org.apache.brooklyn.util.JavaGroovyEquivalents.mapOf;
 
-import java.util.Collection;
+import java.util.ArrayDeque;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -41,6 +42,7 @@ import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.sensor.BasicSensorEvent;
 import org.apache.brooklyn.util.collections.MutableMap;
@@ -50,10 +52,9 @@ import org.apache.brooklyn.util.text.Identifiers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.base.Objects;
 import com.google.common.base.Predicate;
-import com.google.common.collect.ArrayListMultimap;
-import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
 
 /**
  * A {@link SubscriptionManager} that stores subscription details locally.
@@ -68,6 +69,14 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
 
     private final AtomicLong totalEventsPublishedCount = new AtomicLong();
     private final AtomicLong totalEventsDeliveredCount = new AtomicLong();
+    private final AtomicLong totalEventsCoalescedCount = new AtomicLong();
+    private final AtomicLong totalDeliveryTasksCount = new AtomicLong();
+    
+    /** whether to deliver via {@link SubscriberMailbox} instances rather than a task per event */
+    private final boolean batchedDelivery;
+    
+    /** mailboxes for subscribers with undelivered events, keyed by subscriber execution manager tag, when using batched delivery */
+    private final ConcurrentMap<Object, SubscriberMailbox> mailboxes = new ConcurrentHashMap<Object, SubscriberMailbox>();
     
     @SuppressWarnings("rawtypes")
     protected final ConcurrentMap<String, Subscription> allSubscriptions = new ConcurrentHashMap<String, Subscription>();
@@ -77,7 +86,16 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
     protected final ConcurrentMap<Object, Set<Subscription>> subscriptionsByToken = new ConcurrentHashMap<Object, Set<Subscription>>();
     
     public LocalSubscriptionManager(ExecutionManager m) {
+        this(m, BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_SUBSCRIPTION_BATCHED_DELIVERY));
+    }
+    
+    /**
+     * @param batchedDelivery whether to queue events per subscriber and deliver them in batches,
+     *        see {@link BrooklynFeatureEnablement#FEATURE_SUBSCRIPTION_BATCHED_DELIVERY}
+     */
+    public LocalSubscriptionManager(ExecutionManager m, boolean batchedDelivery) {
         this.em = m;
+        this.batchedDelivery = batchedDelivery;
     }
         
     public long getNumSubscriptions() {
@@ -92,8 +110,22 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return totalEventsDeliveredCount.get();
     }
     
+    /** count of events replaced by a later event before delivery, for subscriptions with {@code coalesceEvents} */
+    public long getTotalEventsCoalesced() {
+        return totalEventsCoalescedCount.get();
+    }
+    
+    /** count of tasks submitted to deliver events (one per event per subscription, unless using batched delivery) */
+    public long getTotalDeliveryTasks() {
+        return totalDeliveryTasksCount.get();
+    }
+    
+    public boolean isBatchedDelivery() {
+        return batchedDelivery;
+    }
+    
     @SuppressWarnings("unchecked")
-    protected synchronized <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
+    protected <T> SubscriptionHandle subscribe(Map<String, Object> flags, final Subscription<T> s) {
         Entity producer = s.producer;
         Sensor<T> sensor= s.sensor;
         s.subscriber = getSubscriber(flags, s);
@@ -108,18 +140,20 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             s.subscriberExecutionManagerTagSupplied = false;
         }
         s.eventFilter = (Predicate<SensorEvent<T>>) flags.remove("eventFilter");
+        s.coalesceEvents = Boolean.TRUE.equals(flags.remove("coalesceEvents"));
         boolean notifyOfInitialValue = Boolean.TRUE.equals(flags.remove("notifyOfInitialValue"));
         s.flags = flags;
         
         if (LOG.isDebugEnabled()) LOG.debug("Creating subscription {} for {} on {} {} in {}", new Object[] {s.id, s.subscriber, producer, sensor, this});
+        // before the subscription is indexed, as publish (which does not lock) may then deliver to it straight away
+        if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
+            ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
+        }
         allSubscriptions.put(s.id, s);
         addToMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
         if (s.subscriber!=null) {
             addToMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
         }
-        if (!s.subscriberExecutionManagerTagSupplied && s.subscriberExecutionManagerTag!=null) {
-            ((BasicExecutionManager) em).setTaskSchedulerForTag(s.subscriberExecutionManagerTag, SingleThreadedScheduler.class);
-        }
 
         if (notifyOfInitialValue) {
             if (producer == null) {
@@ -166,7 +200,7 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
         return (Set<SubscriptionHandle>) ((Set<?>) elvis(subscriptionsBySubscriber.get(subscriber), Collections.emptySet()));
     }
 
-    public synchronized Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
+    public Set<SubscriptionHandle> getSubscriptionsForEntitySensor(Entity source, Sensor<?> sensor) {
         Set<SubscriptionHandle> subscriptions = new LinkedHashSet<SubscriptionHandle>();
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(source, sensor)), Collections.emptySet()));
         subscriptions.addAll(elvis(subscriptionsByToken.get(makeEntitySensorToken(null, sensor)), Collections.emptySet()));
@@ -181,15 +215,19 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
      * @see #subscribe(Map, Entity, Sensor, SensorEventListener)
      */
     @SuppressWarnings("rawtypes")
-    public synchronized boolean unsubscribe(SubscriptionHandle sh) {
+    public boolean unsubscribe(SubscriptionHandle sh) {
         if (!(sh instanceof Subscription)) throw new IllegalArgumentException("Only subscription handles of type Subscription supported: sh="+sh+"; type="+(sh != null ? sh.getClass().getCanonicalName() : null));
         Subscription s = (Subscription) sh;
+        // whoever removes it from allSubscriptions is responsible for removing it from the other indexes,
+        // so concurrent unsubscribes of the same handle agree without needing a lock
         boolean result = allSubscriptions.remove(s.id) != null;
-        boolean b2 = removeFromMapOfCollections(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
-        assert result==b2;
-        if (s.subscriber!=null) {
-            boolean b3 = removeFromMapOfCollections(subscriptionsBySubscriber, s.subscriber, s);
-            assert b3 == b2;
+        if (result) {
+            boolean b2 = removeFromMapOfSets(subscriptionsByToken, makeEntitySensorToken(s.producer, s.sensor), s);
+            assert b2;
+            if (s.subscriber!=null) {
+                boolean b3 = removeFromMapOfSets(subscriptionsBySubscriber, s.subscriber, s);
+                assert b3;
+            }
         }
 
         // FIXME ALEX - this seems wrong
@@ -220,6 +258,11 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
             for (Subscription s : subs) {
                 if (s.eventFilter!=null && !s.eventFilter.apply(event))
                     continue;
+                if (batchedDelivery && s.subscriberExecutionManagerTag!=null && !s.subscriberExecutionManagerTagSupplied) {
+                    // only for the tags we make single-threaded; deliveries for a caller's tag are not serialised
+                    if (deliverViaMailbox(s, event)) totalEventsDeliveredCount.incrementAndGet();
+                    continue;
+                }
                 final Subscription sAtClosureCreation = s;
                 
 //                Set<Object> tags = MutableSet.of();
@@ -237,100 +280,213 @@ public class LocalSubscriptionManager extends AbstractSubscriptionManager {
                         return "LSM.publish("+event+")";
                     }
                     public void run() {
-                        try {
-                            int count = sAtClosureCreation.eventCount.incrementAndGet();
-                            if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, sAtClosureCreation);
-                            
-                            sAtClosureCreation.listener.onEvent(event);
-                        } catch (Throwable t) {
-                            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
-                                LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
-                            } else {
-                                LOG.warn("Error processing subscriptions to "+this+": "+t, t);
-                            }
-                        }
+                        deliver(sAtClosureCreation, event);
                     }});
+                totalDeliveryTasksCount.incrementAndGet();
                 totalEventsDeliveredCount.incrementAndGet();
             }
         }
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private void deliver(Subscription s, SensorEvent<?> event) {
+        try {
+            int count = s.eventCount.incrementAndGet();
+            if (count > 0 && count % 1000 == 0) LOG.debug("{} events for subscriber {}", count, s);
+            
+            s.listener.onEvent(event);
+        } catch (Throwable t) {
+            if (event!=null && event.getSource()!=null && Entities.isNoLongerManaged(event.getSource())) {
+                LOG.debug("Error processing subscriptions to "+this+", after entity unmanaged: "+t, t);
+            } else {
+                LOG.warn("Error processing subscriptions to "+this+": "+t, t);
+            }
+        }
+    }
+    
+    /** @return false if the event replaced an undelivered one, so will not be delivered as an additional event */
+    private boolean deliverViaMailbox(Subscription<?> s, SensorEvent<?> event) {
+        Object tag = s.subscriberExecutionManagerTag;
+        while (true) {
+            SubscriberMailbox mailbox = mailboxes.get(tag);
+            if (mailbox==null) {
+                SubscriberMailbox newMailbox = new SubscriberMailbox(tag);
+                mailbox = mailboxes.putIfAbsent(tag, newMailbox);
+                if (mailbox==null) mailbox = newMailbox;
+            }
+            switch (mailbox.offer(s, event)) {
+            case QUEUED: return true;
+            case COALESCED: return false;
+            case CLOSED: break;
+            }
+            // mailbox was closed (emptied and removed) concurrently; try again with a new one
+        }
+    }
+    
+    private enum OfferResult { QUEUED, COALESCED, CLOSED }
+    
+    /** An event waiting for delivery to a subscription; skipped if superseded by a later event, for a subscription which coalesces events. */
+    private static class PendingDelivery {
+        final Subscription<?> subscription;
+        final SensorEvent<?> event;
+        boolean superseded;
+        
+        PendingDelivery(Subscription<?> subscription, SensorEvent<?> event) {
+            this.subscription = subscription;
+            this.event = event;
+        }
+    }
+    
+    /** Key for an undelivered event which may be superseded: the subscription, producer and sensor. */
+    private static class CoalescingKey {
+        final Subscription<?> subscription;
+        final Entity source;
+        final Sensor<?> sensor;
+        
+        CoalescingKey(Subscription<?> subscription, SensorEvent<?> event) {
+            this.subscription = subscription;
+            this.source = event.getSource();
+            this.sensor = event.getSensor();
+        }
+        
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof CoalescingKey)) return false;
+            CoalescingKey o = (CoalescingKey) obj;
+            return subscription.equals(o.subscription) && Objects.equal(source, o.source) && Objects.equal(sensor, o.sensor);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(subscription, source, sensor);
+        }
+    }
+    
+    /**
+     * Queue of undelivered events for one subscriber (i.e. one execution manager tag), drained by a single task 
+     * at a time. Events are delivered in the order they were published. The drain task is submitted with the 
+     * subscriber's tag, so it is ordered with other tasks (e.g. initial-value notifications) for that subscriber.
+     * <p>
+     * When drained empty the mailbox is closed and removed, so idle subscribers do not hold a mailbox.
+     */
+    private class SubscriberMailbox implements Runnable {
+        private final Object tag;
+        private Deque<PendingDelivery> queue = new ArrayDeque<PendingDelivery>();
+        private final Map<CoalescingKey, PendingDelivery> coalescable = new LinkedHashMap<CoalescingKey, PendingDelivery>();
+        private boolean scheduled;
+        private boolean closed;
+        
+        SubscriberMailbox(Object tag) {
+            this.tag = tag;
+        }
+        
+        /** 
+         * An event replacing an undelivered one is queued after the events published since that one, 
+         * which is skipped, so the subscriber sees events in the order published.
+         * 
+         * @return {@link OfferResult#CLOSED} if this mailbox has been closed, so the caller should use a new one
+         */
+        OfferResult offer(Subscription<?> s, SensorEvent<?> event) {
+            boolean submitNeeded;
+            OfferResult result = OfferResult.QUEUED;
+            synchronized (this) {
+                if (closed) return OfferResult.CLOSED;
+                PendingDelivery delivery = new PendingDelivery(s, event);
+                if (s.coalesceEvents) {
+                    PendingDelivery existing = coalescable.put(new CoalescingKey(s, event), delivery);
+                    if (existing!=null) {
+                        existing.superseded = true;
+                        totalEventsCoalescedCount.incrementAndGet();
+                        result = OfferResult.COALESCED;
+                    }
+                }
+                queue.add(delivery);
+                submitNeeded = !scheduled;
+                scheduled = true;
+            }
+            if (submitNeeded) submitDrain();
+            return result;
+        }
+        
+        private void submitDrain() {
+            totalDeliveryTasksCount.incrementAndGet();
+            em.submit(MutableMap.of("tag", tag), this);
+        }
+        
+        @Override
+        public void run() {
+            Deque<PendingDelivery> batch;
+            synchronized (this) {
+                batch = queue;
+                queue = new ArrayDeque<PendingDelivery>();
+                coalescable.clear();
+            }
+            for (PendingDelivery delivery : batch) {
+                // not superseded after this, as no longer in coalescable
+                if (!delivery.superseded) deliver(delivery.subscription, delivery.event);
+            }
+            synchronized (this) {
+                if (queue.isEmpty()) {
+                    scheduled = false;
+                    closed = true;
+                    mailboxes.remove(tag, this);
+                    return;
+                }
+            }
+            // more events arrived during delivery; deliver them in a new task, so others get a turn
+            submitDrain();
+        }
+        
+        @Override
+        public String toString() {
+            return "LSM.deliverBatch("+tag+")";
+        }
+    }
+    
     @Override
     public String toString() {
         return tostring;
     }
     
     /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Adds the given value to a collection in the map under the key.
-     * 
-     * A collection (as {@link LinkedHashMap}) will be created if necessary,
-     * synchronized on map for map access/change and set for addition there
-     *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link HashMultimap}, and {@link Multimaps#synchronizedSetMultimap(com.google.common.collect.SetMultimap)}
+     * Adds the given value to the set in the map under the key, creating the set if necessary.
+     * <p>
+     * Sets are concurrent, so readers (e.g. {@link #publish(SensorEvent)}) never lock. Writers lock only the set
+     * for the key, to agree with {@link #removeFromMapOfSets(ConcurrentMap, Object, Object)} on whether the set 
+     * is still in the map (rather than having been removed as empty).
      */
-    @Deprecated
-    private static <K,V> Set<V> addToMapOfSets(Map<K,Set<V>> map, K key, V valueInCollection) {
-        Set<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
+    private static <K,V> void addToMapOfSets(ConcurrentMap<K,Set<V>> map, K key, V valueInCollection) {
+        while (true) {
+            Set<V> coll = map.get(key);
             if (coll==null) {
-                coll = new LinkedHashSet<V>();
-                map.put(key, coll);
+                Set<V> newColl = Sets.newConcurrentHashSet();
+                coll = map.putIfAbsent(key, newColl);
+                if (coll==null) coll = newColl;
             }
-            if (coll.isEmpty()) {
-                synchronized (coll) {
+            synchronized (coll) {
+                if (map.get(key)==coll) {
                     coll.add(valueInCollection);
+                    return;
                 }
-                //if collection was empty then add to the collection while holding the map lock, to prevent removal
-                return coll;
             }
+            // set was removed as empty before we could add to it; try again with a new set
         }
-        synchronized (coll) {
-            if (!coll.isEmpty()) {
-                coll.add(valueInCollection);
-                return coll;
-            }
-        }
-        //if was empty, recurse, because someone else might be removing the collection
-        return addToMapOfSets(map, key, valueInCollection);
     }
 
     /**
-     * Copied from LanguageUtils.groovy, to remove dependency.
-     * 
-     * Removes the given value from a collection in the map under the key.
+     * Removes the given value from the set in the map under the key, removing the set from the map if it is then empty.
      *
-     * @return the updated set (instance, not copy)
-     * 
-     * @deprecated since 0.5; use {@link ArrayListMultimap} or {@link HashMultimap}, and {@link Multimaps#synchronizedListMultimap(com.google.common.collect.ListMultimap)} etc
+     * @return whether the value was removed
      */
-    @Deprecated
-    private static <K,V> boolean removeFromMapOfCollections(Map<K,? extends Collection<V>> map, K key, V valueInCollection) {
-        Collection<V> coll;
-        synchronized (map) {
-            coll = map.get(key);
-            if (coll==null) return false;
-        }
-        boolean result;
+    private static <K,V> boolean removeFromMapOfSets(ConcurrentMap<K,Set<V>> map, K key, V valueInCollection) {
+        Set<V> coll = map.get(key);
+        if (coll==null) return false;
         synchronized (coll) {
-            result = coll.remove(valueInCollection);
-        }
-        if (coll.isEmpty()) {
-            synchronized (map) {
-                synchronized (coll) {
-                    if (coll.isEmpty()) {
-                        //only remove from the map if no one is adding to the collection or to the map, and the collection is still in the map
-                        if (map.get(key)==coll) {
-                            map.remove(key);
-                        }
-                    }
-                }
+            boolean result = coll.remove(valueInCollection);
+            if (coll.isEmpty()) {
+                map.remove(key, coll);
             }
+            return result;
         }
-        return result;
     }
 }
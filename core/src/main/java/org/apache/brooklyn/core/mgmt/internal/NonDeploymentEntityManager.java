@@ -137,6 +137,20 @@ public class NonDeploymentEntityManager implements EntityManagerInternal {
         }
     }
 
+    @Override
+    public void onTagsChanged(Entity entity) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onTagsChanged(entity);
+        }
+    }
+
+    @Override
+    public void onApplicationChanged(Entity entity) {
+        if (isInitialManagementContextReal()) {
+            ((EntityManagerInternal)initialManagementContext.getEntityManager()).onApplicationChanged(entity);
+        }
+    }
+
     @Override
     public ManagementTransitionMode getLastManagementTransitionMode(String itemId) {
         if (isInitialManagementContextReal()) {
@@ -57,6 +57,7 @@ import org.apache.brooklyn.api.mgmt.rebind.RebindManager;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.typereg.BrooklynTypeRegistry;
 import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.catalog.internal.CatalogInitialization;
@@ -493,13 +494,18 @@ public class NonDeploymentManagementContext implements ManagementContextInternal
      * 
      * @author aled
      */
-    private class NonDeploymentRebindManager implements RebindManager {
+    private class NonDeploymentRebindManager implements RebindManagerInternal {
 
         @Override
         public ChangeListener getChangeListener() {
             return ChangeListener.NOOP;
         }
 
+        @Override
+        public void onAttributeChanged(Entity entity, AttributeSensor<?> attribute) {
+            // no-op, as for getChangeListener()
+        }
+
         @Override
         public void setPersister(BrooklynMementoPersister persister) {
             throw new IllegalStateException("Non-deployment context "+NonDeploymentManagementContext.this+" is not valid for this operation.");
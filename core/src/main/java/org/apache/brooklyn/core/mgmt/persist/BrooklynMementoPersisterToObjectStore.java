@@ -25,6 +25,8 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
@@ -43,6 +45,7 @@ import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoManifest;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.CatalogItemMemento;
+import org.apache.brooklyn.api.mgmt.rebind.mementos.EntityMemento;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.Memento;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
@@ -55,8 +58,11 @@ import org.apache.brooklyn.core.mgmt.classloading.ClassLoaderFromBrooklynClassLo
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessorWithLock;
 import org.apache.brooklyn.core.mgmt.rebind.PeriodicDeltaChangeListener;
+import org.apache.brooklyn.core.mgmt.rebind.PersisterDeltaImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoImpl;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BrooklynMementoManifestImpl;
+import org.apache.brooklyn.core.mgmt.rebind.dto.EntityAttributesPatch;
+import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.xstream.XmlUtil;
@@ -99,6 +105,15 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             "Maximum number of attempts to serialize a memento (e.g. if first attempts fail because of concurrent modifications of an entity)", 
             5);
 
+    public static final ConfigKey<Integer> PERSISTER_MAX_ENTITY_ATTRIBUTES_PATCHES = ConfigKeys.newIntegerConfigKey(
+            "persister.maxEntityAttributesPatches",
+            "Maximum number of attribute patches to write for an entity (when incremental entity persistence is enabled) "
+            + "before writing its full memento instead, which replaces the patches", 
+            100);
+
+    /** Sub-path for the attribute patches of entities, applied on top of their mementos when loading; see {@link EntityAttributesPatch} */
+    public static final String ENTITY_PATCHES_SUB_PATH = "entity-patches";
+
     private final PersistenceObjectStore objectStore;
     private final MementoSerializer<Object> serializerWithStandardClassLoader;
 
@@ -112,6 +127,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private List<Delta> queuedDeltas = new CopyOnWriteArrayList<BrooklynMementoPersister.Delta>();
     
+    private final int maxEntityAttributesPatches;
+    /** number of patches in each entity's patch file, for entities which have one */
+    private final ConcurrentMap<String, Integer> entityPatchCounts = new ConcurrentHashMap<String, Integer>();
+    
     /**
      * Lock used on writes (checkpoint + delta) so that {@link #waitForWritesCompleted(Duration)} can block
      * for any concurrent call to complete.
@@ -127,6 +146,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         this.serializerWithStandardClassLoader = new RetryingMementoSerializer<Object>(rawSerializer, maxSerializationAttempts);
 
         int maxThreadPoolSize = brooklynProperties.getConfig(PERSISTER_MAX_THREAD_POOL_SIZE);
+        maxEntityAttributesPatches = brooklynProperties.getConfig(PERSISTER_MAX_ENTITY_ATTRIBUTES_PATCHES);
 
         objectStore.createSubPath("entities");
         objectStore.createSubPath("locations");
@@ -134,6 +154,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         objectStore.createSubPath("enrichers");
         objectStore.createSubPath("feeds");
         objectStore.createSubPath("catalog");
+        objectStore.createSubPath(ENTITY_PATCHES_SUB_PATH);
 
         // FIXME does it belong here or to ManagementPlaneSyncRecordPersisterToObjectStore ?
         objectStore.createSubPath("plane");
@@ -230,12 +251,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     }
 
     protected StoreObjectAccessorWithLock getWriter(String path) {
-        String id = path.substring(path.lastIndexOf('/')+1);
+        // keyed by path rather than id, as an entity's memento and its patches share an id
         synchronized (writers) {
-            StoreObjectAccessorWithLock writer = writers.get(id);
+            StoreObjectAccessorWithLock writer = writers.get(path);
             if (writer == null) {
                 writer = new StoreObjectAccessorLocking( objectStore.newAccessor(path) );
-                writers.put(id, writer);
+                writers.put(path, writer);
             }
             return writer;
         }
@@ -281,6 +302,15 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     public BrooklynMementoRawData loadMementoRawData(final RebindExceptionHandler exceptionHandler) {
         BrooklynMementoRawData subPathData = listMementoSubPathsAsData(exceptionHandler);
         
+        final Map<String, String> entityPatchSubPaths;
+        try {
+            entityPatchSubPaths = makeIdSubPathMap(objectStore.listContentsWithSubPath(ENTITY_PATCHES_SUB_PATH));
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            exceptionHandler.onLoadMementoFailed(BrooklynObjectType.ENTITY, "Failed to list entity patch files", e);
+            throw new IllegalStateException("Failed to list entity patch files in "+objectStore, e);
+        }
+        
         final BrooklynMementoRawData.Builder builder = BrooklynMementoRawData.builder();
         
         Visitor loaderVisitor = new Visitor() {
@@ -294,6 +324,10 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     exceptionHandler.onLoadMementoFailed(type, "memento "+id+" read error", e);
                 }
                 
+                if (type==BrooklynObjectType.ENTITY && contents!=null && entityPatchSubPaths.containsKey(id)) {
+                    contents = applyEntityPatches(id, contents, entityPatchSubPaths.get(id), exceptionHandler);
+                }
+                
                 String xmlId = (String) XmlUtil.xpath(contents, "/"+type.toCamelCase()+"/id");
                 String safeXmlId = Strings.makeValidFilename(xmlId);
                 if (!Objects.equal(id, safeXmlId))
@@ -320,6 +354,28 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         return result;
     }
 
+    /** Returns the entity XML with the attribute patches for the entity applied, or unchanged if there are none or they cannot be read. */
+    private String applyEntityPatches(String id, String contents, String patchesSubPath, RebindExceptionHandler exceptionHandler) {
+        try {
+            String patches = read(patchesSubPath);
+            if (patches==null) return contents;
+            String result = EntityAttributesPatchMerger.merge(contents, patches);
+            if (patches.trim().endsWith("</"+EntityAttributesPatchMerger.PATCH_ELEMENT+">")) {
+                entityPatchCounts.put(id, EntityAttributesPatchMerger.countPatches(patches));
+            } else {
+                // incomplete final patch (e.g. interrupted append); write the full memento next, rather than appending after it
+                entityPatchCounts.put(id, maxEntityAttributesPatches);
+            }
+            return result;
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            exceptionHandler.onLoadMementoFailed(BrooklynObjectType.ENTITY, "memento "+id+" attribute patches error (ignoring patches)", e);
+            // next change to the entity will write its full memento, replacing the unusable patches
+            entityPatchCounts.put(id, maxEntityAttributesPatches);
+            return contents;
+        }
+    }
+
     @Override
     public BrooklynMementoManifest loadMementoManifest(BrooklynMementoRawData mementoData, final RebindExceptionHandler exceptionHandler) throws IOException {
         if (mementoData==null)
@@ -530,6 +586,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            commitBatch();
             if (LOG.isDebugEnabled()) LOG.debug("Checkpointed entire memento in {}", Time.makeTimeStringRounded(stopwatch));
         } finally {
             lock.writeLock().unlock();
@@ -563,6 +620,12 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     public void queueDelta(Delta delta) {
         queuedDeltas.add(delta);
     }
+
+    /** Patches are appended to {@link #ENTITY_PATCHES_SUB_PATH}, and applied to the entity mementos when loading. */
+    @Override
+    public boolean isEntityAttributesPatchSupported() {
+        return true;
+    }
     
     /**
      * Concurrent calls will queue-up (the lock is "fair", which means an "approximately arrival-order policy").
@@ -595,6 +658,13 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
                     }
                 }
             }
+            if (delta instanceof PersisterDeltaImpl) {
+                for (EntityAttributesPatch patch : ((PersisterDeltaImpl)delta).entityAttributesPatches()) {
+                    if (!deletedIds.contains(patch.getId())) {
+                        futures.add(asyncPersistPatch(patch, exceptionHandler));
+                    }
+                }
+            }
             for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                 for (String id : delta.getRemovedIdsOfType(type)) {
                     futures.add(asyncDelete(type.getSubPathName(), id, exceptionHandler));
@@ -609,6 +679,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
+            commitBatch();
             
             return stopwatch;
         } finally {
@@ -616,6 +687,11 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
         }
     }
 
+    /** Marks the end of a batch of writes, for object stores which journal or buffer writes (and fsync once per batch) */
+    private void commitBatch() {
+        objectStore.commitBatch();
+    }
+
     @Override
     public void waitForWritesCompleted(Duration timeout) throws InterruptedException, TimeoutException {
         boolean locked = lock.readLock().tryLock(timeout.toMillisecondsRoundingUp(), TimeUnit.MILLISECONDS);
@@ -643,6 +719,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
 
     private void persist(String subPath, Memento memento, PersistenceExceptionHandler exceptionHandler) {
         try {
+            if (memento instanceof EntityMemento) deleteEntityPatches(memento.getId());
             getWriter(getPath(subPath, memento.getId())).put(getSerializerWithStandardClassLoader().toString(memento));
         } catch (Exception e) {
             exceptionHandler.onPersistMementoFailed(memento, e);
@@ -654,6 +731,7 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
             if (content==null) {
                 LOG.warn("Null content for "+type+" "+id);
             }
+            if (type==BrooklynObjectType.ENTITY) deleteEntityPatches(id);
             getWriter(getPath(subPath, id)).put(content);
         } catch (Exception e) {
             exceptionHandler.onPersistRawMementoFailed(type, id, e);
@@ -662,16 +740,71 @@ public class BrooklynMementoPersisterToObjectStore implements BrooklynMementoPer
     
     private void delete(String subPath, String id, PersistenceExceptionHandler exceptionHandler) {
         try {
-            StoreObjectAccessorWithLock w = getWriter(getPath(subPath, id));
+            if (BrooklynObjectType.ENTITY.getSubPathName().equals(subPath)) deleteEntityPatches(id);
+            String path = getPath(subPath, id);
+            StoreObjectAccessorWithLock w = getWriter(path);
             w.delete();
             synchronized (writers) {
-                writers.remove(id);
+                writers.remove(path);
             }
         } catch (Exception e) {
             exceptionHandler.onDeleteMementoFailed(id, e);
         }
     }
 
+    /**
+     * Appends the patch to the entity's patch file, unless the entity has no memento yet, or already has
+     * too many patches, or the patch cannot be merged, in which case the full memento is written instead.
+     */
+    private void persistPatch(EntityAttributesPatch patch, PersistenceExceptionHandler exceptionHandler) {
+        String id = patch.getId();
+        try {
+            Integer count = entityPatchCounts.get(id);
+            if ((count==null || count < maxEntityAttributesPatches) && getWriter(getPath(BrooklynObjectType.ENTITY.getSubPathName(), id)).exists()) {
+                String xml = getSerializerWithStandardClassLoader().toString(patch);
+                // xstream references out of a map entry would not be valid once the entry is merged
+                if (EntityAttributesPatchMerger.isMergeable(xml)) {
+                    getWriter(getPath(ENTITY_PATCHES_SUB_PATH, id)).append(xml);
+                    entityPatchCounts.put(id, (count==null ? 0 : count) + 1);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            exceptionHandler.onPersistRawMementoFailed(BrooklynObjectType.ENTITY, id, e);
+            return;
+        }
+        
+        Memento memento;
+        try {
+            memento = ((BrooklynObjectInternal)patch.getEntity()).getRebindSupport().getMemento();
+        } catch (Exception e) {
+            exceptionHandler.onGenerateMementoFailed(BrooklynObjectType.ENTITY, patch.getEntity(), e);
+            return;
+        }
+        // also removes the patches
+        persist(BrooklynObjectType.ENTITY.getSubPathName(), memento, exceptionHandler);
+    }
+    
+    /**
+     * Deletes the entity's patches, before a full memento is written or the entity is deleted.
+     * Done first, so that an interrupted write cannot leave old patches to be applied over a newer memento.
+     */
+    private void deleteEntityPatches(String id) {
+        if (entityPatchCounts.remove(id)==null) return;
+        String path = getPath(ENTITY_PATCHES_SUB_PATH, id);
+        getWriter(path).delete();
+        synchronized (writers) {
+            writers.remove(path);
+        }
+    }
+
+    private ListenableFuture<?> asyncPersistPatch(final EntityAttributesPatch patch, final PersistenceExceptionHandler exceptionHandler) {
+        return executor.submit(new Runnable() {
+            public void run() {
+                persistPatch(patch, exceptionHandler);
+            }});
+    }
+
     private ListenableFuture<?> asyncPersist(final String subPath, final Memento memento, final PersistenceExceptionHandler exceptionHandler) {
         return executor.submit(new Runnable() {
             public void run() {
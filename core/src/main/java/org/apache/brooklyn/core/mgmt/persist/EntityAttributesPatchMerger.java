@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.brooklyn.core.mgmt.rebind.dto.EntityAttributesPatch;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+
+import com.google.common.annotations.Beta;
+
+/**
+ * Applies serialized {@link EntityAttributesPatch}es to the XML of an entity memento,
+ * giving the XML the memento would have had if it had been written in full.
+ * <p>
+ * Map entries in the patches replace those with the same key in the entity's {@code attributes} and
+ * {@code attributeKeys} maps, or are added to them. This works on the XML because both are written
+ * by the same serializer, with string keys written as the element name or as a {@code key} attribute.
+ * Only patches whose XStream references stay within each map entry can be merged; see {@link #isMergeable(String)}.
+ */
+@Beta
+public class EntityAttributesPatchMerger {
+
+    /** root element of each serialized patch */
+    public static final String PATCH_ELEMENT = "entityPatch";
+
+    private static final String[] MERGED_MAPS = new String[] {"attributes", "attributeKeys"};
+
+    private EntityAttributesPatchMerger() {}
+
+    /**
+     * Returns the number of complete patches in the given contents of a patch file
+     * (i.e. a sequence of serialized patches, as appended by the persister).
+     */
+    public static int countPatches(String patches) {
+        int count = 0;
+        int index = 0;
+        String endTag = "</"+PATCH_ELEMENT+">";
+        while ((index = patches.indexOf(endTag, index)) >= 0) {
+            count++;
+            index += endTag.length();
+        }
+        return count;
+    }
+
+    /**
+     * Whether the given serialized patch can be merged: i.e. every XStream reference in it (which are relative
+     * XPaths; see {@link XmlMementoSerializer}) resolves to an element within the same map entry, so remains
+     * valid when that entry is copied into the entity's XML.
+     */
+    public static boolean isMergeable(String patchXml) {
+        try {
+            Element patch = newDocumentBuilder().parse(new InputSource(new StringReader(patchXml))).getDocumentElement();
+            for (String mapName : MERGED_MAPS) {
+                Element patchMap = firstChildElement(patch, mapName);
+                if (patchMap==null) continue;
+                for (Element entry : childElements(patchMap)) {
+                    if (!isReferencesWithin(entry, entry)) return false;
+                }
+            }
+            return true;
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    /**
+     * Applies the given sequence of serialized patches, in order, to the entity XML.
+     * An incomplete patch at the end (e.g. from an interrupted append) is ignored.
+     */
+    public static String merge(String entityXml, String patches) {
+        String endTag = "</"+PATCH_ELEMENT+">";
+        int end = patches.lastIndexOf(endTag);
+        if (end < 0) return entityXml;
+        String completePatches = patches.substring(0, end + endTag.length());
+
+        try {
+            DocumentBuilder builder = newDocumentBuilder();
+            Document entityDoc = builder.parse(new InputSource(new StringReader(entityXml)));
+            Document patchesDoc = builder.parse(new InputSource(new StringReader("<patches>"+completePatches+"</patches>")));
+            Element entityRoot = entityDoc.getDocumentElement();
+
+            for (Element patch : childElements(patchesDoc.getDocumentElement())) {
+                for (String mapName : MERGED_MAPS) {
+                    Element patchMap = firstChildElement(patch, mapName);
+                    if (patchMap==null) continue;
+                    Element entityMap = firstChildElement(entityRoot, mapName);
+                    if (entityMap==null) {
+                        entityMap = entityDoc.createElement(mapName);
+                        entityRoot.appendChild(entityMap);
+                    }
+                    for (Element entry : childElements(patchMap)) {
+                        Node imported = entityDoc.importNode(entry, true);
+                        Element existing = findEntry(entityMap, entryKey(entry));
+                        if (existing!=null) {
+                            entityMap.replaceChild(imported, existing);
+                        } else {
+                            entityMap.appendChild(imported);
+                        }
+                    }
+                }
+            }
+
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+            StringWriter result = new StringWriter();
+            transformer.transform(new DOMSource(entityDoc), new StreamResult(result));
+            return result.toString()+"\n";
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    private static DocumentBuilder newDocumentBuilder() throws Exception {
+        return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+    }
+
+    /** whether all references in the given element (and its descendants) resolve to elements within the given root */
+    private static boolean isReferencesWithin(Element element, Element root) {
+        if (element.hasAttribute("reference")) {
+            Node target = resolveRelativeReference(element, element.getAttribute("reference"));
+            if (target==null || !isSelfOrAncestor(root, target)) return false;
+        }
+        for (Element child : childElements(element)) {
+            if (!isReferencesWithin(child, root)) return false;
+        }
+        return true;
+    }
+
+    /** resolves an XStream relative XPath reference, e.g. {@code ../../entry[2]/value}; null if it cannot be resolved */
+    private static Node resolveRelativeReference(Element from, String path) {
+        if (path.startsWith("/")) return null;
+        Node current = from;
+        for (String step : path.split("/")) {
+            if (current==null) return null;
+            if (step.isEmpty() || step.equals(".")) continue;
+            if (step.equals("..")) {
+                current = current.getParentNode();
+                continue;
+            }
+            String name = step;
+            int index = 1;
+            int bracket = step.indexOf('[');
+            if (bracket >= 0 && step.endsWith("]")) {
+                name = step.substring(0, bracket);
+                try {
+                    index = Integer.parseInt(step.substring(bracket+1, step.length()-1));
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            Node next = null;
+            if (current instanceof Element) {
+                for (Element child : childElements((Element) current)) {
+                    if (name.equals(child.getNodeName()) && --index == 0) {
+                        next = child;
+                        break;
+                    }
+                }
+            }
+            current = next;
+        }
+        return current;
+    }
+
+    private static boolean isSelfOrAncestor(Node ancestor, Node node) {
+        for (Node current = node; current != null; current = current.getParentNode()) {
+            if (current == ancestor) return true;
+        }
+        return false;
+    }
+
+    /** the key of a map entry written by the {@link org.apache.brooklyn.util.core.xstream.StringKeyMapConverter} */
+    private static String entryKey(Element entry) {
+        if (entry.hasAttribute("key")) return "key:"+entry.getAttribute("key");
+        return "node:"+entry.getNodeName();
+    }
+
+    private static Element findEntry(Element map, String key) {
+        for (Element entry : childElements(map)) {
+            if (key.equals(entryKey(entry))) return entry;
+        }
+        return null;
+    }
+
+    private static Element firstChildElement(Element parent, String name) {
+        for (Element child : childElements(parent)) {
+            if (name.equals(child.getNodeName())) return child;
+        }
+        return null;
+    }
+
+    private static List<Element> childElements(Element parent) {
+        List<Element> result = MutableList.of();
+        for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) result.add((Element) child);
+        }
+        return result;
+    }
+}
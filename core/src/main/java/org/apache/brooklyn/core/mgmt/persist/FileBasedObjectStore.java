@@ -31,28 +31,39 @@ import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 
 import org.apache.brooklyn.api.mgmt.ManagementContext;
 import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.server.BrooklynServerConfig;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.FatalConfigurationRuntimeException;
 import org.apache.brooklyn.util.io.FileUtil;
 import org.apache.brooklyn.util.os.Os;
 import org.apache.brooklyn.util.os.Os.DeletionResult;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.FluentIterable;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 
@@ -63,6 +74,32 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
 
     private static final Logger log = LoggerFactory.getLogger(FileBasedObjectStore.class);
 
+    public static final ConfigKey<Boolean> PERSISTENCE_JOURNAL_ENABLED = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.persistence.file.journal.enabled",
+            "Whether changes to the persisted entities, locations, etc should be appended to a journal (with one fsync per persistence batch) "
+            + "and periodically compacted into the per-object files, rather than rewriting each changed object's file on every persist", 
+            false);
+
+    public static final ConfigKey<Long> PERSISTENCE_JOURNAL_COMPACT_THRESHOLD_BYTES = ConfigKeys.newLongConfigKey(
+            "brooklyn.persistence.file.journal.compactThresholdBytes",
+            "Size of a journal segment at which it is compacted into the per-object files", 
+            16L*1024*1024);
+
+    public static final ConfigKey<Duration> PERSISTENCE_JOURNAL_COMPACT_PERIOD = ConfigKeys.newDurationConfigKey(
+            "brooklyn.persistence.file.journal.compactPeriod",
+            "Maximum age of a journal segment before it is compacted into the per-object files", 
+            Duration.ONE_MINUTE);
+
+    /** sub-paths whose objects are written through the journal, if enabled; other paths (e.g. the HA plane records) are always written directly */
+    private static final Set<String> JOURNALED_SUB_PATHS;
+    static {
+        MutableSet<String> subPaths = MutableSet.of();
+        for (BrooklynObjectType type : BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
+            subPaths.add(type.getSubPathName());
+        }
+        JOURNALED_SUB_PATHS = ImmutableSet.copyOf(subPaths);
+    }
+
     private static final int SHUTDOWN_TIMEOUT_MS = 10*1000;
 
     private static boolean WARNED_ON_NON_ATOMIC_FILE_UPDATES = false; 
@@ -73,6 +110,9 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
     private boolean prepared = false;
     private boolean deferredBackupNeeded = false;
     private AtomicBoolean doneFirstContentiousWrite = new AtomicBoolean(false);
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private FileBasedObjectStoreJournal journal;
+    private boolean journalEnabled = false;
 
     /**
      * @param basedir
@@ -109,6 +149,10 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
 
                     deferredBackupNeeded = false;
                 }
+                if (journal!=null) {
+                    // anything left in the journal by a previous master is written to the object files before we write
+                    journal.compactRecovered();
+                }
             } catch (Exception e) {
                 throw Exceptions.propagate(e);
             }
@@ -138,9 +182,51 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
     public StoreObjectAccessor newAccessor(String path) {
         if (!prepared) throw new IllegalStateException("Not yet prepared: "+this);
         
+        FileBasedStoreObjectAccessor accessor = new FileBasedStoreObjectAccessor(new File(Os.mergePaths(getBaseDir().getAbsolutePath(), path)), getTmpExtension(), bytesWritten);
+        if (journal!=null && isJournaledPath(path)) {
+            return journal.newAccessor(path, accessor, journalEnabled);
+        }
+        return accessor;
+    }
+
+    private String getTmpExtension() {
         String tmpExt = ".tmp";
         if (mgmt!=null && mgmt.getManagementNodeId()!=null) tmpExt = "."+mgmt.getManagementNodeId()+tmpExt;
-        return new FileBasedStoreObjectAccessor(new File(Os.mergePaths(getBaseDir().getAbsolutePath(), path)), tmpExt);
+        return tmpExt;
+    }
+
+    private static boolean isJournaledPath(String path) {
+        int slash = path.indexOf('/');
+        return slash > 0 && JOURNALED_SUB_PATHS.contains(path.substring(0, slash));
+    }
+
+    /**
+     * Marks the end of a batch of writes (e.g. a persistence delta or checkpoint).
+     * If the journal is enabled, this syncs the batch to disk, and triggers a background compaction if due;
+     * otherwise it does nothing, as each write has already been written to its own file.
+     */
+    @Override
+    @Beta
+    public void commitBatch() {
+        if (journal==null || !journalEnabled) return;
+        if (journal.commit()) {
+            executor.submit(new Runnable() {
+                @Override public void run() {
+                    journal.compact();
+                }});
+        }
+    }
+
+    public boolean isJournalEnabled() {
+        return journalEnabled;
+    }
+
+    /** Returns counters for the bytes written by this store, and for the journal if enabled. */
+    @Beta
+    public Map<String, Object> getMetrics() {
+        MutableMap<String, Object> result = MutableMap.<String, Object>of("bytesWritten", bytesWritten.get(), "journalEnabled", journalEnabled);
+        if (journal!=null) result.putAll(journal.getMetrics());
+        return result;
     }
 
     @Override
@@ -157,8 +243,11 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
             }
         };
         File[] subPathDirFiles = subPathDir.listFiles(fileFilter);
-        if (subPathDirFiles==null) return ImmutableList.<String>of();
-        return FluentIterable.from(Arrays.asList(subPathDirFiles))
+        List<String> result;
+        if (subPathDirFiles==null) {
+            result = ImmutableList.<String>of();
+        } else {
+            result = FluentIterable.from(Arrays.asList(subPathDirFiles))
                 .transform(new Function<File, String>() {
                     @Nullable
                     @Override
@@ -166,6 +255,18 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
                         return format("%s/%s", parentSubPath, input.getName());
                     }
                 }).toList();
+        }
+        
+        if (journal!=null && JOURNALED_SUB_PATHS.contains(parentSubPath)) {
+            if (!doneFirstContentiousWrite.get()) {
+                // not master, so another node may be writing the journal
+                journal.recoverIfChanged();
+            }
+            Set<String> paths = MutableSet.copyOf(result);
+            journal.updateListing(parentSubPath, paths);
+            result = ImmutableList.copyOf(paths);
+        }
+        return result;
     }
 
     @Override
@@ -176,6 +277,10 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
         } catch (InterruptedException e) {
             throw Exceptions.propagate(e);
         }
+        if (journal!=null) {
+            // only the master writes to the object files
+            journal.close(doneFirstContentiousWrite.get());
+        }
     }
 
     @Override
@@ -282,6 +387,14 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
                 }
             }
 
+            journalEnabled = Boolean.TRUE.equals(mgmt.getConfig().getConfig(PERSISTENCE_JOURNAL_ENABLED));
+            journal = new FileBasedObjectStoreJournal(dir, getTmpExtension(), 
+                    mgmt.getConfig().getConfig(PERSISTENCE_JOURNAL_COMPACT_THRESHOLD_BYTES),
+                    mgmt.getConfig().getConfig(PERSISTENCE_JOURNAL_COMPACT_PERIOD).toMilliseconds(),
+                    bytesWritten);
+            // read journal left by a previous run even if the journal is now disabled; it is compacted on becoming master
+            journal.recover();
+
         } catch (Exception e) {
             throw Exceptions.propagate(e);
         }
@@ -393,6 +506,7 @@ public class FileBasedObjectStore implements PersistenceObjectStore {
 
     @Override
     public void deleteCompletely() {
+        if (journal!=null) journal.discard();
         deleteCompletely(getBaseDir());
     }
     
@@ -0,0 +1,668 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.persist;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.io.FileUtil;
+import org.apache.brooklyn.util.os.Os;
+import org.apache.brooklyn.util.stream.Streams;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Charsets;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+
+/**
+ * Append-only journal of writes to the memento files of a {@link FileBasedObjectStore}.
+ * <p>
+ * Puts and deletes are appended to the current journal segment (in the {@value #JOURNAL_SUB_PATH}
+ * sub-directory) rather than rewriting each object's file; {@link #commit()} marks the end of a batch
+ * (e.g. one persistence delta) and does a single fsync for the whole batch.
+ * The location in the segments of the latest value of every journaled path is kept in memory (but not the value itself),
+ * so reads and listings see the journaled state.
+ * <p>
+ * When a segment grows too large or too old it is rotated, and its values are "compacted" into the usual
+ * per-object files, after which the segment is deleted. Segments left behind (e.g. after a crash) are read
+ * when the store is prepared, so that a rebind sees their state, and are compacted when the store is
+ * first used as master. Records after the last commit marker of a segment are ignored.
+ */
+@Beta
+public class FileBasedObjectStoreJournal {
+
+    private static final Logger log = LoggerFactory.getLogger(FileBasedObjectStoreJournal.class);
+
+    public static final String JOURNAL_SUB_PATH = "journal";
+
+    private static final String SEGMENT_EXTENSION = ".journal";
+
+    private static final byte OP_PUT = 'P';
+    private static final byte OP_DELETE = 'D';
+    private static final byte OP_APPEND = 'A';
+    private static final byte OP_COMMIT = 'C';
+
+    /** the location of the contents of a put or append record in a segment */
+    static class Chunk {
+        final File segment;
+        final long offset;
+        final int length;
+
+        Chunk(File segment, long offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /** the latest journaled value for a path: the chunks of a put and any appends after it, or null if the path was deleted */
+    static class Entry {
+        final List<Chunk> chunks;
+        final long timestamp;
+
+        Entry(List<Chunk> chunks, long timestamp) {
+            this.chunks = chunks;
+            this.timestamp = timestamp;
+        }
+        boolean isDeleted() {
+            return chunks==null;
+        }
+        Entry append(Chunk chunk, long timestamp) {
+            if (isDeleted()) return new Entry(ImmutableList.of(chunk), timestamp);
+            return new Entry(ImmutableList.<Chunk>builder().addAll(chunks).add(chunk).build(), timestamp);
+        }
+    }
+
+    private final File basedir;
+    private final File journalDir;
+    private final String tmpExtension;
+    private final long compactThresholdBytes;
+    private final long compactPeriodMillis;
+    private final AtomicLong storeBytesWritten;
+    /** held while compacting, so that a compaction (e.g. on close) waits for any in progress in the background */
+    private final Object compactionLock = new Object();
+
+    /** values written to the current segment (and any before it which are not yet compacted) */
+    private volatile Map<String, Entry> pending = new ConcurrentHashMap<String, Entry>();
+    /** values from rotated or recovered segments, which are being (or waiting to be) written to the object files */
+    private volatile Map<String, Entry> compacting = Collections.emptyMap();
+    private final List<File> compactingSegments = MutableList.of();
+
+    // guarded by this
+    private long nextSegmentSeq = 0;
+    private File currentSegment;
+    private FileOutputStream currentStream;
+    private DataOutputStream currentData;
+    private long currentSegmentStartTime;
+    private boolean uncommittedRecords = false;
+    private boolean compactionInProgress = false;
+    private String recoveredSignature;
+
+    private final AtomicLong journalBytesWritten = new AtomicLong();
+    private final AtomicLong recordCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong compactionCount = new AtomicLong();
+    private final AtomicLong compactedObjectCount = new AtomicLong();
+
+    FileBasedObjectStoreJournal(File basedir, String tmpExtension, long compactThresholdBytes, long compactPeriodMillis, AtomicLong storeBytesWritten) {
+        this.basedir = basedir;
+        this.journalDir = new File(basedir, JOURNAL_SUB_PATH);
+        this.tmpExtension = tmpExtension;
+        this.compactThresholdBytes = compactThresholdBytes;
+        this.compactPeriodMillis = compactPeriodMillis;
+        this.storeBytesWritten = storeBytesWritten;
+    }
+
+    /** returns an accessor which reads through the journal, and writes to it if requested (otherwise directly to the file) */
+    StoreObjectAccessor newAccessor(String path, FileBasedStoreObjectAccessor delegate, boolean writeToJournal) {
+        return new JournaledStoreObjectAccessor(path, delegate, writeToJournal);
+    }
+
+    /**
+     * Reads the committed contents of any existing segments, making them visible to reads
+     * until they are compacted by {@link #compactRecovered()}.
+     */
+    synchronized void recover() {
+        List<File> segments = listSegments();
+        recoveredSignature = signature(segments);
+        if (segments.isEmpty()) return;
+
+        Map<String, Entry> recovered = readSegments(segments);
+        MutableMap<String, Entry> newCompacting = MutableMap.copyOf(compacting);
+        newCompacting.putAll(recovered);
+        compacting = newCompacting;
+        for (File segment : segments) {
+            if (!compactingSegments.contains(segment)) compactingSegments.add(segment);
+            nextSegmentSeq = Math.max(nextSegmentSeq, parseSegmentSeq(segment)+1);
+        }
+        log.info("Recovered {} object(s) from {} persistence journal segment(s) in {}", new Object[] {recovered.size(), segments.size(), journalDir});
+    }
+
+    /**
+     * For use when not the master: re-reads the segments if they have changed since last read
+     * (e.g. because another node is writing to them), discarding what was recovered before.
+     */
+    synchronized void recoverIfChanged() {
+        if (currentSegment!=null || !pending.isEmpty()) return;
+        List<File> segments = listSegments();
+        if (Objects.equal(recoveredSignature, signature(segments))) return;
+        compacting = Collections.emptyMap();
+        compactingSegments.clear();
+        recover();
+    }
+
+    /** compacts anything recovered by {@link #recover()}; called before the first write as master */
+    void compactRecovered() {
+        synchronized (this) {
+            if (compacting.isEmpty() && compactingSegments.isEmpty()) return;
+            compactionInProgress = true;
+        }
+        compact();
+    }
+
+    void put(String path, String contents) {
+        byte[] bytes = (contents==null ? "" : contents).getBytes(Charsets.UTF_8);
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Chunk chunk = writeRecord(OP_PUT, path, now, bytes);
+            pending.put(path, new Entry(ImmutableList.of(chunk), now));
+        }
+    }
+
+    void delete(String path) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            writeRecord(OP_DELETE, path, now, null);
+            pending.put(path, new Entry(null, now));
+        }
+    }
+
+    /**
+     * Appends to the given path: to the journal if the path has been written to the current segment,
+     * otherwise directly to the object file (first compacting the path, if it is in a segment awaiting compaction),
+     * so that the existing value is never read. An append record is therefore only ever relative to a put or delete
+     * in the same segment, and replaying it on recovery is idempotent.
+     */
+    void append(String path, String contents, FileBasedStoreObjectAccessor file) {
+        byte[] bytes = (contents==null ? "" : contents).getBytes(Charsets.UTF_8);
+        while (true) {
+            synchronized (this) {
+                Entry existing = pending.get(path);
+                if (existing!=null) {
+                    long now = System.currentTimeMillis();
+                    Chunk chunk = writeRecord(OP_APPEND, path, now, bytes);
+                    pending.put(path, existing.append(chunk, now));
+                    return;
+                }
+                if (!compacting.containsKey(path)) break;
+            }
+            compact();
+        }
+        file.append(contents);
+    }
+
+    /**
+     * Marks the end of a batch, flushing and syncing the current segment.
+     * Returns true if the segment was then rotated, in which case the caller should arrange
+     * for {@link #compact()} to be called.
+     */
+    synchronized boolean commit() {
+        if (uncommittedRecords) {
+            try {
+                int before = currentData.size();
+                currentData.writeByte(OP_COMMIT);
+                currentData.writeLong(System.currentTimeMillis());
+                currentData.flush();
+                currentStream.getChannel().force(false);
+                journalBytesWritten.addAndGet(currentData.size() - before);
+                storeBytesWritten.addAndGet(currentData.size() - before);
+            } catch (IOException e) {
+                throw Exceptions.propagate("Problem committing journal "+currentSegment, e);
+            }
+            uncommittedRecords = false;
+            batchCount.incrementAndGet();
+        }
+        if (compactionInProgress || currentData==null) return false;
+        if (currentData.size() < compactThresholdBytes && System.currentTimeMillis() - currentSegmentStartTime < compactPeriodMillis) return false;
+        rotate();
+        compactionInProgress = true;
+        return true;
+    }
+
+    /**
+     * Writes the values from rotated segments to the object files, then deletes those segments.
+     * Compactions are serialised, so this waits for any compaction already in progress.
+     */
+    void compact() {
+        synchronized (compactionLock) {
+            compactSegments();
+        }
+    }
+
+    private void compactSegments() {
+        Map<String, Entry> toCompact;
+        List<File> segments;
+        synchronized (this) {
+            toCompact = compacting;
+            segments = MutableList.copyOf(compactingSegments);
+        }
+        try {
+            for (Map.Entry<String, Entry> entry : toCompact.entrySet()) {
+                FileBasedStoreObjectAccessor accessor = new FileBasedStoreObjectAccessor(
+                        new File(Os.mergePaths(basedir.getAbsolutePath(), entry.getKey())), tmpExtension, storeBytesWritten);
+                if (entry.getValue().isDeleted()) {
+                    accessor.delete();
+                } else {
+                    byte[] bytes = readBytes(entry.getValue());
+                    if (bytes==null) throw new IllegalStateException("Journal segment for "+entry.getKey()+" no longer exists");
+                    accessor.put(new String(bytes, Charsets.UTF_8));
+                }
+            }
+        } catch (Exception e) {
+            // leave the segments in place; they will be compacted (or recovered) later
+            synchronized (this) {
+                compactionInProgress = false;
+            }
+            log.warn("Problem compacting persistence journal in "+journalDir+" (will retry): "+e, e);
+            throw Exceptions.propagate(e);
+        }
+        synchronized (this) {
+            for (File segment : segments) {
+                if (!segment.delete() && segment.exists()) {
+                    log.warn("Unable to delete compacted persistence journal segment "+segment);
+                }
+            }
+            compactingSegments.removeAll(segments);
+            if (compacting == toCompact) compacting = Collections.emptyMap();
+            compactionInProgress = false;
+        }
+        compactionCount.incrementAndGet();
+        compactedObjectCount.addAndGet(toCompact.size());
+        if (log.isDebugEnabled()) log.debug("Compacted {} object(s) from {} persistence journal segment(s) in {}", new Object[] {toCompact.size(), segments.size(), journalDir});
+    }
+
+    /** Commits and compacts everything written so far (after any compaction in progress), and closes the current segment. */
+    void close(boolean compact) {
+        boolean compactionNeeded;
+        synchronized (this) {
+            if (compact) {
+                commit();
+                if (currentSegment!=null) rotate();
+            }
+            closeSegment();
+            compactionNeeded = compact && (!compacting.isEmpty() || !compactingSegments.isEmpty());
+            if (compactionNeeded) compactionInProgress = true;
+        }
+        if (compactionNeeded) compact();
+    }
+
+    /** Forgets all journaled state, without writing it; for use when the store is being deleted. */
+    synchronized void discard() {
+        closeSegment();
+        currentSegment = null;
+        pending = new ConcurrentHashMap<String, Entry>();
+        compacting = Collections.emptyMap();
+        compactingSegments.clear();
+        uncommittedRecords = false;
+    }
+
+    /** Returns the journaled entry for the given path, or null if the path has not been journaled. */
+    Entry get(String path) {
+        Entry result = pending.get(path);
+        if (result==null) result = compacting.get(path);
+        return result;
+    }
+
+    /** Adds journaled objects in the given sub-path to the given listing of object files, and removes journaled deletions. */
+    void updateListing(String subPath, Set<String> paths) {
+        // compacting is older than pending, so apply it first
+        for (Map<String, Entry> entries : Arrays.asList(compacting, pending)) {
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                String path = entry.getKey();
+                if (path.startsWith(subPath+"/") && path.indexOf('/', subPath.length()+1) < 0) {
+                    if (entry.getValue().isDeleted()) {
+                        paths.remove(path);
+                    } else {
+                        paths.add(path);
+                    }
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> getMetrics() {
+        return MutableMap.<String, Object>builder()
+                .put("journalBytesWritten", journalBytesWritten.get())
+                .put("journalRecords", recordCount.get())
+                .put("journalBatches", batchCount.get())
+                .put("journalPendingObjects", pending.size())
+                .put("compactions", compactionCount.get())
+                .put("compactedObjects", compactedObjectCount.get())
+                .build();
+    }
+
+    /** writes a record to the current segment, returning the location of its contents (or null if it has none); caller must hold the lock */
+    private Chunk writeRecord(byte op, String path, long timestamp, byte[] contents) {
+        try {
+            DataOutputStream out = openSegment();
+            int before = out.size();
+            out.writeByte(op);
+            out.writeUTF(path);
+            out.writeLong(timestamp);
+            Chunk result = null;
+            if (contents!=null) {
+                out.writeInt(contents.length);
+                result = new Chunk(currentSegment, out.size(), contents.length);
+                out.write(contents);
+            }
+            recordWritten(out.size() - before);
+            return result;
+        } catch (IOException e) {
+            throw Exceptions.propagate("Problem writing "+(char)op+" record for "+path+" to journal "+currentSegment, e);
+        }
+    }
+
+    /**
+     * Reads the contents of a (non-deleted) entry from its segment(s), returning null if a segment no longer exists
+     * (i.e. it has been compacted and deleted concurrently, so the object file has the value).
+     */
+    private byte[] readBytes(Entry entry) {
+        synchronized (this) {
+            if (currentData!=null) {
+                try {
+                    currentData.flush();
+                } catch (IOException e) {
+                    throw Exceptions.propagate("Problem flushing journal "+currentSegment, e);
+                }
+            }
+        }
+        if (entry.chunks.size()==1) {
+            return readChunk(entry.chunks.get(0));
+        }
+        byte[][] chunks = new byte[entry.chunks.size()][];
+        int length = 0;
+        for (int i=0; i<chunks.length; i++) {
+            chunks[i] = readChunk(entry.chunks.get(i));
+            if (chunks[i]==null) return null;
+            length += chunks[i].length;
+        }
+        byte[] result = new byte[length];
+        int offset = 0;
+        for (byte[] chunk : chunks) {
+            System.arraycopy(chunk, 0, result, offset, chunk.length);
+            offset += chunk.length;
+        }
+        return result;
+    }
+
+    private static byte[] readChunk(Chunk chunk) {
+        RandomAccessFile file = null;
+        try {
+            file = new RandomAccessFile(chunk.segment, "r");
+            byte[] result = new byte[chunk.length];
+            file.seek(chunk.offset);
+            file.readFully(result);
+            return result;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            throw Exceptions.propagate("Problem reading persistence journal segment "+chunk.segment, e);
+        } finally {
+            Streams.closeQuietly(file);
+        }
+    }
+
+    private void recordWritten(int size) {
+        uncommittedRecords = true;
+        recordCount.incrementAndGet();
+        journalBytesWritten.addAndGet(size);
+        storeBytesWritten.addAndGet(size);
+    }
+
+    private DataOutputStream openSegment() throws IOException {
+        if (currentData==null) {
+            if (!journalDir.exists()) {
+                if (!journalDir.mkdir() && !journalDir.exists()) throw new IOException("Cannot create "+journalDir);
+                FileUtil.setFilePermissionsTo700(journalDir);
+            }
+            currentSegment = new File(journalDir, String.format("%012d", nextSegmentSeq++)+SEGMENT_EXTENSION);
+            currentStream = new FileOutputStream(currentSegment);
+            FileUtil.setFilePermissionsTo600(currentSegment);
+            currentData = new DataOutputStream(new BufferedOutputStream(currentStream));
+            currentSegmentStartTime = System.currentTimeMillis();
+        }
+        return currentData;
+    }
+
+    /** moves the pending values to be compacted, so that subsequent writes go to a new segment; caller must have committed */
+    private void rotate() {
+        closeSegment();
+        Map<String, Entry> newCompacting;
+        if (compacting.isEmpty()) {
+            newCompacting = pending;
+        } else {
+            newCompacting = MutableMap.copyOf(compacting);
+            newCompacting.putAll(pending);
+        }
+        compactingSegments.add(currentSegment);
+        currentSegment = null;
+        // order matters for concurrent readers of get(): compacting must hold the values before pending is cleared
+        compacting = newCompacting;
+        pending = new ConcurrentHashMap<String, Entry>();
+    }
+
+    private void closeSegment() {
+        if (currentData!=null) {
+            Streams.closeQuietly(currentData);
+            currentData = null;
+            currentStream = null;
+        }
+    }
+
+    private List<File> listSegments() {
+        File[] files = journalDir.listFiles(new FileFilter() {
+            @Override public boolean accept(File file) {
+                return file.getName().endsWith(SEGMENT_EXTENSION);
+            }
+        });
+        if (files==null) return Collections.emptyList();
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    private static long parseSegmentSeq(File segment) {
+        String name = segment.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length()-SEGMENT_EXTENSION.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String signature(List<File> segments) {
+        StringBuilder result = new StringBuilder();
+        for (File segment : segments) {
+            result.append(segment.getName()).append(':').append(segment.length()).append(';');
+        }
+        return result.toString();
+    }
+
+    /** reads the committed records of the given segments, in order, returning the latest entry for each path */
+    private static Map<String, Entry> readSegments(List<File> segments) {
+        Map<String, Entry> result = MutableMap.of();
+        for (File segment : segments) {
+            Map<String, Entry> batch = MutableMap.of();
+            DataInputStream in = null;
+            try {
+                CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(segment)));
+                in = new DataInputStream(counter);
+                int op;
+                while ((op = in.read()) >= 0) {
+                    if (op == OP_PUT || op == OP_APPEND) {
+                        String path = in.readUTF();
+                        long timestamp = in.readLong();
+                        int length = in.readInt();
+                        Chunk chunk = new Chunk(segment, counter.getCount(), length);
+                        ByteStreams.skipFully(in, length);
+                        if (op == OP_PUT) {
+                            batch.put(path, new Entry(ImmutableList.of(chunk), timestamp));
+                        } else {
+                            Entry existing = batch.containsKey(path) ? batch.get(path) : result.get(path);
+                            if (existing!=null) {
+                                batch.put(path, existing.append(chunk, timestamp));
+                            } else {
+                                log.warn("Ignoring append to "+path+" without a preceding write in persistence journal segment "+segment);
+                            }
+                        }
+                    } else if (op == OP_DELETE) {
+                        String path = in.readUTF();
+                        batch.put(path, new Entry(null, in.readLong()));
+                    } else if (op == OP_COMMIT) {
+                        in.readLong();
+                        result.putAll(batch);
+                        batch.clear();
+                    } else {
+                        log.warn("Unexpected record type "+op+" in persistence journal segment "+segment+"; ignoring remainder of segment");
+                        break;
+                    }
+                }
+            } catch (FileNotFoundException e) {
+                // compacted and deleted concurrently (by the master); its contents are in the object files
+                log.debug("Persistence journal segment {} no longer exists; ignoring", segment);
+            } catch (EOFException e) {
+                // torn write at the end of the segment; handled below
+            } catch (IOException e) {
+                log.warn("Problem reading persistence journal segment "+segment+"; ignoring remainder of segment", e);
+            } finally {
+                Streams.closeQuietly(in);
+            }
+            if (!batch.isEmpty()) {
+                log.warn("Ignoring "+batch.size()+" uncommitted record(s) at end of persistence journal segment "+segment);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("dir", journalDir).toString();
+    }
+
+    /** Reads through the journal, falling back to the file; writes to the journal if so configured. */
+    private class JournaledStoreObjectAccessor implements StoreObjectAccessor {
+        private final String path;
+        private final FileBasedStoreObjectAccessor delegate;
+        private final boolean writeToJournal;
+
+        JournaledStoreObjectAccessor(String path, FileBasedStoreObjectAccessor delegate, boolean writeToJournal) {
+            this.path = path;
+            this.delegate = delegate;
+            this.writeToJournal = writeToJournal;
+        }
+
+        @Override
+        public String get() {
+            byte[] bytes = getBytes();
+            return bytes==null ? null : new String(bytes, Charsets.UTF_8);
+        }
+
+        @Override
+        public byte[] getBytes() {
+            Entry entry = FileBasedObjectStoreJournal.this.get(path);
+            if (entry!=null) {
+                if (entry.isDeleted()) return null;
+                byte[] result = readBytes(entry);
+                if (result!=null) return result;
+            }
+            return delegate.getBytes();
+        }
+
+        @Override
+        public boolean exists() {
+            Entry entry = FileBasedObjectStoreJournal.this.get(path);
+            if (entry!=null) return !entry.isDeleted();
+            return delegate.exists();
+        }
+
+        @Override
+        public void put(String contentsToReplaceOrCreate) {
+            if (writeToJournal) {
+                FileBasedObjectStoreJournal.this.put(path, contentsToReplaceOrCreate);
+            } else {
+                delegate.put(contentsToReplaceOrCreate);
+            }
+        }
+
+        @Override
+        public void append(String contentsToAppendOrCreate) {
+            if (writeToJournal) {
+                FileBasedObjectStoreJournal.this.append(path, contentsToAppendOrCreate, delegate);
+            } else {
+                delegate.append(contentsToAppendOrCreate);
+            }
+        }
+
+        @Override
+        public void delete() {
+            if (writeToJournal) {
+                FileBasedObjectStoreJournal.this.delete(path);
+            } else {
+                delegate.delete();
+            }
+        }
+
+        @Override
+        public Date getLastModifiedDate() {
+            Entry entry = FileBasedObjectStoreJournal.this.get(path);
+            if (entry!=null) return entry.isDeleted() ? null : new Date(entry.timestamp);
+            return delegate.getLastModifiedDate();
+        }
+
+        @Override
+        public String toString() {
+            return Objects.toStringHelper(this).add("path", path).add("journal", journalDir).toString();
+        }
+    }
+}
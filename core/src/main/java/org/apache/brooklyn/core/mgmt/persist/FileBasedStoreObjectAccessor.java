@@ -21,6 +21,9 @@ package org.apache.brooklyn.core.mgmt.persist;
 import java.io.File;
 import java.io.IOException;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
 
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.io.FileUtil;
@@ -30,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Charsets;
 import com.google.common.base.Objects;
+import com.google.common.io.FileWriteMode;
 import com.google.common.io.Files;
 
 /**
@@ -42,12 +46,19 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
     private static final Logger LOG = LoggerFactory.getLogger(FileBasedStoreObjectAccessor.class);
 
     public FileBasedStoreObjectAccessor(File file, String tmpExtension) {
+        this(file, tmpExtension, null);
+    }
+
+    /** as {@link #FileBasedStoreObjectAccessor(File, String)}, also adding the number of bytes written to the given counter */
+    FileBasedStoreObjectAccessor(File file, String tmpExtension, @Nullable AtomicLong bytesWritten) {
         this.file = file;
         this.tmpFile = new File(file.getParentFile(), file.getName()+(Strings.isBlank(tmpExtension) ? ".tmp" : tmpExtension));
+        this.bytesWritten = bytesWritten;
     }
 
     private final File file;
     private final File tmpFile;
+    private final AtomicLong bytesWritten;
     
     @Override
     public String get() {
@@ -79,8 +90,10 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
         try {
             if (val==null) val = "";
             FileUtil.setFilePermissionsTo600(tmpFile);
-            Files.write(val, tmpFile, Charsets.UTF_8);
+            byte[] bytes = val.getBytes(Charsets.UTF_8);
+            Files.write(bytes, tmpFile);
             FileBasedObjectStore.moveFile(tmpFile, file);
+            if (bytesWritten!=null) bytesWritten.addAndGet(bytes.length);
         } catch (IOException e) {
             throw Exceptions.propagate("Problem writing data to file "+file+" (via temporary file "+tmpFile+")", e);
         } catch (InterruptedException e) {
@@ -94,8 +107,10 @@ public class FileBasedStoreObjectAccessor implements PersistenceObjectStore.Stor
         try {
             if (val==null) val = "";
             FileUtil.setFilePermissionsTo600(file);
-            Files.append(val, file, Charsets.UTF_8);
-            
+            byte[] bytes = val.getBytes(Charsets.UTF_8);
+            Files.asByteSink(file, FileWriteMode.APPEND).write(bytes);
+            if (bytesWritten!=null) bytesWritten.addAndGet(bytes.length);
+
         } catch (IOException e) {
             throw Exceptions.propagate("Problem appending to file "+file, e);
         }
@@ -32,6 +32,7 @@ public class PersistenceActivityMetrics {
     long count=0, failureCount=0;
     Long lastSuccessTime, lastDuration, lastFailureTime;
     List<Map<String,Object>> errorMessages = MutableList.of();
+    Map<String,Long> lastPhaseDurations;
 
     public void noteSuccess(Duration duration) {
         count++;
@@ -46,6 +47,15 @@ public class PersistenceActivityMetrics {
         lastDuration = duration!=null ? duration.toMilliseconds() : -1;
     }
 
+    /** records the duration (in millis) of each named phase of the last activity */
+    public synchronized void notePhaseDurations(Map<String,Duration> durations) {
+        Map<String,Long> result = MutableMap.of();
+        for (Map.Entry<String,Duration> entry : durations.entrySet()) {
+            result.put(entry.getKey(), entry.getValue().toMilliseconds());
+        }
+        lastPhaseDurations = result;
+    }
+
     public void noteError(String error) {
         noteErrorObject(error);
     }
@@ -72,6 +82,7 @@ public class PersistenceActivityMetrics {
         result.put("lastFailureTimeUtc", lastFailureTime);
         result.put("lastFailureTimeMillisSince", since(lastFailureTime));
         result.put("errorMessages", MutableList.copyOf(errorMessages));
+        if (lastPhaseDurations!=null) result.put("lastPhaseDurations", lastPhaseDurations);
         return result;
     }
 
@@ -129,6 +129,14 @@ public interface PersistenceObjectStore {
      */
     List<String> listContentsWithSubPath(String subPath);
 
+    /**
+     * Marks the end of a batch of writes (e.g. a persistence delta or checkpoint).
+     * Stores which journal or buffer writes can use this to sync the batch;
+     * stores which write each object as it is put need do nothing.
+     */
+    @Beta
+    void commitBatch();
+
     /** Entirely delete the contents of this persistence location.
      * Use with care, primarily in tests. This will recursively wipe the indicated location. */ 
     public void deleteCompletely();
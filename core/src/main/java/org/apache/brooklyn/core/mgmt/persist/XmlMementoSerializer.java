@@ -55,6 +55,7 @@ import org.apache.brooklyn.core.mgmt.classloading.JavaBrooklynClassLoadingContex
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicCatalogItemMemento;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicEnricherMemento;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicEntityMemento;
+import org.apache.brooklyn.core.mgmt.rebind.dto.EntityAttributesPatch;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicFeedMemento;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicLocationMemento;
 import org.apache.brooklyn.core.mgmt.rebind.dto.BasicPolicyMemento;
@@ -67,6 +68,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.thoughtworks.xstream.MarshallingStrategy;
+import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.converters.Converter;
 import com.thoughtworks.xstream.converters.MarshallingContext;
 import com.thoughtworks.xstream.converters.SingleValueConverter;
@@ -98,11 +100,14 @@ public class XmlMementoSerializer<T> extends XmlSerializer<T> implements Memento
         super(deserializingClassRenames);
         this.classLoader = checkNotNull(classLoader, "classLoader");
         xstream.setClassLoader(this.classLoader);
+        // the default, but set explicitly as EntityAttributesPatchMerger relies on references being relative paths
+        xstream.setMode(XStream.XPATH_RELATIVE_REFERENCES);
         
         // old (deprecated in 070? or earlier) single-file persistence uses this keyword; TODO remove soon in 080 ?
         xstream.alias("brooklyn", MutableBrooklynMemento.class);
         
         xstream.alias("entity", BasicEntityMemento.class);
+        xstream.alias(EntityAttributesPatchMerger.PATCH_ELEMENT, EntityAttributesPatch.class);
         xstream.alias("location", BasicLocationMemento.class);
         xstream.alias("policy", BasicPolicyMemento.class);
         xstream.alias("feed", BasicFeedMemento.class);
@@ -20,6 +20,7 @@ package org.apache.brooklyn.core.mgmt.rebind;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
@@ -41,6 +42,7 @@ import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
 import org.apache.brooklyn.api.policy.Policy;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
@@ -48,6 +50,7 @@ import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
+import org.apache.brooklyn.core.mgmt.rebind.dto.EntityAttributesPatch;
 import org.apache.brooklyn.core.objs.BrooklynObjectInternal;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.collections.MutableSet;
@@ -63,6 +66,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 /**
@@ -99,11 +103,14 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         private Set<String> removedEnricherIds = Sets.newLinkedHashSet();
         private Set<String> removedFeedIds = Sets.newLinkedHashSet();
         private Set<String> removedCatalogItemIds = Sets.newLinkedHashSet();
+        
+        /** entities not in {@link #entities}, for which only attributes have changed */
+        private Map<Entity, Set<AttributeSensor<?>>> entityAttributeChanges = Maps.newLinkedHashMap();
 
         public boolean isEmpty() {
             return locations.isEmpty() && entities.isEmpty() && policies.isEmpty() && 
                     enrichers.isEmpty() && feeds.isEmpty() &&
-                    catalogItems.isEmpty() &&
+                    catalogItems.isEmpty() && entityAttributeChanges.isEmpty() &&
                     removedEntityIds.isEmpty() && removedLocationIds.isEmpty() && removedPolicyIds.isEmpty() && 
                     removedEnricherIds.isEmpty() && removedFeedIds.isEmpty() &&
                     removedCatalogItemIds.isEmpty();
@@ -114,9 +121,21 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             getUnsafeCollectionOfType(type).add(instance);
             if (type==BrooklynObjectType.CATALOG_ITEM) {
                 removedCatalogItemIds.remove(instance.getId());
+            } else if (type==BrooklynObjectType.ENTITY) {
+                entityAttributeChanges.remove(instance);
             }
         }
         
+        public void addAttributeChange(Entity entity, AttributeSensor<?> attribute) {
+            if (entities.contains(entity) || removedEntityIds.contains(entity.getId())) return;
+            Set<AttributeSensor<?>> changed = entityAttributeChanges.get(entity);
+            if (changed == null) {
+                changed = Sets.newLinkedHashSet();
+                entityAttributeChanges.put(entity, changed);
+            }
+            changed.add(attribute);
+        }
+        
         public void addIfNotRemoved(BrooklynObject instance) {
             BrooklynObjectType type = BrooklynObjectType.of(instance);
             if (!getRemovedIdsOfType(type).contains(instance.getId())) {
@@ -128,6 +147,9 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             BrooklynObjectType type = BrooklynObjectType.of(instance);
             getUnsafeCollectionOfType(type).remove(instance);
             getRemovedIdsOfType(type).add(instance.getId());
+            if (type==BrooklynObjectType.ENTITY) {
+                entityAttributeChanges.remove(instance);
+            }
         }
 
         @SuppressWarnings("unchecked")
@@ -319,7 +341,7 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         MutableSet<BrooklynObject> referencedObjects = MutableSet.of();
         
         // collect references
-        for (Entity entity : deltaCollector.entities) {
+        for (Entity entity : Iterables.concat(deltaCollector.entities, deltaCollector.entityAttributeChanges.keySet())) {
             // FIXME How to let the policy/location tell us about changes? Don't do this every time!
             for (Location location : entity.getLocations()) {
                 Collection<Location> findLocationsInHierarchy = TreeUtils.findLocationsInHierarchy(location);
@@ -390,10 +412,10 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             }
             
             if (LOG.isDebugEnabled() && shouldLogCheckpoint()) LOG.debug("Checkpointing delta of memento: "
-                    + "updating entities={}, locations={}, policies={}, enrichers={}, catalog items={}; "
+                    + "updating entities={}, entity attributes={}, locations={}, policies={}, enrichers={}, catalog items={}; "
                     + "removing entities={}, locations={}, policies={}, enrichers={}, catalog items={}",
                     new Object[] {
-                        limitedCountString(prevDeltaCollector.entities), limitedCountString(prevDeltaCollector.locations), limitedCountString(prevDeltaCollector.policies), limitedCountString(prevDeltaCollector.enrichers), limitedCountString(prevDeltaCollector.catalogItems), 
+                        limitedCountString(prevDeltaCollector.entities), limitedCountString(prevDeltaCollector.entityAttributeChanges.keySet()), limitedCountString(prevDeltaCollector.locations), limitedCountString(prevDeltaCollector.policies), limitedCountString(prevDeltaCollector.enrichers), limitedCountString(prevDeltaCollector.catalogItems), 
                         limitedCountString(prevDeltaCollector.removedEntityIds), limitedCountString(prevDeltaCollector.removedLocationIds), limitedCountString(prevDeltaCollector.removedPolicyIds), limitedCountString(prevDeltaCollector.removedEnricherIds), limitedCountString(prevDeltaCollector.removedCatalogItemIds)});
 
             addReferencedObjects(prevDeltaCollector);
@@ -411,6 +433,23 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
             } else {
                 PersisterDeltaImpl persisterDelta = new PersisterDeltaImpl();
                 
+                // persisters which cannot apply patches get full mementos
+                boolean incrementalEntities = persister.isEntityAttributesPatchSupported()
+                        && BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE);
+                for (Map.Entry<Entity, Set<AttributeSensor<?>>> entry : prevDeltaCollector.entityAttributeChanges.entrySet()) {
+                    Entity entity = entry.getKey();
+                    try {
+                        if (incrementalEntities) {
+                            EntityAttributesPatch patch = EntityAttributesPatch.of(entity, entry.getValue());
+                            if (!patch.isEmpty()) persisterDelta.addEntityAttributesPatch(patch);
+                        } else {
+                            persisterDelta.add(BrooklynObjectType.ENTITY, ((BrooklynObjectInternal)entity).getRebindSupport().getMemento());
+                        }
+                    } catch (Exception e) {
+                        exceptionHandler.onGenerateMementoFailed(BrooklynObjectType.ENTITY, entity, e);
+                    }
+                }
+                
                 for (BrooklynObjectType type: BrooklynPersistenceUtils.STANDARD_BROOKLYN_OBJECT_TYPE_PERSISTENCE_ORDER) {
                     for (BrooklynObject instance: prevDeltaCollector.getCollectionOfType(type)) {
                         try {
@@ -497,6 +536,17 @@ public class PeriodicDeltaChangeListener implements ChangeListener {
         }
     }
     
+    /**
+     * As {@link #onChanged(BrooklynObject)} for the entity, but recording the attribute, so that if nothing else
+     * about the entity changes before the next persist then just its changed attributes can be written.
+     */
+    public synchronized void onAttributeChanged(Entity entity, AttributeSensor<?> attribute) {
+        if (LOG.isTraceEnabled()) LOG.trace("onAttributeChanged: {} {}", entity, attribute);
+        if (!isStopped()) {
+            deltaCollector.addAttributeChange(entity, attribute);
+        }
+    }
+    
     public PersistenceExceptionHandler getExceptionHandler() {
         return exceptionHandler;
     }
@@ -32,6 +32,7 @@ import org.apache.brooklyn.api.mgmt.rebind.mementos.PolicyMemento;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.Delta;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister.MutableDelta;
 import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.core.mgmt.rebind.dto.EntityAttributesPatch;
 
 import com.google.common.annotations.Beta;
 import com.google.common.collect.Iterables;
@@ -54,6 +55,8 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
     Collection<String> removedEnricherIds = Sets.newLinkedHashSet();
     Collection <String> removedFeedIds = Sets.newLinkedHashSet();
     Collection<String> removedCatalogItemIds = Sets.newLinkedHashSet();
+    
+    Collection<EntityAttributesPatch> entityAttributesPatches = Sets.newLinkedHashSet();
 
     @Override
     public Collection<LocationMemento> locations() {
@@ -115,6 +118,12 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
         return Collections.unmodifiableCollection(removedCatalogItemIds);
     }
 
+    /** changed attributes of entities which are not otherwise in this delta */
+    @Beta
+    public Collection<EntityAttributesPatch> entityAttributesPatches() {
+        return Collections.unmodifiableCollection(entityAttributesPatches);
+    }
+
     @Override
     public Collection<? extends Memento> getObjectsOfType(BrooklynObjectType type) {
         return Collections.unmodifiableCollection(getMutableObjectsOfType(type));
@@ -171,4 +180,9 @@ public class PersisterDeltaImpl implements Delta, MutableDelta {
         getRemovedIdsOfTypeMutable(type).addAll(removedIdsOfType);    
     }
 
+    @Beta
+    public void addEntityAttributesPatch(EntityAttributesPatch patch) {
+        entityAttributesPatches.add(patch);
+    }
+
 }
@@ -21,6 +21,7 @@ package org.apache.brooklyn.core.mgmt.rebind;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Map;
 
 import org.apache.brooklyn.api.catalog.CatalogItem;
@@ -34,18 +35,21 @@ import org.apache.brooklyn.api.objs.BrooklynObject;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.sensor.Enricher;
 import org.apache.brooklyn.api.sensor.Feed;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 
 import com.google.common.collect.Maps;
 
 public class RebindContextImpl implements RebindContext {
 
-    private final Map<String, Entity> entities = Maps.newLinkedHashMap();
-    private final Map<String, Location> locations = Maps.newLinkedHashMap();
-    private final Map<String, Policy> policies = Maps.newLinkedHashMap();
-    private final Map<String, Enricher> enrichers = Maps.newLinkedHashMap();
-    private final Map<String, Feed> feeds = Maps.newLinkedHashMap();
-    private final Map<String, CatalogItem<?, ?>> catalogItems = Maps.newLinkedHashMap();
+    // synchronized as objects may be registered concurrently, see RebindManagerImpl.REBIND_MAX_THREADS;
+    // the collections returned are copies, so can be iterated while others register
+    private final Map<String, Entity> entities = newSynchronizedMap();
+    private final Map<String, Location> locations = newSynchronizedMap();
+    private final Map<String, Policy> policies = newSynchronizedMap();
+    private final Map<String, Enricher> enrichers = newSynchronizedMap();
+    private final Map<String, Feed> feeds = newSynchronizedMap();
+    private final Map<String, CatalogItem<?, ?>> catalogItems = newSynchronizedMap();
     
     private final ClassLoader classLoader;
     @SuppressWarnings("unused")
@@ -139,38 +143,38 @@ public class RebindContextImpl implements RebindContext {
     }
 
     public Collection<Location> getLocations() {
-        return locations.values();
+        return copyOfValues(locations);
     }
     
     public Collection<Entity> getEntities() {
-        return entities.values();
+        return copyOfValues(entities);
     }
     
     public Collection<Policy> getPolicies() {
-        return policies.values();
+        return copyOfValues(policies);
     }
 
     public Collection<Enricher> getEnrichers() {
-        return enrichers.values();
+        return copyOfValues(enrichers);
     }
     
     public Collection<Feed> getFeeds() {
-        return feeds.values();
+        return copyOfValues(feeds);
     }
 
     public Collection<CatalogItem<?, ?>> getCatalogItems() {
-        return catalogItems.values();
+        return copyOfValues(catalogItems);
     }
     
     @Override
     public Map<String,BrooklynObject> getAllBrooklynObjects() {
         MutableMap<String,BrooklynObject> result = MutableMap.of();
-        result.putAll(locations);
-        result.putAll(entities);
-        result.putAll(policies);
-        result.putAll(enrichers);
-        result.putAll(feeds);
-        result.putAll(catalogItems);
+        putAll(result, locations);
+        putAll(result, entities);
+        putAll(result, policies);
+        putAll(result, enrichers);
+        putAll(result, feeds);
+        putAll(result, catalogItems);
         return result.asUnmodifiable();
     }
 
@@ -187,4 +191,20 @@ public class RebindContextImpl implements RebindContext {
         return lookupContext;
     }
 
+    private static <T> Map<String, T> newSynchronizedMap() {
+        return Collections.synchronizedMap(Maps.<String, T>newLinkedHashMap());
+    }
+
+    private static <T> Collection<T> copyOfValues(Map<String, T> map) {
+        synchronized (map) {
+            return MutableList.copyOf(map.values()).asUnmodifiable();
+        }
+    }
+
+    private static void putAll(Map<String, BrooklynObject> target, Map<String, ? extends BrooklynObject> map) {
+        synchronized (map) {
+            target.putAll(map);
+        }
+    }
+
 }
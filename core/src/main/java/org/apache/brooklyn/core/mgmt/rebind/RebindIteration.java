@@ -26,7 +26,12 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -36,6 +41,7 @@ import org.apache.brooklyn.api.entity.Application;
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.location.Location;
 import org.apache.brooklyn.api.mgmt.classloading.BrooklynClassLoadingContext;
+import org.apache.brooklyn.api.mgmt.entitlement.EntitlementContext;
 import org.apache.brooklyn.api.mgmt.ha.ManagementNodeState;
 import org.apache.brooklyn.api.mgmt.rebind.RebindContext;
 import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
@@ -63,6 +69,7 @@ import org.apache.brooklyn.api.typereg.RegisteredType;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
+import org.apache.brooklyn.core.catalog.internal.BasicBrooklynCatalog.BrooklynLoaderTracker;
 import org.apache.brooklyn.core.catalog.internal.CatalogInitialization;
 import org.apache.brooklyn.core.catalog.internal.CatalogUtils;
 import org.apache.brooklyn.core.enricher.AbstractEnricher;
@@ -73,6 +80,7 @@ import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.location.AbstractLocation;
 import org.apache.brooklyn.core.location.internal.LocationInternal;
 import org.apache.brooklyn.core.mgmt.classloading.JavaBrooklynClassLoadingContext;
+import org.apache.brooklyn.core.mgmt.entitlement.Entitlements;
 import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
 import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagerInternal;
 import org.apache.brooklyn.core.mgmt.internal.EntityManagerInternal;
@@ -175,6 +183,12 @@ public abstract class RebindIteration {
     // set on run start
     
     protected Stopwatch timer;
+    /** restarted as each step of {@link #doRun()} completes, to record {@link #phaseDurations} */
+    protected Stopwatch phaseTimer;
+    /** time taken by each step of {@link #doRun()} completed so far, in the order run */
+    protected final Map<String, Duration> phaseDurations = MutableMap.of();
+    /** threads for {@link #runConcurrently(String, List)}, created on first use and shared by all steps; shut down when the run completes */
+    private ExecutorService concurrentExecutor;
     /** phase is used to ensure our steps are run as we've expected, and documented (in javadoc at top).
      * it's worth the extra effort due to the complication and the subtleties. */
     protected int phase = 0;
@@ -235,16 +249,29 @@ public abstract class RebindIteration {
     
     protected void doRun() throws Exception {
         loadManifestFiles();
+        notePhaseCompleted("loadManifestFiles");
         rebuildCatalog();
+        notePhaseCompleted("rebuildCatalog");
         instantiateLocationsAndEntities();
+        notePhaseCompleted("instantiateLocationsAndEntities");
         instantiateMementos();
+        notePhaseCompleted("instantiateMementos");
         instantiateAdjuncts(instantiator); 
+        notePhaseCompleted("instantiateAdjuncts");
         reconstructEverything();
+        notePhaseCompleted("reconstructEverything");
         associateAdjunctsWithEntities();
+        notePhaseCompleted("associateAdjunctsWithEntities");
         manageTheObjects();
+        notePhaseCompleted("manageTheObjects");
         finishingUp();
     }
     
+    protected void notePhaseCompleted(String name) {
+        phaseDurations.put(name, Duration.of(phaseTimer));
+        phaseTimer.reset().start();
+    }
+    
     protected abstract void loadManifestFiles() throws Exception;
     
     public void run() {
@@ -260,6 +287,7 @@ public abstract class RebindIteration {
                 readOnlyRebindCount.incrementAndGet();
 
             timer = Stopwatch.createStarted();
+            phaseTimer = Stopwatch.createStarted();
             exceptionHandler.onStart(rebindContext);
 
             doRun();
@@ -267,6 +295,7 @@ public abstract class RebindIteration {
             exceptionHandler.onDone();
             
             rebindMetrics.noteSuccess(Duration.of(timer));
+            rebindMetrics.notePhaseDurations(phaseDurations);
             noteErrors(exceptionHandler, null);
             
         } catch (Exception e) {
@@ -277,6 +306,10 @@ public abstract class RebindIteration {
             throw exceptionHandler.onFailed(e);
             
         } finally {
+            if (concurrentExecutor != null) {
+                concurrentExecutor.shutdownNow();
+                concurrentExecutor = null;
+            }
             rebindActive.release();
             RebindTracker.reset();
         }
@@ -443,20 +476,29 @@ public abstract class RebindIteration {
         
         // Instantiate entities
         logRebindingDebug("RebindManager instantiating entities: {}", mementoManifest.getEntityIdToManifest().keySet());
-        for (Map.Entry<String, EntityMementoManifest> entry : mementoManifest.getEntityIdToManifest().entrySet()) {
-            String entityId = entry.getKey();
-            EntityMementoManifest entityManifest = entry.getValue();
-            
-            if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
-            
-            try {
-                Entity entity = (Entity) instantiator.newEntity(entityManifest);
-                ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
-                rebindContext.registerEntity(entityId, entity);
+        List<Runnable> jobs = MutableList.of();
+        for (final List<EntityMementoManifest> subtree : groupBySubtree(mementoManifest.getEntityIdToManifest())) {
+            jobs.add(new Runnable() {
+                public void run() {
+                    for (EntityMementoManifest entityManifest : subtree) {
+                        instantiateEntity(entityManifest);
+                    }
+                }});
+        }
+        runConcurrently("instantiate", jobs);
+    }
 
-            } catch (Exception e) {
-                exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
-            }
+    protected void instantiateEntity(EntityMementoManifest entityManifest) {
+        String entityId = entityManifest.getId();
+        if (LOG.isTraceEnabled()) LOG.trace("RebindManager instantiating entity {}", entityId);
+        
+        try {
+            Entity entity = (Entity) instantiator.newEntity(entityManifest);
+            ((EntityInternal)entity).getManagementSupport().setReadOnly( rebindContext.isReadOnly(entity) );
+            rebindContext.registerEntity(entityId, entity);
+
+        } catch (Exception e) {
+            exceptionHandler.onCreateFailed(BrooklynObjectType.ENTITY, entityId, entityManifest.getType(), e);
         }
     }
 
@@ -610,20 +652,31 @@ public abstract class RebindIteration {
    
         // Reconstruct entities
         logRebindingDebug("RebindManager reconstructing entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
-   
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
+        List<Runnable> jobs = MutableList.of();
+        for (final List<EntityMemento> subtree : groupBySubtree(sortParentFirst(memento.getEntityMementos()))) {
+            jobs.add(new Runnable() {
+                public void run() {
+                    for (EntityMemento entityMemento : subtree) {
+                        reconstructEntity(entityMemento);
+                    }
+                }});
+        }
+        runConcurrently("reconstruct", jobs);
+    }
+
+    protected void reconstructEntity(EntityMemento entityMemento) {
+        Entity entity = rebindContext.lookup().lookupEntity(entityMemento.getId());
+        logRebindingDebug("RebindManager reconstructing entity {}", entityMemento);
+
+        if (entity == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+        } else {
+            try {
+                entityMemento.injectTypeClass(entity.getClass());
+                ((EntityInternal)entity).getRebindSupport().reconstruct(rebindContext, entityMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
             }
         }
     }
@@ -633,24 +686,35 @@ public abstract class RebindIteration {
         checkEnteringPhase(7);
 
         logRebindingDebug("RebindManager associating adjuncts to entities");
-        for (EntityMemento entityMemento : sortParentFirst(memento.getEntityMementos()).values()) {
-            Entity entity = rebindContext.getEntity(entityMemento.getId());
-            logRebindingDebug("RebindManager associating adjuncts to entity {}", entityMemento);
-   
-            if (entity == null) {
-                // usually because of creation-failure, when not using fail-fast
-                exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
-            } else {
-                try {
-                    entityMemento.injectTypeClass(entity.getClass());
-                    // TODO these call to the entity which in turn sets the entity on the underlying feeds and enrichers;
-                    // that is taken as the cue to start, but it should not be. start should be a separate call.
-                    ((EntityInternal)entity).getRebindSupport().addPolicies(rebindContext, entityMemento);
-                    ((EntityInternal)entity).getRebindSupport().addEnrichers(rebindContext, entityMemento);
-                    ((EntityInternal)entity).getRebindSupport().addFeeds(rebindContext, entityMemento);
-                } catch (Exception e) {
-                    exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
+        List<Runnable> jobs = MutableList.of();
+        for (final List<EntityMemento> subtree : groupBySubtree(sortParentFirst(memento.getEntityMementos()))) {
+            jobs.add(new Runnable() {
+                public void run() {
+                    for (EntityMemento entityMemento : subtree) {
+                        associateAdjunctsWithEntity(entityMemento);
+                    }
+                }});
+        }
+        runConcurrently("adjuncts", jobs);
+    }
+
+    protected void associateAdjunctsWithEntity(EntityMemento entityMemento) {
+        Entity entity = rebindContext.getEntity(entityMemento.getId());
+        logRebindingDebug("RebindManager associating adjuncts to entity {}", entityMemento);
+
+        if (entity == null) {
+            // usually because of creation-failure, when not using fail-fast
+            exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, entityMemento.getId());
+        } else {
+            try {
+                entityMemento.injectTypeClass(entity.getClass());
+                // TODO these call to the entity which in turn sets the entity on the underlying feeds and enrichers;
+                // that is taken as the cue to start, but it should not be. start should be a separate call.
+                ((EntityInternal)entity).getRebindSupport().addPolicies(rebindContext, entityMemento);
+                ((EntityInternal)entity).getRebindSupport().addEnrichers(rebindContext, entityMemento);
+                ((EntityInternal)entity).getRebindSupport().addFeeds(rebindContext, entityMemento);
+            } catch (Exception e) {
+                exceptionHandler.onRebindFailed(BrooklynObjectType.ENTITY, entity, e);
             }
         }
     }
@@ -682,7 +746,7 @@ public abstract class RebindIteration {
         
         // Manage the top-level apps (causing everything under them to become managed)
         logRebindingDebug("RebindManager managing entities");
-        EntityManagerInternal entityManager = (EntityManagerInternal)managementContext.getEntityManager();
+        final EntityManagerInternal entityManager = (EntityManagerInternal)managementContext.getEntityManager();
         Set<String> oldEntities = Sets.newLinkedHashSet(entityManager.getEntityIds());
         for (Entity entity: rebindContext.getEntities()) {
             ManagementTransitionMode oldMode = updateTransitionMode(entityManager, entity);
@@ -690,21 +754,26 @@ public abstract class RebindIteration {
                 oldEntities.remove(entity.getId());
         }
         List<Application> apps = Lists.newArrayList();
+        List<Runnable> jobs = MutableList.of();
         for (String rootId : getMementoRootEntities()) {
-            Entity entity = rebindContext.getEntity(rootId);
+            final Entity entity = rebindContext.getEntity(rootId);
             if (entity == null) {
                 // usually because of creation-failure, when not using fail-fast
                 exceptionHandler.onNotFound(BrooklynObjectType.ENTITY, rootId);
             } else {
-                try {
-                    entityManager.manageRebindedRoot(entity);
-                } catch (Exception e) {
-                    exceptionHandler.onManageFailed(BrooklynObjectType.ENTITY, entity, e);
-                }
+                jobs.add(new Runnable() {
+                    public void run() {
+                        try {
+                            entityManager.manageRebindedRoot(entity);
+                        } catch (Exception e) {
+                            exceptionHandler.onManageFailed(BrooklynObjectType.ENTITY, entity, e);
+                        }
+                    }});
                 if (entity instanceof Application)
                     apps.add((Application)entity);
             }
         }
+        runConcurrently("manage", jobs);
         cleanupOldEntities(oldEntities);
 
         this.applications = apps;
@@ -765,6 +834,7 @@ public abstract class RebindIteration {
 
         // Return the top-level applications
         logRebindingDebug("RebindManager complete; apps: {}", getMementoRootEntities());
+        logRebindingDebug("RebindManager phase durations: {}", phaseDurations);
     }
 
     protected void noteErrors(final RebindExceptionHandler exceptionHandler, Exception primaryException) {
@@ -1140,6 +1210,90 @@ public abstract class RebindIteration {
         }
     }
 
+    /**
+     * Groups the given items (keyed by entity id) by the root of the entity's tree, according to the manifest,
+     * preserving their relative order within each group.
+     * An entity whose parent is not in the manifest is treated as a root.
+     */
+    protected <T> Collection<List<T>> groupBySubtree(Map<String, T> itemsByEntityId) {
+        Map<String, EntityMementoManifest> manifests = mementoManifest.getEntityIdToManifest();
+        Map<String, List<T>> result = MutableMap.of();
+        for (Map.Entry<String, T> entry : itemsByEntityId.entrySet()) {
+            String rootId = entry.getKey();
+            EntityMementoManifest manifest = manifests.get(rootId);
+            while (manifest != null && manifest.getParent() != null && manifests.containsKey(manifest.getParent())) {
+                rootId = manifest.getParent();
+                manifest = manifests.get(rootId);
+            }
+            List<T> group = result.get(rootId);
+            if (group == null) {
+                group = MutableList.of();
+                result.put(rootId, group);
+            }
+            group.add(entry.getValue());
+        }
+        return result.values();
+    }
+
+    /**
+     * Runs the given jobs, using up to {@link RebindManagerImpl#REBIND_MAX_THREADS} threads, returning when all have completed.
+     * Jobs run with the caller's entitlement context, catalog class-loading context and context class loader.
+     * Jobs are expected to report their failures to the {@link #exceptionHandler}; 
+     * anything they throw (e.g. if the handler is failing fast) is rethrown here.
+     */
+    protected void runConcurrently(final String jobsName, List<Runnable> jobs) {
+        if (Math.min(rebindManager.rebindMaxThreads, jobs.size()) <= 1) {
+            for (Runnable job : jobs) {
+                job.run();
+            }
+            return;
+        }
+        
+        if (concurrentExecutor == null) {
+            concurrentExecutor = Executors.newFixedThreadPool(rebindManager.rebindMaxThreads, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+                @Override public Thread newThread(Runnable r) {
+                    Thread result = new Thread(r, "brooklyn-rebind-"+count.incrementAndGet());
+                    result.setDaemon(true);
+                    return result;
+                }});
+        }
+        final EntitlementContext entitlementContext = Entitlements.getEntitlementContext();
+        final BrooklynClassLoadingContext loader = BrooklynLoaderTracker.getLoader();
+        final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try {
+            List<Future<?>> futures = MutableList.of();
+            for (final Runnable job : jobs) {
+                futures.add(concurrentExecutor.submit(new Runnable() {
+                    public void run() {
+                        Thread thread = Thread.currentThread();
+                        String oldName = thread.getName();
+                        thread.setName(oldName+"-"+jobsName);
+                        thread.setContextClassLoader(contextClassLoader);
+                        Entitlements.setEntitlementContext(entitlementContext);
+                        BrooklynLoaderTracker.setLoader(loader);
+                        RebindTracker.setRebinding();
+                        try {
+                            job.run();
+                        } finally {
+                            RebindTracker.reset();
+                            BrooklynLoaderTracker.unsetLoader(loader);
+                            Entitlements.clearEntitlementContext();
+                            thread.setContextClassLoader(null);
+                            thread.setName(oldName);
+                        }
+                    }}));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw Exceptions.propagate(e.getCause());
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
     protected BrooklynMementoPersister getPersister() {
         return rebindManager.getPersister();
     }
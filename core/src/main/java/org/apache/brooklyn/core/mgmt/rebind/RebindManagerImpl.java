@@ -38,11 +38,11 @@ import org.apache.brooklyn.api.mgmt.ha.MementoCopyMode;
 import org.apache.brooklyn.api.mgmt.rebind.ChangeListener;
 import org.apache.brooklyn.api.mgmt.rebind.PersistenceExceptionHandler;
 import org.apache.brooklyn.api.mgmt.rebind.RebindExceptionHandler;
-import org.apache.brooklyn.api.mgmt.rebind.RebindManager;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoPersister;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.BrooklynMementoRawData;
 import org.apache.brooklyn.api.mgmt.rebind.mementos.TreeNode;
 import org.apache.brooklyn.api.objs.BrooklynObject;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.config.ConfigKeys;
@@ -50,6 +50,7 @@ import org.apache.brooklyn.core.enricher.AbstractEnricher;
 import org.apache.brooklyn.core.entity.Entities;
 import org.apache.brooklyn.core.mgmt.ha.HighAvailabilityManagerImpl;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.mgmt.internal.RebindManagerInternal;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.BrooklynPersistenceUtils;
 import org.apache.brooklyn.core.mgmt.persist.PersistenceActivityMetrics;
@@ -82,7 +83,7 @@ import com.google.common.collect.Maps;
  * {@link #setPersister(BrooklynMementoPersister)}; however noting that persist period must be set before the persister).
  * <p>
  * Usually done for you by the conveniences (such as the launcher). */
-public class RebindManagerImpl implements RebindManager {
+public class RebindManagerImpl implements RebindManagerInternal {
 
     // TODO Use ImmediateDeltaChangeListener if the period is set to 0?
     
@@ -110,6 +111,14 @@ public class RebindManagerImpl implements RebindManager {
                 + "then linear regression to allow max 5% at 100 items and above", 
                 QuorumChecks.newLinearRange("[[0,-2],[10,8],[100,95],[200,190]]"));
 
+    @Beta
+    public static final ConfigKey<Integer> REBIND_MAX_THREADS =
+            ConfigKeys.newIntegerConfigKey("rebind.maxThreads",
+                    "Maximum number of threads used to instantiate, reconstruct and manage independent application subtrees "
+                    + "concurrently during rebind (objects within a subtree are always done in parent-first order); "
+                    + "1 means do everything in the rebinding thread", 
+                    1);
+
     public static final Logger LOG = LoggerFactory.getLogger(RebindManagerImpl.class);
 
     private final ManagementContextInternal managementContext;
@@ -131,6 +140,7 @@ public class RebindManagerImpl implements RebindManager {
     final boolean persistEnrichersEnabled;
     final boolean persistFeedsEnabled;
     final boolean persistCatalogItemsEnabled;
+    final int rebindMaxThreads;
     
     private RebindFailureMode danglingRefFailureMode;
     private RebindFailureMode rebindFailureMode;
@@ -186,6 +196,7 @@ public class RebindManagerImpl implements RebindManager {
         loadPolicyFailureMode = managementContext.getConfig().getConfig(LOAD_POLICY_FAILURE_MODE);
         
         danglingRefsQuorumRequiredHealthy = managementContext.getConfig().getConfig(DANGLING_REFERENCES_MIN_REQUIRED_HEALTHY);
+        rebindMaxThreads = Math.max(1, managementContext.getConfig().getConfig(REBIND_MAX_THREADS));
 
         LOG.debug("{} initialized, settings: policies={}, enrichers={}, feeds={}, catalog={}",
                 new Object[]{this, persistPoliciesEnabled, persistEnrichersEnabled, persistFeedsEnabled, persistCatalogItemsEnabled});
@@ -466,6 +477,27 @@ public class RebindManagerImpl implements RebindManager {
     public ChangeListener getChangeListener() {
         return persistencePublicChangeListener;
     }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Only the changed attributes are persisted if {@link BrooklynFeatureEnablement#FEATURE_INCREMENTAL_ENTITY_PERSISTENCE}
+     * is enabled and the persister supports it.
+     */
+    @Override
+    @Beta
+    public void onAttributeChanged(Entity entity, AttributeSensor<?> attribute) {
+        PeriodicDeltaChangeListener listener = persistenceRealChangeListener;
+        if (listener == null) {
+            getChangeListener().onChanged(entity);
+            return;
+        }
+        try {
+            listener.onAttributeChanged(entity, attribute);
+        } catch (Throwable t) {
+            LOG.error("Error persisting mememento onAttributeChanged("+entity+", "+attribute.getName()+"); continuing.", t);
+        }
+    }
     
     @Override
     public List<Application> rebind() {
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind.dto;
+
+import java.util.Collection;
+import java.util.Map;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.api.sensor.AttributeSensor.SensorPersistenceMode;
+import org.apache.brooklyn.api.sensor.Sensor;
+import org.apache.brooklyn.core.objs.BrooklynTypes;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.collect.Maps;
+
+/**
+ * The values of selected attributes of an entity, persisted in addition to (and applied on top of)
+ * the entity's full memento, so that a change to a few sensors does not require the whole entity to be
+ * serialized and rewritten.
+ * <p>
+ * The {@code attributes} and {@code attributeKeys} fields are serialized in the same form as those in
+ * {@link BasicEntityMemento}, so that they can be merged into its XML.
+ */
+@Beta
+public class EntityAttributesPatch {
+
+    /** Creates a patch with the current values of the given attributes of the entity. */
+    public static EntityAttributesPatch of(Entity entity, Collection<? extends AttributeSensor<?>> changedAttributes) {
+        Map<String, Sensor<?>> staticSensorKeys = BrooklynTypes.getDefinedSensors(entity.getClass());
+        Map<String, Object> attributes = Maps.newLinkedHashMap();
+        Map<String, AttributeSensor<?>> attributeKeys = Maps.newLinkedHashMap();
+        for (AttributeSensor<?> key : changedAttributes) {
+            if (key.getPersistenceMode() != SensorPersistenceMode.NONE) {
+                attributes.put(key.getName(), entity.getAttribute(key));
+                if (!key.equals(staticSensorKeys.get(key.getName()))) {
+                    attributeKeys.put(key.getName(), key);
+                }
+            }
+        }
+        return new EntityAttributesPatch(entity, attributes, attributeKeys);
+    }
+
+    private String id;
+    private Map<String, Object> attributes;
+    private Map<String, AttributeSensor<?>> attributeKeys;
+
+    private transient Entity entity;
+
+    // for de-serialization
+    @SuppressWarnings("unused")
+    private EntityAttributesPatch() {}
+
+    protected EntityAttributesPatch(Entity entity, Map<String, Object> attributes, Map<String, AttributeSensor<?>> attributeKeys) {
+        this.entity = entity;
+        this.id = entity.getId();
+        this.attributes = attributes.isEmpty() ? null : attributes;
+        this.attributeKeys = attributeKeys.isEmpty() ? null : attributeKeys;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public boolean isEmpty() {
+        return attributes==null;
+    }
+
+    /**
+     * The entity this patch was generated from, so that a full memento can be generated instead if required;
+     * null if this patch was de-serialized.
+     */
+    public Entity getEntity() {
+        return entity;
+    }
+
+    @Override
+    public String toString() {
+        return Objects.toStringHelper(this).add("id", id).add("attributes", attributes==null ? null : attributes.keySet()).toString();
+    }
+}
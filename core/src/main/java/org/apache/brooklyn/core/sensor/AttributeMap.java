@@ -21,8 +21,9 @@ package org.apache.brooklyn.core.sensor;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -56,6 +57,9 @@ public final class AttributeMap {
     // Assumed to be something like a ConcurrentMap passed in.
     private final Map<Collection<String>, Object> values;
 
+    /** non-null if {@link #values} is concurrent, in which case reads and snapshots do not lock it */
+    private final ConcurrentMap<Collection<String>, Object> concurrentValues;
+
     /**
      * Creates a new AttributeMap.
      *
@@ -63,9 +67,10 @@ public final class AttributeMap {
      * @throws NullPointerException if entity is null
      */
     public AttributeMap(AbstractEntity entity) {
-        // Not using ConcurrentMap, because want to (continue to) allow null values.
-        // Could use ConcurrentMapAcceptingNullVals (with the associated performance hit on entrySet() etc).
-        this(entity, Collections.synchronizedMap(Maps.<Collection<String>, Object>newLinkedHashMap()));
+        // Null values are stored as Marker.NULL, so a ConcurrentMap can be used directly 
+        // (without the overhead of ConcurrentMapAcceptingNullVals).
+        // Note this means sensors are not kept in insertion order.
+        this(entity, new ConcurrentHashMap<Collection<String>, Object>());
     }
 
     /**
@@ -75,12 +80,21 @@ public final class AttributeMap {
      * @param storage the Map in which to store the values - should be concurrent or synchronized.
      * @throws NullPointerException if entity is null
      */
+    @SuppressWarnings("unchecked")
     public AttributeMap(AbstractEntity entity, Map<Collection<String>, Object> storage) {
         this.entity = checkNotNull(entity, "entity must be specified");
         this.values = checkNotNull(storage, "storage map must not be null");
+        this.concurrentValues = (storage instanceof ConcurrentMap) ? (ConcurrentMap<Collection<String>, Object>) storage : null;
     }
 
+    /** 
+     * A copy of the raw values (with nulls represented by a marker). 
+     * If the storage is concurrent this does not lock it, and so is weakly consistent with concurrent updates.
+     */
     public Map<Collection<String>, Object> asRawMap() {
+        if (concurrentValues!=null) {
+            return ImmutableMap.copyOf(concurrentValues);
+        }
         synchronized (values) {
             return ImmutableMap.copyOf(values);
         }
@@ -88,12 +102,10 @@ public final class AttributeMap {
 
     public Map<String, Object> asMap() {
         Map<String, Object> result = Maps.newLinkedHashMap();
-        synchronized (values) {
-            for (Map.Entry<Collection<String>, Object> entry : values.entrySet()) {
-                String sensorName = Joiner.on('.').join(entry.getKey());
-                Object val = (isNull(entry.getValue())) ? null : entry.getValue();
-                result.put(sensorName, val);
-            }
+        for (Map.Entry<Collection<String>, Object> entry : asRawMap().entrySet()) {
+            String sensorName = Joiner.on('.').join(entry.getKey());
+            Object val = (isNull(entry.getValue())) ? null : entry.getValue();
+            result.put(sensorName, val);
         }
         return result;
     }
@@ -151,18 +163,41 @@ public final class AttributeMap {
 
     /**
      * Where atomicity is desired, the methods in this class synchronize on the {@link #values} map.
+     * <p>
+     * Modifications are serialized with each other (so their events are published in order). If the storage
+     * is concurrent, plain {@link #update(AttributeSensor, Object)} calls do not lock; in that case the new value
+     * is only written if the value is unchanged since it was read, otherwise the modifier is applied again 
+     * to the newer value. Modifiers should therefore not have side-effects (and should not modify the old value in place).
      */
     public <T> T modify(AttributeSensor<T> attribute, Function<? super T, Maybe<T>> modifier) {
         synchronized (values) {
-            T oldValue = getValue(attribute);
-            Maybe<? extends T> newValue = modifier.apply(oldValue);
-
-            if (newValue.isPresent()) {
-                if (log.isTraceEnabled()) log.trace("modified attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
-                return update(attribute, newValue.get());
-            } else {
-                if (log.isTraceEnabled()) log.trace("modified attribute {} unchanged; not emitting on {}", new Object[] {attribute.getName(), newValue, this});
-                return oldValue;
+            while (true) {
+                Collection<String> path = attribute.getNameParts();
+                Object oldRawValue = values.get(path);
+                @SuppressWarnings("unchecked")
+                T oldValue = (T) TypeCoercions.coerce(isNull(oldRawValue) ? null : oldRawValue, attribute.getType());
+                Maybe<? extends T> newValue = modifier.apply(oldValue);
+    
+                if (newValue.isPresent()) {
+                    if (concurrentValues!=null) {
+                        Object newRawValue = (newValue.get() == null) ? typedNull() : newValue.get();
+                        boolean replaced = (oldRawValue == null) 
+                                ? concurrentValues.putIfAbsent(path, newRawValue) == null
+                                : concurrentValues.replace(path, oldRawValue, newRawValue);
+                        if (!replaced) {
+                            if (log.isTraceEnabled()) log.trace("attribute {} changed concurrently while modifying on {}; re-applying modifier", new Object[] {attribute.getName(), entity});
+                            continue;
+                        }
+                        if (log.isTraceEnabled()) log.trace("modified attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
+                        entity.emitInternal(attribute, newValue.get());
+                        return oldValue;
+                    }
+                    if (log.isTraceEnabled()) log.trace("modified attribute {} to {} (was {}) on {}", new Object[] {attribute.getName(), newValue, oldValue, entity});
+                    return update(attribute, newValue.get());
+                } else {
+                    if (log.isTraceEnabled()) log.trace("modified attribute {} unchanged; not emitting on {}", new Object[] {attribute.getName(), newValue, this});
+                    return oldValue;
+                }
             }
         }
     }
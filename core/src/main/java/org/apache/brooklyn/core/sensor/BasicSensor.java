@@ -44,7 +44,7 @@ public class BasicSensor<T> implements Sensor<T> {
     private Class<? super T> type;
     private String name;
     private String description;
-    private transient List<String> nameParts;
+    private transient volatile List<String> nameParts;
     
     // FIXME In groovy, fields were `public final` with a default constructor; do we need the gson?
     public BasicSensor() { /* for gson */ }
@@ -80,9 +80,15 @@ public class BasicSensor<T> implements Sensor<T> {
     public String getName() { return name; }
  
     /** @see Sensor#getNameParts() */
-    public synchronized List<String> getNameParts() {
-        if (nameParts==null) nameParts = ImmutableList.copyOf(dots.split(name));
-        return nameParts; 
+    public List<String> getNameParts() {
+        // not synchronized: sensors are shared by all entities, so this is called concurrently on every attribute get/set;
+        // computing it twice in a race is harmless, as the result is immutable
+        List<String> result = nameParts;
+        if (result==null) {
+            result = ImmutableList.copyOf(dots.split(name));
+            nameParts = result;
+        }
+        return result; 
     }
  
     /** @see Sensor#getDescription() */
@@ -20,6 +20,8 @@ package org.apache.brooklyn.entity.group;
 
 import groovy.lang.Closure;
 
+import java.util.Collection;
+
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.ImplementedBy;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
@@ -32,8 +34,11 @@ import org.apache.brooklyn.core.effector.MethodEffector;
 import org.apache.brooklyn.core.entity.trait.Startable;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.util.core.flags.SetFromFlag;
+import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Predicate;
+import com.google.common.collect.ImmutableList;
 import com.google.common.reflect.TypeToken;
 
 @ImplementedBy(DynamicGroupImpl.class)
@@ -47,6 +52,41 @@ public interface DynamicGroup extends AbstractGroup {
     AttributeSensor<Boolean> RUNNING = Sensors.newBooleanSensor(
             "dynamicgroup.running", "Whether the entity is running, and will automatically update group membership");
 
+    /**
+     * Sensors which the {@link #ENTITY_FILTER} depends on, so that when any entity publishes one of them,
+     * that entity alone is re-evaluated (rather than needing to {@link #rescanEntities()}).
+     * Read when the group's management starts.
+     */
+    @Beta
+    @SuppressWarnings("serial")
+    ConfigKey<Collection<Sensor<?>>> ENTITY_FILTER_SENSORS = ConfigKeys.newConfigKey(new TypeToken<Collection<Sensor<?>>>() { },
+            "dynamicgroup.entityfilter.sensors", "Sensors whose values the entity filter depends on; "
+            + "when an entity publishes one, only that entity is re-evaluated",
+            ImmutableList.<Sensor<?>>of());
+
+    /**
+     * How often to {@link #rescanEntities() rescan} all entities, to reconcile the membership with the filter
+     * in case a change was missed (e.g. the filter depends on more than the {@link #ENTITY_FILTER_SENSORS}).
+     * Read when the group's management starts.
+     */
+    @Beta
+    ConfigKey<Duration> RECONCILIATION_PERIOD = ConfigKeys.newDurationConfigKey(
+            "dynamicgroup.reconciliationPeriod", "How often to rescan all entities to reconcile the membership, "
+            + "if at all (null or 0 for never)",
+            null);
+
+    @Beta
+    AttributeSensor<Long> EVALUATION_COUNT = Sensors.newLongSensor(
+            "dynamicgroup.evaluations.count", "Number of entities evaluated individually against the filter (updated on each rescan)");
+
+    @Beta
+    AttributeSensor<Double> EVALUATIONS_PER_SECOND = Sensors.newDoubleSensor(
+            "dynamicgroup.evaluations.perSec", "Rate of entities evaluated individually against the filter, since the previous rescan");
+
+    @Beta
+    AttributeSensor<Long> RESCAN_COUNT = Sensors.newLongSensor(
+            "dynamicgroup.rescans.count", "Number of times all entities have been rescanned");
+
     MethodEffector<Void> RESCAN_EFFECTOR = new MethodEffector<Void>(DynamicGroup.class, "rescanEntities");
 
     /**
@@ -21,26 +21,35 @@ package org.apache.brooklyn.entity.group;
 import groovy.lang.Closure;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.sensor.Sensor;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.BrooklynLogging.LoggingLevel;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.core.mgmt.internal.CollectionChangeListener;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.Tasks;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.groovy.GroovyJavaMethods;
+import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Predicate;
 import com.google.common.base.Predicates;
-import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup {
@@ -50,6 +59,14 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
     protected final Object memberChangeMutex = new Object();
 
     private volatile MyEntitySetChangeListener setChangeListener = null;
+    private final List<SubscriptionHandle> filterSensorSubscriptions = Lists.newCopyOnWriteArrayList();
+    private volatile ScheduledTask reconciliationTask = null;
+
+    private final AtomicLong evaluationCount = new AtomicLong();
+    private final AtomicLong rescanCount = new AtomicLong();
+    // guarded by memberChangeMutex
+    private long lastMetricsEvaluationCount;
+    private long lastMetricsTime;
 
     public DynamicGroupImpl() { }
 
@@ -97,6 +114,8 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         if (setChangeListener != null) {
             ((ManagementContextInternal) getManagementContext()).removeEntitySetListener(setChangeListener);
         }
+        unsubscribeFromFilterSensors();
+        stopReconciliation();
     }
 
     @Override
@@ -116,6 +135,7 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
     }
 
     protected boolean acceptsEntity(Entity e) {
+        evaluationCount.incrementAndGet();
         return entityFilter().apply(e);
     }
 
@@ -156,6 +176,71 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         public void onItemRemoved(Entity item) { onEntityRemoved(item); }
     }
 
+    private class FilterSensorListener implements SensorEventListener<Object> {
+        @Override
+        public void onEvent(SensorEvent<Object> event) {
+            // the entity may have been unmanaged since publishing, in which case it must not be added back
+            if (Entities.isManaged(event.getSource())) onEntityChanged(event.getSource());
+        }
+    }
+
+    /**
+     * Re-evaluates just the entity which published, whenever any entity publishes one of the
+     * {@link #ENTITY_FILTER_SENSORS}.
+     */
+    private void subscribeToFilterSensors() {
+        Collection<Sensor<?>> sensors = getConfig(ENTITY_FILTER_SENSORS);
+        if (sensors == null || sensors.isEmpty()) return;
+        FilterSensorListener listener = new FilterSensorListener();
+        for (Sensor<?> sensor : sensors) {
+            filterSensorSubscriptions.add(subscriptions().subscribe(null, sensor, listener));
+        }
+        if (log.isDebugEnabled()) log.debug("{} re-evaluating entities on change of {}", this, sensors);
+    }
+
+    private void unsubscribeFromFilterSensors() {
+        for (SubscriptionHandle handle : filterSensorSubscriptions) {
+            subscriptions().unsubscribe(handle);
+        }
+        filterSensorSubscriptions.clear();
+    }
+
+    private void startReconciliation() {
+        Duration period = getConfig(RECONCILIATION_PERIOD);
+        if (period == null || period.toMilliseconds() <= 0) return;
+        Callable<Task<?>> reconciliationTaskFactory = new Callable<Task<?>>() {
+            @Override public Task<?> call() {
+                return Tasks.builder().dynamic(false).tag(BrooklynTaskTags.TRANSIENT_TASK_TAG)
+                        .displayName("reconcile members").body(newRescanJob("reconciling members")).build();
+            }
+        };
+        reconciliationTask = Entities.submit(this, new ScheduledTask(MutableMap.of("displayName", "scheduled[reconcile members]"), reconciliationTaskFactory)
+                .period(period)
+                .delay(period)
+                .cancelOnException(false));
+    }
+
+    private void stopReconciliation() {
+        ScheduledTask task = reconciliationTask;
+        if (task != null) task.cancel();
+        reconciliationTask = null;
+    }
+
+    private Runnable newRescanJob(final String context) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    rescanEntities();
+                } catch (Exception e) {
+                    log.warn("Error rescanning entities on "+context+" of "+DynamicGroupImpl.this+"; may be a group set against an unknown entity: "+e);
+                    log.debug("Trace for rescan entities error", e);
+                    Exceptions.propagateIfFatal(e);
+                }
+            }
+        };
+    }
+
     @Override
     public void onManagementBecomingMaster() {
         if (setChangeListener != null) {
@@ -164,20 +249,10 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         }
         setChangeListener = new MyEntitySetChangeListener();
         ((ManagementContextInternal) getManagementContext()).addEntitySetListener(setChangeListener);
-        Task<Object> rescan = Tasks.builder().displayName("rescan entities").body(
-            new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        rescanEntities();
-                    } catch (Exception e) {
-                        log.warn("Error rescanning entities on management of "+DynamicGroupImpl.this+"; may be a group set against an unknown entity: "+e);
-                        log.debug("Trace for rescan entities error", e);
-                        Exceptions.propagateIfFatal(e);
-                    }
-                }
-            }).build();
+        subscribeToFilterSensors();
+        Task<Object> rescan = Tasks.builder().displayName("rescan entities").body(newRescanJob("management")).build();
         getExecutionContext().submit(rescan);
+        startReconciliation();
     }
 
     @Override
@@ -188,6 +263,8 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
         }
         ((ManagementContextInternal) getManagementContext()).removeEntitySetListener(setChangeListener);
         setChangeListener = null;
+        unsubscribeFromFilterSensors();
+        stopReconciliation();
     }
 
     @Override
@@ -210,7 +287,7 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
             Collection<Entity> currentMembers = getMembers();
             Collection<Entity> toRemove = Sets.newLinkedHashSet(currentMembers);
 
-            for (Entity it : Iterables.filter(getManagementContext().getEntityManager().getEntities(), entityFilter())) {
+            for (Entity it : getManagementContext().getEntityManager().findEntities(entityFilter())) {
                 toRemove.remove(it);
                 if (!currentMembers.contains(it)) {
                     if (log.isDebugEnabled()) log.debug("{} rescan detected new item {}", this, it);
@@ -225,6 +302,21 @@ public class DynamicGroupImpl extends AbstractGroupImpl implements DynamicGroup
             }
             if (changed && log.isDebugEnabled())
                 log.debug("{} rescan complete, members now {}", this, getMembers());
+            rescanCount.incrementAndGet();
+            publishEvaluationMetrics();
+        }
+    }
+
+    /** Must be called holding {@link #memberChangeMutex}. */
+    private void publishEvaluationMetrics() {
+        long now = System.currentTimeMillis();
+        long count = evaluationCount.get();
+        if (lastMetricsTime > 0 && now > lastMetricsTime) {
+            sensors().set(EVALUATIONS_PER_SECOND, (count - lastMetricsEvaluationCount) * 1000d / (now - lastMetricsTime));
         }
+        sensors().set(EVALUATION_COUNT, count);
+        sensors().set(RESCAN_COUNT, rescanCount.get());
+        lastMetricsEvaluationCount = count;
+        lastMetricsTime = now;
     }
 }
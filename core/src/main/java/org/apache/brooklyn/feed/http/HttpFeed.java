@@ -30,8 +30,10 @@ import java.util.concurrent.TimeUnit;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
@@ -46,6 +48,7 @@ import org.apache.http.client.HttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Optional;
 import com.google.common.base.Supplier;
@@ -111,6 +114,13 @@ public class HttpFeed extends AbstractFeed {
             new TypeToken<SetMultimap<HttpPollIdentifier, HttpPollConfig<?>>>() {},
             "polls");
 
+    /**
+     * Whether to poll asynchronously, using the management context's shared {@link HttpPollExecutor};
+     * if unset, the {@link BrooklynFeatureEnablement#FEATURE_HTTP_FEED_ASYNC_POLLING} feature determines this.
+     */
+    @Beta
+    public static final ConfigKey<Boolean> ASYNC_POLLING = ConfigKeys.newBooleanConfigKey("asyncPolling");
+
     public static Builder builder() {
         return new Builder();
     }
@@ -127,6 +137,7 @@ public class HttpFeed extends AbstractFeed {
         private boolean suspended = false;
         private Credentials credentials;
         private String uniqueTag;
+        private Boolean asyncPolling;
         private volatile boolean built;
 
         public Builder entity(EntityLocal val) {
@@ -207,6 +218,14 @@ public class HttpFeed extends AbstractFeed {
             this.uniqueTag = uniqueTag;
             return this;
         }
+        /** @see HttpFeed#ASYNC_POLLING */
+        @Beta
+        public Builder asyncPolling() { return asyncPolling(true); }
+        @Beta
+        public Builder asyncPolling(Boolean asyncPolling) {
+            this.asyncPolling = asyncPolling;
+            return this;
+        }
         public HttpFeed build() {
             built = true;
             HttpFeed result = new HttpFeed(this);
@@ -274,6 +293,7 @@ public class HttpFeed extends AbstractFeed {
     
     protected HttpFeed(Builder builder) {
         setConfig(ONLY_IF_SERVICE_UP, builder.onlyIfServiceUp);
+        if (builder.asyncPolling != null) setConfig(ASYNC_POLLING, builder.asyncPolling);
         Map<String,String> baseHeaders = ImmutableMap.copyOf(checkNotNull(builder.headers, "headers"));
         
         SetMultimap<HttpPollIdentifier, HttpPollConfig<?>> polls = HashMultimap.<HttpPollIdentifier,HttpPollConfig<?>>create();
@@ -311,6 +331,9 @@ public class HttpFeed extends AbstractFeed {
     @Override
     protected void preStart() {
         SetMultimap<HttpPollIdentifier, HttpPollConfig<?>> polls = getConfig(POLLS);
+        HttpPollExecutor pollExecutor = isAsyncPolling() 
+                ? HttpPollExecutor.forManagementContext(((EntityInternal)entity).getManagementContext())
+                : null;
         
         for (final HttpPollIdentifier pollInfo : polls.keySet()) {
             // Though HttpClients are thread safe and can take advantage of connection pooling
@@ -319,7 +342,9 @@ public class HttpFeed extends AbstractFeed {
             //     threads of execution, it is highly recommended that each thread maintains its
             //     own dedicated instance of HttpContext.
             //  http://hc.apache.org/httpcomponents-client-ga/tutorial/html/connmgmt.html
-            final HttpClient httpClient = createHttpClient(pollInfo);
+            final HttpClient httpClient = (pollExecutor != null) 
+                    ? pollExecutor.newHttpClient(pollInfo.uriProvider.get(), pollInfo.credentials, pollInfo.connectionTimeout, pollInfo.socketTimeout)
+                    : createHttpClient(pollInfo);
 
             Set<HttpPollConfig<?>> configs = polls.get(pollInfo);
             long minPeriod = Integer.MAX_VALUE;
@@ -354,10 +379,15 @@ public class HttpFeed extends AbstractFeed {
                 throw new IllegalStateException("Unexpected http method: "+pollInfo.method);
             }
             
-            getPoller().scheduleAtFixedRate(pollJob, new DelegatingPollHandler<HttpToolResponse>(handlers), minPeriod);
+            getPoller().scheduleAtFixedRate(pollJob, new DelegatingPollHandler<HttpToolResponse>(handlers), Duration.millis(minPeriod), pollExecutor);
         }
     }
 
+    protected boolean isAsyncPolling() {
+        Boolean result = getConfig(ASYNC_POLLING);
+        return (result != null) ? result : BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_HTTP_FEED_ASYNC_POLLING);
+    }
+
     // TODO Should we really trustAll for https? Make configurable?
     private HttpClient createHttpClient(HttpPollIdentifier pollIdentifier) {
         URI uri = pollIdentifier.uriProvider.get();
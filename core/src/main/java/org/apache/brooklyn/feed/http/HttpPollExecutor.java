@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.http;
+
+import java.io.Closeable;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.http.HttpTool;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.ssl.SSLContexts;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Executes the requests of asynchronously polling {@link HttpFeed}s, shared by all feeds in a management context.
+ * <p>
+ * Requests are made on a bounded pool of threads, using clients that share a bounded pool of connections
+ * (so connections are re-used for polls of the same host), instead of each poll holding an execution manager
+ * thread, and each feed its own connections, for the duration of its request.
+ *
+ * @see #forManagementContext(ManagementContext)
+ */
+@Beta
+public class HttpPollExecutor implements Executor, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpPollExecutor.class);
+
+    public static final ConfigKey<Integer> MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.feed.http.async.maxThreads",
+            "Maximum number of threads making requests for asynchronously polling http feeds", 32);
+
+    public static final ConfigKey<Integer> MAX_QUEUED = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.feed.http.async.maxQueued",
+            "Maximum number of polls waiting for a thread; further polls are skipped until the next period", 10000);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.feed.http.async.maxConnections",
+            "Maximum number of pooled connections used by asynchronously polling http feeds", 200);
+
+    public static final ConfigKey<Integer> MAX_CONNECTIONS_PER_HOST = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.feed.http.async.maxConnectionsPerHost",
+            "Maximum number of pooled connections to any one host (and port)", 4);
+
+    /**
+     * Returns the executor shared by the feeds of the given management context, creating it if need be
+     * (configured from that management context's properties); it is held by, and shut down with, the
+     * management context's execution manager.
+     */
+    public static HttpPollExecutor forManagementContext(ManagementContext mgmt) {
+        if (!mgmt.isRunning()) throw new IllegalStateException("Management context no longer running: "+mgmt);
+        ExecutionManager executionManager = mgmt.getExecutionManager();
+        if (!(executionManager instanceof BasicExecutionManager)) {
+            throw new IllegalStateException("Cannot share http poll executor with execution manager "+executionManager+" of "+mgmt);
+        }
+        final StringConfigMap config = mgmt.getConfig();
+        return ((BasicExecutionManager)executionManager).getSharedService(HttpPollExecutor.class, new Supplier<HttpPollExecutor>() {
+            @Override public HttpPollExecutor get() {
+                return new HttpPollExecutor(config);
+            }});
+    }
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong totalQueuedNanos = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public HttpPollExecutor(StringConfigMap config) {
+        int maxThreads = Math.max(1, config.getConfig(MAX_THREADS));
+        int maxQueued = Math.max(1, config.getConfig(MAX_QUEUED));
+
+        SSLConnectionSocketFactory sslSocketFactory;
+        try {
+            // as for the clients made by HttpFeed for synchronous polling, trust all https certificates
+            SSLContext sslContext = SSLContexts.custom().loadTrustMaterial(null, new HttpTool.TrustAllStrategy()).build();
+            sslSocketFactory = new SSLConnectionSocketFactory(sslContext, NoopHostnameVerifier.INSTANCE);
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+        Registry<ConnectionSocketFactory> socketFactories = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                .register("https", sslSocketFactory)
+                .build();
+        connectionManager = new PoolingHttpClientConnectionManager(socketFactories);
+        connectionManager.setMaxTotal(Math.max(1, config.getConfig(MAX_CONNECTIONS)));
+        connectionManager.setDefaultMaxPerRoute(Math.max(1, config.getConfig(MAX_CONNECTIONS_PER_HOST)));
+
+        executor = new ThreadPoolExecutor(maxThreads, maxThreads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(maxQueued),
+                new ThreadFactoryBuilder().setNameFormat("brooklyn-http-poll-%d").setDaemon(true).build());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Creates a client for the given request settings, using the shared pool of connections.
+     * Clients are cheap to create, and can be kept for repeated polls.
+     */
+    public HttpClient newHttpClient(@Nullable URI uri, Optional<Credentials> credentials, @Nullable Duration connectionTimeout, @Nullable Duration socketTimeout) {
+        RequestConfig.Builder requestConfig = RequestConfig.custom();
+        if (connectionTimeout != null) requestConfig.setConnectTimeout(toIntMillis(connectionTimeout, "connectionTimeout"));
+        if (socketTimeout != null) requestConfig.setSocketTimeout(toIntMillis(socketTimeout, "socketTimeout"));
+        CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+        if (uri != null && credentials.isPresent()) {
+            credentialsProvider.setCredentials(new AuthScope(uri.getHost(), uri.getPort()), credentials.get());
+        }
+        return HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                // closing a client must not shut down the pool shared with other feeds
+                .setConnectionManagerShared(true)
+                .setDefaultRequestConfig(requestConfig.build())
+                .setDefaultCredentialsProvider(credentialsProvider)
+                .setRedirectStrategy(new LaxRedirectStrategy())
+                .build();
+    }
+
+    private static int toIntMillis(Duration val, String name) {
+        long millis = val.toMilliseconds();
+        if (millis > Integer.MAX_VALUE) throw new IllegalStateException("HttpClient only accepts upto max-int millis for "+name+", but given "+val);
+        return (int) millis;
+    }
+
+    /**
+     * Runs the given poll on one of the shared threads, recording its queue time and latency.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException if too many polls are already waiting
+     */
+    @Override
+    public void execute(final Runnable poll) {
+        final long queuedAt = System.nanoTime();
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    long startedAt = System.nanoTime();
+                    totalQueuedNanos.addAndGet(startedAt - queuedAt);
+                    inFlight.incrementAndGet();
+                    try {
+                        poll.run();
+                        completed.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        throw e;
+                    } finally {
+                        inFlight.decrementAndGet();
+                        long latency = System.nanoTime() - startedAt;
+                        totalLatencyNanos.addAndGet(latency);
+                        long max;
+                        while ((max = maxLatencyNanos.get()) < latency && !maxLatencyNanos.compareAndSet(max, latency)) {}
+                    }
+                }
+                @Override
+                public String toString() {
+                    return poll.toString();
+                }
+            });
+        } catch (RuntimeException e) {
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /** Counts of in-flight, queued and completed polls, their mean/max latency, and use of the connection pool. */
+    public Map<String, Object> getMetrics() {
+        long done = completed.get() + failed.get();
+        PoolStats connections = connectionManager.getTotalStats();
+        return MutableMap.<String, Object>builder()
+                .put("threads", executor.getPoolSize())
+                .put("inFlight", inFlight.get())
+                .put("queued", executor.getQueue().size())
+                .put("completed", completed.get())
+                .put("failed", failed.get())
+                .put("rejected", rejected.get())
+                .put("meanQueueTime", done > 0 ? Duration.nanos(totalQueuedNanos.get() / done) : null)
+                .put("meanLatency", done > 0 ? Duration.nanos(totalLatencyNanos.get() / done) : null)
+                .put("maxLatency", done > 0 ? Duration.nanos(maxLatencyNanos.get()) : null)
+                .put("connectionsLeased", connections.getLeased())
+                .put("connectionsAvailable", connections.getAvailable())
+                .put("connectionsPending", connections.getPending())
+                .build();
+    }
+
+    public void shutdownNow() {
+        if (log.isDebugEnabled()) log.debug("Shutting down {}: {}", this, getMetrics());
+        executor.shutdownNow();
+        connectionManager.shutdown();
+    }
+
+    /** As {@link #shutdownNow()}; called when the execution manager holding this is shut down. */
+    @Override
+    public void close() {
+        shutdownNow();
+    }
+}
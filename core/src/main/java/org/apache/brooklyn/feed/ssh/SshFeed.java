@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.Entity;
 import org.apache.brooklyn.api.entity.EntityLocal;
@@ -35,22 +36,28 @@ import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
+import org.apache.brooklyn.core.feed.PollHandler;
 import org.apache.brooklyn.core.feed.Poller;
 import org.apache.brooklyn.core.location.Locations;
 import org.apache.brooklyn.core.location.Machines;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Objects;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
@@ -105,6 +112,23 @@ public class SshFeed extends AbstractFeed {
             new TypeToken<SetMultimap<SshPollIdentifier, SshPollConfig<?>>>() {},
             "polls");
     
+    /**
+     * Whether to combine the commands of all polls with the same period into one script, run on the machine
+     * in a single round-trip each period (always as a script, regardless of {@link #EXEC_AS_COMMAND}).
+     */
+    @Beta
+    public static final ConfigKey<Boolean> BATCH_POLLS = ConfigKeys.newBooleanConfigKey("batchPolls");
+
+    /**
+     * The maximum number of batches of polls to run on a machine at once, across all feeds (using
+     * the machine's mutexes); when none is free, that batch is skipped until its next period.
+     */
+    @Beta
+    public static final ConfigKey<Integer> MAX_CONCURRENT_BATCHES_PER_MACHINE = ConfigKeys.newIntegerConfigKey(
+            "maxConcurrentBatchesPerMachine", 
+            "Maximum number of batches of polls to run at once on a machine (when batching polls)", 
+            2);
+
     public static Builder builder() {
         return new Builder();
     }
@@ -116,6 +140,8 @@ public class SshFeed extends AbstractFeed {
         private Duration period = Duration.of(500, TimeUnit.MILLISECONDS);
         private List<SshPollConfig<?>> polls = Lists.newArrayList();
         private boolean execAsCommand = false;
+        private boolean batchPolls = false;
+        private Integer maxConcurrentBatchesPerMachine;
         private String uniqueTag;
         private volatile boolean built;
         
@@ -157,6 +183,20 @@ public class SshFeed extends AbstractFeed {
             execAsCommand = false;
             return this;
         }
+        /** @see SshFeed#BATCH_POLLS */
+        @Beta
+        public Builder batchPolls() { return batchPolls(true); }
+        @Beta
+        public Builder batchPolls(boolean batchPolls) {
+            this.batchPolls = batchPolls;
+            return this;
+        }
+        /** @see SshFeed#MAX_CONCURRENT_BATCHES_PER_MACHINE */
+        @Beta
+        public Builder maxConcurrentBatchesPerMachine(int val) {
+            this.maxConcurrentBatchesPerMachine = val;
+            return this;
+        }
         public Builder uniqueTag(String uniqueTag) {
             this.uniqueTag = uniqueTag;
             return this;
@@ -205,6 +245,10 @@ public class SshFeed extends AbstractFeed {
         return Machines.findUniqueMachineLocation(entity.getLocations(), SshMachineLocation.class).orNull();
     }
 
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong batchedPollCount = new AtomicLong();
+    private final AtomicLong skippedBatchCount = new AtomicLong();
+
     /**
      * For rebind; do not call directly; use builder
      */
@@ -215,6 +259,8 @@ public class SshFeed extends AbstractFeed {
         setConfig(ONLY_IF_SERVICE_UP, builder.onlyIfServiceUp);
         setConfig(MACHINE, builder.machine != null ? builder.machine : null);
         setConfig(EXEC_AS_COMMAND, builder.execAsCommand);
+        setConfig(BATCH_POLLS, builder.batchPolls);
+        if (builder.maxConcurrentBatchesPerMachine != null) setConfig(MAX_CONCURRENT_BATCHES_PER_MACHINE, builder.maxConcurrentBatchesPerMachine);
         
         SetMultimap<SshPollIdentifier, SshPollConfig<?>> polls = HashMultimap.<SshPollIdentifier,SshPollConfig<?>>create();
         for (SshPollConfig<?> config : builder.polls) {
@@ -239,6 +285,9 @@ public class SshFeed extends AbstractFeed {
     @Override
     protected void preStart() {
         SetMultimap<SshPollIdentifier, SshPollConfig<?>> polls = getConfig(POLLS);
+        boolean batchPolls = Boolean.TRUE.equals(getConfig(BATCH_POLLS));
+        // when batching, one batch per period, so each poll is still run as often as configured
+        Map<Long, Map<SshPollIdentifier, PollHandler<SshPollValue>>> batches = Maps.newLinkedHashMap();
         
         for (final SshPollIdentifier pollInfo : polls.keySet()) {
             Set<SshPollConfig<?>> configs = polls.get(pollInfo);
@@ -250,6 +299,16 @@ public class SshFeed extends AbstractFeed {
                 if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
             }
             
+            if (batchPolls) {
+                Map<SshPollIdentifier, PollHandler<SshPollValue>> batch = batches.get(minPeriod);
+                if (batch == null) {
+                    batch = Maps.newLinkedHashMap();
+                    batches.put(minPeriod, batch);
+                }
+                batch.put(pollInfo, new DelegatingPollHandler<SshPollValue>(handlers));
+                continue;
+            }
+            
             getPoller().scheduleAtFixedRate(
                     new Callable<SshPollValue>() {
                         public SshPollValue call() throws Exception {
@@ -258,6 +317,17 @@ public class SshFeed extends AbstractFeed {
                     new DelegatingPollHandler<SshPollValue>(handlers),
                     minPeriod);
         }
+        
+        for (Map.Entry<Long, Map<SshPollIdentifier, PollHandler<SshPollValue>>> batch : batches.entrySet()) {
+            final List<SshPollIdentifier> batchPollInfos = ImmutableList.copyOf(batch.getValue().keySet());
+            getBatchPoller().scheduleAtFixedRate(
+                    new Callable<Map<SshPollIdentifier, SshPollValue>>() {
+                        public Map<SshPollIdentifier, SshPollValue> call() throws Exception {
+                            return execBatch(batchPollInfos);
+                        }}, 
+                    new BatchPollHandler(batch.getValue()),
+                    batch.getKey());
+        }
     }
     
     @SuppressWarnings("unchecked")
@@ -265,6 +335,27 @@ public class SshFeed extends AbstractFeed {
         return (Poller<SshPollValue>) super.getPoller();
     }
     
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Poller<Map<SshPollIdentifier, SshPollValue>> getBatchPoller() {
+        return (Poller) super.getPoller();
+    }
+    
+    /**
+     * Returns the number of batches run (i.e. round-trips to the machine), the number of polls run in them,
+     * the round-trips saved by batching, and the number of batches skipped as the machine had too many running.
+     */
+    @Beta
+    public Map<String, Object> getBatchMetrics() {
+        long batches = batchCount.get();
+        long batchedPolls = batchedPollCount.get();
+        return MutableMap.<String, Object>builder()
+                .put("batches", batches)
+                .put("batchedPolls", batchedPolls)
+                .put("roundTripsSaved", batchedPolls - batches)
+                .put("skippedBatches", skippedBatchCount.get())
+                .build();
+    }
+    
     private SshPollValue exec(String command, Map<String,String> env) throws IOException {
         SshMachineLocation machine = getMachine();
         Boolean execAsCommand = getConfig(EXEC_AS_COMMAND);
@@ -287,4 +378,109 @@ public class SshFeed extends AbstractFeed {
 
         return new SshPollValue(machine, exitStatus, new String(stdout.toByteArray()), new String(stderr.toByteArray()));
     }
+
+    /**
+     * Runs the commands of the given polls in one script, returning the value for each (or null for those which
+     * have no result); returns null if the batch is skipped because the machine has too many batches running.
+     */
+    private Map<SshPollIdentifier, SshPollValue> execBatch(List<SshPollIdentifier> pollInfos) throws IOException {
+        SshMachineLocation machine = getMachine();
+        String mutexId = tryAcquireBatchMutex(machine);
+        if (mutexId == null) {
+            if (log.isTraceEnabled()) log.trace("Ssh polling for {} skipped, as too many batches running on {}", entity, machine);
+            skippedBatchCount.incrementAndGet();
+            return null;
+        }
+        try {
+            SshPollBatch batch = new SshPollBatch();
+            for (SshPollIdentifier pollInfo : pollInfos) {
+                batch.add(pollInfo.command.get(), pollInfo.env.get());
+            }
+            if (log.isTraceEnabled()) log.trace("Ssh polling for {}, executing batch of {} commands", machine, batch.size());
+            ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+            ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+            ConfigBag flags = ConfigBag.newInstance()
+                .configure(SshTool.PROP_NO_EXTRA_OUTPUT, true)
+                .configure(SshTool.PROP_OUT_STREAM, stdout)
+                .configure(SshTool.PROP_ERR_STREAM, stderr);
+            machine.execScript(flags.getAllConfig(), "ssh-feed-batch", batch.toScript());
+            batchCount.incrementAndGet();
+            batchedPollCount.addAndGet(batch.size());
+            
+            List<SshPollValue> values = batch.parse(machine, new String(stdout.toByteArray()), new String(stderr.toByteArray()));
+            Map<SshPollIdentifier, SshPollValue> result = Maps.newLinkedHashMap();
+            for (int i = 0; i < pollInfos.size(); i++) {
+                result.put(pollInfos.get(i), values.get(i));
+            }
+            return result;
+        } finally {
+            machine.releaseMutex(mutexId);
+        }
+    }
+
+    private String tryAcquireBatchMutex(SshMachineLocation machine) {
+        int max = getConfig(MAX_CONCURRENT_BATCHES_PER_MACHINE);
+        for (int i = 0; i < max; i++) {
+            String mutexId = "ssh-feed-batch-" + i;
+            if (machine.tryAcquireMutex(mutexId, "batch of ssh polls for " + entity)) return mutexId;
+        }
+        return null;
+    }
+
+    /** Passes the value for each poll of a batch to that poll's handler. */
+    private static class BatchPollHandler implements PollHandler<Map<SshPollIdentifier, SshPollValue>> {
+        private final Map<SshPollIdentifier, PollHandler<SshPollValue>> handlers;
+
+        BatchPollHandler(Map<SshPollIdentifier, PollHandler<SshPollValue>> handlers) {
+            this.handlers = ImmutableMap.copyOf(handlers);
+        }
+
+        @Override
+        public boolean checkSuccess(Map<SshPollIdentifier, SshPollValue> val) {
+            // checked for each poll, in onSuccess
+            return true;
+        }
+
+        @Override
+        public void onSuccess(Map<SshPollIdentifier, SshPollValue> val) {
+            if (val == null) return;
+            for (Map.Entry<SshPollIdentifier, PollHandler<SshPollValue>> entry : handlers.entrySet()) {
+                PollHandler<SshPollValue> handler = entry.getValue();
+                SshPollValue value = val.get(entry.getKey());
+                try {
+                    if (value == null) {
+                        handler.onException(new IllegalStateException("No result for command in batch of ssh polls (batch interrupted?)"));
+                    } else if (handler.checkSuccess(value)) {
+                        handler.onSuccess(value);
+                    } else {
+                        handler.onFailure(value);
+                    }
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    handler.onException(e);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Map<SshPollIdentifier, SshPollValue> val) {
+            onSuccess(val);
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            for (PollHandler<SshPollValue> handler : handlers.values()) {
+                handler.onException(exception);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            List<String> descriptions = Lists.newArrayList();
+            for (PollHandler<SshPollValue> handler : handlers.values()) {
+                descriptions.add(handler.getDescription());
+            }
+            return "batch" + descriptions;
+        }
+    }
 }
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.ssh;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.location.ssh.SshMachineLocation;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.StringEscapes.BashStringEscapes;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+
+/**
+ * Combines the commands of several ssh polls into one script, for {@link SshFeed} to run in a single
+ * round-trip, and splits the output of that script back into a {@link SshPollValue} for each command.
+ * <p>
+ * Each command runs in a subshell of its own, with its own environment, after which a line with a
+ * (random) marker, the command's index and its exit status is written to stdout, and a line with the
+ * marker and index to stderr. A command failing does not stop those after it from running.
+ */
+class SshPollBatch {
+
+    private final String marker = "BROOKLYN_SSH_FEED_" + Identifiers.makeRandomId(8);
+    private final List<String> commands = Lists.newArrayList();
+    private final List<Map<String, String>> envs = Lists.newArrayList();
+
+    void add(String command, @Nullable Map<String, String> env) {
+        commands.add(command);
+        envs.add(env != null ? env : ImmutableMap.<String, String>of());
+    }
+
+    int size() {
+        return commands.size();
+    }
+
+    List<String> toScript() {
+        List<String> result = Lists.newArrayList();
+        // the default script header has "bash -e", which would stop the script at the first command that fails
+        result.add("set +e");
+        for (int i = 0; i < commands.size(); i++) {
+            result.add("(");
+            for (Map.Entry<String, String> entry : envs.get(i).entrySet()) {
+                result.add("export " + entry.getKey() + "=" + BashStringEscapes.wrapBash(entry.getValue()));
+            }
+            result.add(commands.get(i));
+            // stdin closed, so that a command cannot consume the rest of the script
+            result.add(") < /dev/null");
+            // preceded by a newline, in case the command's output does not end with one
+            result.add("printf '\\n%s %d %d\\n' " + marker + " " + i + " $?");
+            result.add("printf '\\n%s %d\\n' " + marker + " " + i + " >&2");
+        }
+        return result;
+    }
+
+    /**
+     * Returns the value for each command, in the order added; the value is null for a command
+     * with no result (e.g. if the script was interrupted before it ran), and for all those after it.
+     */
+    List<SshPollValue> parse(SshMachineLocation machine, String stdout, String stderr) {
+        List<SshPollValue> result = Lists.newArrayList();
+        int outPos = 0;
+        int errPos = 0;
+        for (int i = 0; i < commands.size(); i++) {
+            String outMarker = "\n" + marker + " " + i + " ";
+            int outEnd = (outPos < 0) ? -1 : stdout.indexOf(outMarker, outPos);
+            int lineEnd = (outEnd < 0) ? -1 : stdout.indexOf('\n', outEnd + outMarker.length());
+            Integer exitStatus = null;
+            if (lineEnd >= 0) {
+                try {
+                    exitStatus = Integer.parseInt(stdout.substring(outEnd + outMarker.length(), lineEnd).trim());
+                } catch (NumberFormatException e) {
+                    // treat as no result
+                }
+            }
+            if (exitStatus == null) {
+                outPos = -1;
+                result.add(null);
+                continue;
+            }
+            String out = stdout.substring(outPos, outEnd);
+            outPos = lineEnd + 1;
+
+            String errMarker = "\n" + marker + " " + i + "\n";
+            int errEnd = stderr.indexOf(errMarker, errPos);
+            String err;
+            if (errEnd < 0) {
+                err = stderr.substring(errPos);
+                errPos = stderr.length();
+            } else {
+                err = stderr.substring(errPos, errEnd);
+                errPos = errEnd + errMarker.length();
+            }
+            result.add(new SshPollValue(machine, exitStatus, out, err));
+        }
+        return result;
+    }
+}
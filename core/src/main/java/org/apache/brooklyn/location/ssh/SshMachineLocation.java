@@ -53,6 +53,7 @@ import org.apache.brooklyn.api.location.PortSupplier;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.config.ConfigKey.HasConfigKey;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.BrooklynLogging;
 import org.apache.brooklyn.core.config.BasicConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
@@ -254,7 +255,8 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
     public static final Set<ConfigKey<?>> REUSABLE_SSH_PROPS = ImmutableSet.<ConfigKey<?>>of(
             STDOUT, STDERR, SCRIPT_DIR, CLOSE_CONNECTION,
             SshTool.PROP_SCRIPT_HEADER, SshTool.PROP_PERMISSIONS, SshTool.PROP_LAST_MODIFICATION_DATE,
-            SshTool.PROP_LAST_ACCESS_DATE, SshTool.PROP_OWNER_UID, SshTool.PROP_SSH_RETRY_DELAY);
+            SshTool.PROP_LAST_ACCESS_DATE, SshTool.PROP_OWNER_UID, SshTool.PROP_SSH_RETRY_DELAY,
+            SshTool.PROP_PERSISTENT_SHELL);
 
     public static final Set<HasConfigKey<?>> ALL_SSH_CONFIG_KEYS =
             ImmutableSet.<HasConfigKey<?>>builder()
@@ -750,7 +752,13 @@ public class SshMachineLocation extends AbstractLocation implements MachineLocat
         return execCommands(MutableMap.<String,Object>of(), summaryForLogging, commands, env);
     }
     public int execCommands(Map<String,?> props, String summaryForLogging, List<String> commands, Map<String,?> env) {
-        return newExecWithLoggingHelpers().execCommands(augmentPropertiesWithSshConfigGivenToProps(props), summaryForLogging, commands, env);
+        Map<String, Object> augmentedProps = augmentPropertiesWithSshConfigGivenToProps(props);
+        if (!augmentedProps.containsKey(SshTool.PROP_PERSISTENT_SHELL.getName())
+                && BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_SSH_PERSISTENT_SHELL)) {
+            // the tool decides which commands are short enough
+            augmentedProps.put(SshTool.PROP_PERSISTENT_SHELL.getName(), true);
+        }
+        return newExecWithLoggingHelpers().execCommands(augmentedProps, summaryForLogging, commands, env);
     }
 
     /**
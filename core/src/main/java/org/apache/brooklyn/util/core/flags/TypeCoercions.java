@@ -33,10 +33,13 @@ import java.net.URI;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -77,6 +80,7 @@ import com.google.common.base.Function;
 import com.google.common.base.Objects;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Predicate;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashBasedTable;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -100,6 +104,44 @@ public class TypeCoercions {
     @GuardedBy("TypeCoercions.class")
     private static Table<Class, Class, Function> registry = HashBasedTable.create();
 
+    /**
+     * Copy of the rows of the {@link #registry}, for reading without holding the lock; 
+     * replaced (rather than modified) when an adapter is registered, as that is rare.
+     */
+    private static volatile Map<Class, Map<Class, Function>> registrySnapshot = ImmutableMap.of();
+    
+    /** Incremented whenever the registry changes, so cached plans using an old registry are discarded. */
+    private static volatile int registryVersion = 0;
+
+    /**
+     * The adapters found for coercing from a (value) class to a target type, so that the methods of the classes 
+     * and the registry need only be searched once for each combination.
+     * <p>
+     * The plans refer to methods of the source class, so weak keys alone would never let an entry be collected; 
+     * the values are soft, so that under memory pressure the plans for classes (and their class loaders) 
+     * that are otherwise no longer used can be discarded, and recomputed if needed again.
+     */
+    private static final ConcurrentMap<Class<?>, ConcurrentMap<Class<?>, CoercionPlan>> coercionPlans = 
+            CacheBuilder.newBuilder().weakKeys().softValues().<Class<?>, ConcurrentMap<Class<?>, CoercionPlan>>build().asMap();
+
+    /**
+     * The adapters, if any, for coercing from one class to another: an {@code asXxx()} method on the source class, 
+     * a static {@code fromXxx(source)} method on the target class, and a function in the registry. 
+     */
+    private static class CoercionPlan {
+        final int registryVersion;
+        final Method asMethod;
+        final Method fromMethod;
+        final Function registryAdapter;
+        
+        CoercionPlan(int registryVersion, Method asMethod, Method fromMethod, Function registryAdapter) {
+            this.registryVersion = registryVersion;
+            this.asMethod = asMethod;
+            this.fromMethod = fromMethod;
+            this.registryAdapter = registryAdapter;
+        }
+    }
+
     /**
      * Attempts to coerce {@code value} to {@code targetType}.
      * <p>
@@ -194,35 +236,23 @@ public class TypeCoercions {
             return (T) value.toString();
         }
 
+        CoercionPlan plan = getCoercionPlan(value.getClass(), targetType);
+        
         //look for value.asType where Type is castable to targetType
-        String targetTypeSimpleName = getVerySimpleName(targetType);
-        if (targetTypeSimpleName!=null && targetTypeSimpleName.length()>0) {
-            for (Method m: value.getClass().getMethods()) {
-                if (m.getName().startsWith("as") && m.getParameterTypes().length==0 &&
-                        targetType.isAssignableFrom(m.getReturnType()) ) {
-                    if (m.getName().equals("as"+getVerySimpleName(m.getReturnType()))) {
-                        try {
-                            return (T) m.invoke(value);
-                        } catch (Exception e) {
-                            throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
-                        }
-                    }
-                }
+        if (plan.asMethod != null) {
+            try {
+                return (T) plan.asMethod.invoke(value);
+            } catch (Exception e) {
+                throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+plan.asMethod.getName()+" adapting failed, "+e);
             }
         }
         
         //now look for static TargetType.fromType(Type t) where value instanceof Type  
-        for (Method m: targetType.getMethods()) {
-            if (((m.getModifiers()&Modifier.STATIC)==Modifier.STATIC) && 
-                    m.getName().startsWith("from") && m.getParameterTypes().length==1 &&
-                    m.getParameterTypes()[0].isInstance(value)) {
-                if (m.getName().equals("from"+getVerySimpleName(m.getParameterTypes()[0]))) {
-                    try {
-                        return (T) m.invoke(null, value);
-                    } catch (Exception e) {
-                        throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+m.getName()+" adapting failed, "+e);
-                    }
-                }
+        if (plan.fromMethod != null) {
+            try {
+                return (T) plan.fromMethod.invoke(null, value);
+            } catch (Exception e) {
+                throw new ClassCoercionException("Cannot coerce type "+value.getClass()+" to "+targetType.getCanonicalName()+" ("+value+"): "+plan.fromMethod.getName()+" adapting failed, "+e);
             }
         }
         
@@ -250,24 +280,19 @@ public class TypeCoercions {
         }
 
         //now look in registry
-        synchronized (TypeCoercions.class) {
-            Map<Class, Function> adapters = registry.row(targetType);
-            for (Map.Entry<Class, Function> entry : adapters.entrySet()) {
-                if (entry.getKey().isInstance(value)) {
-                    T result = (T) entry.getValue().apply(value);
-                    
-                    // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
-                    // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
-                    // First check that value has changed, to avoid stack overflow!
-                    if (!Objects.equal(value, result) && targetTypeToken.getType() instanceof ParameterizedType) {
-                        // Could duplicate check for `result instanceof Collection` etc; but recursive call
-                        // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
-                        // and just return the result.
-                        return coerce(result, targetTypeToken);
-                    }
-                    return result;
-                }
-            }
+        if (plan.registryAdapter != null) {
+            T result = (T) plan.registryAdapter.apply(value);
+            
+            // Check if need to unwrap again (e.g. if want List<Integer> and are given a String "1,2,3"
+            // then we'll have so far converted to List.of("1", "2", "3"). Call recursively.
+            // First check that value has changed, to avoid stack overflow!
+            if (!Objects.equal(value, result) && targetTypeToken.getType() instanceof ParameterizedType) {
+                // Could duplicate check for `result instanceof Collection` etc; but recursive call
+                // will be fine as if that doesn't match we'll safely reach `targetType.isInstance(value)`
+                // and just return the result.
+                return coerce(result, targetTypeToken);
+            }
+            return result;
         }
 
         //not found
@@ -285,6 +310,67 @@ public class TypeCoercions {
         throw new ClassCoercionException("Cannot coerce type "+value.getClass().getCanonicalName()+" to "+targetType.getCanonicalName()+" ("+value+"): no adapter known");
     }
 
+    private static CoercionPlan getCoercionPlan(Class<?> sourceType, Class<?> targetType) {
+        ConcurrentMap<Class<?>, CoercionPlan> plansForSource = coercionPlans.get(sourceType);
+        if (plansForSource == null) {
+            ConcurrentMap<Class<?>, CoercionPlan> newPlans = new ConcurrentHashMap<Class<?>, CoercionPlan>();
+            plansForSource = coercionPlans.putIfAbsent(sourceType, newPlans);
+            // (held strongly here, so not cleared before use even if the soft value is collected)
+            if (plansForSource == null) plansForSource = newPlans;
+        }
+        CoercionPlan plan = plansForSource.get(targetType);
+        int version = registryVersion;
+        if (plan == null || plan.registryVersion != version) {
+            plan = newCoercionPlan(sourceType, targetType, version);
+            plansForSource.put(targetType, plan);
+        }
+        return plan;
+    }
+    
+    private static CoercionPlan newCoercionPlan(Class<?> sourceType, Class<?> targetType, int version) {
+        Method asMethod = null;
+        Method fromMethod = null;
+        Function registryAdapter = null;
+        
+        String targetTypeSimpleName = getVerySimpleName(targetType);
+        if (targetTypeSimpleName!=null && targetTypeSimpleName.length()>0) {
+            for (Method m: sourceType.getMethods()) {
+                if (m.getName().startsWith("as") && m.getParameterTypes().length==0 &&
+                        targetType.isAssignableFrom(m.getReturnType()) ) {
+                    if (m.getName().equals("as"+getVerySimpleName(m.getReturnType()))) {
+                        asMethod = m;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        if (asMethod == null) {
+            for (Method m: targetType.getMethods()) {
+                if (((m.getModifiers()&Modifier.STATIC)==Modifier.STATIC) && 
+                        m.getName().startsWith("from") && m.getParameterTypes().length==1 &&
+                        m.getParameterTypes()[0].isAssignableFrom(sourceType)) {
+                    if (m.getName().equals("from"+getVerySimpleName(m.getParameterTypes()[0]))) {
+                        fromMethod = m;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        Map<Class, Function> adapters = registrySnapshot.get(targetType);
+        if (adapters != null) {
+            for (Map.Entry<Class, Function> entry : adapters.entrySet()) {
+                if (entry.getKey().isAssignableFrom(sourceType)) {
+                    registryAdapter = entry.getValue();
+                    break;
+                }
+            }
+        }
+        
+        return new CoercionPlan(version, asMethod, fromMethod, registryAdapter);
+    }
+
     /**
      * Returns a function that does a type coercion to the given type. For example,
      * {@code TypeCoercions.function(Double.class)} will return a function that will
@@ -533,7 +619,14 @@ public class TypeCoercions {
 
     /** Registers an adapter for use with type coercion. Returns any old adapter. */
     public synchronized static <A,B> Function registerAdapter(Class<A> sourceType, Class<B> targetType, Function<? super A,B> fn) {
-        return registry.put(targetType, sourceType, fn);
+        Function result = registry.put(targetType, sourceType, fn);
+        Map<Class, Map<Class, Function>> snapshot = Maps.newHashMap();
+        for (Map.Entry<Class, Map<Class, Function>> row : registry.rowMap().entrySet()) {
+            snapshot.put(row.getKey(), Collections.unmodifiableMap(Maps.newLinkedHashMap(row.getValue())));
+        }
+        registrySnapshot = Collections.unmodifiableMap(snapshot);
+        registryVersion++;
+        return result;
     }
 
     static { BrooklynInitialization.initTypeCoercionStandardAdapters(); }
@@ -32,6 +32,8 @@ import org.apache.brooklyn.location.ssh.SshMachineLocation;
 import org.apache.brooklyn.util.stream.KnownSizeInputStream;
 import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
+
 /**
  * Defines the methods available on the various different implementations of SSH,
  * and configuration options which are also generally available.
@@ -87,6 +89,10 @@ public interface SshTool extends ShellTool {
     public static final ConfigKey<Long> PROP_LAST_MODIFICATION_DATE = newConfigKey("lastModificationDate", "Last-modification-date to be set on files copied/created (should be UTC/1000, ie seconds since 1970; default 0 usually means current)", 0L);
     public static final ConfigKey<Long> PROP_LAST_ACCESS_DATE = newConfigKey("lastAccessDate", "Last-access-date to be set on files copied/created (should be UTC/1000, ie seconds since 1970; default 0 usually means lastModificationDate)", 0L);
     public static final ConfigKey<Integer> PROP_OWNER_UID = newConfigKey("ownerUid", "Default owner UID (not username) for files created on remote machine; default is unset", -1);
+    @Beta
+    public static final ConfigKey<Boolean> PROP_PERSISTENT_SHELL = newConfigKey("persistentShell", "Whether execCommands may run short commands "
+            + "through a long-lived shell session on the connection, rather than opening a new session for each (if supported by the tool, "
+            + "and not running as root, allocating a PTY or executing asynchronously)", false);
     
     // TODO remove unnecessary "public static final" modifiers
     
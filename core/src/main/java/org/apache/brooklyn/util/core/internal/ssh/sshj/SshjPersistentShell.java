@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.internal.ssh.sshj;
+
+import static com.google.common.base.Preconditions.checkState;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
+
+import net.schmizz.sshj.connection.channel.direct.Session;
+import net.schmizz.sshj.connection.channel.direct.Session.Command;
+
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Identifiers;
+import org.apache.brooklyn.util.text.StringEscapes.BashStringEscapes;
+import org.apache.brooklyn.util.time.CountdownTimer;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A long-lived shell, on a session of an ssh connection, through which {@link SshjTool} runs short commands
+ * one after another, saving the round-trips of opening (and closing) a session for each.
+ * <p>
+ * Each command is written to the shell's stdin, to be evaluated in a subshell with stdin closed (so that it cannot
+ * consume what follows), after which a line with a (random) marker and the command's exit status is written to
+ * stdout, and a line with the marker to stderr; the output before those lines is the command's.
+ * <p>
+ * Commands run one at a time, by the caller holding the shell's lock. If a command times out, or the shell ends,
+ * the shell is closed and cannot be used again.
+ */
+class SshjPersistentShell implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(SshjPersistentShell.class);
+
+    /**
+     * Runs the readers of the output of all shells; each reader ends when its shell does, 
+     * so idle threads are re-used for the shells opened later.
+     */
+    private static final ExecutorService READERS = Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+            .setNameFormat("brooklyn-ssh-persistent-shell-reader-%d")
+            .setDaemon(true)
+            .build());
+
+    private final Session session;
+    private final OutputStream stdin;
+    private final OutputReader stdout;
+    private final OutputReader stderr;
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile boolean closed;
+
+    SshjPersistentShell(Session session) throws IOException {
+        this.session = session;
+        // bash, as assumed by the direct header and the scripts of ShellTool
+        Command command = session.exec("exec bash");
+        stdin = command.getOutputStream();
+        stdout = new OutputReader(command.getInputStream());
+        stderr = new OutputReader(command.getErrorStream());
+        READERS.execute(stdout);
+        READERS.execute(stderr);
+    }
+
+    boolean isOpen() {
+        return !closed && session.isOpen();
+    }
+
+    /** @return whether the lock was acquired, i.e. the shell is not in use by another caller */
+    boolean tryLock() {
+        return lock.tryLock();
+    }
+
+    void unlock() {
+        lock.unlock();
+    }
+
+    /**
+     * Runs the command (the caller holding the lock), writing its stdout and stderr to the given streams
+     * (if not null) when it completes.
+     *
+     * @return the exit status of the command, or null if it did not complete within the timeout
+     *         (in which case the shell is closed, ending the command)
+     * @throws ShellUnavailableException if the shell had already ended, so the command was not sent
+     * @throws IOException if the shell failed after the command was sent, in which case it may or may not have run
+     */
+    Integer exec(String command, OutputStream out, OutputStream err, Duration timeout) throws IOException {
+        checkState(lock.isHeldByCurrentThread(), "lock not held");
+        if (!isOpen()) throw new ShellUnavailableException("Shell closed, so cannot run: "+command);
+        String marker = "BROOKLYN_SSH_SHELL_" + Identifiers.makeRandomId(8);
+        CountdownTimer timer = timeout.countdownTimer();
+        try {
+            // anything written since the last command finished (e.g. by a process it left in the background) is not this command's
+            stdout.discard();
+            stderr.discard();
+            stdin.write(frame(command, marker).getBytes(Charsets.UTF_8));
+            stdin.flush();
+
+            MarkedOutput outResult = stdout.awaitMarker(marker, timer);
+            MarkedOutput errResult = (outResult == null) ? null : stderr.awaitMarker(marker, timer);
+            if (outResult == null || errResult == null) {
+                LOG.debug("Timeout after {} running command in persistent shell on {}; closing shell", timeout, session);
+                close();
+                return null;
+            }
+            if (out != null) out.write(outResult.output);
+            if (err != null) err.write(errResult.output);
+            try {
+                return Integer.parseInt(outResult.lineRemainder.trim());
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid exit status '"+outResult.lineRemainder+"' from persistent shell", e);
+            }
+        } catch (IOException e) {
+            close();
+            throw e;
+        } catch (InterruptedException e) {
+            close();
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @VisibleForTesting
+    static String frame(String command, String marker) {
+        // eval, so that a command which does not parse fails by itself rather than consuming what follows;
+        // the markers are preceded by a newline, in case the command's output does not end with one
+        return "( eval " + BashStringEscapes.wrapBash(command) + " ) < /dev/null\n"
+                + "printf '\\n%s %d\\n' " + marker + " $?\n"
+                + "printf '\\n%s\\n' " + marker + " >&2\n";
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            session.close();
+        } catch (IOException e) {
+            if (LOG.isDebugEnabled()) LOG.debug("<< exception closing persistent shell on "+session+"; continuing", e);
+        }
+    }
+
+    /** Thrown when the shell cannot be used, before anything is sent to it; the command can be run some other way. */
+    static class ShellUnavailableException extends IOException {
+        private static final long serialVersionUID = -1486214472343413564L;
+
+        ShellUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    static class MarkedOutput {
+        final byte[] output;
+        final String lineRemainder;
+
+        MarkedOutput(byte[] output, String lineRemainder) {
+            this.output = output;
+            this.lineRemainder = lineRemainder;
+        }
+    }
+
+    /** Buffers the output of a stream (of the shell), so that the shell never blocks writing to it. */
+    @VisibleForTesting
+    static class OutputReader implements Runnable {
+        private final InputStream in;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private boolean ended;
+
+        OutputReader(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void run() {
+            byte[] buf = new byte[8192];
+            try {
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    synchronized (this) {
+                        buffer.write(buf, 0, n);
+                        notifyAll();
+                    }
+                }
+            } catch (IOException e) {
+                if (LOG.isTraceEnabled()) LOG.trace("Persistent shell stream ended: "+e);
+            } finally {
+                synchronized (this) {
+                    ended = true;
+                    notifyAll();
+                }
+            }
+        }
+
+        synchronized void discard() {
+            buffer.reset();
+        }
+
+        /**
+         * Waits for a line starting with the marker (preceded by a newline), removing everything up to the end of that line.
+         *
+         * @return the output before that line, and the rest of the line after the marker; or null if it did not appear in time
+         * @throws IOException if the stream ended first
+         */
+        synchronized MarkedOutput awaitMarker(String marker, CountdownTimer timer) throws IOException, InterruptedException {
+            String prefix = "\n" + marker;
+            while (true) {
+                byte[] bytes = buffer.toByteArray();
+                // decoded byte-for-byte, so that indexes in the string are those in the bytes
+                String contents = new String(bytes, Charsets.ISO_8859_1);
+                int start = contents.indexOf(prefix);
+                int end = (start < 0) ? -1 : contents.indexOf('\n', start + prefix.length());
+                if (end >= 0) {
+                    buffer.reset();
+                    buffer.write(bytes, end + 1, bytes.length - end - 1);
+                    return new MarkedOutput(Arrays.copyOfRange(bytes, 0, start), contents.substring(start + prefix.length(), end));
+                }
+                if (ended) throw new IOException("Persistent shell ended before command completed");
+                long remaining = timer.getDurationRemaining().toMilliseconds();
+                if (remaining <= 0) return null;
+                wait(remaining);
+            }
+        }
+    }
+}
@@ -108,6 +108,9 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
     /** Terminal type name for {@code allocatePTY} option. */
     final static String TERM = "vt100"; // "dumb"
+
+    /** Commands longer than this (once joined) are not run through the {@link #PROP_PERSISTENT_SHELL persistent shell}. */
+    static final int PERSISTENT_SHELL_MAX_COMMAND_LENGTH = 4096;
     
     private class CloseFtpChannelOnCloseInputStream extends ProxyInputStream {
         private final SFTPClient sftp;
@@ -126,6 +129,9 @@ public class SshjTool extends SshAbstractTool implements SshTool {
 
     private final SshjClientConnection sshClientConnection;
 
+    private final Object persistentShellMutex = new Object();
+    private volatile SshjPersistentShell persistentShell;
+
     public static SshjToolBuilder builder() {
         return new SshjToolBuilder();
     }
@@ -220,6 +226,7 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         if (LOG.isTraceEnabled()) LOG.trace("Disconnecting SshjTool {} ({})", this, System.identityHashCode(this));
         try {
             Stopwatch perfStopwatch = Stopwatch.createStarted();
+            closePersistentShell();
             sshClientConnection.clear();
             if (LOG.isTraceEnabled()) LOG.trace("SSH Performance: {} disconnect took {}", sshClientConnection.getHostAndPort(), Time.makeTimeStringRounded(perfStopwatch));
         } catch (Exception e) {
@@ -594,6 +601,13 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         
         if (LOG.isTraceEnabled()) LOG.trace("Running command at {}: {}", host, singlecmd);
         
+        if (Boolean.TRUE.equals(getOptionalVal(props, PROP_PERSISTENT_SHELL)) && !allocatePTY
+                && !Boolean.TRUE.equals(getOptionalVal(props, PROP_RUN_AS_ROOT))
+                && singlecmd.length() <= PERSISTENT_SHELL_MAX_COMMAND_LENGTH) {
+            Integer result = execInPersistentShell(singlecmd, out, err, execTimeout);
+            if (result != null) return result;
+        }
+        
         Command result = acquire(new ExecAction(singlecmd, out, err, execTimeout));
         if (LOG.isTraceEnabled()) LOG.trace("Running command at {} completed: exit code {}", host, result.getExitStatus());
         // can be null if no exit status is received (observed on kill `ps aux | grep thing-to-grep-for | awk {print $2}`
@@ -602,6 +616,61 @@ public class SshjTool extends SshAbstractTool implements SshTool {
         return asInt(result.getExitStatus(), -1);
     }
 
+    /**
+     * Runs the command through the persistent shell, starting one if there is none (or it has ended).
+     * 
+     * @return the exit status (-1 if the command timed out), or null if the command should instead be run
+     *         in a session of its own: when the shell is in use by another caller, or could not be used
+     *         (before the command was sent to it)
+     * @throws org.apache.brooklyn.util.core.internal.ssh.SshException if the shell failed after the command was sent, as it may then have run
+     */
+    private Integer execInPersistentShell(String command, OutputStream out, OutputStream err, Duration timeout) {
+        SshjPersistentShell shell;
+        synchronized (persistentShellMutex) {
+            shell = persistentShell;
+            if (shell == null || !shell.isOpen()) {
+                try {
+                    shell = new SshjPersistentShell(acquire(newSessionAction()));
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    if (LOG.isDebugEnabled()) LOG.debug("Unable to start persistent shell at "+host+"; running command in its own session: "+e);
+                    return null;
+                }
+                persistentShell = shell;
+            }
+        }
+        
+        // rather than queue behind another caller's command, use a session of its own
+        if (!shell.tryLock()) return null;
+        try {
+            Duration sessionTimeout = (sshClientConnection.getSessionTimeout() == 0) 
+                    ? Duration.PRACTICALLY_FOREVER 
+                    : Duration.millis(sshClientConnection.getSessionTimeout());
+            timeout = (timeout == null) ? sessionTimeout : Duration.min(timeout, sessionTimeout);
+            Integer result = shell.exec(command, out, err, timeout);
+            if (LOG.isTraceEnabled()) LOG.trace("Running command at {} in persistent shell completed: exit code {}", host, result);
+            if (result == null) LOG.warn("Timeout after {} running at {}: {}", new Object[] {timeout, host, command});
+            return asInt(result, -1);
+        } catch (SshjPersistentShell.ShellUnavailableException e) {
+            if (LOG.isDebugEnabled()) LOG.debug("Persistent shell at "+host+" not available; running command in its own session: "+e);
+            return null;
+        } catch (IOException e) {
+            // not re-running the command in a session of its own, as it may have run already
+            throw propagate(e, "failed running command in persistent shell");
+        } finally {
+            shell.unlock();
+        }
+    }
+
+    private void closePersistentShell() {
+        SshjPersistentShell shell;
+        synchronized (persistentShellMutex) {
+            shell = persistentShell;
+            persistentShell = null;
+        }
+        if (shell != null) shell.close();
+    }
+
     protected void checkConnected() {
         if (!isConnected()) {
             throw new IllegalStateException(String.format("(%s) ssh not connected!", toString()));
@@ -21,9 +21,9 @@ package org.apache.brooklyn.util.core.task;
 import static com.google.common.base.Preconditions.checkNotNull;
 import groovy.lang.Closure;
 
+import java.io.Closeable;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -41,6 +41,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -50,13 +51,19 @@ import org.apache.brooklyn.api.mgmt.ExecutionManager;
 import org.apache.brooklyn.api.mgmt.HasTaskChildren;
 import org.apache.brooklyn.api.mgmt.Task;
 import org.apache.brooklyn.api.mgmt.TaskAdaptable;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
 import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.config.Sanitizer;
 import org.apache.brooklyn.core.mgmt.BrooklynTaskTags;
 import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.TaskInternal.TaskCancellationMode;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.exceptions.RuntimeInterruptedException;
+import org.apache.brooklyn.util.stream.Streams;
 import org.apache.brooklyn.util.text.Identifiers;
 import org.apache.brooklyn.util.text.Strings;
 import org.apache.brooklyn.util.time.CountdownTimer;
@@ -69,6 +76,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.CaseFormat;
 import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Supplier;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
@@ -84,6 +92,84 @@ public class BasicExecutionManager implements ExecutionManager {
     private static final Logger log = LoggerFactory.getLogger(BasicExecutionManager.class);
 
     private static final boolean RENAME_THREADS = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_RENAME_THREADS);
+
+    /**
+     * How task bodies are run.
+     * <ul>
+     *   <li>{@link #UNBOUNDED} (the default) - a cached thread pool, with a new thread for each task
+     *       when none are idle
+     *   <li>{@link #BOUNDED} - a {@link BoundedTaskRunner}, with at most {@link BasicExecutionManager#RUNNER_MAX_THREADS}
+     *       threads and a queue of {@link BasicExecutionManager#RUNNER_QUEUE_SIZE} in front of them
+     * </ul>
+     */
+    @Beta
+    public static enum RunnerMode {
+        UNBOUNDED,
+        BOUNDED
+    }
+
+    @Beta
+    public static final ConfigKey<RunnerMode> RUNNER_MODE = ConfigKeys.newConfigKey(RunnerMode.class,
+            "brooklyn.executionManager.runner.mode", 
+            "how task bodies are run: UNBOUNDED uses a new thread when no idle thread is available; "
+            + "BOUNDED uses a fixed maximum number of threads with a queue, blocking submitters when full", 
+            RunnerMode.UNBOUNDED);
+
+    @Beta
+    public static final ConfigKey<Integer> RUNNER_MAX_THREADS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.runner.maxThreads", 
+            "the maximum number of threads for running tasks, when in BOUNDED runner mode "
+            + "(tasks submitted from within a task may still use additional overflow threads, to prevent deadlock)", 
+            256);
+
+    @Beta
+    public static final ConfigKey<Integer> RUNNER_QUEUE_SIZE = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.runner.queueSize", 
+            "the maximum number of tasks waiting for a thread, when in BOUNDED runner mode", 
+            10000);
+
+    /**
+     * How {@link ScheduledTask}s are delayed until their next run.
+     * <ul>
+     *   <li>{@link #DELAYED_RUNNER} (the default) - a single-threaded {@link ScheduledThreadPoolExecutor}
+     *   <li>{@link #TIMER_WHEEL} - a {@link TimerWheelScheduler}, with {@link BasicExecutionManager#SCHEDULER_SHARDS} 
+     *       threads each running a hashed wheel which ticks every {@link BasicExecutionManager#SCHEDULER_TICK}; 
+     *       better suited to very many recurring tasks, at the cost of runs being up to a tick late
+     * </ul>
+     */
+    @Beta
+    public static enum SchedulerMode {
+        DELAYED_RUNNER,
+        TIMER_WHEEL
+    }
+
+    @Beta
+    public static final ConfigKey<SchedulerMode> SCHEDULER_MODE = ConfigKeys.newConfigKey(SchedulerMode.class,
+            "brooklyn.executionManager.scheduler.mode", 
+            "how scheduled tasks wait for their next run: DELAYED_RUNNER uses a single thread with a priority queue; "
+            + "TIMER_WHEEL uses hashed timer wheels, sharded over several threads", 
+            SchedulerMode.DELAYED_RUNNER);
+
+    @Beta
+    public static final ConfigKey<Integer> SCHEDULER_SHARDS = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.executionManager.scheduler.shards", 
+            "the number of timer wheels (each with its own thread), when in TIMER_WHEEL scheduler mode; "
+            + "defaults to the number of processors", 
+            Runtime.getRuntime().availableProcessors());
+
+    @Beta
+    public static final ConfigKey<Duration> SCHEDULER_TICK = ConfigKeys.newConfigKey(Duration.class,
+            "brooklyn.executionManager.scheduler.tick", 
+            "the resolution of the timer wheels, when in TIMER_WHEEL scheduler mode", 
+            Duration.millis(10));
+
+    @Beta
+    public static final ConfigKey<Boolean> SCHEDULER_SPREAD_FIRST_RUN = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.executionManager.scheduler.spreadFirstRun", 
+            "whether the first run of a recurring scheduled task with no initial delay is instead delayed by a random "
+            + "fraction of its period, so that many tasks created together (e.g. the feeds of a rebinding or starting app) "
+            + "do not all run at the same moments", 
+            false);
     
     private static class PerThreadCurrentTaskHolder {
         public static final ThreadLocal<Task<?>> perThreadCurrentTask = new ThreadLocal<Task<?>>();
@@ -98,23 +184,41 @@ public class BasicExecutionManager implements ExecutionManager {
     private final ThreadFactory daemonThreadFactory;
     
     private final ExecutorService runner;
+    
+    private final RunnerMode runnerMode;
+    
+    private final SchedulerMode schedulerMode;
         
     private final ScheduledExecutorService delayedRunner;
     
+    /** if non-null, used instead of {@link #delayedRunner} for scheduled tasks */
+    private final TimerWheelScheduler timerWheel;
+    
+    private final boolean spreadFirstRun;
+    
     // TODO Could have a set of all knownTasks; but instead we're having a separate set per tag,
     // so the same task could be listed multiple times if it has multiple tags...
 
-    //access to this field AND to members in this field is synchronized, 
-    //to allow us to preserve order while guaranteeing thread-safe
-    //(but more testing is needed before we are completely sure it is thread-safe!)
-    //synch blocks are as finely grained as possible for efficiency;
-    //NB CopyOnWriteArraySet is a perf bottleneck, and the simple map makes it easier to remove when a tag is empty
-    private Map<Object,Set<Task<?>>> tasksByTag = new HashMap<Object,Set<Task<?>>>();
+    //this map and its members are concurrent, so submit, delete and query do not contend on a global monitor;
+    //the price is that tasks for a tag are not kept in insertion order.
+    //when a tag's set becomes empty it is removed from the map; adding to a set and removing it when empty
+    //are done holding the set's own monitor (see addTaskWithTag and removeTagIfEmpty), so neither is lost.
+    //NB CopyOnWriteArraySet is a perf bottleneck, so is not used here
+    private final ConcurrentMap<Object,Set<Task<?>>> tasksByTag = new ConcurrentHashMap<Object,Set<Task<?>>>();
     
     private ConcurrentMap<String,Task<?>> tasksById = new ConcurrentHashMap<String,Task<?>>();
 
+    /** the tasks kept only as a compact record, oldest compacted first; see {@link #compactTask(Task)} and {@link #expireCompactedTasks(long)} */
+    private final Map<String,CompletedTaskRecord> compactedTasks = Collections.synchronizedMap(new LinkedHashMap<String,CompletedTaskRecord>());
+    
+    /** sum of the {@link CompletedTaskRecord#getEstimatedSize() estimated sizes} of {@link #compactedTasks} */
+    private final AtomicLong compactedTasksSize = new AtomicLong();
+
     private ConcurrentMap<Object, TaskScheduler> schedulerByTag = new ConcurrentHashMap<Object, TaskScheduler>();
 
+    /** services shared by the users of this execution manager, keyed by type; see {@link #getSharedService(Class, Supplier)} */
+    private final Map<Class<?>, Object> sharedServices = MutableMap.of();
+
     /** count of all tasks submitted, including finished */
     private final AtomicLong totalTaskCount = new AtomicLong();
     
@@ -135,17 +239,53 @@ public class BasicExecutionManager implements ExecutionManager {
     };
     
     public BasicExecutionManager(String contextid) {
+        this(contextid, RunnerMode.UNBOUNDED, RUNNER_MAX_THREADS.getDefaultValue(), RUNNER_QUEUE_SIZE.getDefaultValue());
+    }
+
+    /** Creates an execution manager whose runner and scheduler are configured by {@link #RUNNER_MODE}, {@link #SCHEDULER_MODE} and related keys */
+    public BasicExecutionManager(String contextid, StringConfigMap config) {
+        this(contextid, config.getConfig(RUNNER_MODE), config.getConfig(RUNNER_MAX_THREADS), config.getConfig(RUNNER_QUEUE_SIZE),
+                config.getConfig(SCHEDULER_MODE), config.getConfig(SCHEDULER_SHARDS), config.getConfig(SCHEDULER_TICK),
+                config.getConfig(SCHEDULER_SPREAD_FIRST_RUN));
+    }
+
+    @Beta
+    public BasicExecutionManager(String contextid, RunnerMode runnerMode, int maxThreads, int queueSize) {
+        this(contextid, runnerMode, maxThreads, queueSize, SchedulerMode.DELAYED_RUNNER, SCHEDULER_SHARDS.getDefaultValue(), 
+                SCHEDULER_TICK.getDefaultValue(), false);
+    }
+
+    @Beta
+    public BasicExecutionManager(String contextid, RunnerMode runnerMode, int maxThreads, int queueSize,
+            SchedulerMode schedulerMode, int schedulerShards, Duration schedulerTick, boolean spreadFirstRun) {
         threadFactory = newThreadFactory(contextid);
         daemonThreadFactory = new ThreadFactoryBuilder()
                 .setThreadFactory(threadFactory)
                 .setDaemon(true)
                 .build();
-                
-        // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
-        runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
-                daemonThreadFactory);
+        
+        this.runnerMode = checkNotNull(runnerMode, "runnerMode");
+        switch (runnerMode) {
+        case BOUNDED:
+            runner = new BoundedTaskRunner(maxThreads, queueSize, daemonThreadFactory);
+            break;
+        case UNBOUNDED:
+        default:
+            // use Executors.newCachedThreadPool(daemonThreadFactory), but timeout of 1s rather than 60s for better shutdown!
+            runner = new ThreadPoolExecutor(0, Integer.MAX_VALUE, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), 
+                    daemonThreadFactory);
+        }
             
-        delayedRunner = new ScheduledThreadPoolExecutor(1, daemonThreadFactory);
+        // the schedulers submit to the runner, so must not be stalled waiting for space in its queue
+        ThreadFactory schedulerThreadFactory = (runner instanceof BoundedTaskRunner) 
+                ? ((BoundedTaskRunner)runner).nonBlockingThreadFactory(daemonThreadFactory) 
+                : daemonThreadFactory;
+        delayedRunner = new ScheduledThreadPoolExecutor(1, schedulerThreadFactory);
+        this.schedulerMode = checkNotNull(schedulerMode, "schedulerMode");
+        timerWheel = (schedulerMode == SchedulerMode.TIMER_WHEEL) 
+                ? new TimerWheelScheduler(Math.max(1, schedulerShards), checkNotNull(schedulerTick, "schedulerTick"), schedulerThreadFactory)
+                : null;
+        this.spreadFirstRun = spreadFirstRun;
     }
     
     private final static class UncaughtExceptionHandlerImplementation implements Thread.UncaughtExceptionHandler {
@@ -171,23 +311,48 @@ public class BasicExecutionManager implements ExecutionManager {
         shutdownNow(null);
     }
     
+    /**
+     * Returns the instance of the given type shared by the users of this execution manager (e.g. an executor
+     * for the requests of feeds), creating it if need be; it is closed when this is shut down, if {@link Closeable}.
+     */
+    @Beta
+    public <T> T getSharedService(Class<T> type, Supplier<? extends T> factory) {
+        synchronized (sharedServices) {
+            if (runner.isShutdown()) throw new IllegalStateException("Execution manager "+this+" has been shut down");
+            Object result = sharedServices.get(type);
+            if (result == null) {
+                result = checkNotNull(factory.get(), "shared service %s", type);
+                sharedServices.put(type, result);
+            }
+            return type.cast(result);
+        }
+    }
+    
     /** shuts down the executor, and if a duration is supplied awaits termination for that long.
      * @return whether everything is terminated
      */
     @Beta
     public boolean shutdownNow(Duration howLongToWaitForTermination) {
-        runner.shutdownNow();
+        synchronized (sharedServices) {
+            runner.shutdownNow();
+            for (Object service : sharedServices.values()) {
+                if (service instanceof Closeable) Streams.closeQuietly((Closeable) service);
+            }
+            sharedServices.clear();
+        }
         delayedRunner.shutdownNow();
+        if (timerWheel != null) timerWheel.shutdownNow();
         if (howLongToWaitForTermination!=null) {
             CountdownTimer timer = howLongToWaitForTermination.countdownTimer();
             try {
                 runner.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
                 if (timer.isLive()) delayedRunner.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
+                if (timer.isLive() && timerWheel != null) timerWheel.awaitTermination(timer.getDurationRemaining().toMilliseconds(), TimeUnit.MILLISECONDS);
             } catch (InterruptedException e) {
                 throw Exceptions.propagate(e);
             }
         }
-        return runner.isTerminated() && delayedRunner.isTerminated();
+        return runner.isTerminated() && delayedRunner.isTerminated() && (timerWheel == null || timerWheel.isTerminated());
     }
     
     public void addListener(ExecutionListener listener) {
@@ -205,10 +370,7 @@ public class BasicExecutionManager implements ExecutionManager {
      * a reference to it as a tag.
      */
     public void deleteTag(Object tag) {
-        Set<Task<?>> tasks;
-        synchronized (tasksByTag) {
-            tasks = tasksByTag.remove(tag);
-        }
+        Set<Task<?>> tasks = tasksByTag.remove(tag);
         if (tasks != null) {
             for (Task<?> task : tasks) {
                 deleteTask(task);
@@ -231,24 +393,113 @@ public class BasicExecutionManager implements ExecutionManager {
     protected boolean deleteTaskNonRecursive(Task<?> task) {
         Set<?> tags = checkNotNull(task, "task").getTags();
         for (Object tag : tags) {
-            synchronized (tasksByTag) {
-                Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
-                if (tasks != null) {
-                    tasks.remove(task);
-                    if (tasks.isEmpty()) {
-                        tasksByTag.remove(tag);
-                    }
-                }
+            Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
+            if (tasks != null) {
+                tasks.remove(task);
+                removeTagIfEmpty(tag, tasks);
             }
         }
         Task<?> removed = tasksById.remove(task.getId());
         incompleteTaskIds.remove(task.getId());
+        CompletedTaskRecord removedRecord = compactedTasks.remove(task.getId());
+        if (removedRecord != null) compactedTasksSize.addAndGet(-removedRecord.getEstimatedSize());
         if (removed!=null && removed.isSubmitted() && !removed.isDone()) {
             log.warn("Deleting submitted task before completion: "+removed+"; this task will continue to run in the background outwith "+this+", but perhaps it should have been cancelled?");
         }
         return removed != null;
     }
 
+    /**
+     * Replaces the given completed task (and, recursively, its completed children) with a compact
+     * {@link CompletedTaskRecord}, so that the task object and what it references can be garbage collected,
+     * while the task can still be listed and viewed.
+     * 
+     * @return the record now kept for the task (or already kept for it); 
+     *         or the task itself if it has not completed
+     */
+    @Beta
+    public Task<?> compactTask(Task<?> task) {
+        if (task instanceof CompletedTaskRecord) return task;
+        Task<?> existing = tasksById.get(task.getId());
+        if (existing instanceof CompletedTaskRecord) return existing;
+        if (!task.isDone() || (task.getEndTimeUtc() <= 0 && !task.isCancelled())) return task;
+        
+        List<Task<?>> children = ImmutableList.of();
+        if (task instanceof HasTaskChildren) {
+            children = MutableList.of();
+            for (Task<?> child : ImmutableList.copyOf(((HasTaskChildren)task).getChildren())) {
+                children.add(compactTask(child));
+            }
+        }
+        CompletedTaskRecord record = CompletedTaskRecord.of(task, children, this);
+        
+        if (existing == null || !tasksById.replace(task.getId(), existing, record)) {
+            // not (or no longer) known here, e.g. deleted concurrently
+            return record;
+        }
+        for (Object tag : record.getTags()) {
+            Set<Task<?>> tasks = tasksWithTagLiveOrNull(tag);
+            // sets match on id, so must remove the task before its record can be added
+            if (tasks != null && tasks.remove(task)) {
+                addTaskWithTag(tag, record);
+            }
+        }
+        if (compactedTasks.put(record.getId(), record) == null) {
+            compactedTasksSize.addAndGet(record.getEstimatedSize());
+        }
+        if (tasksById.get(task.getId()) != record) {
+            // deleted while we were replacing it; make sure its record does not linger
+            deleteTaskNonRecursive(record);
+        }
+        return record;
+    }
+
+    /** count of tasks kept in memory only as a compact {@link CompletedTaskRecord} */
+    @Beta
+    public long getNumCompactedTasks() {
+        return compactedTasks.size();
+    }
+
+    /** estimate, in bytes, of the memory used by the tasks kept only as a compact {@link CompletedTaskRecord} */
+    @Beta
+    public long getCompactedTasksSize() {
+        return compactedTasksSize.get();
+    }
+
+    /**
+     * Deletes the tasks compacted longest ago (see {@link #compactTask(Task)}) until the 
+     * {@link #getCompactedTasksSize() estimated size} of those remaining is no more than the given number of bytes.
+     * Where the record to delete was submitted by another compacted task, that task is deleted
+     * (along with its children) instead, so that no record is kept only as the child of another.
+     * 
+     * @return the number of top-level records deleted
+     */
+    @Beta
+    public int expireCompactedTasks(long maxSize) {
+        int count = 0;
+        while (compactedTasksSize.get() > maxSize) {
+            CompletedTaskRecord oldest;
+            synchronized (compactedTasks) {
+                Iterator<CompletedTaskRecord> ri = compactedTasks.values().iterator();
+                if (!ri.hasNext()) break;
+                oldest = ri.next();
+            }
+            Task<?> toDelete = oldest;
+            Set<String> visited = MutableSet.of();
+            while (toDelete instanceof CompletedTaskRecord && visited.add(toDelete.getId())) {
+                String submitterId = ((CompletedTaskRecord)toDelete).getSubmittedByTaskId();
+                CompletedTaskRecord submitter = (submitterId != null) ? compactedTasks.get(submitterId) : null;
+                if (submitter == null) break;
+                toDelete = submitter;
+            }
+            deleteTask(toDelete);
+            // in case it was not known here, but is still listed
+            deleteTaskNonRecursive(oldest);
+            count++;
+        }
+        return count;
+    }
+
     public boolean isShutdown() {
         return runner.isShutdown();
     }
@@ -273,24 +524,84 @@ public class BasicExecutionManager implements ExecutionManager {
         return tasksById.size();
     }
 
+    @Beta
+    public RunnerMode getRunnerMode() {
+        return runnerMode;
+    }
+
+    @Beta
+    public SchedulerMode getSchedulerMode() {
+        return schedulerMode;
+    }
+
+    /** metrics on the scheduling of {@link ScheduledTask}s, such as (when using a timer wheel) how late runs are compared to their schedule */
+    @Beta
+    public Map<String, Object> getSchedulerMetrics() {
+        MutableMap<String, Object> result = MutableMap.<String, Object>of("mode", schedulerMode);
+        if (timerWheel != null) {
+            result.putAll(timerWheel.getMetrics());
+        } else if (delayedRunner instanceof ThreadPoolExecutor) {
+            result.put("waiting", ((ThreadPoolExecutor)delayedRunner).getQueue().size());
+        }
+        return result;
+    }
+
+    /** metrics on the pool running the tasks, such as thread counts and (when bounded) queue depth and back-pressure */
+    @Beta
+    public Map<String, Object> getRunnerMetrics() {
+        if (runner instanceof BoundedTaskRunner) {
+            return MutableMap.<String, Object>builder()
+                    .put("mode", runnerMode)
+                    .putAll(((BoundedTaskRunner)runner).getMetrics())
+                    .build();
+        }
+        MutableMap<String, Object> result = MutableMap.<String, Object>of("mode", runnerMode);
+        if (runner instanceof ThreadPoolExecutor) {
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) runner;
+            result.put("poolSize", pool.getPoolSize());
+            result.put("largestPoolSize", pool.getLargestPoolSize());
+            result.put("activeThreads", pool.getActiveCount());
+        }
+        return result;
+    }
+
     private Set<Task<?>> tasksWithTagCreating(Object tag) {
         Preconditions.checkNotNull(tag);
-        synchronized (tasksByTag) {
-            Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
-            if (result==null) {
-                result = Collections.synchronizedSet(new LinkedHashSet<Task<?>>());
-                tasksByTag.put(tag, result);
+        Set<Task<?>> result = tasksByTag.get(tag);
+        if (result==null) {
+            Set<Task<?>> newSet = Sets.newConcurrentHashSet();
+            result = tasksByTag.putIfAbsent(tag, newSet);
+            if (result==null) result = newSet;
+        }
+        return result;
+    }
+
+    /** adds the task to the index for the tag, retrying if the set for the tag was concurrently removed as empty */
+    private void addTaskWithTag(Object tag, Task<?> task) {
+        while (true) {
+            Set<Task<?>> tasks = tasksWithTagCreating(tag);
+            synchronized (tasks) {
+                if (tasksByTag.get(tag) == tasks) {
+                    tasks.add(task);
+                    return;
+                }
             }
-            return result;
+            // set was removed (by removeTagIfEmpty or deleteTag) after our get; add to its replacement
+        }
+    }
+
+    /** removes the set for the tag if it is empty; a set removed is never re-inserted, nor added to */
+    private void removeTagIfEmpty(Object tag, Set<Task<?>> tasks) {
+        if (!tasks.isEmpty()) return;
+        synchronized (tasks) {
+            if (tasks.isEmpty()) tasksByTag.remove(tag, tasks);
         }
     }
 
     /** exposes live view, for internal use only */
     @Beta
     public Set<Task<?>> tasksWithTagLiveOrNull(Object tag) {
-        synchronized (tasksByTag) {
-            return tasksByTag.get(tag);
-        }
+        return tasksByTag.get(tag);
     }
 
     @Override
@@ -311,9 +622,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Set<Task<?>> getTasksWithTag(Object tag) {
         Set<Task<?>> result = tasksWithTagLiveOrNull(tag);
         if (result==null) return Collections.emptySet();
-        synchronized (result) {
-            return (Set<Task<?>>)Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
-        }
+        return (Set<Task<?>>)Collections.unmodifiableSet(new LinkedHashSet<Task<?>>(result));
     }
     
     @Override
@@ -323,9 +632,7 @@ public class BasicExecutionManager implements ExecutionManager {
         while (ti.hasNext()) {
             Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(ti.next());
             if (tasksForTag!=null) {
-                synchronized (tasksForTag) {
-                    result.addAll(tasksForTag);
-                }
+                result.addAll(tasksForTag);
             }
         }
         return Collections.unmodifiableSet(result);
@@ -334,20 +641,25 @@ public class BasicExecutionManager implements ExecutionManager {
     /** only works with at least one tag; returns empty if no tags */
     @Override
     public Set<Task<?>> getTasksWithAllTags(Iterable<?> tags) {
-        //NB: for this method retrieval for multiple tags could be made (much) more efficient (if/when it is used with multiple tags!)
-        //by first looking for the least-used tag, getting those tasks, and then for each of those tasks
-        //checking whether it contains the other tags (looking for second-least used, then third-least used, etc)
+        // start from the least-used tag, then filter those tasks by membership of the other tags' live sets
+        List<Set<Task<?>>> tasksForTags = MutableList.of();
+        for (Object tag : tags) {
+            Set<Task<?>> tasksForTag = tasksWithTagLiveOrNull(tag);
+            if (tasksForTag==null) return Collections.emptySet();
+            tasksForTags.add(tasksForTag);
+        }
+        if (tasksForTags.isEmpty()) return Collections.emptySet();
+        
+        Set<Task<?>> smallest = tasksForTags.get(0);
+        for (Set<Task<?>> tasksForTag : tasksForTags) {
+            if (tasksForTag.size() < smallest.size()) smallest = tasksForTag;
+        }
         Set<Task<?>> result = new LinkedHashSet<Task<?>>();
-        boolean first = true;
-        Iterator<?> ti = tags.iterator();
-        while (ti.hasNext()) {
-            Object tag = ti.next();
-            if (first) { 
-                first = false;
-                result.addAll(getTasksWithTag(tag));
-            } else {
-                result.retainAll(getTasksWithTag(tag));
+        outer: for (Task<?> task : smallest) {
+            for (Set<Task<?>> tasksForTag : tasksForTags) {
+                if (tasksForTag != smallest && !tasksForTag.contains(task)) continue outer;
             }
+            result.add(task);
         }
         return Collections.unmodifiableSet(result);
     }
@@ -357,9 +669,7 @@ public class BasicExecutionManager implements ExecutionManager {
     public Collection<Task<?>> allTasksLive() { return tasksById.values(); }
     
     public Set<Object> getTaskTags() { 
-        synchronized (tasksByTag) {
-            return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
-        }
+        return Collections.unmodifiableSet(Sets.newLinkedHashSet(tasksByTag.keySet())); 
     }
 
     public Task<?> submit(Runnable r) { return submit(new LinkedHashMap<Object,Object>(1), r); }
@@ -392,13 +702,24 @@ public class BasicExecutionManager implements ExecutionManager {
         
         beforeSubmitScheduledTaskAllIterations(flags, task);
         
+        if (spreadFirstRun && task.period != null && task.period.isPositive() && !task.delay.isPositive()) {
+            task.delay = Duration.nanos((long) (ThreadLocalRandom.current().nextDouble() * task.period.toNanoseconds()));
+        }
+        
         return submitSubsequentScheduledTask(flags, task);
     }
     
     protected Task<?> submitSubsequentScheduledTask(final Map<?,?> flags, final ScheduledTask task) {
         if (!task.isDone()) {
-            task.internalFuture = delayedRunner.schedule(new ScheduledTaskCallable(task, flags),
-                task.delay.toNanoseconds(), TimeUnit.NANOSECONDS);
+            long delayNanos = task.delay.toNanoseconds();
+            task.nextRunDueNanos = System.nanoTime() + delayNanos;
+            if (timerWheel != null) {
+                task.internalFuture = timerWheel.schedule(new ScheduledTaskCallable(task, flags), 
+                    delayNanos, TimeUnit.NANOSECONDS, task.getId());
+            } else {
+                task.internalFuture = delayedRunner.schedule(new ScheduledTaskCallable(task, flags),
+                    delayNanos, TimeUnit.NANOSECONDS);
+            }
         } else {
             afterEndScheduledTaskAllIterations(flags, task);
         }
@@ -417,6 +738,7 @@ public class BasicExecutionManager implements ExecutionManager {
         @SuppressWarnings({ "rawtypes", "unchecked" })
         public Object call() {
             if (task.startTimeUtc==-1) task.startTimeUtc = System.currentTimeMillis();
+            task.noteScheduleDrift(System.nanoTime() - task.nextRunDueNanos);
             TaskInternal<?> taskScheduled = null;
             try {
                 beforeStartScheduledTaskSubmissionIteration(flags, task);
@@ -728,7 +1050,7 @@ public class BasicExecutionManager implements ExecutionManager {
         if (flags.get("tags")!=null) ((TaskInternal<?>)task).getMutableTags().addAll((Collection<?>)flags.remove("tags"));
 
         for (Object tag: ((TaskInternal<?>)task).getTags()) {
-            tasksWithTagCreating(tag).add(task);
+            addTaskWithTag(tag, task);
         }
     }
 
@@ -739,6 +1061,26 @@ public class BasicExecutionManager implements ExecutionManager {
         internalBeforeStart(flags, task);
     }
     
+    /**
+     * Runs a task's runnable in the calling thread, e.g. one that could not be handed to another thread, restoring
+     * the caller's current task and thread name after, as the task sets them when it starts and clears them when it ends.
+     */
+    static void runInCallerThread(Runnable r) {
+        Thread thread = Thread.currentThread();
+        String name = thread.getName();
+        Task<?> currentTask = PerThreadCurrentTaskHolder.perThreadCurrentTask.get();
+        String originalName = (RENAME_THREADS && currentTask != null) ? threadOriginalName.get() : null;
+        try {
+            r.run();
+        } finally {
+            thread.setName(name);
+            if (currentTask != null) {
+                PerThreadCurrentTaskHolder.perThreadCurrentTask.set(currentTask);
+                if (originalName != null) threadOriginalName.set(originalName);
+            }
+        }
+    }
+
     /** invoked in a task's thread when a task is starting to run (may be some time after submitted), 
      * but before doing any of the task's work, so that we can update bookkeeping and notify callbacks */
     protected void internalBeforeStart(Map<?,?> flags, Task<?> task) {
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * An {@link ExecutorService} for running task bodies on a fixed maximum number of threads,
+ * with a bounded queue in front of them.
+ * <p>
+ * Submissions from outside of any task (e.g. sensor publications from a feed's own thread,
+ * REST calls) block when the queue is full, giving back-pressure to the caller.
+ * Submissions made from the threads of this runner (i.e. from within a running task) are instead
+ * handed to an overflow pool, and never block: the submitting task will often block on
+ * the task it submitted (e.g. a {@link DynamicSequentialTask} waiting on its children), so queueing
+ * those behind the parent could deadlock the pool. The same applies to the threads of any factory
+ * from {@link #nonBlockingThreadFactory(ThreadFactory)}, e.g. those of a scheduler which submits
+ * to this runner, so that they are not stalled by a full queue. The overflow pool also has a maximum
+ * number of threads; once they are all busy, such a submission is run in the submitting thread.
+ * <p>
+ * Counts of blocked, overflowed and caller-run submissions are available from {@link #getMetrics()}.
+ */
+@Beta
+public class BoundedTaskRunner extends AbstractExecutorService {
+
+    private final int maxThreads;
+    private final int maxOverflowThreads;
+    private final ThreadPoolExecutor bounded;
+    private final ThreadPoolExecutor overflow;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong blockedCount = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong overflowCount = new AtomicLong();
+    private final AtomicLong callerRunsCount = new AtomicLong();
+
+    /** Set in the threads whose submissions must never block nor be queued; see {@link #nonBlockingThreadFactory(ThreadFactory)}. */
+    private final ThreadLocal<Boolean> nonBlockingThread = new ThreadLocal<Boolean>();
+
+    /** As {@link #BoundedTaskRunner(int, int, int, ThreadFactory)}, with as many overflow threads as bounded ones. */
+    public BoundedTaskRunner(int maxThreads, int queueSize, ThreadFactory threadFactory) {
+        this(maxThreads, queueSize, maxThreads, threadFactory);
+    }
+
+    public BoundedTaskRunner(int maxThreads, int queueSize, int maxOverflowThreads, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(maxThreads > 0, "maxThreads must be positive");
+        Preconditions.checkArgument(queueSize > 0, "queueSize must be positive");
+        Preconditions.checkArgument(maxOverflowThreads > 0, "maxOverflowThreads must be positive");
+        this.maxThreads = maxThreads;
+        this.maxOverflowThreads = maxOverflowThreads;
+        ThreadFactory poolThreadFactory = nonBlockingThreadFactory(threadFactory);
+        bounded = new ThreadPoolExecutor(maxThreads, maxThreads, 10L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueSize), poolThreadFactory, new BlockingRejectionHandler());
+        bounded.allowCoreThreadTimeOut(true);
+        // no queue, as a queued child could wait forever behind parents blocked on it
+        overflow = new ThreadPoolExecutor(0, maxOverflowThreads, 10L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                poolThreadFactory, new CallerRunsRejectionHandler());
+    }
+
+    /**
+     * Returns a factory for threads whose submissions to this runner are always handed to the overflow pool,
+     * rather than queued or blocked; used for the threads of this runner, and for those of schedulers which submit to it.
+     */
+    public ThreadFactory nonBlockingThreadFactory(final ThreadFactory delegate) {
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable r) {
+                return delegate.newThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        nonBlockingThread.set(Boolean.TRUE);
+                        r.run();
+                    }
+                });
+            }
+        };
+    }
+
+    private boolean isNonBlockingThread() {
+        return Boolean.TRUE.equals(nonBlockingThread.get());
+    }
+
+    /** Waits for space in the queue, rather than rejecting, unless we have been shutdown. */
+    private class BlockingRejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Task "+r+" rejected from "+BoundedTaskRunner.this+": shutdown");
+            }
+            if (isNonBlockingThread()) {
+                // not normally submitted to the bounded pool, but must never block
+                overflowCount.incrementAndGet();
+                overflow.execute(r);
+                return;
+            }
+            blockedCount.incrementAndGet();
+            long startNanos = System.nanoTime();
+            try {
+                executor.getQueue().put(r);
+            } catch (InterruptedException e) {
+                throw Exceptions.propagate(e);
+            } finally {
+                blockedNanos.addAndGet(System.nanoTime() - startNanos);
+            }
+            // if shutdown while we waited, the queued task would never be run
+            if (executor.isShutdown() && executor.getQueue().remove(r)) {
+                throw new RejectedExecutionException("Task "+r+" rejected from "+BoundedTaskRunner.this+": shutdown");
+            }
+        }
+    }
+
+    /** Runs the task in the submitting thread when all the overflow threads are busy, unless we have been shutdown. */
+    private class CallerRunsRejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                throw new RejectedExecutionException("Task "+r+" rejected from "+BoundedTaskRunner.this+": shutdown");
+            }
+            callerRunsCount.incrementAndGet();
+            BasicExecutionManager.runInCallerThread(r);
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        submittedCount.incrementAndGet();
+        if (isNonBlockingThread()) {
+            overflowCount.incrementAndGet();
+            overflow.execute(command);
+        } else {
+            bounded.execute(command);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        bounded.shutdown();
+        overflow.shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        List<Runnable> result = MutableList.copyOf(bounded.shutdownNow());
+        result.addAll(overflow.shutdownNow());
+        return result;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return bounded.isShutdown() && overflow.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return bounded.isTerminated() && overflow.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        if (!bounded.awaitTermination(timeout, unit)) return false;
+        return overflow.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public int getQueueSize() {
+        BlockingQueue<Runnable> queue = bounded.getQueue();
+        return queue.size();
+    }
+
+    /**
+     * Returns a snapshot of counters: pool sizes, queue depth, and the number of submissions
+     * which blocked for back-pressure (and for how long) or which were sent to the overflow pool.
+     */
+    public Map<String, Object> getMetrics() {
+        return MutableMap.<String, Object>builder()
+                .put("maxThreads", maxThreads)
+                .put("poolSize", bounded.getPoolSize())
+                .put("largestPoolSize", bounded.getLargestPoolSize())
+                .put("activeThreads", bounded.getActiveCount())
+                .put("queueSize", getQueueSize())
+                .put("queueRemainingCapacity", bounded.getQueue().remainingCapacity())
+                .put("submitted", submittedCount.get())
+                .put("blockedSubmissions", blockedCount.get())
+                .put("blockedMillis", TimeUnit.NANOSECONDS.toMillis(blockedNanos.get()))
+                .put("overflowSubmissions", overflowCount.get())
+                .put("overflowPoolSize", overflow.getPoolSize())
+                .put("overflowLargestPoolSize", overflow.getLargestPoolSize())
+                .put("maxOverflowThreads", maxOverflowThreads)
+                .put("callerRunsSubmissions", callerRunsCount.get())
+                .build();
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedTaskRunner[maxThreads="+maxThreads+"; queue="+getQueueSize()+"]";
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.ExecutionManager;
+import org.apache.brooklyn.api.mgmt.HasTaskChildren;
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Objects;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * An immutable record of a task which has completed, kept in place of the task itself (for display, 
+ * e.g. in the activity view) so that its job, listeners, futures and references to other tasks can be 
+ * garbage collected.
+ * <p>
+ * The result is kept only as a summary: simple values (strings, numbers, etc) are kept,
+ * and anything else as (a truncated) {@code toString()}. Similarly, an error is kept only as its message, 
+ * so {@link #get()} throws an {@link ExecutionException} whose cause is an {@link IllegalStateException}
+ * with that message.
+ * <p>
+ * Records replace their tasks in the execution manager, so how many are kept is governed by the same limits 
+ * as for tasks (see {@link org.apache.brooklyn.core.mgmt.internal.BrooklynGarbageCollector}). The execution manager
+ * also keeps an {@link #getEstimatedSize() estimate} of their total size, and the garbage collector deletes the oldest
+ * records when that exceeds {@link org.apache.brooklyn.core.mgmt.internal.BrooklynGarbageCollector#MAX_COMPACTED_TASKS_SIZE}.
+ * 
+ * @see BasicExecutionManager#compactTask(Task)
+ */
+@Beta
+public class CompletedTaskRecord implements Task<Object>, HasTaskChildren {
+
+    /** maximum length kept of result summaries and status text */
+    public static final int MAX_TEXT_LENGTH = 4096;
+    
+    /** rough size in bytes of a record, not counting the text and collections it refers to */
+    private static final int BASE_SIZE = 160;
+    
+    private final String id;
+    private final String displayName;
+    private final String description;
+    private final Set<Object> tags;
+    private final long submitTimeUtc;
+    private final long startTimeUtc;
+    private final long endTimeUtc;
+    private final boolean cancelled;
+    private final Object result;
+    private final String errorSummary;
+    private final String statusSummary;
+    private final String statusDetail;
+    private final String statusDetailMultiline;
+    private final String submittedByTaskId;
+    /** weak, so that the submitter can be garbage collected once it is no longer otherwise used */
+    private final WeakReference<Task<?>> submittedByTask;
+    private final List<Task<?>> children;
+    private final ExecutionManager executionManager;
+    private final long estimatedSize;
+
+    /**
+     * Records the given completed task.
+     * 
+     * @param children the task's children, typically records themselves (where those have completed)
+     * @param executionManager used to look up the task which submitted this one, if it is still known
+     */
+    public static CompletedTaskRecord of(Task<?> task, Iterable<? extends Task<?>> children, @Nullable ExecutionManager executionManager) {
+        Preconditions.checkArgument(task.isDone(), "Task %s must be done to be recorded", task);
+        return new CompletedTaskRecord(task, children, executionManager);
+    }
+    
+    protected CompletedTaskRecord(Task<?> task, Iterable<? extends Task<?>> children, @Nullable ExecutionManager executionManager) {
+        id = task.getId();
+        displayName = task.getDisplayName();
+        description = task.getDescription();
+        
+        ImmutableSet.Builder<Object> tagsBuilder = ImmutableSet.builder();
+        for (Object tag : task.getTags()) {
+            // finalizers are for the original task
+            if (!(tag instanceof BasicTask.TaskFinalizer)) tagsBuilder.add(tag);
+        }
+        tags = tagsBuilder.build();
+        
+        submitTimeUtc = task.getSubmitTimeUtc();
+        startTimeUtc = task.getStartTimeUtc();
+        endTimeUtc = task.getEndTimeUtc();
+        cancelled = task.isCancelled();
+        
+        Object resultSummary = null;
+        String error = null;
+        if (!cancelled) {
+            try {
+                resultSummary = summarize(task.get());
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                error = Strings.maxlenWithEllipsis(Exceptions.collapseText(e instanceof ExecutionException && e.getCause()!=null ? e.getCause() : e), MAX_TEXT_LENGTH);
+            }
+        }
+        result = resultSummary;
+        errorSummary = error;
+        
+        statusSummary = Strings.maxlenWithEllipsis(task.getStatusSummary(), MAX_TEXT_LENGTH);
+        statusDetail = Strings.maxlenWithEllipsis(task.getStatusDetail(false), MAX_TEXT_LENGTH);
+        statusDetailMultiline = Strings.maxlenWithEllipsis(task.getStatusDetail(true), MAX_TEXT_LENGTH);
+        
+        Task<?> submitter = task.getSubmittedByTask();
+        submittedByTaskId = (submitter != null) ? submitter.getId() : null;
+        submittedByTask = (submitter != null) ? new WeakReference<Task<?>>(submitter) : null;
+        
+        this.children = ImmutableList.copyOf(children);
+        this.executionManager = executionManager;
+        
+        estimatedSize = BASE_SIZE + sizeOf(id) + sizeOf(displayName) + sizeOf(description) 
+                + 16L * tags.size() + sizeOf(result instanceof String ? (String)result : null) + sizeOf(errorSummary) 
+                + sizeOf(statusSummary) + sizeOf(statusDetail) + sizeOf(statusDetailMultiline) + sizeOf(submittedByTaskId)
+                + 8L * this.children.size();
+    }
+
+    private static long sizeOf(String text) {
+        return (text == null) ? 0 : 40 + 2L * text.length();
+    }
+
+    /** values which are small and immutable are kept as they are; others are described */
+    private static Object summarize(Object value) {
+        if (value == null || value instanceof Number || value instanceof Boolean || value instanceof Enum 
+                || value instanceof Character || value instanceof Duration) {
+            return value;
+        }
+        String text;
+        try {
+            text = value.toString();
+        } catch (Exception e) {
+            Exceptions.propagateIfFatal(e);
+            text = value.getClass().getName()+" (toString failed: "+e+")";
+        }
+        return Strings.maxlenWithEllipsis(text, MAX_TEXT_LENGTH);
+    }
+
+    /** 
+     * A rough estimate of the memory, in bytes, used by this record: its text and its references to its tags and children,
+     * but not the tags (which are typically shared with other tasks) or children themselves.
+     */
+    public long getEstimatedSize() {
+        return estimatedSize;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(id);
+    }
+
+    /** equal to any task with the same id, as for {@link BasicTask}, so it can replace the original in sets of tasks */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof Task)
+            return ((Task<?>)obj).getId().equals(getId());
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return "Task["+displayName+"]@"+id;
+    }
+
+    @Override
+    public Task<Object> asTask() {
+        return this;
+    }
+
+    @Override
+    public Set<Object> getTags() {
+        return tags;
+    }
+
+    @Override
+    public long getSubmitTimeUtc() {
+        return submitTimeUtc;
+    }
+
+    @Override
+    public long getStartTimeUtc() {
+        return startTimeUtc;
+    }
+
+    @Override
+    public long getEndTimeUtc() {
+        return endTimeUtc;
+    }
+
+    @Override
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    @Override
+    public String getDescription() {
+        return description;
+    }
+
+    /** 
+     * the task which submitted this one: as known to the execution manager, if it is, 
+     * otherwise the original task if it has not been garbage collected
+     */
+    @Override
+    public Task<?> getSubmittedByTask() {
+        if (submittedByTaskId == null) return null;
+        Task<?> result = (executionManager != null) ? executionManager.getTask(submittedByTaskId) : null;
+        return (result != null) ? result : submittedByTask.get();
+    }
+
+    /** the id of the task which submitted this one, whether or not that task is still known */
+    @Nullable
+    public String getSubmittedByTaskId() {
+        return submittedByTaskId;
+    }
+
+    @Override
+    public Iterable<Task<?>> getChildren() {
+        return children;
+    }
+
+    @Override
+    public Thread getThread() {
+        return null;
+    }
+
+    @Override
+    public boolean isSubmitted() {
+        return submitTimeUtc > 0;
+    }
+
+    @Override
+    public boolean isBegun() {
+        return startTimeUtc > 0;
+    }
+
+    @Override
+    public boolean isError() {
+        return cancelled || errorSummary != null;
+    }
+
+    @Override
+    public boolean isDone() {
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /** the message of the error thrown by the task, or null if it succeeded (or was cancelled) */
+    @Nullable
+    public String getErrorSummary() {
+        return errorSummary;
+    }
+
+    @Override
+    public void blockUntilStarted() {
+    }
+
+    @Override
+    public void blockUntilEnded() {
+    }
+
+    @Override
+    public boolean blockUntilEnded(Duration timeout) {
+        return true;
+    }
+
+    @Override
+    public String getStatusSummary() {
+        return statusSummary;
+    }
+
+    @Override
+    public String getStatusDetail(boolean multiline) {
+        return multiline ? statusDetailMultiline : statusDetail;
+    }
+
+    /** returns the summary of the result, or throws as the task did */
+    @Override
+    public Object get() throws ExecutionException {
+        if (cancelled) throw new CancellationException("Task "+this+" was cancelled");
+        if (errorSummary != null) throw new ExecutionException(new IllegalStateException(errorSummary));
+        return result;
+    }
+
+    @Override
+    public Object get(long timeout, TimeUnit unit) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public Object get(Duration duration) throws ExecutionException {
+        return get();
+    }
+
+    @Override
+    public Object getUnchecked() {
+        try {
+            return get();
+        } catch (Exception e) {
+            throw Exceptions.propagate(e);
+        }
+    }
+
+    @Override
+    public Object getUnchecked(Duration duration) {
+        return getUnchecked();
+    }
+
+    /** does nothing, as the task has already completed */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    /** runs the listener immediately, as the task has already completed */
+    @Override
+    public void addListener(Runnable listener, Executor executor) {
+        executor.execute(listener);
+    }
+}
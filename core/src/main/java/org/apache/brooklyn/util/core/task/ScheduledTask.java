@@ -73,6 +73,11 @@ public class ScheduledTask extends BasicTask<Object> {
     protected Task<?> recentRun, nextRun;
     Class<? extends Exception> lastThrownType;
 
+    /** {@link System#nanoTime()} at which the next run is due, set by the execution manager when scheduling it */
+    volatile long nextRunDueNanos;
+    private volatile long lastScheduleDriftNanos = -1;
+    private volatile long maxScheduleDriftNanos = -1;
+
     public int getRunCount() { return runCount; }
     public ScheduledFuture<?> getNextScheduled() { return (ScheduledFuture<?>)internalFuture; }
 
@@ -131,6 +136,24 @@ public class ScheduledTask extends BasicTask<Object> {
         return this;
     }
 
+    void noteScheduleDrift(long driftNanos) {
+        driftNanos = Math.max(0, driftNanos);
+        lastScheduleDriftNanos = driftNanos;
+        if (driftNanos > maxScheduleDriftNanos) maxScheduleDriftNanos = driftNanos;
+    }
+
+    /** How late (compared to its schedule) the most recent run was submitted, or null if not yet run. */
+    @Beta
+    public Duration getLastScheduleDrift() {
+        return (lastScheduleDriftNanos < 0) ? null : Duration.nanos(lastScheduleDriftNanos);
+    }
+
+    /** The most that any run has been late (compared to its schedule) being submitted, or null if not yet run. */
+    @Beta
+    public Duration getMaxScheduleDrift() {
+        return (maxScheduleDriftNanos < 0) ? null : Duration.nanos(maxScheduleDriftNanos);
+    }
+
     public Callable<Task<?>> getTaskFactory() {
         return taskFactory;
     }
@@ -152,6 +175,10 @@ public class ScheduledTask extends BasicTask<Object> {
             Duration start = Duration.sinceUtc(recentRun.getStartTimeUtc());
             rv.append(", last run ").append(start).append(" ago");
         }
+        Duration drift = getLastScheduleDrift();
+        if (drift != null && verbosity > 0) {
+            rv.append(", last run late by ").append(drift);
+        }
         if (truth(getNextScheduled())) {
             Duration untilNext = Duration.millis(getNextScheduled().getDelay(TimeUnit.MILLISECONDS));
             if (untilNext.isPositive())
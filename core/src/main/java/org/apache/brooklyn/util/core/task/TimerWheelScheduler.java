@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.base.Preconditions;
+
+/**
+ * Runs jobs after a delay, using hashed timer wheels rather than a single priority queue, for use by
+ * {@link BasicExecutionManager} when there are very many recurring {@link ScheduledTask}s (such as feed polls).
+ * <p>
+ * Jobs are spread over a number of shards (by a key, so the runs of a given scheduled task always use the same shard),
+ * each with its own thread and wheel. Adding and cancelling a job is constant time and does not contend with the
+ * shard's thread. Jobs are run within one tick of their deadline (rather than exactly at it), on the shard's thread,
+ * so they should be quick: in {@link BasicExecutionManager} they just submit the task to be run.
+ */
+@Beta
+public class TimerWheelScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(TimerWheelScheduler.class);
+
+    private static final int WHEEL_SIZE = 512;
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int RUNNING = 2;
+    private static final int DONE = 3;
+
+    private final long tickNanos;
+    private final Shard[] shards;
+    private volatile boolean shutdown = false;
+
+    private final AtomicLong scheduledCount = new AtomicLong();
+    private final AtomicLong runCount = new AtomicLong();
+    private final AtomicLong totalDriftNanos = new AtomicLong();
+    private final AtomicLong maxDriftNanos = new AtomicLong();
+
+    public TimerWheelScheduler(int numShards, Duration tick, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(numShards > 0, "numShards must be positive");
+        tickNanos = Math.max(tick.toNanoseconds(), TimeUnit.MILLISECONDS.toNanos(1));
+        shards = new Shard[numShards];
+        for (int i = 0; i < numShards; i++) {
+            shards[i] = new Shard();
+            shards[i].thread = threadFactory.newThread(shards[i]);
+            shards[i].thread.start();
+        }
+    }
+
+    /**
+     * Runs the job after the given delay, on the shard for the given key.
+     *
+     * @throws RejectedExecutionException if this scheduler has been shut down
+     */
+    public ScheduledFuture<Object> schedule(Callable<?> job, long delay, TimeUnit unit, Object shardKey) {
+        if (shutdown) throw new RejectedExecutionException("Scheduler has been shut down");
+        WheelTimeout timeout = new WheelTimeout(job, System.nanoTime() + Math.max(0, unit.toNanos(delay)));
+        Shard shard = shards[(shardKey.hashCode() & Integer.MAX_VALUE) % shards.length];
+        shard.pending.add(timeout);
+        scheduledCount.incrementAndGet();
+        return timeout;
+    }
+
+    /** Counts of jobs scheduled and run, and the mean and max time they ran after their deadline. */
+    public Map<String, Object> getMetrics() {
+        long runs = runCount.get();
+        int waiting = 0;
+        for (Shard shard : shards) {
+            waiting += shard.size.get();
+        }
+        return MutableMap.<String, Object>builder()
+                .put("shards", shards.length)
+                .put("tick", Duration.nanos(tickNanos))
+                .put("scheduled", scheduledCount.get())
+                .put("run", runs)
+                .put("waiting", waiting)
+                .put("meanDrift", runs > 0 ? Duration.nanos(totalDriftNanos.get() / runs) : null)
+                .put("maxDrift", Duration.nanos(maxDriftNanos.get()))
+                .build();
+    }
+
+    public void shutdownNow() {
+        shutdown = true;
+        for (Shard shard : shards) {
+            shard.thread.interrupt();
+        }
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Shard shard : shards) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining > 0) TimeUnit.NANOSECONDS.timedJoin(shard.thread, remaining);
+        }
+        return isTerminated();
+    }
+
+    public boolean isTerminated() {
+        for (Shard shard : shards) {
+            if (shard.thread.isAlive()) return false;
+        }
+        return shutdown;
+    }
+
+    private class Shard implements Runnable {
+        /** jobs waiting to be added to the wheel by this shard's thread */
+        final Queue<WheelTimeout> pending = new ConcurrentLinkedQueue<WheelTimeout>();
+        /** only accessed by this shard's thread */
+        final List<List<WheelTimeout>> wheel = new ArrayList<List<WheelTimeout>>(WHEEL_SIZE);
+        final AtomicInteger size = new AtomicInteger();
+        Thread thread;
+
+        Shard() {
+            for (int i = 0; i < WHEEL_SIZE; i++) {
+                wheel.add(new ArrayList<WheelTimeout>());
+            }
+        }
+
+        @Override
+        public void run() {
+            long startTime = System.nanoTime();
+            long tick = 0;
+            while (!shutdown) {
+                long tickEnd = startTime + (tick+1) * tickNanos;
+                long sleepNanos = tickEnd - System.nanoTime();
+                if (sleepNanos > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                    } catch (InterruptedException e) {
+                        if (shutdown) break;
+                        continue;
+                    }
+                }
+                addPending(startTime, tick);
+                expire(wheel.get((int) (tick % WHEEL_SIZE)));
+                tick++;
+            }
+        }
+
+        private void addPending(long startTime, long currentTick) {
+            WheelTimeout timeout;
+            while ((timeout = pending.poll()) != null) {
+                if (timeout.state.get() != PENDING) continue;
+                // the tick at the end of which the deadline will have passed
+                long deadlineTick = Math.max(currentTick, (timeout.deadlineNanos - startTime) / tickNanos);
+                timeout.remainingRounds = (deadlineTick - currentTick) / WHEEL_SIZE;
+                wheel.get((int) (deadlineTick % WHEEL_SIZE)).add(timeout);
+                size.incrementAndGet();
+            }
+        }
+
+        private void expire(List<WheelTimeout> bucket) {
+            if (bucket.isEmpty()) return;
+            List<WheelTimeout> due = new ArrayList<WheelTimeout>();
+            int retained = 0;
+            for (WheelTimeout timeout : bucket) {
+                if (timeout.state.get() != PENDING) {
+                    // cancelled; drop it
+                } else if (timeout.remainingRounds <= 0) {
+                    due.add(timeout);
+                } else {
+                    timeout.remainingRounds--;
+                    bucket.set(retained++, timeout);
+                }
+            }
+            int removed = bucket.size() - retained;
+            bucket.subList(retained, bucket.size()).clear();
+            size.addAndGet(-removed);
+
+            for (WheelTimeout timeout : due) {
+                if (shutdown) return;
+                timeout.run();
+            }
+        }
+    }
+
+    private class WheelTimeout implements ScheduledFuture<Object> {
+        final Callable<?> job;
+        final long deadlineNanos;
+        final AtomicInteger state = new AtomicInteger(PENDING);
+        final CountDownLatch completed = new CountDownLatch(1);
+        /** only accessed by the shard's thread */
+        long remainingRounds;
+        volatile Object result;
+        volatile Throwable error;
+
+        WheelTimeout(Callable<?> job, long deadlineNanos) {
+            this.job = job;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        void run() {
+            if (!state.compareAndSet(PENDING, RUNNING)) return;
+            long drift = Math.max(0, System.nanoTime() - deadlineNanos);
+            runCount.incrementAndGet();
+            totalDriftNanos.addAndGet(drift);
+            long max;
+            while ((max = maxDriftNanos.get()) < drift && !maxDriftNanos.compareAndSet(max, drift)) {}
+            try {
+                result = job.call();
+            } catch (Throwable e) {
+                error = e;
+                log.warn("Error running scheduled job "+job+" (continuing)", e);
+            } finally {
+                state.set(DONE);
+                completed.countDown();
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            long diff = getDelay(TimeUnit.NANOSECONDS) - o.getDelay(TimeUnit.NANOSECONDS);
+            return (diff < 0) ? -1 : (diff > 0) ? 1 : 0;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                completed.countDown();
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        @Override
+        public boolean isDone() {
+            int s = state.get();
+            return s == CANCELLED || s == DONE;
+        }
+
+        @Override
+        public Object get() throws InterruptedException, ExecutionException {
+            completed.await();
+            return getResult();
+        }
+
+        @Override
+        public Object get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            if (!completed.await(timeout, unit)) throw new TimeoutException();
+            return getResult();
+        }
+
+        private Object getResult() throws ExecutionException {
+            if (isCancelled()) throw new CancellationException();
+            if (error != null) throw new ExecutionException(error);
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return "WheelTimeout["+job+"]";
+        }
+    }
+}
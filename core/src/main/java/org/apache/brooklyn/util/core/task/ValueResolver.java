@@ -18,6 +18,7 @@
  */
 package org.apache.brooklyn.util.core.task;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -268,6 +269,19 @@ public class ValueResolver<T> implements DeferredSupplier<T> {
         
         if (expired) return Maybe.absent("Nested resolution of "+getOriginalValue()+" did not complete within "+timeout);
         
+        checkTypeNotNull();
+        Object v = this.value;
+        
+        //if the expected type is a closure or map and that's what we have, we're done (or if it's null);
+        //but not allowed to return a future or DeferredSupplier as the resolved value
+        if (isResolved(v))
+            return Maybe.of((T) v);
+        
+        //if deep resolution would find nothing to wait for or coerce, it would just copy the structure;
+        //so do that directly, rather than resolving each entry (which is expensive for big maps) 
+        if (forceDeep && (v instanceof Map || v instanceof Collection) && isTriviallyResolvable(v))
+            return Maybe.of((T) copyStructure(v));
+        
         ExecutionContext exec = this.exec;
         if (exec==null) {
             // if execution context not specified, take it from the current task if present
@@ -281,14 +295,6 @@ public class ValueResolver<T> implements DeferredSupplier<T> {
         if (timer!=null && !timer.isRunning())
             timer.start();
         
-        checkTypeNotNull();
-        Object v = this.value;
-        
-        //if the expected type is a closure or map and that's what we have, we're done (or if it's null);
-        //but not allowed to return a future or DeferredSupplier as the resolved value
-        if (v==null || (!forceDeep && type.isInstance(v) && !Future.class.isInstance(v) && !DeferredSupplier.class.isInstance(v)))
-            return Maybe.of((T) v);
-        
         try {
             //if it's a task or a future, we wait for the task to complete
             if (v instanceof TaskAdaptable<?>) {
@@ -419,9 +425,66 @@ public class ValueResolver<T> implements DeferredSupplier<T> {
             throw problem;
         }
         
+        //commonly a task or supplier gives a value of the right type, so no need to resolve it further
+        if (isResolved(v))
+            return Maybe.of((T) v);
+        
         return new ValueResolver(v, type, this).getMaybe();
     }
 
+    private boolean isResolved(Object v) {
+        return v==null || (!forceDeep && type.isInstance(v) && !Future.class.isInstance(v) && !DeferredSupplier.class.isInstance(v));
+    }
+    
+    /** 
+     * Whether the (deeply resolved) value has no tasks, futures or suppliers, nor values needing coercion, 
+     * in it or in any nested maps or collections; done as a single pass before any resolution.
+     */
+    private boolean isTriviallyResolvable(Object v) {
+        if (v==null) return true;
+        if (v instanceof TaskAdaptable || v instanceof Future || v instanceof DeferredSupplier) return false;
+        if (v instanceof Map) {
+            for (Map.Entry<?,?> entry : ((Map<?,?>)v).entrySet()) {
+                if (!isTriviallyResolvable(entry.getKey()) || !isTriviallyResolvable(entry.getValue())) return false;
+            }
+            return true;
+        }
+        if (v instanceof Collection) {
+            for (Object it : (Collection<?>)v) {
+                if (!isTriviallyResolvable(it)) return false;
+            }
+            return true;
+        }
+        // other iterables may not support being iterated twice 
+        if (v instanceof Iterable) return false;
+        return type.isInstance(v);
+    }
+    
+    /** copies a trivially resolvable value, giving the same structures as deep resolution */
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object copyStructure(Object v) {
+        if (v instanceof Map) {
+            Map result = Maps.newLinkedHashMap();
+            for (Map.Entry<?,?> entry : ((Map<?,?>)v).entrySet()) {
+                result.put(copyStructure(entry.getKey()), copyStructure(entry.getValue()));
+            }
+            return result;
+        } else if (v instanceof Set) {
+            Set result = Sets.newLinkedHashSet();
+            for (Object it : (Set)v) {
+                result.add(copyStructure(it));
+            }
+            return result;
+        } else if (v instanceof Iterable) {
+            List result = Lists.newArrayList();
+            for (Object it : (Iterable)v) {
+                result.add(copyStructure(it));
+            }
+            return result;
+        }
+        return v;
+    }
+
     protected String getDescription() {
         return description!=null ? description : ""+value;
     }
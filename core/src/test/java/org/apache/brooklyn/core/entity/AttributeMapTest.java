@@ -205,6 +205,27 @@ public class AttributeMapTest {
         assertEquals(map.getValue(sensor), Integer.valueOf(NUM_TASKS));
     }
     
+    @Test
+    public void testConcurrentModifyAttributeCallsWithDefaultStorage() throws Exception {
+        map = new AttributeMap(entityImpl);
+        testConcurrentModifyAttributeCalls();
+    }
+    
+    @Test
+    public void testNullValuesWithDefaultStorage() throws Exception {
+        map = new AttributeMap(entityImpl);
+        AttributeSensor<String> sensor = Sensors.newStringSensor("a", "");
+        
+        map.update(sensor, "val");
+        assertEquals(map.update(sensor, null), "val");
+        assertEquals(map.getValue(sensor), null);
+        assertTrue(map.asMap().containsKey("a"), "map="+map.asMap());
+        assertEquals(map.asMap().get("a"), null);
+        
+        assertEquals(map.modify(sensor, Functions.constant(Maybe.of("newVal"))), null);
+        assertEquals(map.getValue(sensor), "newVal");
+    }
+    
     @Test
     public void testModifyAttributeReturningAbsentDoesNotEmit() throws Exception {
         AttributeSensor<Integer> sensor = Sensors.newIntegerSensor("a", "");
@@ -31,6 +31,7 @@ import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.BasicConfigKey;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.location.SimulatedLocation;
 import org.apache.brooklyn.core.sensor.DependentConfiguration;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
@@ -311,4 +312,62 @@ public class EntityConfigMapUsageTest extends BrooklynAppUnitTestSupport {
             t.interrupt();
         }
     }
+
+    @Test
+    public void testResolvedConfigIsMemoizedUntilChanged() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(strKey, "aval"));
+        
+        assertEquals(entity.getConfig(strKey), "aval");
+        long hits = getConfigCacheHits(entity);
+        assertEquals(entity.getConfig(strKey), "aval");
+        assertEquals(getConfigCacheHits(entity), hits+1);
+        
+        ((EntityLocal)entity).config().set(strKey, "diffval");
+        assertEquals(entity.getConfig(strKey), "diffval");
+        assertEquals(getConfigCacheHits(entity), hits+1);
+    }
+    
+    @Test
+    public void testMemoizedConfigInvalidatedWhenAncestorChanges() throws Exception {
+        TestEntity e = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(strKey, "aval"));
+        TestEntity e2 = e.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity e3 = e2.createAndManageChild(EntitySpec.create(TestEntity.class));
+        assertEquals(e3.getConfig(strKey), "aval");
+        assertEquals(e3.getConfig(strKey), "aval");
+        
+        ((EntityLocal)e).config().set(strKey, "diffval");
+        assertEquals(e3.getConfig(strKey), "diffval");
+    }
+    
+    @Test
+    public void testMemoizedConfigInvalidatedWhenParentReset() throws Exception {
+        TestEntity parent = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(strKey, "aval"));
+        TestEntity entity = mgmt.getEntityManager().createEntity(EntitySpec.create(TestEntity.class));
+        assertEquals(entity.getConfig(strKey), null);
+        assertEquals(entity.getConfig(strKey), null);
+        
+        entity.setParent(parent);
+        assertEquals(entity.getConfig(strKey), "aval");
+    }
+    
+    @Test
+    public void testDeferredConfigIsNotMemoized() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        TestEntity entity2 = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(TestEntity.CONF_NAME, DependentConfiguration.attributeWhenReady(entity, TestEntity.NAME)));
+        app.start(locs);
+        
+        ((EntityLocal)entity).sensors().set(TestEntity.NAME, "aval");
+        assertEquals(entity2.getConfig(TestEntity.CONF_NAME), "aval");
+        long hits = getConfigCacheHits(entity2);
+        assertEquals(entity2.getConfig(TestEntity.CONF_NAME), "aval");
+        assertEquals(getConfigCacheHits(entity2), hits);
+    }
+    
+    private long getConfigCacheHits(TestEntity entity) {
+        return (Long) ((EntityInternal)entity).getManagementSupport().getConfigCacheMetrics().get("hits");
+    }
 }
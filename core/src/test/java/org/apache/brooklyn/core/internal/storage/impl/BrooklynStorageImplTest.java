@@ -33,6 +33,7 @@ import org.apache.brooklyn.core.internal.storage.DataGrid;
 import org.apache.brooklyn.core.internal.storage.Reference;
 import org.apache.brooklyn.core.internal.storage.impl.BrooklynStorageImpl;
 import org.apache.brooklyn.core.internal.storage.impl.inmemory.InmemoryDatagrid;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -50,9 +51,13 @@ public class BrooklynStorageImplTest {
     public void setUp() throws Exception {
         // TODO Note that InmemoryDatagrid's ConcurrentMap currently returns snapshot for entrySet() and values()
         // so the tests here aren't particularly good for confirming it'll work against a real datagrid...
-        datagrid = new InmemoryDatagrid();
+        datagrid = newDatagrid();
         storage = new BrooklynStorageImpl(datagrid);
     }
+    
+    protected DataGrid newDatagrid() {
+        return new InmemoryDatagrid();
+    }
 
     @Test
     public void testReferenceGetAndSet() throws Exception {
@@ -125,6 +130,18 @@ public class BrooklynStorageImplTest {
         assertEqualsCommutative(map, storage.getMap("mykey"), ImmutableMap.of());
     }
     
+    @Test
+    public void testMapGetAllAndPutAll() throws Exception {
+        storage.putAll("mykey", ImmutableMap.of("k1", "v1", "k2", "v2"));
+        Map<Object, Object> map = storage.getMap("mykey");
+        map.put("k3", null);
+        
+        assertEquals(map.get("k1"), "v1");
+        assertEquals(storage.getAll("mykey", ImmutableSet.<Object>of("k1", "k3", "notthere")), 
+                MutableMap.of("k1", "v1", "k3", null));
+        assertEquals(storage.getAll("otherkey", ImmutableSet.<Object>of("k1")), ImmutableMap.of());
+    }
+    
     // TODO InmemoryDatagrid's map.entrySet() returns an immutable snapshot
     // Want to test against a real datagrid instead.
     @Test(enabled=false)
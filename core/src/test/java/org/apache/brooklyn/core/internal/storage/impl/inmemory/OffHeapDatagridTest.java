@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.internal.storage.impl.inmemory;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.internal.storage.DataGridFactory;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.text.Strings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class OffHeapDatagridTest {
+
+    private OffHeapDatagrid datagrid;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        datagrid = new OffHeapDatagrid(1, 1024);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (datagrid != null) datagrid.terminate();
+    }
+
+    @Test
+    public void testGetReturnsCachedInstanceOrCopy() throws Exception {
+        Map<String, Object> map = datagrid.getMap("mymap");
+        List<String> val1 = MutableList.of("a", "b");
+        List<String> val2 = MutableList.of("c");
+        map.put("k1", val1);
+        assertSame(map.get("k1"), val1);
+
+        // cache holds only one value
+        map.put("k2", val2);
+        assertEquals(map.get("k1"), val1);
+        assertNotSame(map.get("k2"), val2);
+        assertEquals(map.get("k2"), val2);
+    }
+
+    @Test
+    public void testNonSerializableValueKeptOnHeap() throws Exception {
+        Map<String, Object> map = datagrid.getMap("mymap");
+        Object val = new Object();
+        map.put("k1", val);
+        map.put("k2", "v2");
+        assertSame(map.get("k1"), val);
+        assertEquals(datagrid.getDatagridMetrics().get("onHeapValueCount"), 1L);
+
+        map.remove("k1");
+        assertEquals(datagrid.getDatagridMetrics().get("onHeapValueCount"), 0L);
+    }
+
+    @Test
+    public void testMemoryReusedAfterRemove() throws Exception {
+        Map<String, Object> map = datagrid.getMap("mymap");
+        for (int i = 0; i < 100; i++) {
+            map.put("k"+i, Strings.makeRandomId(100));
+        }
+        long used = (Long) datagrid.getDatagridMetrics().get("offHeapBytesUsed");
+        long reserved = (Long) datagrid.getDatagridMetrics().get("offHeapBytesReserved");
+        assertTrue(used > 100*100 && used <= reserved, "used="+used+"; reserved="+reserved);
+
+        map.clear();
+        assertEquals(datagrid.getDatagridMetrics().get("offHeapBytesUsed"), 0L);
+        for (int i = 0; i < 100; i++) {
+            map.put("k"+i, Strings.makeRandomId(100));
+        }
+        assertEquals(datagrid.getDatagridMetrics().get("offHeapBytesUsed"), used);
+        assertEquals(datagrid.getDatagridMetrics().get("offHeapBytesReserved"), reserved);
+    }
+
+    @Test
+    public void testLargeValues() throws Exception {
+        Map<String, Object> map = datagrid.getMap("mymap");
+        String val = Strings.makeRandomId(10*1000);
+        map.put("k1", val);
+        map.put("k2", "v2");
+        assertEquals(map.get("k1"), val);
+        assertTrue((Long) datagrid.getDatagridMetrics().get("offHeapBytesUsed") > 10*1000);
+
+        datagrid.remove("mymap");
+        assertEquals(datagrid.getDatagridMetrics().get("offHeapBytesUsed"), 0L);
+    }
+
+    @Test
+    public void testConditionalOperationsCompareValues() throws Exception {
+        ConcurrentMap<String, Object> map = datagrid.getMap("mymap");
+        assertEquals(map.putIfAbsent("k1", "v1"), null);
+        assertEquals(map.putIfAbsent("k1", "other"), "v1");
+        assertTrue(map.replace("k1", "v1", "v2"));
+        assertEquals(map.replace("k1", "v1", "v3"), false);
+        assertEquals(map.replace("k1", "v3"), "v2");
+        assertEquals(map.remove("k1", "v2"), false);
+        assertTrue(map.remove("k1", "v3"));
+        assertTrue(map.isEmpty());
+        assertEquals(datagrid.getDatagridMetrics().get("offHeapBytesUsed"), 0L);
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Map<String, Object> map = datagrid.getMap("mymap");
+        map.put("k1", "v1");
+        map.get("k1");
+        map.put("k2", "v2");
+        map.get("k1");
+
+        Map<String, Object> metrics = datagrid.getDatagridMetrics();
+        assertEquals(metrics.get("size"), 1);
+        assertEquals(metrics.get("serializationCount"), 2L);
+        assertEquals(metrics.get("deserializationCount"), 1L);
+        assertEquals(metrics.get("cacheHits"), 1L);
+        assertEquals(metrics.get("cacheMisses"), 1L);
+        assertEquals(metrics.get("cacheHitRate"), 0.5d);
+    }
+
+    @Test
+    public void testUsedThroughDataGridFactory() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(DataGridFactory.class.getName(), OffHeapDataGridFactory.class.getName());
+        props.put(OffHeapDatagrid.CACHE_SIZE, 10);
+        LocalManagementContext mgmt = LocalManagementContextForTests.newInstance(props);
+        try {
+            mgmt.getStorage().getMap("mymap").put("k1", "v1");
+            assertEquals(mgmt.getStorage().getMap("mymap").get("k1"), "v1");
+            @SuppressWarnings("unchecked")
+            Map<String, Object> metrics = (Map<String, Object>) mgmt.getStorage().getStorageMetrics().get("datagrid");
+            assertTrue(metrics.containsKey("offHeapBytesUsed"), "metrics="+metrics);
+        } finally {
+            mgmt.terminate();
+        }
+    }
+}
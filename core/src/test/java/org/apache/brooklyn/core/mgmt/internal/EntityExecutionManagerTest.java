@@ -49,7 +49,10 @@ import org.apache.brooklyn.core.test.entity.TestApplication;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.collections.MutableSet;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.CompletedTaskRecord;
+import org.apache.brooklyn.util.core.task.DynamicTasks;
 import org.apache.brooklyn.util.core.task.ExecutionListener;
 import org.apache.brooklyn.util.core.task.TaskBuilder;
 import org.apache.brooklyn.util.core.task.Tasks;
@@ -200,6 +203,16 @@ public class EntityExecutionManagerTest {
     @Test
     public void testGcTaskWithTagAndEntityLimit() throws Exception {
         app = TestApplication.Factory.newManagedInstanceForTests();
+        runTasksWithTagAndEntityLimitAndAssertGc();
+    }
+    
+    @Test
+    public void testIncrementalGcTaskWithTagAndEntityLimit() throws Exception {
+        app = newAppWithIncrementalGc(BrooklynProperties.Factory.newEmpty());
+        runTasksWithTagAndEntityLimitAndAssertGc();
+    }
+    
+    protected void runTasksWithTagAndEntityLimitAndAssertGc() {
         e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
         
         ((BrooklynProperties)app.getManagementContext().getConfig()).put(
@@ -238,6 +251,68 @@ public class EntityExecutionManagerTest {
         assertTaskCountForEntitySoon(e, 5);
     }
     
+    @Test
+    public void testIncrementalGcTaskAtNormalTagLimit() throws Exception {
+        app = newAppWithIncrementalGc(BrooklynProperties.Factory.newEmpty());
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.MAX_TASKS_PER_TAG, 2);
+
+        for (int count=0; count<5; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        assertTaskCountForEntitySoon(e, 2);
+        
+        // only the tags of newly completed tasks are checked, but still using the limit
+        for (int count=5; count<8; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        assertTaskCountForEntitySoon(e, 2);
+        Set<String> names = MutableSet.of();
+        for (Task<?> t : BrooklynTaskTags.getTasksInEntityContext(app.getManagementContext().getExecutionManager(), e)) {
+            names.add(t.getDisplayName());
+        }
+        assertEquals(names, ImmutableSet.of("task6", "task7"));
+    }
+    
+    @Test
+    public void testIncrementalGcTaskAtAge() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASK_AGE, Duration.millis(50));
+        app = newAppWithIncrementalGc(brooklynProperties);
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        for (int count=0; count<3; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "boring-tag");
+        Time.sleep(Duration.millis(100));
+        
+        assertTaskCountForEntitySoon(e, 0);
+    }
+    
+    @Test
+    public void testIncrementalGcTaskAtGlobalLimit() throws Exception {
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_GLOBAL, 4);
+        app = newAppWithIncrementalGc(brooklynProperties);
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        final BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+        
+        for (int count=0; count<10; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "tag"+count);
+        final Task<?> newest = runEmptyTaskWithNameAndTags(e, "newest", ManagementContextInternal.NON_TRANSIENT_TASK_TAG);
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                forceGc();
+                assertTrue(em.getNumInMemoryTasks() - em.getNumIncompleteTasks() <= 4, "tasks="+em.getAllTasks());
+                assertEquals(em.getTask(newest.getId()), newest);
+            }});
+    }
+    
+    protected TestApplication newAppWithIncrementalGc(BrooklynProperties brooklynProperties) {
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, true);
+        return ApplicationBuilder.newManagedApp(TestApplication.class, LocalManagementContextForTests.newInstance(brooklynProperties));
+    }
+    
     @Test
     public void testGcDynamicTaskAtNormalTagLimit() throws Exception {
         app = TestApplication.Factory.newManagedInstanceForTests();
@@ -257,6 +332,89 @@ public class EntityExecutionManagerTest {
         assertTaskCountForEntitySoon(e, 2);
     }
     
+    @Test
+    public void testCompletedTaskCompactedButStillListed() throws Exception {
+        app = TestApplication.Factory.newManagedInstanceForTests();
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        ((BrooklynProperties)app.getManagementContext().getConfig()).put(
+            BrooklynGarbageCollector.COMPACT_TASK_AGE, Duration.ZERO);
+        
+        TaskBuilder<Object> tb = Tasks.builder().displayName("task-with-child").dynamic(true)
+            .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG).tag("boring-tag")
+            .body(new Callable<Object>() {
+                @Override public Object call() {
+                    return DynamicTasks.queue(newEmptyTask("child").body(Callables.<Object>returning("myresult")).build()).getUnchecked();
+                }});
+        Task<Object> task = ((EntityInternal)e).getExecutionContext().submit(tb.build());
+        task.getUnchecked();
+        forceGc();
+        
+        Task<?> record = app.getManagementContext().getExecutionManager().getTask(task.getId());
+        assertTrue(record instanceof CompletedTaskRecord, "record="+record);
+        assertEquals(record, task);
+        assertEquals(record.getDisplayName(), "task-with-child");
+        assertEquals(record.getUnchecked(), "myresult");
+        assertTrue(record.getTags().contains("boring-tag"), "tags="+record.getTags());
+        for (Task<?> t : BrooklynTaskTags.getTasksInEntityContext(app.getManagementContext().getExecutionManager(), e)) {
+            assertTrue(t instanceof CompletedTaskRecord, "task="+t);
+        }
+        
+        Task<?> child = Iterables.getOnlyElement(((CompletedTaskRecord)record).getChildren());
+        assertTrue(child instanceof CompletedTaskRecord, "child="+child);
+        assertEquals(child.getDisplayName(), "child");
+        assertEquals(child.getUnchecked(), "myresult");
+    }
+    
+    @Test
+    public void testCompactedTaskKeepsError() throws Exception {
+        app = TestApplication.Factory.newManagedInstanceForTests();
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        
+        Task<Object> task = ((EntityInternal)e).getExecutionContext().submit(newEmptyTask("failing-task")
+            .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG)
+            .body(new Callable<Object>() {
+                @Override public Object call() {
+                    throw new IllegalStateException("Simulated failure");
+                }}).build());
+        task.blockUntilEnded();
+        
+        Task<?> record = ((BasicExecutionManager)app.getManagementContext().getExecutionManager()).compactTask(task);
+        assertTrue(record.isError());
+        try {
+            record.getUnchecked();
+            fail("should have thrown");
+        } catch (Exception ex) {
+            Asserts.expectedFailureContains(ex, "Simulated failure");
+        }
+    }
+
+    @Test
+    public void testOldestCompactedTasksDeletedWhenOverSize() throws Exception {
+        app = TestApplication.Factory.newManagedInstanceForTests();
+        e = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        BasicExecutionManager em = (BasicExecutionManager) app.getManagementContext().getExecutionManager();
+        BrooklynProperties brooklynProperties = (BrooklynProperties)app.getManagementContext().getConfig();
+        brooklynProperties.put(BrooklynGarbageCollector.COMPACT_TASK_AGE, Duration.ZERO);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_COMPACTED_TASKS_SIZE, Long.MAX_VALUE);
+
+        for (int count=0; count<9; count++)
+            runEmptyTaskWithNameAndTags(e, "task"+count, ManagementContextInternal.NON_TRANSIENT_TASK_TAG, "tag"+count);
+        forceGc();
+        long numCompacted = em.getNumCompactedTasks();
+        long size = em.getCompactedTasksSize();
+        assertTrue(numCompacted >= 9, "compacted="+numCompacted);
+        assertTrue(size > 0, "size="+size);
+
+        // the newest is compacted last, so should be kept
+        Task<?> newest = runEmptyTaskWithNameAndTags(e, "newest", ManagementContextInternal.NON_TRANSIENT_TASK_TAG);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_COMPACTED_TASKS_SIZE, size/2);
+        forceGc();
+
+        assertTrue(em.getCompactedTasksSize() <= size/2, "size="+em.getCompactedTasksSize()+"; max="+(size/2));
+        assertTrue(em.getNumCompactedTasks() < numCompacted, "compacted="+em.getNumCompactedTasks());
+        assertTrue(em.getTask(newest.getId()) instanceof CompletedTaskRecord, "newest="+em.getTask(newest.getId()));
+    }
+
     @Test
     public void testUnmanagedEntityCanBeGcedEvenIfPreviouslyTagged() throws Exception {
         app = TestApplication.Factory.newManagedInstanceForTests();
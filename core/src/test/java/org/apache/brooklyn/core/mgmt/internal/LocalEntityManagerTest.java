@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.internal;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+public class LocalEntityManagerTest extends BrooklynAppUnitTestSupport {
+
+    private LocalEntityManager entityManager;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        entityManager = (LocalEntityManager) mgmt.getEntityManager();
+    }
+
+    @Test
+    public void testManageAllManagesSubtree() throws Exception {
+        TestEntity entity = entityManager.getEntityFactory().createEntity(EntitySpec.create(TestEntity.class)
+                .parent(app)
+                .child(EntitySpec.create(TestEntity.class)
+                        .child(EntitySpec.create(TestEntity.class)))
+                .child(EntitySpec.create(TestEntity.class)));
+        List<Entity> subtree = ImmutableList.copyOf(Entities.descendants(entity));
+        assertEquals(subtree.size(), 4);
+        assertFalse(entityManager.isManaged(entity));
+
+        // children first, to check that parents are managed first regardless
+        entityManager.manageAll(newItems(Lists.reverse(subtree)));
+        
+        for (Entity e : subtree) {
+            assertTrue(entityManager.isManaged(e), "not managed: "+e);
+            assertTrue(((EntityInternal)e).getManagementSupport().isFullyManaged(), "not fully managed: "+e);
+            assertNotNull(entityManager.getEntity(e.getId()));
+        }
+        assertEquals(entityManager.getEntitiesInApplication(app).size(), 5);
+    }
+
+    @Test
+    public void testManageAllSkipsDescendantsOfDeployedEntity() throws Exception {
+        TestEntity entity = entityManager.getEntityFactory().createEntity(EntitySpec.create(TestEntity.class).parent(app));
+        
+        // the app is already deployed, so is skipped along with its descendants
+        entityManager.manageAll(newItems(ImmutableList.<Entity>of(app, entity)));
+        
+        assertFalse(entityManager.isManaged(entity));
+    }
+
+    @Test
+    public void testConcurrentManagementAndLookups() throws Exception {
+        final int numThreads = 10;
+        final int numPerThread = 20;
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads+1);
+        try {
+            List<Future<?>> futures = MutableList.of();
+            for (int i = 0; i < numThreads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override public Void call() {
+                        for (int j = 0; j < numPerThread; j++) {
+                            Entity child = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+                            assertTrue(entityManager.isManaged(child));
+                        }
+                        return null;
+                    }}));
+            }
+            Future<?> lookups = executor.submit(new Callable<Void>() {
+                @Override public Void call() {
+                    for (int i = 0; i < 1000; i++) {
+                        assertNotNull(entityManager.getEntity(app.getId()));
+                        entityManager.getEntities();
+                    }
+                    return null;
+                }});
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            lookups.get();
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertEquals(app.getChildren().size(), numThreads*numPerThread);
+        assertEquals(entityManager.getEntities().size(), numThreads*numPerThread + 1);
+        for (Entity child : app.getChildren()) {
+            assertTrue(entityManager.isManaged(child));
+        }
+    }
+
+    @Test
+    public void testFindEntitiesUsingIndexes() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class).tag("mytag"));
+        BasicEntity other = app.createAndManageChild(EntitySpec.create(BasicEntity.class));
+        
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.isInstanceOf(TestEntity.class))), ImmutableSet.of(entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.isInstanceOf(Entity.class))), ImmutableSet.of(app, entity, other));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.hasInterfaceMatching(".*TestEntity"))), ImmutableSet.of(entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.hasTag("mytag"))), ImmutableSet.of(entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.applicationIdEqualTo(app.getId()))), ImmutableSet.of(app, entity, other));
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesInApplication(app)), ImmutableSet.of(app, entity, other));
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesOfType(BasicEntity.class)), ImmutableSet.of(other));
+        
+        // and those the indexes cannot answer
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.idEqualTo(other.getId()))), ImmutableSet.of(other));
+    }
+
+    @Test
+    public void testIndexesUpdatedOnTagChangeAndUnmanage() throws Exception {
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        assertTrue(entityManager.getEntitiesWithTag("mytag").isEmpty());
+        
+        entity.tags().addTag("mytag");
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesWithTag("mytag")), ImmutableSet.of(entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.hasTag("mytag"))), ImmutableSet.of(entity));
+        
+        entity.tags().removeTag("mytag");
+        assertTrue(entityManager.getEntitiesWithTag("mytag").isEmpty());
+        
+        entity.tags().addTag("mytag");
+        Entities.unmanage(entity);
+        assertTrue(entityManager.getEntitiesWithTag("mytag").isEmpty());
+        assertTrue(entityManager.getEntitiesOfType(TestEntity.class).isEmpty());
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesInApplication(app)), ImmutableSet.of(app));
+    }
+
+    @Test
+    public void testIndexesUpdatedOnApplicationChange() throws Exception {
+        // managed without a parent, so in no application until it is added to one
+        BasicEntity entity = entityManager.createEntity(EntitySpec.create(BasicEntity.class));
+        entityManager.manage(entity);
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesInApplication(app)), ImmutableSet.of(app));
+
+        app.addChild(entity);
+        assertEquals(entity.getApplicationId(), app.getId());
+        assertEquals(ImmutableSet.copyOf(entityManager.getEntitiesInApplication(app)), ImmutableSet.of(app, entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntitiesInApplication(app, EntityPredicates.isInstanceOf(BasicEntity.class))), ImmutableSet.of(entity));
+        assertEquals(ImmutableSet.copyOf(entityManager.findEntities(EntityPredicates.applicationIdEqualTo(app.getId()))), ImmutableSet.of(app, entity));
+    }
+
+    private Map<Entity, ManagementTransitionMode> newItems(Iterable<Entity> entities) {
+        Map<Entity, ManagementTransitionMode> result = MutableMap.of();
+        for (Entity e : entities) {
+            result.put(e, ManagementTransitionMode.guessing(BrooklynObjectManagementMode.NONEXISTENT, BrooklynObjectManagementMode.MANAGED_PRIMARY));
+        }
+        return result;
+    }
+}
@@ -19,12 +19,14 @@
 package org.apache.brooklyn.core.mgmt.internal;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.Entity;
@@ -34,12 +36,20 @@ import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
 import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.entity.group.BasicGroup;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+
 /**
  * testing the {@link SubscriptionManager} and associated classes.
  */
@@ -171,4 +181,132 @@ public class LocalSubscriptionManagerTest extends BrooklynAppUnitTestSupport {
         if (threadException.get() != null) throw threadException.get();
     }
 
+    @Test
+    public void testEventsInOrderWhenPublishingWhileSubscribing() throws Exception {
+        final LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager(), false);
+        final AtomicBoolean publishing = new AtomicBoolean(true);
+        Thread publisher = new Thread() {
+            public void run() {
+                for (int i = 0; publishing.get() && i < 100000; i++) {
+                    subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, i));
+                }
+            }
+        };
+        
+        // each subscriber is new, so its first events are published as it is subscribed
+        List<List<Integer>> receivedBySubscriber = Lists.newArrayList();
+        publisher.start();
+        try {
+            for (int i = 0; i < 100; i++) {
+                final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+                receivedBySubscriber.add(received);
+                subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "mysubscriber-"+i), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                        @Override public void onEvent(SensorEvent<Integer> event) {
+                            received.add(event.getValue());
+                        }});
+                Thread.sleep(1);
+            }
+        } finally {
+            publishing.set(false);
+            publisher.join();
+        }
+        
+        for (List<Integer> received : receivedBySubscriber) {
+            assertEquals(received, Ordering.natural().sortedCopy(received));
+        }
+    }
+
+    @Test
+    public void testBatchedDeliveryPreservesOrder() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager(), true);
+        final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "mysubscriber"), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                @Override public void onEvent(SensorEvent<Integer> event) {
+                    received.add(event.getValue());
+                }});
+        
+        final List<Integer> expected = MutableList.of();
+        for (int i = 0; i < 1000; i++) {
+            subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, i));
+            expected.add(i);
+        }
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received, expected);
+            }});
+        assertEquals(subscriptionManager.getTotalEventsCoalesced(), 0);
+    }
+
+    @Test
+    public void testBatchedDeliveryCoalescesSupersededEvents() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager(), true);
+        final List<Integer> received = new CopyOnWriteArrayList<Integer>();
+        final CountDownLatch firstDeliveryStarted = new CountDownLatch(1);
+        final CountDownLatch firstDeliveryCanFinish = new CountDownLatch(1);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "mysubscriber", "coalesceEvents", true), 
+                entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                    @Override public void onEvent(SensorEvent<Integer> event) {
+                        received.add(event.getValue());
+                        firstDeliveryStarted.countDown();
+                        try {
+                            firstDeliveryCanFinish.await();
+                        } catch (InterruptedException e) {
+                            throw new RuntimeException(e);
+                        }
+                    }});
+        
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, 0));
+        assertTrue(firstDeliveryStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        
+        // while the subscriber is busy, these should all be coalesced into the last value
+        for (int i = 1; i <= 100; i++) {
+            subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, i));
+        }
+        firstDeliveryCanFinish.countDown();
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received, ImmutableList.of(0, 100));
+            }});
+        assertEquals(subscriptionManager.getTotalEventsCoalesced(), 99);
+    }
+
+    @Test
+    public void testBatchedDeliveryCoalescingPreservesOrder() throws Exception {
+        LocalSubscriptionManager subscriptionManager = new LocalSubscriptionManager(mgmt.getExecutionManager(), true);
+        final List<Object> received = new CopyOnWriteArrayList<Object>();
+        final CountDownLatch firstDeliveryStarted = new CountDownLatch(1);
+        final CountDownLatch firstDeliveryCanFinish = new CountDownLatch(1);
+        SensorEventListener<Object> listener = new SensorEventListener<Object>() {
+            @Override public void onEvent(SensorEvent<Object> event) {
+                received.add(event.getValue());
+                firstDeliveryStarted.countDown();
+                try {
+                    firstDeliveryCanFinish.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }};
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "mysubscriber", "coalesceEvents", true), 
+                entity, TestEntity.SEQUENCE, listener);
+        subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", "mysubscriber", "coalesceEvents", true), 
+                entity, TestEntity.NAME, listener);
+        
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, 0));
+        assertTrue(firstDeliveryStarted.await(TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        
+        // the later sequence value must not be delivered before the name, published before it
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, 1));
+        subscriptionManager.publish(new BasicSensorEvent<String>(TestEntity.NAME, entity, "myname"));
+        subscriptionManager.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, 2));
+        firstDeliveryCanFinish.countDown();
+        
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(received, ImmutableList.<Object>of(0, "myname", 2));
+            }});
+        assertEquals(subscriptionManager.getTotalEventsCoalesced(), 1);
+        assertEquals(subscriptionManager.getTotalEventsDelivered(), 3);
+    }
 }
@@ -34,6 +34,8 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
 import com.google.common.io.Files;
 
 public class FileBasedObjectStoreTest {
@@ -89,6 +91,91 @@ public class FileBasedObjectStoreTest {
         assertFalse(FileBasedObjectStore.isMementoDirExistButEmpty(basedir.getAbsolutePath()));
     }
     
+    @Test
+    public void testJournalWritesVisibleBeforeAndAfterCompaction() throws Exception {
+        FileBasedObjectStore journaledStore = newJournaledStore(parentdir, "testJournal");
+        try {
+            journaledStore.createSubPath("entities");
+            journaledStore.prepareForMasterUse();
+            journaledStore.newAccessor("entities/a").put("contents-a");
+            journaledStore.newAccessor("entities/b").put("contents-b");
+            journaledStore.newAccessor("entities/b").delete();
+            journaledStore.commitBatch();
+            
+            File entitiesDir = new File(journaledStore.getBaseDir(), "entities");
+            assertFalse(new File(entitiesDir, "a").exists());
+            assertEquals(journaledStore.newAccessor("entities/a").get(), "contents-a");
+            assertFalse(journaledStore.newAccessor("entities/b").exists());
+            assertEquals(journaledStore.listContentsWithSubPath("entities"), ImmutableList.of("entities/a"));
+            
+            journaledStore.close();
+            assertEquals(Files.toString(new File(entitiesDir, "a"), Charsets.UTF_8), "contents-a");
+            assertFalse(new File(entitiesDir, "b").exists());
+            assertEquals(journaledStore.getMetrics().get("compactedObjects"), 2L);
+        } finally {
+            journaledStore.close();
+        }
+    }
+
+    @Test
+    public void testJournalAppends() throws Exception {
+        FileBasedObjectStore journaledStore = newJournaledStore(parentdir, "testJournalAppends");
+        try {
+            journaledStore.createSubPath("entities");
+            journaledStore.prepareForMasterUse();
+            File entitiesDir = new File(journaledStore.getBaseDir(), "entities");
+
+            // not in the journal, so appended to the file
+            journaledStore.newAccessor("entities/a").append("a1");
+            assertEquals(Files.toString(new File(entitiesDir, "a"), Charsets.UTF_8), "a1");
+
+            // written to the journal, so appended there
+            journaledStore.newAccessor("entities/b").put("b1");
+            journaledStore.newAccessor("entities/b").append("b2");
+            journaledStore.commitBatch();
+            assertFalse(new File(entitiesDir, "b").exists());
+            assertEquals(journaledStore.newAccessor("entities/b").get(), "b1b2");
+
+            journaledStore.close();
+            assertEquals(Files.toString(new File(entitiesDir, "b"), Charsets.UTF_8), "b1b2");
+        } finally {
+            journaledStore.close();
+        }
+    }
+
+    @Test
+    public void testJournalRecoveredOnRestartIgnoringUncommittedRecords() throws Exception {
+        FileBasedObjectStore journaledStore = newJournaledStore(parentdir, "testJournalRecovery");
+        journaledStore.createSubPath("entities");
+        journaledStore.prepareForMasterUse();
+        journaledStore.newAccessor("entities/a").put("committed");
+        journaledStore.commitBatch();
+        journaledStore.newAccessor("entities/a").put("uncommitted");
+        // simulate a crash: don't close, so nothing is compacted and the last record is not committed
+        
+        FileBasedObjectStore restartedStore = newJournaledStore(parentdir, "testJournalRecovery");
+        try {
+            assertEquals(restartedStore.listContentsWithSubPath("entities"), ImmutableList.of("entities/a"));
+            assertEquals(restartedStore.newAccessor("entities/a").get(), "committed");
+            
+            restartedStore.prepareForMasterUse();
+            File entitiesDir = new File(restartedStore.getBaseDir(), "entities");
+            assertEquals(Files.toString(new File(entitiesDir, "a"), Charsets.UTF_8), "committed");
+            assertEquals(new File(restartedStore.getBaseDir(), FileBasedObjectStoreJournal.JOURNAL_SUB_PATH).list().length, 0);
+        } finally {
+            restartedStore.close();
+            Os.deleteRecursively(restartedStore.getBaseDir());
+        }
+    }
+    
+    private FileBasedObjectStore newJournaledStore(File parentdir, String name) {
+        mgmt.getBrooklynProperties().put(FileBasedObjectStore.PERSISTENCE_JOURNAL_ENABLED, true);
+        FileBasedObjectStore result = new FileBasedObjectStore(new File(parentdir, name));
+        result.injectManagementContext(mgmt);
+        result.prepareForSharedUse(PersistMode.AUTO, HighAvailabilityMode.DISABLED);
+        return result;
+    }
+    
     static void assertFilePermission700(File file) throws FileNotFoundException {
         assertEquals(FileUtil.getFilePermissions(file).get().substring(1), "rwx------");
     }
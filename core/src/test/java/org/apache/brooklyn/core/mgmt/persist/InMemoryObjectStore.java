@@ -142,6 +142,11 @@ public class InMemoryObjectStore implements PersistenceObjectStore {
         }
     }
 
+    @Override
+    public void commitBatch() {
+        // no-op; each write is applied immediately
+    }
+
     @Override
     public void close() {
     }
@@ -164,6 +164,11 @@ public class ListeningObjectStore implements PersistenceObjectStore {
         return result;
     }
 
+    @Override
+    public void commitBatch() {
+        delegate.commitBatch();
+    }
+
     @Override
     public void close() {
         delegate.close();
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.mgmt.rebind;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.objs.BrooklynObjectType;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
+import org.apache.brooklyn.core.mgmt.persist.BrooklynMementoPersisterToObjectStore;
+import org.apache.brooklyn.core.sensor.Sensors;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Iterables;
+import com.google.common.io.Files;
+
+public class RebindEntityAttributesPatchTest extends RebindTestFixtureWithApp {
+
+    private static final AttributeSensor<String> MY_SENSOR = Sensors.newStringSensor("test.mySensor");
+
+    private boolean origFeatureEnablement;
+    private TestEntity origEntity;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        origFeatureEnablement = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE);
+        BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE, true);
+        super.setUp();
+        origEntity = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    @Override
+    public void tearDown() throws Exception {
+        try {
+            super.tearDown();
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE, origFeatureEnablement);
+        }
+    }
+
+    @Test
+    public void testChangedAttributesWrittenAsPatchesAndAppliedOnRebind() throws Exception {
+        origEntity.sensors().set(TestEntity.SEQUENCE, 1);
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        origEntity.sensors().set(TestEntity.SEQUENCE, 2);
+        origEntity.sensors().set(MY_SENSOR, "myval");
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+
+        File patchFile = getPatchFile(origEntity.getId());
+        assertTrue(patchFile.exists());
+        String patches = Files.toString(patchFile, Charsets.UTF_8);
+        assertTrue(patches.contains("myval"), patches);
+        assertFalse(Files.toString(getEntityFile(origEntity.getId()), Charsets.UTF_8).contains("myval"));
+
+        newApp = rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        assertEquals(newEntity.getAttribute(TestEntity.SEQUENCE), (Integer)2);
+        assertEquals(newEntity.getAttribute(MY_SENSOR), "myval");
+    }
+
+    @Test
+    public void testFullWriteReplacesPatches() throws Exception {
+        origEntity.sensors().set(MY_SENSOR, "myval");
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        assertTrue(getPatchFile(origEntity.getId()).exists());
+
+        // config changes are not patched, so this writes the whole entity
+        origEntity.config().set(TestEntity.CONF_NAME, "myname");
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        assertFalse(getPatchFile(origEntity.getId()).exists());
+
+        newApp = rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        assertEquals(newEntity.getAttribute(MY_SENSOR), "myval");
+        assertEquals(newEntity.getConfig(TestEntity.CONF_NAME), "myname");
+    }
+
+    @Test
+    public void testRemovedAttributeWrittenInFull() throws Exception {
+        origEntity.sensors().set(MY_SENSOR, "myval");
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        assertTrue(getPatchFile(origEntity.getId()).exists());
+
+        origEntity.sensors().remove(MY_SENSOR);
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        assertFalse(getPatchFile(origEntity.getId()).exists());
+
+        newApp = rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        assertFalse(newEntity.sensors().getAll().containsKey(MY_SENSOR), "attributes="+newEntity.sensors().getAll());
+    }
+
+    @Test
+    public void testPatchesFromBeforeRebindReplacedByLaterFullWrite() throws Exception {
+        origEntity.sensors().set(MY_SENSOR, "myval");
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+
+        newApp = rebind();
+        TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+        newEntity.config().set(TestEntity.CONF_NAME, "myname");
+        newManagementContext.getRebindManager().forcePersistNow(false, null);
+        assertFalse(getPatchFile(newEntity.getId()).exists());
+    }
+
+    private File getPatchFile(String id) {
+        return new File(new File(mementoDir, BrooklynMementoPersisterToObjectStore.ENTITY_PATCHES_SUB_PATH), id);
+    }
+
+    private File getEntityFile(String id) {
+        return new File(new File(mementoDir, BrooklynObjectType.ENTITY.getSubPathName()), id);
+    }
+}
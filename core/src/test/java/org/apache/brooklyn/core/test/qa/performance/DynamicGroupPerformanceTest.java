@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.entity.EntityPredicates;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.entity.group.DynamicGroup;
+import org.apache.brooklyn.entity.stock.BasicEntity;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
+
+/**
+ * Measures the rate of {@link DynamicGroup#rescanEntities()} amongst 20000 entities, when the group's filter
+ * can use the entity manager's indexes (by type or tag) and when it must test every entity.
+ */
+public class DynamicGroupPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_ENTITIES = 20000;
+    private static final int NUM_MATCHING = 100;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        EntitySpec<BasicEntity> spec = EntitySpec.create(BasicEntity.class);
+        for (int i = 0; i < NUM_ENTITIES - NUM_MATCHING; i++) {
+            spec.child(EntitySpec.create(BasicEntity.class));
+        }
+        for (int i = 0; i < NUM_MATCHING; i++) {
+            spec.child(EntitySpec.create(TestEntity.class).tag("matching"));
+        }
+        app.createAndManageChild(spec);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRescanByIndexedType() {
+        measureRescan("rescanByIndexedType", EntityPredicates.isInstanceOf(TestEntity.class), 1000);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRescanByIndexedTag() {
+        measureRescan("rescanByIndexedTag", EntityPredicates.hasTag("matching"), 1000);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testRescanByUnindexedType() {
+        measureRescan("rescanByUnindexedType", Predicates.instanceOf(TestEntity.class), 10);
+    }
+
+    protected void measureRescan(String summary, Predicate<? super Entity> filter, double minRatePerSec) {
+        final DynamicGroup group = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_FILTER, filter));
+        assertEquals(group.getMembers().size(), NUM_MATCHING);
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("DynamicGroupPerformanceTest."+summary)
+                .warmupIterations(10)
+                .iterations(100)
+                .minAcceptablePerSecond(minRatePerSec * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        group.rescanEntities();
+                    }}));
+    }
+}
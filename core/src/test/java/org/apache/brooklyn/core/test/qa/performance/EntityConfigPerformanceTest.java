@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.EntityInternal;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the rate of config lookups on an entity at the bottom of a deep hierarchy,
+ * for config set on that entity, inherited from the top of the hierarchy, and left to default.
+ */
+public class EntityConfigPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int DEPTH = 10;
+    private static final int NUM_ITERATIONS = 100000;
+
+    private static final ConfigKey<String> OWN_KEY = ConfigKeys.newStringConfigKey("test.perf.own");
+    private static final ConfigKey<Duration> INHERITED_KEY = ConfigKeys.newConfigKey(Duration.class, "test.perf.inherited");
+    private static final ConfigKey<Integer> DEFAULTED_KEY = ConfigKeys.newIntegerConfigKey("test.perf.defaulted", "", 123);
+
+    private TestEntity leaf;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        
+        TestEntity entity = app.createAndManageChild(EntitySpec.create(TestEntity.class)
+                .configure(INHERITED_KEY, Duration.ONE_MINUTE));
+        for (int i = 1; i < DEPTH; i++) {
+            entity = entity.createAndManageChild(EntitySpec.create(TestEntity.class)
+                    .configure(OWN_KEY, "val"+i));
+        }
+        leaf = entity;
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetOwnConfig() {
+        assertEquals(leaf.getConfig(OWN_KEY), "val"+(DEPTH-1));
+        measureGetConfig("testGetOwnConfig", OWN_KEY);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetInheritedConfig() {
+        assertEquals(leaf.getConfig(INHERITED_KEY), Duration.ONE_MINUTE);
+        measureGetConfig("testGetInheritedConfig", INHERITED_KEY);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testGetDefaultedConfig() {
+        assertEquals(leaf.getConfig(DEFAULTED_KEY), (Integer)123);
+        measureGetConfig("testGetDefaultedConfig", DEFAULTED_KEY);
+    }
+
+    protected void measureGetConfig(String name, final ConfigKey<?> key) {
+        measure(PerformanceTestDescriptor.create()
+                .summary("EntityConfigPerformanceTest."+name)
+                .warmupIterations(NUM_ITERATIONS/10)
+                .iterations(NUM_ITERATIONS)
+                .minAcceptablePerSecond(10000 * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    public void run() {
+                        leaf.getConfig(key);
+                    }}));
+        System.out.println("config cache metrics: "+((EntityInternal)leaf).getManagementSupport().getConfigCacheMetrics());
+    }
+}
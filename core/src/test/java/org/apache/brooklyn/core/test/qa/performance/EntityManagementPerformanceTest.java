@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.EntityManager;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynObjectManagementMode;
+import org.apache.brooklyn.core.mgmt.internal.LocalEntityManager;
+import org.apache.brooklyn.core.mgmt.internal.ManagementTransitionMode;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
+import org.testng.annotations.Test;
+
+/**
+ * Measures the time to manage (and unmanage) trees of entities such as a large cluster,
+ * while other threads look up entities by id.
+ */
+public class EntityManagementPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_LOOKUP_THREADS = 4;
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testManageTreeOf100Entities() {
+        measureManageTree("manageTreeOf100Entities", 100, false, 10);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testManageTreeOf1000Entities() {
+        measureManageTree("manageTreeOf1000Entities", 1000, false, 1);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testManageAllTreeOf1000Entities() {
+        measureManageTree("manageAllTreeOf1000Entities", 1000, true, 1);
+    }
+
+    protected void measureManageTree(String summary, final int numChildren, final boolean useManageAll, double minRatePerSec) {
+        final LocalEntityManager entityManager = (LocalEntityManager) mgmt.getEntityManager();
+        final EntitySpec<TestEntity> spec = EntitySpec.create(TestEntity.class).parent(app);
+        for (int i = 0; i < numChildren; i++) {
+            spec.child(EntitySpec.create(TestEntity.class));
+        }
+
+        LookupThreads lookups = new LookupThreads(entityManager, app.getId());
+        lookups.start();
+        try {
+            measure(PerformanceTestDescriptor.create()
+                    .summary("EntityManagementPerformanceTest."+summary)
+                    .warmupIterations(2)
+                    .iterations(10)
+                    .minAcceptablePerSecond(minRatePerSec * PERFORMANCE_EXPECTATION)
+                    .job(new Runnable() {
+                        @Override
+                        public void run() {
+                            Entity entity;
+                            if (useManageAll) {
+                                entity = entityManager.getEntityFactory().createEntity(spec);
+                                Map<Entity, ManagementTransitionMode> items = MutableMap.of();
+                                for (Entity e : Entities.descendants(entity)) {
+                                    items.put(e, ManagementTransitionMode.guessing(BrooklynObjectManagementMode.NONEXISTENT, BrooklynObjectManagementMode.MANAGED_PRIMARY));
+                                }
+                                entityManager.manageAll(items);
+                            } else {
+                                entity = entityManager.createEntity(spec);
+                            }
+                            Entities.unmanage(entity);
+                        }}));
+        } finally {
+            lookups.stop();
+        }
+        System.out.println("EntityManagementPerformanceTest."+summary+": "+lookups.getCount()+" lookups by "+NUM_LOOKUP_THREADS+" threads "
+                + "in "+Time.makeTimeStringRounded(lookups.getDuration()));
+    }
+
+    private static class LookupThreads {
+        private final EntityManager entityManager;
+        private final String entityId;
+        private final AtomicBoolean running = new AtomicBoolean();
+        private final AtomicLong count = new AtomicLong();
+        private final List<Thread> threads = MutableList.of();
+        private long startTime;
+        private long endTime;
+
+        LookupThreads(EntityManager entityManager, String entityId) {
+            this.entityManager = entityManager;
+            this.entityId = entityId;
+        }
+
+        void start() {
+            running.set(true);
+            startTime = System.currentTimeMillis();
+            for (int i = 0; i < NUM_LOOKUP_THREADS; i++) {
+                Thread thread = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        while (running.get()) {
+                            entityManager.isManaged(entityManager.getEntity(entityId));
+                            count.incrementAndGet();
+                        }
+                    }}, "entity-lookups-"+i);
+                thread.setDaemon(true);
+                thread.start();
+                threads.add(thread);
+            }
+        }
+
+        void stop() {
+            running.set(false);
+            endTime = System.currentTimeMillis();
+            for (Thread thread : threads) {
+                try {
+                    thread.join(TIMEOUT_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+
+        long getCount() {
+            return count.get();
+        }
+
+        Duration getDuration() {
+            return Duration.millis(endTime - startTime);
+        }
+    }
+}
@@ -18,8 +18,20 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertEquals;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynGarbageCollector;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.CompletedTaskRecord;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableMap;
+
 
 @Test(groups={"Integration", "Acceptance"})
 public class EntityPerformanceLongevityTest extends EntityPerformanceTest {
@@ -31,5 +43,38 @@ public class EntityPerformanceLongevityTest extends EntityPerformanceTest {
 //    protected int numIterations() {
 //        return 1000000;
 //    }
+
+    /**
+     * Reports the heap used by the history of many completed effector tasks, as the tasks themselves 
+     * and then once compacted into {@link CompletedTaskRecord}s.
+     */
+    public void testHeapUsedByCompletedTaskHistory() {
+        int numEffectorCalls = 10*1000;
+        BasicExecutionManager em = (BasicExecutionManager) mgmt.getExecutionManager();
+        BrooklynGarbageCollector gc = ((LocalManagementContext)mgmt).getGarbageCollector();
+        // keep all the tasks for the duration of the test (tests normally use a test management context with a short gc period)
+        ((BrooklynProperties)mgmt.getConfig()).put(BrooklynGarbageCollector.MAX_TASKS_PER_ENTITY, numEffectorCalls);
+        ((BrooklynProperties)mgmt.getConfig()).put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, numEffectorCalls);
+        ((BrooklynProperties)mgmt.getConfig()).put(BrooklynGarbageCollector.COMPACT_TASK_AGE, Duration.days(1));
+        
+        long usedBefore = usedHeapAfterGc();
+        for (int i = 0; i < numEffectorCalls; i++) {
+            entities.get(i % entities.size()).invoke(TestEntity.MY_EFFECTOR, ImmutableMap.<String,Object>of()).getUnchecked();
+        }
+        long numTasks = em.getNumInMemoryTasks();
+        long usedWithTasks = usedHeapAfterGc();
+        
+        int numCompacted = gc.compactCompletedTasks(Duration.ZERO);
+        long usedWithRecords = usedHeapAfterGc();
+        
+        System.out.println("heap used by history of "+numEffectorCalls+" effector calls ("+numTasks+" tasks in memory): "
+                + "as tasks="+Strings.makeSizeString(usedWithTasks-usedBefore)+"; "
+                + "compacted ("+numCompacted+" records)="+Strings.makeSizeString(usedWithRecords-usedBefore));
+        assertEquals(em.getNumInMemoryTasks(), numTasks);
+    }
     
+    private long usedHeapAfterGc() {
+        for (int i = 0; i < 5; i++) System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
 }
@@ -22,6 +22,7 @@ import static org.testng.Assert.assertTrue;
 
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.mgmt.Task;
@@ -33,9 +34,11 @@ import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.guava.Maybe;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
@@ -161,4 +164,58 @@ public class EntityPerformanceTest extends AbstractPerformanceTest {
                         }
                     }}));
     }
+
+    /**
+     * Sets, gets and modifies an attribute while other threads repeatedly read single attributes and take 
+     * snapshots of all attributes (as the REST sensor resource and the persister do).
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testAttributeSetGetModifyWithConcurrentReaders() throws Exception {
+        int numIterations = numIterations() * 100;
+        double minRatePerSec = 1000 * PERFORMANCE_EXPECTATION;
+        int numReaders = 4;
+        final AtomicInteger i = new AtomicInteger();
+        final AtomicLong readCount = new AtomicLong();
+        final List<Exception> exceptions = Lists.newCopyOnWriteArrayList();
+        final Function<Integer, Maybe<Integer>> incrementer = new Function<Integer, Maybe<Integer>>() {
+            @Override public Maybe<Integer> apply(Integer input) {
+                return Maybe.of(input == null ? 1 : input + 1);
+            }};
+        
+        List<Thread> readers = Lists.newArrayList();
+        for (int r = 0; r < numReaders; r++) {
+            Thread reader = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            entity.sensors().get(TestEntity.SEQUENCE);
+                            entity.sensors().get(TestEntity.NAME);
+                            if (readCount.incrementAndGet() % 100 == 0) entity.sensors().getAll();
+                        }
+                    } catch (Exception e) {
+                        exceptions.add(e);
+                    }
+                }}, "attribute-reader-"+r);
+            readers.add(reader);
+        }
+        
+        try {
+            for (Thread reader : readers) reader.start();
+            measure(PerformanceTestDescriptor.create()
+                    .summary("EntityPerformanceTest.testAttributeSetGetModifyWithConcurrentReaders")
+                    .iterations(numIterations)
+                    .minAcceptablePerSecond(minRatePerSec)
+                    .job(new Runnable() {
+                        public void run() {
+                            entity.sensors().set(TestEntity.SEQUENCE, i.getAndIncrement());
+                            entity.sensors().get(TestEntity.SEQUENCE);
+                            entity.sensors().modify(TestEntity.SEQUENCE, incrementer);
+                        }}));
+        } finally {
+            for (Thread reader : readers) reader.interrupt();
+            for (Thread reader : readers) reader.join(TIMEOUT_MS);
+        }
+        System.out.println("EntityPerformanceTest.testAttributeSetGetModifyWithConcurrentReaders: "+readCount.get()+" concurrent reads");
+        if (exceptions.size() > 0) throw exceptions.get(0);
+    }
 }
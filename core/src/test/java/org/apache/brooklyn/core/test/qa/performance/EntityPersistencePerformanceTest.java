@@ -18,6 +18,8 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertEquals;
+
 import java.util.List;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
@@ -26,11 +28,15 @@ import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.LocationSpec;
 import org.apache.brooklyn.api.policy.Policy;
 import org.apache.brooklyn.api.policy.PolicySpec;
+import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.BrooklynFeatureEnablement;
 import org.apache.brooklyn.core.location.SimulatedLocation;
 import org.apache.brooklyn.core.mgmt.rebind.RebindTestFixtureWithApp;
+import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.core.test.policy.TestPolicy;
 import org.apache.brooklyn.test.PerformanceTestUtils;
+import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.repeat.Repeater;
 import org.apache.brooklyn.util.time.Duration;
 import org.testng.annotations.Test;
@@ -64,6 +70,54 @@ public class EntityPersistencePerformanceTest extends RebindTestFixtureWithApp {
         run(NUM_ENTITIES, TEST_LENGTH, REPEAT_EVERY, "rapidChanges");
     }
     
+    /**
+     * Compares the CPU cost of each persist cycle for an entity with many sensors where just one changes,
+     * writing the whole entity versus writing just the changed attribute.
+     */
+    @Test(groups="Integration")
+    public void testOneChangedSensorOfManyFullVersusIncremental() throws Exception {
+        final int NUM_SENSORS = 300;
+        final int NUM_CYCLES = 1000;
+        
+        TestEntity entity = origApp.createAndManageChild(EntitySpec.create(TestEntity.class));
+        List<AttributeSensor<String>> sensors = MutableList.of();
+        for (int i = 0; i < NUM_SENSORS; i++) {
+            AttributeSensor<String> sensor = Sensors.newStringSensor("test.perf.sensor"+i);
+            entity.sensors().set(sensor, "initial-value-"+i);
+            sensors.add(sensor);
+        }
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+        
+        boolean wasEnabled = BrooklynFeatureEnablement.isEnabled(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE);
+        try {
+            int seq = 0;
+            for (boolean incremental : new boolean[] {false, true}) {
+                BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE, incremental);
+                long cpuStart = PerformanceTestUtils.getProcessCpuTime();
+                long timeStart = System.nanoTime();
+                for (int i = 0; i < NUM_CYCLES; i++) {
+                    entity.sensors().set(TestEntity.SEQUENCE, seq++);
+                    origManagementContext.getRebindManager().forcePersistNow(false, null);
+                }
+                long cpuPerCycle = (PerformanceTestUtils.getProcessCpuTime() - cpuStart) / NUM_CYCLES;
+                long timePerCycle = (System.nanoTime() - timeStart) / NUM_CYCLES;
+                System.out.println("persist cycles, one of "+NUM_SENSORS+" sensors changed, "+(incremental ? "incremental" : "full")+": "
+                        + "cpuPerCycle="+Duration.nanos(cpuPerCycle)+"; timePerCycle="+Duration.nanos(timePerCycle));
+            }
+            
+            entity.sensors().set(sensors.get(0), "changed-value");
+            origManagementContext.getRebindManager().forcePersistNow(false, null);
+            
+            newApp = rebind();
+            TestEntity newEntity = (TestEntity) Iterables.getOnlyElement(newApp.getChildren());
+            assertEquals(newEntity.getAttribute(TestEntity.SEQUENCE), (Integer)(seq-1));
+            assertEquals(newEntity.getAttribute(sensors.get(0)), "changed-value");
+            assertEquals(newEntity.getAttribute(sensors.get(NUM_SENSORS-1)), "initial-value-"+(NUM_SENSORS-1));
+        } finally {
+            BrooklynFeatureEnablement.setEnablement(BrooklynFeatureEnablement.FEATURE_INCREMENTAL_ENTITY_PERSISTENCE, wasEnabled);
+        }
+    }
+    
     protected void run(int numEntities, Duration testLength, Duration repeatEvery, String loggingContext) throws Exception {
         final List<TestEntity> entities = Lists.newArrayList();
         final List<SimulatedLocation> locs = Lists.newArrayList();
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import static org.testng.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+
+import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.rebind.RebindManagerImpl;
+import org.apache.brooklyn.core.mgmt.rebind.RebindTestFixtureWithApp;
+import org.apache.brooklyn.core.test.entity.TestApplication;
+import org.apache.brooklyn.core.test.entity.TestEntity;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+
+/**
+ * Rebinds a large number of persisted entities, reporting the wall time and peak heap usage,
+ * both sequentially and with {@link RebindManagerImpl#REBIND_MAX_THREADS} allowing subtrees to be rebound concurrently.
+ */
+public class EntityRebindPerformanceTest extends RebindTestFixtureWithApp {
+
+    private static final int NUM_APPS = 100;
+    private static final int NUM_CHILDREN_PER_APP = 199;
+
+    private int rebindMaxThreads = 1;
+
+    @Override
+    protected BrooklynProperties createBrooklynProperties() {
+        BrooklynProperties result = super.createBrooklynProperties();
+        result.put(RebindManagerImpl.REBIND_MAX_THREADS, rebindMaxThreads);
+        return result;
+    }
+
+    @Test(groups="Acceptance")
+    public void testRebindManyEntitiesSequentially() throws Exception {
+        runRebind(1, "sequential");
+    }
+
+    @Test(groups="Acceptance")
+    public void testRebindManyEntitiesConcurrently() throws Exception {
+        runRebind(Runtime.getRuntime().availableProcessors(), "concurrent");
+    }
+
+    protected void runRebind(int maxThreads, String loggingContext) throws Exception {
+        for (int i = 0; i < NUM_APPS; i++) {
+            TestApplication app = origManagementContext.getEntityManager().createEntity(EntitySpec.create(TestApplication.class));
+            for (int j = 0; j < NUM_CHILDREN_PER_APP; j++) {
+                app.createAndManageChild(EntitySpec.create(TestEntity.class));
+            }
+        }
+        int numEntities = origManagementContext.getEntityManager().getEntities().size();
+        origManagementContext.getRebindManager().forcePersistNow(false, null);
+
+        rebindMaxThreads = maxThreads;
+        System.gc();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        rebind();
+        Duration rebindTime = Duration.of(stopwatch);
+
+        // sum of the peaks of each heap pool, so an upper bound on the actual peak
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) peakHeap += pool.getPeakUsage().getUsed();
+        }
+
+        assertEquals(newManagementContext.getEntityManager().getEntities().size(), numEntities);
+        System.out.println("rebind "+loggingContext+" (maxThreads="+maxThreads+") of "+numEntities+" entities: "
+                + "time="+rebindTime+"; peakHeapMb="+(peakHeap/(1024*1024))+"; "
+                + "metrics="+newManagementContext.getRebindManager().getMetrics().get("rebind"));
+    }
+}
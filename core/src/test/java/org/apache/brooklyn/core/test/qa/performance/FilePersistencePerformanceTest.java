@@ -21,20 +21,28 @@ package org.apache.brooklyn.core.test.qa.performance;
 import java.io.File;
 import java.io.IOException;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.brooklyn.api.mgmt.ha.HighAvailabilityMode;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.mgmt.persist.FileBasedObjectStore;
 import org.apache.brooklyn.core.mgmt.persist.FileBasedStoreObjectAccessor;
+import org.apache.brooklyn.core.mgmt.persist.PersistMode;
+import org.apache.brooklyn.core.mgmt.persist.PersistenceObjectStore.StoreObjectAccessor;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
 import org.apache.brooklyn.util.collections.MutableList;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.internal.ssh.process.ProcessTool;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.io.FileUtil;
+import org.apache.brooklyn.util.os.Os;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
@@ -243,4 +251,54 @@ public class FilePersistencePerformanceTest extends AbstractPerformanceTest {
                          file = newFile;
                      }}));
      }
+
+     @Test(groups={"Integration", "Acceptance"})
+     public void testPersistCyclesFullRewriteVersusJournal() throws Exception {
+         measurePersistCycles(false);
+         measurePersistCycles(true);
+     }
+     
+     /**
+      * Each cycle rewrites every object, as a delta does when all entities' sensors have changed,
+      * then marks the end of the batch; reports the bytes written to disk per cycle.
+      */
+     protected void measurePersistCycles(boolean journalEnabled) throws Exception {
+         int numIterations = numIterations();
+         double minRatePerSec = 1 * PERFORMANCE_EXPECTATION;
+         final int numObjects = 500;
+         final String padding = Strings.repeat("<attribute>some-sensor-value</attribute>", 100);
+         
+         ((ManagementContextInternal)mgmt).getBrooklynProperties().put(FileBasedObjectStore.PERSISTENCE_JOURNAL_ENABLED, journalEnabled);
+         final FileBasedObjectStore store = new FileBasedObjectStore(new File(Os.newTempDir(getClass()), "persistCycles"));
+         try {
+             store.injectManagementContext(mgmt);
+             store.prepareForSharedUse(PersistMode.CLEAN, HighAvailabilityMode.DISABLED);
+             store.createSubPath("entities");
+             store.prepareForMasterUse();
+             final List<StoreObjectAccessor> accessors = Lists.newArrayList();
+             for (int i = 0; i < numObjects; i++) {
+                 accessors.add(store.newAccessor("entities/entity-"+i));
+             }
+             final AtomicInteger cycle = new AtomicInteger();
+             
+             measure(PerformanceTestDescriptor.create()
+                     .summary("FilePersistencePerformanceTest.testPersistCycles(journal="+journalEnabled+")")
+                     .iterations(numIterations)
+                     .minAcceptablePerSecond(minRatePerSec)
+                     .job(new Runnable() {
+                         public void run() {
+                             int c = cycle.incrementAndGet();
+                             for (int i = 0; i < accessors.size(); i++) {
+                                 accessors.get(i).put("<entity><id>entity-"+i+"</id><cycle>"+c+"</cycle>"+padding+"</entity>");
+                             }
+                             store.commitBatch();
+                         }}));
+             
+             Map<String, Object> metrics = store.getMetrics();
+             System.out.println("journal="+journalEnabled+"; cycles="+cycle.get()+"; bytesWrittenPerCycle="+((Long)metrics.get("bytesWritten") / cycle.get())+"; metrics="+metrics);
+         } finally {
+             store.close();
+             Os.deleteRecursively(store.getBaseDir().getParentFile());
+         }
+     }
 }
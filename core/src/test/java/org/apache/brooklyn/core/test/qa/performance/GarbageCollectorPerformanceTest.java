@@ -0,0 +1,110 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.entity.Entities;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.mgmt.internal.BrooklynGarbageCollector;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.core.test.entity.LocalManagementContextForTests;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.util.concurrent.Callables;
+
+/**
+ * Measures the time taken by each collection of the {@link BrooklynGarbageCollector} (during which it holds its lock)
+ * for different numbers of tasks in memory, none of which need deleting, with and without
+ * {@link BrooklynGarbageCollector#INCREMENTAL}.
+ */
+public class GarbageCollectorPerformanceTest extends AbstractPerformanceTest {
+
+    private LocalManagementContext gcMgmt;
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDownGcManagementContext() throws Exception {
+        if (gcMgmt != null) Entities.destroyAll(gcMgmt);
+        gcMgmt = null;
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testFullGcWith10kTasks() {
+        measureGc(false, 10*1000, 10);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testFullGcWith100kTasks() {
+        measureGc(false, 100*1000, 1);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testIncrementalGcWith10kTasks() {
+        measureGc(true, 10*1000, 100);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testIncrementalGcWith100kTasks() {
+        measureGc(true, 100*1000, 100);
+    }
+
+    protected void measureGc(boolean incremental, int numTasks, double minRatePerSec) {
+        int maxTasksPerTag = 50;
+        BrooklynProperties brooklynProperties = BrooklynProperties.Factory.newEmpty();
+        brooklynProperties.put(BrooklynGarbageCollector.INCREMENTAL, incremental);
+        // only collect when asked to
+        brooklynProperties.put(BrooklynGarbageCollector.GC_PERIOD, Duration.ONE_DAY);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_PER_TAG, maxTasksPerTag);
+        brooklynProperties.put(BrooklynGarbageCollector.MAX_TASKS_GLOBAL, numTasks*2);
+        gcMgmt = LocalManagementContextForTests.newInstance(brooklynProperties);
+        final BrooklynGarbageCollector gc = gcMgmt.getGarbageCollector();
+        BasicExecutionManager em = (BasicExecutionManager) gcMgmt.getExecutionManager();
+
+        // spread the tasks over tags so that every tag is at its limit
+        List<Task<?>> tasks = MutableList.of();
+        for (int i = 0; i < numTasks; i++) {
+            tasks.add(em.submit(Tasks.builder().displayName("task-"+i).dynamic(false).body(Callables.returning(null))
+                    .tag(ManagementContextInternal.NON_TRANSIENT_TASK_TAG).tag("tag-"+(i % (numTasks / maxTasksPerTag)))
+                    .build()));
+        }
+        for (Task<?> task : tasks) {
+            task.getUnchecked();
+        }
+        gc.gcIteration();
+
+        measure(PerformanceTestDescriptor.create()
+                .summary("GarbageCollectorPerformanceTest."+(incremental ? "incremental" : "full")+"GcWith"+numTasks+"Tasks")
+                .warmupIterations(5)
+                .iterations(20)
+                .minAcceptablePerSecond(minRatePerSec * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    @Override
+                    public void run() {
+                        gc.gcIteration();
+                    }}));
+    }
+}
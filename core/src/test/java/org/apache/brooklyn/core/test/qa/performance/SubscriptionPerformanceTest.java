@@ -18,18 +18,27 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.brooklyn.api.entity.EntitySpec;
+import org.apache.brooklyn.api.mgmt.SubscriptionHandle;
 import org.apache.brooklyn.api.mgmt.SubscriptionManager;
 import org.apache.brooklyn.api.sensor.SensorEvent;
 import org.apache.brooklyn.api.sensor.SensorEventListener;
+import org.apache.brooklyn.core.mgmt.internal.LocalSubscriptionManager;
+import org.apache.brooklyn.core.sensor.BasicSensorEvent;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
 import org.apache.brooklyn.util.collections.MutableMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
@@ -38,6 +47,8 @@ import com.google.common.collect.Lists;
 
 public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SubscriptionPerformanceTest.class);
+
     private static final int NUM_ITERATIONS = 10000;
     
     TestEntity entity;
@@ -152,4 +163,135 @@ public class SubscriptionPerformanceTest extends AbstractPerformanceTest {
             throw exception.get();
         }
     }
+
+    /**
+     * Compares per-event task delivery with batched (mailbox) delivery, for many subscribers (e.g. enrichers)
+     * of one fast-changing sensor; reports events delivered per second and bytes allocated per delivered event.
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testManySubscribersPerEventVersusBatchedDelivery() throws Exception {
+        measureDeliveryMode(false, false);
+        measureDeliveryMode(true, false);
+        measureDeliveryMode(true, true);
+    }
+
+    protected void measureDeliveryMode(boolean batched, boolean coalesce) throws Exception {
+        final int numSubscribers = 200;
+        final int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 10 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final String mode = batched ? (coalesce ? "batched-coalescing" : "batched") : "per-event";
+        
+        final LocalSubscriptionManager lsm = new LocalSubscriptionManager(app.getManagementContext().getExecutionManager(), batched);
+        final AtomicInteger listenerCount = new AtomicInteger();
+        final AtomicInteger lastValueCount = new AtomicInteger();
+        final CountDownLatch completionLatch = new CountDownLatch(1);
+        
+        for (int i = 0; i < numSubscribers; i++) {
+            lsm.subscribe(MutableMap.<String, Object>of("subscriber", mode+"-"+i, "coalesceEvents", coalesce), entity, TestEntity.SEQUENCE, new SensorEventListener<Integer>() {
+                public void onEvent(SensorEvent<Integer> event) {
+                    listenerCount.incrementAndGet();
+                    // when coalescing not every event is delivered, but the final one always is
+                    if (event.getValue() == numIterations-1 && lastValueCount.incrementAndGet() >= numSubscribers) {
+                        completionLatch.countDown();
+                    }
+                }});
+        }
+        
+        long allocatedBefore = getTotalAllocatedBytes();
+        PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                .summary("SubscriptionPerformanceTest.testManySubscribersPerEventVersusBatchedDelivery-"+mode)
+                .iterations(numIterations)
+                .warmupIterations(0)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(new Runnable() {
+                    public void run() {
+                        lsm.publish(new BasicSensorEvent<Integer>(TestEntity.SEQUENCE, entity, iter.getAndIncrement()));
+                    }})
+                .completionLatch(completionLatch));
+        long allocated = getTotalAllocatedBytes() - allocatedBefore;
+        
+        int delivered = listenerCount.get();
+        String msg = "Subscription delivery "+mode+": "+delivered+" events delivered to "+numSubscribers+" subscribers; "
+                + "published at "+result.ratePerSecond+"/s; "+lsm.getTotalDeliveryTasks()+" delivery tasks; "
+                + lsm.getTotalEventsCoalesced()+" coalesced; ~"+(delivered > 0 ? allocated/delivered : -1)+" bytes allocated per delivered event";
+        LOG.info(msg);
+        System.out.println(msg);
+    }
+    
+    /**
+     * Many threads subscribing and unsubscribing (as happens when members of a large cluster are managed and 
+     * unmanaged, with their policies and enrichers) while events continue to be published.
+     * Reports the publish rate and the subscribe/unsubscribe rate achieved alongside it.
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testSubscribeUnsubscribeContentionWhilePublishing() throws Exception {
+        final int numSubscribingThreads = 16;
+        int numIterations = NUM_ITERATIONS;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        final AtomicInteger iter = new AtomicInteger();
+        final AtomicLong subscribeUnsubscribeCount = new AtomicLong();
+        final List<Exception> exceptions = Lists.newCopyOnWriteArrayList();
+        final SensorEventListener<Object> noopListener = new SensorEventListener<Object>() {
+            @Override public void onEvent(SensorEvent<Object> event) {
+            }};
+        
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < numSubscribingThreads; i++) {
+            final TestEntity producer = entities.get(i % entities.size());
+            final String subscriber = "contending-subscriber-"+i;
+            Thread thread = new Thread(new Runnable() {
+                @Override public void run() {
+                    try {
+                        while (!Thread.currentThread().isInterrupted()) {
+                            SubscriptionHandle handle = subscriptionManager.subscribe(MutableMap.<String, Object>of("subscriber", subscriber), 
+                                    producer, TestEntity.SEQUENCE, noopListener);
+                            subscriptionManager.unsubscribe(handle);
+                            subscribeUnsubscribeCount.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        if (!Thread.currentThread().isInterrupted()) exceptions.add(e);
+                    }
+                }}, "subscribe-unsubscribe-"+i);
+            threads.add(thread);
+        }
+        
+        try {
+            for (Thread thread : threads) thread.start();
+            long countBefore = subscribeUnsubscribeCount.get();
+            long startTime = System.currentTimeMillis();
+            
+            PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                    .summary("SubscriptionPerformanceTest.testSubscribeUnsubscribeContentionWhilePublishing")
+                    .iterations(numIterations)
+                    .minAcceptablePerSecond(minRatePerSec)
+                    .job(new Runnable() {
+                        @Override public void run() {
+                            entity.sensors().set(TestEntity.SEQUENCE, (iter.getAndIncrement()));
+                        }}));
+            
+            long durationMillis = Math.max(1, System.currentTimeMillis() - startTime);
+            double subscribeRate = (subscribeUnsubscribeCount.get() - countBefore) * 1000d / durationMillis;
+            String msg = "Subscription contention with "+numSubscribingThreads+" threads: published "+result.ratePerSecond+"/s, "
+                    + "while subscribe+unsubscribe at "+subscribeRate+"/s";
+            LOG.info(msg);
+            System.out.println(msg);
+        } finally {
+            for (Thread thread : threads) thread.interrupt();
+            for (Thread thread : threads) thread.join(TIMEOUT_MS);
+        }
+        
+        if (exceptions.size() > 0) throw exceptions.get(0);
+    }
+    
+    /** approximate, as excludes threads which have died during the measurement */
+    protected static long getTotalAllocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        long total = 0;
+        for (long allocated : ((com.sun.management.ThreadMXBean)threads).getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (allocated > 0) total += allocated;
+        }
+        return total;
+    }
 }
@@ -18,15 +18,28 @@
  */
 package org.apache.brooklyn.core.test.qa.performance;
 
+import static org.testng.Assert.assertTrue;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.brooklyn.api.mgmt.Task;
+
+import org.apache.brooklyn.test.performance.PerformanceTestUtils;
 import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.test.performance.PerformanceTestResult;
 import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.task.BasicExecutionManager;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.RunnerMode;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.SchedulerMode;
+import org.apache.brooklyn.util.core.task.BasicTask;
+import org.apache.brooklyn.util.core.task.ScheduledTask;
 import org.apache.brooklyn.util.core.task.SingleThreadedScheduler;
 import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
@@ -34,8 +47,10 @@ import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 
@@ -152,6 +167,171 @@ public class TaskPerformanceTest extends AbstractPerformanceTest {
         if (exceptions.size() > 0) throw exceptions.get(0);
     }
     
+    /**
+     * Compares the runner modes of {@link BasicExecutionManager} for a burst of short tasks which each block briefly
+     * (as many sensor-publication and effector fan-out tasks do), reporting peak thread count, 
+     * submit latency (in the histogram) and throughput.
+     */
+    @Test(groups={"Integration", "Acceptance"})
+    public void testExecuteBlockingRunnableAcrossRunnerModes() throws Exception {
+        for (RunnerMode mode : RunnerMode.values()) {
+            measureRunnerMode(mode);
+        }
+    }
+
+    protected PerformanceTestResult measureRunnerMode(RunnerMode mode) throws Exception {
+        final int numBlockingIterations = 20000;
+        double minRatePerSec = 100 * PERFORMANCE_EXPECTATION;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        
+        final BasicExecutionManager em = new BasicExecutionManager("perf-"+mode.name().toLowerCase(), mode, 64, 1000);
+        try {
+            final AtomicInteger counter = new AtomicInteger();
+            final CountDownLatch completionLatch = new CountDownLatch(1);
+            final Runnable work = new Runnable() { public void run() {
+                    Time.sleep(Duration.ONE_MILLISECOND);
+                    int val = counter.incrementAndGet();
+                    if (val >= numBlockingIterations) completionLatch.countDown();
+                }
+            };
+            
+            int threadsBefore = threads.getThreadCount();
+            threads.resetPeakThreadCount();
+            
+            PerformanceTestResult result = measure(PerformanceTestDescriptor.create()
+                    .summary("TaskPerformanceTest.testExecuteBlockingRunnableAcrossRunnerModes-"+mode)
+                    .iterations(numBlockingIterations)
+                    .minAcceptablePerSecond(minRatePerSec)
+                    .job(new Runnable() {
+                        public void run() {
+                            em.submit(work);
+                        }})
+                    .completionLatch(completionLatch));
+            
+            LOG.info("Runner mode "+mode+": threads before="+threadsBefore+"; peak="+threads.getPeakThreadCount()
+                    +"; rate="+result.ratePerSecond+"/s; metrics="+em.getRunnerMetrics());
+            return result;
+        } finally {
+            em.shutdownNow(Duration.TEN_SECONDS);
+        }
+    }
+    
+    /**
+     * Schedules many recurring tasks (as for the polls of many feeds), comparing how late their runs are,
+     * and the CPU used, when scheduled by the delayed runner and by the timer wheel.
+     */
+    @Test(groups={"Acceptance"})
+    public void testManyScheduledTasksAcrossSchedulerModes() throws Exception {
+        for (SchedulerMode mode : SchedulerMode.values()) {
+            measureSchedulerMode(mode);
+        }
+    }
+
+    protected void measureSchedulerMode(SchedulerMode mode) throws Exception {
+        final int numScheduledTasks = 20000;
+        final Duration period = Duration.ONE_SECOND;
+        final Duration runTime = Duration.seconds(30);
+        
+        final BasicExecutionManager em = new BasicExecutionManager("perf-"+mode.name().toLowerCase(), RunnerMode.UNBOUNDED, 1, 1,
+                mode, BasicExecutionManager.SCHEDULER_SHARDS.getDefaultValue(), BasicExecutionManager.SCHEDULER_TICK.getDefaultValue(), true);
+        try {
+            final AtomicInteger counter = new AtomicInteger();
+            List<ScheduledTask> tasks = Lists.newArrayList();
+            long cpuBefore = PerformanceTestUtils.getProcessCpuTime();
+            for (int i = 0; i < numScheduledTasks; i++) {
+                ScheduledTask task = new ScheduledTask(MutableMap.of("displayName", "poll-"+i), new Callable<Task<?>>() {
+                    public Task<?> call() {
+                        return new BasicTask<Void>(new Runnable() {
+                            public void run() {
+                                counter.incrementAndGet();
+                            }});
+                    }});
+                task.period(period).cancelOnException(false);
+                tasks.add(task);
+                em.submit(task);
+            }
+            Time.sleep(runTime);
+            long cpuTime = PerformanceTestUtils.getProcessCpuTime() - cpuBefore;
+            
+            long totalMaxDriftMillis = 0;
+            Duration maxDrift = Duration.ZERO;
+            for (ScheduledTask task : tasks) {
+                Duration drift = task.getMaxScheduleDrift();
+                if (drift == null) continue;
+                totalMaxDriftMillis += drift.toMilliseconds();
+                if (drift.isLongerThan(maxDrift)) maxDrift = drift;
+                task.cancel();
+            }
+            long expectedRuns = numScheduledTasks * (runTime.toMilliseconds() / period.toMilliseconds());
+            
+            LOG.info("Scheduler mode "+mode+": runs="+counter.get()+" (ideal "+expectedRuns+"); "
+                    +"meanMaxDrift="+Duration.millis(totalMaxDriftMillis / numScheduledTasks)+"; maxDrift="+maxDrift+"; "
+                    +"cpuTime="+Duration.nanos(cpuTime)+"; metrics="+em.getSchedulerMetrics());
+            assertTrue(counter.get() > 0);
+        } finally {
+            em.shutdownNow(Duration.TEN_SECONDS);
+        }
+    }
+    
+    @DataProvider(name="submittingThreadCounts")
+    public Object[][] submittingThreadCounts() {
+        return new Object[][] { {1}, {8}, {32} };
+    }
+
+    /**
+     * Measures throughput of submitting tagged tasks and then deleting them (as the garbage collector does),
+     * from many threads at once, to show contention on the tag index. Also queries by tag concurrently,
+     * as the REST activity views do.
+     */
+    @Test(groups={"Integration", "Acceptance"}, dataProvider="submittingThreadCounts")
+    public void testSubmitAndDeleteWithTagsConcurrently(final int numThreads) throws Exception {
+        final int iterationsPerThread = 50000 / numThreads;
+        final Runnable work = new Runnable() { public void run() {} };
+        final List<Exception> exceptions = Lists.newCopyOnWriteArrayList();
+        final CountDownLatch startLatch = new CountDownLatch(1);
+        final CountDownLatch doneLatch = new CountDownLatch(numThreads);
+        
+        List<Thread> threads = Lists.newArrayList();
+        for (int i = 0; i < numThreads; i++) {
+            final String threadTag = "thread-"+i;
+            final Map<String, ?> flags = MutableMap.of("tags", ImmutableList.of("shared", threadTag));
+            Thread thread = new Thread(new Runnable() { public void run() {
+                try {
+                    startLatch.await();
+                    for (int j = 0; j < iterationsPerThread; j++) {
+                        Task<?> t = executionManager.submit(MutableMap.copyOf(flags), work);
+                        t.get();
+                        executionManager.getTasksWithAllTags(ImmutableList.of("shared", threadTag));
+                        executionManager.deleteTask(t);
+                    }
+                } catch (Exception e) {
+                    exceptions.add(e);
+                    LOG.warn("Exception in testSubmitAndDeleteWithTagsConcurrently", e);
+                } finally {
+                    doneLatch.countDown();
+                }
+            }}, "submitter-"+i);
+            thread.start();
+            threads.add(thread);
+        }
+        
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        startLatch.countDown();
+        doneLatch.await(5, TimeUnit.MINUTES);
+        long durationMillis = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+        for (Thread thread : threads) thread.interrupt();
+        
+        int total = iterationsPerThread * numThreads;
+        double ratePerSec = ((double)total) / Math.max(1, durationMillis) * 1000;
+        String msg = "TaskPerformanceTest.testSubmitAndDeleteWithTagsConcurrently threads="+numThreads+": "
+                +total+" submit+delete in "+Time.makeTimeStringRounded(durationMillis)+"; rate="+ratePerSec+"/s";
+        LOG.info(msg);
+        System.out.println(msg);
+        
+        if (exceptions.size() > 0) throw exceptions.get(0);
+        assertTrue(ratePerSec >= 100 * PERFORMANCE_EXPECTATION, msg);
+    }
+    
     public static void main(String[] args) throws Exception {
         TaskPerformanceTest t = new TaskPerformanceTest();
         t.setUp();
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.List;
+import java.util.Map;
+
+import org.apache.brooklyn.core.entity.lifecycle.Lifecycle;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.reflect.TypeToken;
+
+/**
+ * Measures the rate of common coercions, as done on every {@code getConfig} and by enricher transforms.
+ */
+public class TypeCoercionPerformanceTest extends AbstractPerformanceTest {
+
+    private static final int NUM_ITERATIONS = 1000000;
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoercePrimitive() {
+        measureCoercion("testCoercePrimitive", 10000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce(1, Long.class);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceStringToPrimitive() {
+        measureCoercion("testCoerceStringToPrimitive", 10000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce("123", Integer.class);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceStringToEnum() {
+        measureCoercion("testCoerceStringToEnum", 10000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce("running", Lifecycle.class);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceStringToDuration() {
+        measureCoercion("testCoerceStringToDuration", 10000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce("5m", Duration.class);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceNumberToDuration() {
+        measureCoercion("testCoerceNumberToDuration", 10000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce(5000, Duration.class);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceParameterizedCollection() {
+        final List<String> list = ImmutableList.of("1", "2", "3");
+        final TypeToken<List<Integer>> type = new TypeToken<List<Integer>>() {
+            private static final long serialVersionUID = 1L;
+        };
+        measureCoercion("testCoerceParameterizedCollection", 1000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce(list, type);
+            }});
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testCoerceParameterizedMap() {
+        final Map<String, String> map = ImmutableMap.of("a", "1s", "b", "2m");
+        final TypeToken<Map<String, Duration>> type = new TypeToken<Map<String, Duration>>() {
+            private static final long serialVersionUID = 1L;
+        };
+        measureCoercion("testCoerceParameterizedMap", 1000, new Runnable() {
+            public void run() {
+                TypeCoercions.coerce(map, type);
+            }});
+    }
+
+    protected void measureCoercion(String name, double minRatePerSec, Runnable job) {
+        measure(PerformanceTestDescriptor.create()
+                .summary("TypeCoercionPerformanceTest."+name)
+                .warmupIterations(NUM_ITERATIONS/10)
+                .iterations(NUM_ITERATIONS)
+                .minAcceptablePerSecond(minRatePerSec * PERFORMANCE_EXPECTATION)
+                .job(job));
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.core.test.qa.performance;
+
+import java.util.Map;
+
+import org.apache.brooklyn.api.mgmt.ExecutionContext;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.DeferredSupplier;
+import org.apache.brooklyn.util.core.task.Tasks;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Measures the rate of deep resolution of nested config maps of different sizes, 
+ * both with only plain values and with a single deferred value (so every entry must be resolved).
+ */
+public class ValueResolverPerformanceTest extends AbstractPerformanceTest {
+
+    private ExecutionContext exec;
+
+    @BeforeMethod(alwaysRun=true)
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        exec = app.getExecutionContext();
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolvePlainMapOf10() {
+        measureResolution("testResolvePlainMapOf10", newConfigMap(10, false), 10000);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolvePlainMapOf100() {
+        measureResolution("testResolvePlainMapOf100", newConfigMap(100, false), 1000);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolvePlainMapOf1000() {
+        measureResolution("testResolvePlainMapOf1000", newConfigMap(1000, false), 100);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolveDeferredMapOf10() {
+        measureResolution("testResolveDeferredMapOf10", newConfigMap(10, true), 1000);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolveDeferredMapOf100() {
+        measureResolution("testResolveDeferredMapOf100", newConfigMap(100, true), 100);
+    }
+
+    @Test(groups={"Integration", "Acceptance"})
+    public void testResolveDeferredMapOf1000() {
+        measureResolution("testResolveDeferredMapOf1000", newConfigMap(1000, true), 10);
+    }
+
+    /** a map of the given number of entries, each with a nested map and list, optionally with one deferred value */
+    protected Map<String, Object> newConfigMap(int size, boolean withDeferred) {
+        MutableMap<String, Object> result = MutableMap.of();
+        for (int i = 0; i < size; i++) {
+            result.put("key"+i, MutableMap.of("name", "val"+i, "port", i, "tags", ImmutableList.of("a", "b")));
+        }
+        if (withDeferred) {
+            result.put("deferred", new DeferredSupplier<String>() {
+                @Override public String get() {
+                    return "deferredval";
+                }});
+        }
+        return result;
+    }
+
+    protected void measureResolution(String name, final Map<String, Object> map, double minRatePerSec) {
+        int numIterations = (int) Math.max(100, minRatePerSec * 10);
+        measure(PerformanceTestDescriptor.create()
+                .summary("ValueResolverPerformanceTest."+name)
+                .warmupIterations(numIterations/10)
+                .iterations(numIterations)
+                .minAcceptablePerSecond(minRatePerSec * PERFORMANCE_EXPECTATION)
+                .job(new Runnable() {
+                    public void run() {
+                        Tasks.resolving(map).as(Object.class).context(exec).deep(true).get();
+                    }}));
+    }
+}
@@ -164,6 +164,56 @@ public class DynamicGroupTest {
             }});
     }
     
+    @Test
+    public void testGroupReEvaluatesOnDeclaredFilterSensors() throws Exception {
+        final AttributeSensor<String> MY_ATTRIBUTE = Sensors.newStringSensor("test.myAttribute", "My test attribute");
+        final DynamicGroup group2 = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_FILTER, EntityPredicates.attributeEqualTo(MY_ATTRIBUTE, "yes"))
+                .configure(DynamicGroup.ENTITY_FILTER_SENSORS, ImmutableList.<Sensor<?>>of(MY_ATTRIBUTE)));
+        assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of());
+        
+        e1.sensors().set(MY_ATTRIBUTE, "yes");
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e1));
+            }});
+
+        e1.sensors().set(MY_ATTRIBUTE, "no");
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of());
+            }});
+    }
+    
+    @Test
+    public void testGroupReconcilesPeriodically() throws Exception {
+        final AttributeSensor<String> MY_ATTRIBUTE = Sensors.newStringSensor("test.myAttribute", "My test attribute");
+        final DynamicGroup group2 = app.createAndManageChild(EntitySpec.create(DynamicGroup.class)
+                .configure(DynamicGroup.ENTITY_FILTER, EntityPredicates.attributeEqualTo(MY_ATTRIBUTE, "yes"))
+                .configure(DynamicGroup.RECONCILIATION_PERIOD, Duration.millis(10)));
+        
+        // not subscribed to the sensor, so only found by reconciliation
+        e1.sensors().set(MY_ATTRIBUTE, "yes");
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertEqualsIgnoringOrder(group2.getMembers(), ImmutableSet.of(e1));
+                assertTrue(group2.getAttribute(DynamicGroup.RESCAN_COUNT) > 1);
+            }});
+    }
+    
+    @Test
+    public void testGroupPublishesEvaluationMetrics() throws Exception {
+        group.setEntityFilter(EntityPredicates.idEqualTo(e1.getId()));
+        long evaluations = group.getAttribute(DynamicGroup.EVALUATION_COUNT);
+        long rescans = group.getAttribute(DynamicGroup.RESCAN_COUNT);
+        
+        app.createAndManageChild(EntitySpec.create(TestEntity.class));
+        group.rescanEntities();
+        
+        assertTrue(group.getAttribute(DynamicGroup.EVALUATION_COUNT) > evaluations);
+        assertEquals(group.getAttribute(DynamicGroup.RESCAN_COUNT), (Long) (rescans + 1));
+    }
+    
     @Test
     public void testGroupDetectsChangedEntitiesMatchingFilter() throws Exception {
         final AttributeSensor<String> MY_ATTRIBUTE = Sensors.newStringSensor("test.myAttribute", "My test attribute");
@@ -19,10 +19,12 @@
 package org.apache.brooklyn.feed.http;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.net.URL;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
@@ -120,6 +122,29 @@ public class HttpFeedTest extends BrooklynAppUnitTestSupport {
         assertSensorEventually(SENSOR_STRING, "{\"foo\":\"myfoo\"}", TIMEOUT_MS);
     }
     
+    @Test
+    public void testPollsAsynchronouslyUsingSharedExecutor() throws Exception {
+        feed = HttpFeed.builder()
+                .entity(entity)
+                .baseUrl(baseUrl)
+                .asyncPolling()
+                .poll(HttpPollConfig.forSensor(SENSOR_INT)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.responseCode()))
+                .poll(HttpPollConfig.forSensor(SENSOR_STRING)
+                        .period(100)
+                        .onSuccess(HttpValueFunctions.stringContentsFunction()))
+                .build();
+        
+        assertSensorEventually(SENSOR_INT, (Integer)200, TIMEOUT_MS);
+        assertSensorEventually(SENSOR_STRING, "{\"foo\":\"myfoo\"}", TIMEOUT_MS);
+        
+        Map<String, Object> metrics = HttpPollExecutor.forManagementContext(mgmt).getMetrics();
+        assertTrue(((Long)metrics.get("completed")) > 0, "metrics="+metrics);
+        // held by the management context's execution manager, so the same for every feed
+        assertSame(HttpPollExecutor.forManagementContext(mgmt), HttpPollExecutor.forManagementContext(mgmt));
+    }
+    
     @Test
     public void testFeedDeDupe() throws Exception {
         testPollsAndParsesHttpGetResponse();
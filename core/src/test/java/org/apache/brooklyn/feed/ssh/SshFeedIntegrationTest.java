@@ -62,6 +62,7 @@ public class SshFeedIntegrationTest extends BrooklynAppUnitTestSupport {
     
     final static AttributeSensor<String> SENSOR_STRING = Sensors.newStringSensor("aString", "");
     final static AttributeSensor<Integer> SENSOR_INT = Sensors.newIntegerSensor("aLong", "");
+    final static AttributeSensor<String> SENSOR_STRING2 = Sensors.newStringSensor("aString2", "");
 
     private LocalhostMachineProvisioningLocation loc;
     private SshMachineLocation machine;
@@ -135,6 +136,29 @@ public class SshFeedIntegrationTest extends BrooklynAppUnitTestSupport {
         EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 123);
     }
     
+    @Test(groups="Integration")
+    public void testBatchedPollsAfterFailingCommandStillRun() throws Exception {
+        feed = SshFeed.builder()
+                .entity(entity)
+                .machine(machine)
+                .batchPolls()
+                .poll(new SshPollConfig<String>(SENSOR_STRING)
+                        .command("echo first")
+                        .onSuccess(SshValueFunctions.stdout()))
+                .poll(new SshPollConfig<Integer>(SENSOR_INT)
+                        .command("exit 123")
+                        .checkSuccess(Predicates.alwaysTrue())
+                        .onSuccess(SshValueFunctions.exitStatus()))
+                .poll(new SshPollConfig<String>(SENSOR_STRING2)
+                        .command("echo third")
+                        .onSuccess(SshValueFunctions.stdout()))
+                .build();
+
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_INT, 123);
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_STRING, "first\n");
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_STRING2, "third\n");
+    }
+    
     @Test(groups="Integration")
     public void testReturnsSshStdout() throws Exception {
         feed = SshFeed.builder()
@@ -22,17 +22,23 @@ import static org.testng.Assert.assertEquals;
 
 import java.util.List;
 import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
 import org.apache.brooklyn.api.entity.EntitySpec;
 import org.apache.brooklyn.api.location.LocationSpec;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
+import org.apache.brooklyn.core.entity.EntityAsserts;
 import org.apache.brooklyn.core.sensor.Sensors;
 import org.apache.brooklyn.core.test.BrooklynAppUnitTestSupport;
 import org.apache.brooklyn.core.test.entity.TestEntity;
 import org.apache.brooklyn.location.localhost.LocalhostMachineProvisioningLocation;
 import org.apache.brooklyn.location.ssh.SshMachineLocation;
 import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool.CustomResponse;
+import org.apache.brooklyn.util.core.internal.ssh.RecordingSshTool.ExecCmd;
 import org.apache.brooklyn.util.stream.Streams;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
@@ -41,6 +47,7 @@ import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.base.Functions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -65,6 +72,7 @@ public class SshFeedTest extends BrooklynAppUnitTestSupport {
         loc = app.newLocalhostProvisioningLocation();
         entity = app.createAndManageChild(EntitySpec.create(TestEntity.class));
         RecordingSshMachineLocation.execScriptCalls.clear();
+        RecordingSshTool.clear();
     }
 
     @AfterMethod(alwaysRun=true)
@@ -74,6 +82,7 @@ public class SshFeedTest extends BrooklynAppUnitTestSupport {
         super.tearDown();
         if (loc != null) Streams.closeQuietly(loc);
         RecordingSshMachineLocation.execScriptCalls.clear();
+        RecordingSshTool.clear();
     }
     
     @Test(groups="Integration") // integration because slow 
@@ -161,6 +170,59 @@ public class SshFeedTest extends BrooklynAppUnitTestSupport {
             }});
     }
 
+    @Test
+    public void testBatchesPollsIntoOneExecution() throws Exception {
+        SshMachineLocation machine = mgmt.getLocationManager().createLocation(LocationSpec.create(SshMachineLocation.class)
+                .configure("address", "localhost")
+                .configure(SshMachineLocation.SSH_TOOL_CLASS, RecordingSshTool.class.getName()));
+        app.start(ImmutableList.of(machine));
+        RecordingSshTool.customResponse = new BatchResponder();
+        
+        feed = SshFeed.builder()
+                .period(Duration.PRACTICALLY_FOREVER)
+                .entity(entity)
+                .batchPolls()
+                .poll(new SshPollConfig<String>(SENSOR_STRING)
+                        .env(ImmutableMap.of("mykey", "myval"))
+                        .command("myCommand")
+                        .onSuccess(SshValueFunctions.stdout()))
+                .poll(new SshPollConfig<String>(SENSOR_STRING2)
+                        .command("myFailingCommand")
+                        .onSuccess(Functions.constant("success"))
+                        .onFailure(Functions.constant("failed")))
+                .build();
+        
+        // one execution for both polls, with the result of each command going to its own sensor
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_STRING, "myCommand-output");
+        EntityAsserts.assertAttributeEqualsEventually(entity, SENSOR_STRING2, "failed");
+        assertEquals(RecordingSshTool.execScriptCmds.size(), 1, "cmds="+RecordingSshTool.execScriptCmds);
+        assertEquals(feed.getBatchMetrics().get("roundTripsSaved"), 1L);
+    }
+
+    /** Responds to a batch script as it would run: each command's output, followed by the markers written after it. */
+    private static class BatchResponder implements Function<ExecCmd, CustomResponse> {
+        private static final Pattern STDOUT_MARKER = Pattern.compile("printf '\\\\n%s %d %d\\\\n' (\\S+) (\\d+) \\$\\?");
+        
+        @Override
+        public CustomResponse apply(ExecCmd input) {
+            StringBuilder stdout = new StringBuilder();
+            StringBuilder stderr = new StringBuilder();
+            String previousLine = null;
+            String command = null;
+            for (String line : input.commands) {
+                if (line.equals(") < /dev/null")) command = previousLine;
+                Matcher matcher = STDOUT_MARKER.matcher(line);
+                if (matcher.matches()) {
+                    int exitStatus = command.contains("Failing") ? 1 : 0;
+                    stdout.append(command+"-output").append("\n"+matcher.group(1)+" "+matcher.group(2)+" "+exitStatus+"\n");
+                    stderr.append("\n"+matcher.group(1)+" "+matcher.group(2)+"\n");
+                }
+                previousLine = line;
+            }
+            return new CustomResponse(0, stdout.toString(), stderr.toString());
+        }
+    }
+
     public static class RecordingSshMachineLocation extends SshMachineLocation {
         public static List<List<String>> execScriptCalls = Lists.newCopyOnWriteArrayList();
 
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.feed.ssh;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.stream.Streams;
+import org.apache.brooklyn.util.text.Strings;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SshPollBatchTest {
+
+    @Test
+    public void testScriptRunsEachCommandInSubshellWithItsEnv() throws Exception {
+        SshPollBatch batch = new SshPollBatch();
+        batch.add("echo $mykey", ImmutableMap.of("mykey", "my val"));
+        batch.add("exit 3", null);
+
+        String script = Strings.join(batch.toScript(), "\n");
+        assertTrue(script.contains("(\nexport mykey=\"my val\"\necho $mykey\n) < /dev/null\n"), script);
+        assertTrue(script.contains("(\nexit 3\n) < /dev/null\n"), script);
+    }
+
+    @Test
+    public void testParsesOutputOfEachCommand() throws Exception {
+        SshPollBatch batch = new SshPollBatch();
+        batch.add("cmd0", null);
+        batch.add("cmd1", null);
+        String marker = getMarker(batch);
+
+        // the output of cmd0 has a trailing newline, that of cmd1 does not
+        List<SshPollValue> values = batch.parse(null,
+                "out0\n" + "\n"+marker+" 0 0\n" + "out1" + "\n"+marker+" 1 2\n",
+                "err0" + "\n"+marker+" 0\n" + "\n"+marker+" 1\n");
+
+        assertEquals(values.size(), 2);
+        assertEquals(values.get(0).getStdout(), "out0\n");
+        assertEquals(values.get(0).getStderr(), "err0");
+        assertEquals(values.get(0).getExitStatus(), 0);
+        assertEquals(values.get(1).getStdout(), "out1");
+        assertEquals(values.get(1).getStderr(), "");
+        assertEquals(values.get(1).getExitStatus(), 2);
+    }
+
+    @Test
+    public void testNoValueForCommandsAfterInterruption() throws Exception {
+        SshPollBatch batch = new SshPollBatch();
+        batch.add("cmd0", null);
+        batch.add("cmd1", null);
+        batch.add("cmd2", null);
+        String marker = getMarker(batch);
+
+        List<SshPollValue> values = batch.parse(null, "out0\n" + "\n"+marker+" 0 0\n" + "partial out1", "");
+
+        assertEquals(values.get(0).getStdout(), "out0\n");
+        assertNull(values.get(1));
+        assertNull(values.get(2));
+    }
+
+    /** Runs the script with bash, with the same "-e" as the default header when run over ssh. */
+    @Test(groups="Integration")
+    public void testCommandsAfterFailingCommandStillRun() throws Exception {
+        SshPollBatch batch = new SshPollBatch();
+        batch.add("echo first", null);
+        batch.add("echo failing; exit 3", null);
+        batch.add("echo third", null);
+
+        ProcessBuilder pb = new ProcessBuilder("bash", "-e", "-c", Strings.join(batch.toScript(), "\n"));
+        Process process = pb.start();
+        process.getOutputStream().close();
+        String stdout = Streams.readFullyString(process.getInputStream());
+        String stderr = Streams.readFullyString(process.getErrorStream());
+        process.waitFor();
+        List<SshPollValue> values = batch.parse(null, stdout, stderr);
+
+        assertEquals(values.get(0).getStdout(), "first\n");
+        assertEquals(values.get(0).getExitStatus(), 0);
+        assertEquals(values.get(1).getStdout(), "failing\n");
+        assertEquals(values.get(1).getExitStatus(), 3);
+        assertEquals(values.get(2).getStdout(), "third\n");
+        assertEquals(values.get(2).getExitStatus(), 0);
+    }
+
+    private String getMarker(SshPollBatch batch) {
+        List<String> markers = MutableList.of();
+        Pattern pattern = Pattern.compile("printf .* (\\S+) 0 \\$\\?");
+        for (String line : batch.toScript()) {
+            Matcher matcher = pattern.matcher(line);
+            if (matcher.matches()) markers.add(matcher.group(1));
+        }
+        assertEquals(markers.size(), 1, "markers="+markers);
+        return markers.get(0);
+    }
+}
@@ -43,6 +43,7 @@ import org.slf4j.LoggerFactory;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Function;
 import com.google.common.base.Predicate;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
@@ -345,6 +346,29 @@ public class TypeCoercionsTest {
         Assert.assertEquals(x.value, 3);
     }
 
+    @Test
+    public void testRepeatedCoercionsUseSameAdapters() {
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(TypeCoercions.coerce(new WithAs(""+i), Integer.class), (Integer)i);
+            Assert.assertEquals(TypeCoercions.coerce(""+i, WithFrom.class).value, i);
+        }
+    }
+
+    @Test
+    public void testAdapterRegisteredAfterFailedCoercionIsUsed() {
+        try {
+            TypeCoercions.coerce(new MyClazz("myval"), MyOtherClazz.class);
+            Assert.fail();
+        } catch (ClassCoercionException e) {
+            // expected; no adapter yet
+        }
+        TypeCoercions.registerAdapter(MyClazz.class, MyOtherClazz.class, new Function<MyClazz, MyOtherClazz>() {
+            @Override public MyOtherClazz apply(MyClazz input) {
+                return new MyOtherClazz(input.val);
+            }});
+        assertEquals(TypeCoercions.coerce(new MyClazz("myval"), MyOtherClazz.class).val, "myval");
+    }
+
     @Test
     public void testCoerceStringToNumber() {
         assertEquals(TypeCoercions.coerce("1", Number.class), (Number) Double.valueOf(1));
@@ -369,6 +393,16 @@ public class TypeCoercionsTest {
         }
     }
 
+    public static class MyClazz {
+        final String val;
+        public MyClazz(String val) { this.val = val; }
+    }
+
+    public static class MyOtherClazz {
+        final String val;
+        public MyOtherClazz(String val) { this.val = val; }
+    }
+
     public static class WithFrom {
         int value;
         public static WithFrom fromString(String s) {
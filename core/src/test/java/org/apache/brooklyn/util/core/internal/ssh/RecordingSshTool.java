@@ -19,12 +19,16 @@
 package org.apache.brooklyn.util.core.internal.ssh;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 
+import com.google.common.base.Function;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 
@@ -50,14 +54,29 @@ public class RecordingSshTool implements SshTool {
         }
     }
     
+    public static class CustomResponse {
+        public final int exitCode;
+        public final String stdout;
+        public final String stderr;
+        
+        public CustomResponse(int exitCode, String stdout, String stderr) {
+            this.exitCode = exitCode;
+            this.stdout = stdout;
+            this.stderr = stderr;
+        }
+    }
+    
     public static List<ExecCmd> execScriptCmds = Lists.newCopyOnWriteArrayList();
     public static List<Map<?,?>> constructorProps = Lists.newCopyOnWriteArrayList();
+    /** if set, gives the exit code and output for each command (otherwise 0, with no output) */
+    public static volatile Function<ExecCmd, CustomResponse> customResponse;
     
     private boolean connected;
     
     public static void clear() {
         execScriptCmds.clear();
         constructorProps.clear();
+        customResponse = null;
     }
     
     public RecordingSshTool(Map<?,?> props) {
@@ -76,19 +95,35 @@ public class RecordingSshTool implements SshTool {
         return connected;
     }
     @Override public int execScript(Map<String, ?> props, List<String> commands, Map<String, ?> env) {
-        execScriptCmds.add(new ExecCmd(props, "", commands, env));
-        return 0;
+        return respond(new ExecCmd(props, "", commands, env));
     }
     @Override public int execScript(Map<String, ?> props, List<String> commands) {
         return execScript(props, commands, ImmutableMap.<String,Object>of());
     }
     @Override public int execCommands(Map<String, ?> props, List<String> commands, Map<String, ?> env) {
-        execScriptCmds.add(new ExecCmd(props, "", commands, env));
-        return 0;
+        return respond(new ExecCmd(props, "", commands, env));
     }
     @Override public int execCommands(Map<String, ?> props, List<String> commands) {
         return execCommands(props, commands, ImmutableMap.<String,Object>of());
     }
+    private int respond(ExecCmd cmd) {
+        execScriptCmds.add(cmd);
+        Function<ExecCmd, CustomResponse> responder = customResponse;
+        if (responder == null) return 0;
+        CustomResponse response = responder.apply(cmd);
+        write(cmd.props.get(PROP_OUT_STREAM.getName()), response.stdout);
+        write(cmd.props.get(PROP_ERR_STREAM.getName()), response.stderr);
+        return response.exitCode;
+    }
+    private void write(Object stream, String val) {
+        if (stream instanceof OutputStream && val != null) {
+            try {
+                ((OutputStream)stream).write(val.getBytes());
+            } catch (IOException e) {
+                throw Exceptions.propagate(e);
+            }
+        }
+    }
     @Override public int copyToServer(Map<String, ?> props, File localFile, String pathAndFileOnRemoteServer) {
         return 0;
     }
@@ -20,6 +20,7 @@ package org.apache.brooklyn.util.core.internal.ssh.sshj;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
@@ -48,9 +49,11 @@ import org.apache.brooklyn.util.os.Os;
 import org.apache.brooklyn.util.time.Duration;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
 
 /**
  * Test the operation of the {@link SshJschTool} utility class.
@@ -282,6 +285,62 @@ public class SshjToolIntegrationTest extends SshToolAbstractIntegrationTest {
     }
 
     
+    @Test(groups = {"Integration"})
+    public void testPersistentShellStdoutStderrAndExitCode() throws Exception {
+        Map<String, ?> props = ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true);
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            ByteArrayOutputStream err = new ByteArrayOutputStream();
+            int exitCode = tool.execCommands(
+                    ImmutableMap.<String,Object>builder().putAll(props).put("out", out).put("err", err).build(),
+                    ImmutableList.of("echo myout"+i, "printf myerr"+i+" 1>&2", "exit "+i),
+                    ImmutableMap.<String,String>of());
+            assertEquals(exitCode, i);
+            assertEquals(new String(out.toByteArray()), "myout"+i+"\n");
+            assertEquals(new String(err.toByteArray()), "myerr"+i);
+        }
+        
+        // a command which does not parse fails by itself, leaving the shell usable
+        assertNotEquals(tool.execCommands(props, ImmutableList.of("echo 'unterminated")), 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int exitCode = tool.execCommands(ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true, "out", out),
+                ImmutableList.of("echo val is $MYPROP"), ImmutableMap.of("MYPROP", "abc"));
+        assertEquals(exitCode, 0);
+        assertEquals(new String(out.toByteArray()), "val is abc\n");
+    }
+
+    @Test(groups = {"Integration"})
+    public void testPersistentShellCommandTimesOut() throws Exception {
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        int exitCode = tool.execCommands(
+                ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true, SshjTool.PROP_EXEC_TIMEOUT.getName(), Duration.ONE_SECOND),
+                ImmutableList.of("sleep 60"));
+        assertEquals(exitCode, -1);
+        long seconds = stopwatch.elapsed(TimeUnit.SECONDS);
+        assertTrue(seconds < 30, "exec took "+seconds+" seconds");
+        
+        // a new shell is started for the next command
+        assertEquals(tool.execCommands(ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true), ImmutableList.of("true")), 0);
+    }
+
+    @Test(groups = {"Integration"})
+    public void testPersistentShellFailingAfterCommandSentDoesNotRunItAgain() throws Exception {
+        File file = Os.newTempFile(getClass(), "txt");
+        try {
+            // kills the shell itself, so the command's result is never seen
+            tool.execCommands(ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true),
+                    ImmutableList.of("echo ran >> "+file.getAbsolutePath(), "kill -9 $$"));
+            fail("should have failed, as the shell ended");
+        } catch (SshException e) {
+            // expected
+        }
+        assertEquals(Files.readLines(file, Charsets.UTF_8), ImmutableList.of("ran"));
+        
+        // a new shell is started for the next command
+        assertEquals(tool.execCommands(ImmutableMap.of(SshjTool.PROP_PERSISTENT_SHELL.getName(), true), ImmutableList.of("true")), 0);
+        file.delete();
+    }
+
     protected String execShellDirect(List<String> cmds) {
         return execShellDirect(cmds, ImmutableMap.<String,Object>of());
     }
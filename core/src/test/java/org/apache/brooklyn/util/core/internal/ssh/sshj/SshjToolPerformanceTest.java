@@ -18,13 +18,23 @@
  */
 package org.apache.brooklyn.util.core.internal.ssh.sshj;
 
+import static org.testng.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
+import org.apache.brooklyn.util.collections.MutableMap;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
 import org.apache.brooklyn.util.core.internal.ssh.SshToolAbstractPerformanceTest;
 import org.apache.brooklyn.util.core.internal.ssh.sshj.SshjTool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.testng.annotations.Test;
 
+import com.google.common.base.Stopwatch;
+import com.google.common.collect.ImmutableList;
+
 /**
  * Test the performance of different variants of invoking the sshj tool.
  * 
@@ -32,13 +42,41 @@ import org.testng.annotations.Test;
  */
 public class SshjToolPerformanceTest extends SshToolAbstractPerformanceTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(SshjToolPerformanceTest.class);
+
     @Override
     protected SshTool newSshTool(Map<String,?> flags) {
         return new SshjTool(flags);
     }
     
-    // Need to have at least one test method here (rather than just inherited) for eclipse to recognize it
-    @Test(enabled = false)
-    public void testDummy() throws Exception {
+    @Test(groups = {"Integration"})
+    public void testCommandsPerSecondWithAndWithoutPersistentShell() throws Exception {
+        double withoutPersistentShell = execManyCommandsOnOneConnection(false, 100);
+        double withPersistentShell = execManyCommandsOnOneConnection(true, 100);
+        LOG.info("Executed small commands: {} per second in own sessions; {} per second in persistent shell", 
+                withoutPersistentShell, withPersistentShell);
+    }
+
+    private double execManyCommandsOnOneConnection(boolean persistentShell, int iterations) {
+        SshTool tool = newSshTool(MutableMap.of("host", "localhost"));
+        try {
+            tool.connect();
+            Map<String, ?> flags = MutableMap.of(
+                    SshTool.PROP_PERSISTENT_SHELL.getName(), persistentShell,
+                    "out", new ByteArrayOutputStream(),
+                    "err", new ByteArrayOutputStream());
+            
+            // not timed, so that starting the persistent shell is excluded
+            tool.execCommands(flags, ImmutableList.of("true"));
+            
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            for (int i = 0; i < iterations; i++) {
+                assertEquals(tool.execCommands(flags, ImmutableList.of("uptime")), 0);
+            }
+            long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+            return iterations * 1000d / Math.max(elapsed, 1);
+        } finally {
+            tool.disconnect();
+        }
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.RunnerMode;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+public class BoundedTaskRunnerTest {
+
+    private static final int MAX_THREADS = 2;
+
+    private BasicExecutionManager em;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        em = new BasicExecutionManager("mycontext", RunnerMode.BOUNDED, MAX_THREADS, 10);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+    }
+
+    @Test
+    public void testModeFromProperties() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.RUNNER_MODE.getName(), "BOUNDED");
+        BasicExecutionManager em2 = new BasicExecutionManager("mycontext2", props);
+        try {
+            assertEquals(em2.getRunnerMode(), RunnerMode.BOUNDED);
+            assertEquals(em2.getRunnerMetrics().get("maxThreads"), BasicExecutionManager.RUNNER_MAX_THREADS.getDefaultValue());
+        } finally {
+            em2.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCurrentTaskSetInTaskThread() throws Exception {
+        final List<Task<?>> currents = MutableList.of();
+        for (int i = 0; i < 20; i++) {
+            Task<?> t = em.submit(new BasicTask<Void>(new Runnable() {
+                @Override public void run() {
+                    synchronized (currents) {
+                        currents.add(Tasks.current());
+                    }
+                }}));
+            t.get();
+            assertEquals(currents.get(i), t);
+        }
+        assertTrue((Integer)em.getRunnerMetrics().get("largestPoolSize") <= MAX_THREADS, "metrics="+em.getRunnerMetrics());
+    }
+
+    @Test
+    public void testNestedSubmissionsDoNotDeadlockWhenPoolSaturated() throws Exception {
+        final CountDownLatch allParentsRunning = new CountDownLatch(MAX_THREADS);
+        List<Task<String>> parents = MutableList.of();
+        for (int i = 0; i < MAX_THREADS; i++) {
+            parents.add(em.submit(new BasicTask<String>(new Callable<String>() {
+                @Override public String call() throws Exception {
+                    allParentsRunning.countDown();
+                    allParentsRunning.await();
+                    // every bounded thread is now running a parent, which blocks on its child
+                    return em.submit(new BasicTask<String>(new Callable<String>() {
+                        @Override public String call() {
+                            return "child";
+                        }})).get();
+                }})));
+        }
+        for (Task<String> parent : parents) {
+            assertEquals(parent.get(10, TimeUnit.SECONDS), "child");
+        }
+        assertTrue((Long)em.getRunnerMetrics().get("overflowSubmissions") > 0, "metrics="+em.getRunnerMetrics());
+    }
+
+    @Test
+    public void testNestedBurstBoundedByOverflowThreads() throws Exception {
+        final List<Task<?>> currentsAfterChildren = MutableList.of();
+        List<Task<Integer>> parents = MutableList.of();
+        for (int i = 0; i < MAX_THREADS; i++) {
+            parents.add(em.submit(new BasicTask<Integer>(new Callable<Integer>() {
+                @Override public Integer call() throws Exception {
+                    List<Task<Integer>> children = MutableList.of();
+                    for (int j = 0; j < 50; j++) {
+                        children.add(em.submit(new BasicTask<Integer>(new Callable<Integer>() {
+                            @Override public Integer call() throws Exception {
+                                Thread.sleep(10);
+                                return 1;
+                            }})));
+                    }
+                    int result = 0;
+                    for (Task<Integer> child : children) {
+                        result += child.get();
+                    }
+                    synchronized (currentsAfterChildren) {
+                        currentsAfterChildren.add(Tasks.current());
+                    }
+                    return result;
+                }})));
+        }
+        for (Task<Integer> parent : parents) {
+            assertEquals(parent.get(10, TimeUnit.SECONDS), (Integer)50);
+        }
+        
+        // the children beyond the overflow threads are run by their parents, which are then still the current task
+        Map<String, Object> metrics = em.getRunnerMetrics();
+        assertTrue((Integer)metrics.get("overflowLargestPoolSize") <= MAX_THREADS, "metrics="+metrics);
+        assertTrue((Long)metrics.get("callerRunsSubmissions") > 0, "metrics="+metrics);
+        assertEquals(MutableSet.copyOf(currentsAfterChildren), MutableSet.copyOf(parents));
+    }
+
+    @Test
+    public void testSubmissionsFromTaskThreadsNeverBlockOrQueue() throws Exception {
+        // more children than fit in the queue, submitted by every bounded thread before waiting on any
+        List<Task<Integer>> parents = MutableList.of();
+        for (int i = 0; i < MAX_THREADS; i++) {
+            parents.add(em.submit(new BasicTask<Integer>(new Callable<Integer>() {
+                @Override public Integer call() throws Exception {
+                    List<Task<Integer>> children = MutableList.of();
+                    for (int j = 0; j < 30; j++) {
+                        children.add(em.submit(new BasicTask<Integer>(new Callable<Integer>() {
+                            @Override public Integer call() {
+                                return 1;
+                            }})));
+                    }
+                    int result = 0;
+                    for (Task<Integer> child : children) {
+                        result += child.get();
+                    }
+                    return result;
+                }})));
+        }
+        for (Task<Integer> parent : parents) {
+            assertEquals(parent.get(10, TimeUnit.SECONDS), (Integer)30);
+        }
+        assertEquals(em.getRunnerMetrics().get("blockedSubmissions"), 0L, "metrics="+em.getRunnerMetrics());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.util.core.task;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.api.mgmt.Task;
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.RunnerMode;
+import org.apache.brooklyn.util.core.task.BasicExecutionManager.SchedulerMode;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+public class TimerWheelSchedulerTest {
+
+    private BasicExecutionManager em;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() {
+        em = new BasicExecutionManager("mycontext", RunnerMode.UNBOUNDED, 1, 1, SchedulerMode.TIMER_WHEEL, 2, Duration.millis(5), false);
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (em != null) em.shutdownNow();
+    }
+
+    @Test
+    public void testModeFromProperties() throws Exception {
+        BrooklynProperties props = BrooklynProperties.Factory.newEmpty();
+        props.put(BasicExecutionManager.SCHEDULER_MODE.getName(), "TIMER_WHEEL");
+        props.put(BasicExecutionManager.SCHEDULER_SHARDS.getName(), 3);
+        BasicExecutionManager em2 = new BasicExecutionManager("mycontext2", props);
+        try {
+            assertEquals(em2.getSchedulerMode(), SchedulerMode.TIMER_WHEEL);
+            assertEquals(em2.getSchedulerMetrics().get("shards"), 3);
+        } finally {
+            em2.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testScheduledTaskRunsRepeatedlyAndRecordsDrift() throws Exception {
+        final AtomicInteger i = new AtomicInteger(0);
+        ScheduledTask t = new ScheduledTask(MutableMap.of("delay", 20, "period", 10, "maxIterations", 5), new Callable<Task<?>>() {
+            public Task<?> call() throws Exception {
+                return new BasicTask<Integer>(new Callable<Integer>() {
+                    public Integer call() {
+                        return i.incrementAndGet();
+                    }});
+            }});
+
+        em.submit(t);
+        t.blockUntilEnded();
+        assertEquals(t.get(), (Integer)5);
+        assertEquals(i.get(), 5);
+        assertNotNull(t.getMaxScheduleDrift());
+        assertEquals(em.getSchedulerMetrics().get("run"), 5L);
+    }
+
+    @Test
+    public void testCancelledScheduledTaskDoesNotRunAgain() throws Exception {
+        final AtomicInteger i = new AtomicInteger(0);
+        ScheduledTask t = new ScheduledTask(MutableMap.of("period", 10), new Callable<Task<?>>() {
+            public Task<?> call() throws Exception {
+                return new BasicTask<Integer>(new Callable<Integer>() {
+                    public Integer call() {
+                        return i.incrementAndGet();
+                    }});
+            }});
+
+        em.submit(t);
+        Asserts.succeedsEventually(new Runnable() {
+            public void run() {
+                assertTrue(i.get() > 1);
+            }});
+        t.cancel();
+        Thread.sleep(50);
+        final int countAfterCancel = i.get();
+        Asserts.succeedsContinually(MutableMap.of("timeout", 100), new Runnable() {
+            public void run() {
+                assertEquals(i.get(), countAfterCancel);
+            }});
+    }
+
+    @Test
+    public void testDelayLongerThanOneRotationOfWheel() throws Exception {
+        // 512 slots of 1ms, so the wheel must go round more than once before this is due
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(1, Duration.millis(1), new ThreadFactoryBuilder().setDaemon(true).build());
+        try {
+            Stopwatch stopwatch = Stopwatch.createStarted();
+            ScheduledFuture<Object> future = scheduler.schedule(new Callable<String>() {
+                public String call() {
+                    return "done";
+                }}, 1200, TimeUnit.MILLISECONDS, "mykey");
+            assertEquals(future.get(10, TimeUnit.SECONDS), "done");
+            assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 1200, "elapsed="+stopwatch);
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCancelledJobNotRun() throws Exception {
+        TimerWheelScheduler scheduler = new TimerWheelScheduler(1, Duration.millis(1), new ThreadFactoryBuilder().setDaemon(true).build());
+        try {
+            final AtomicInteger i = new AtomicInteger(0);
+            ScheduledFuture<Object> future = scheduler.schedule(new Callable<Integer>() {
+                public Integer call() {
+                    return i.incrementAndGet();
+                }}, 50, TimeUnit.MILLISECONDS, "mykey");
+            assertTrue(future.cancel(false));
+            assertTrue(future.isCancelled());
+            Thread.sleep(100);
+            assertEquals(i.get(), 0);
+            assertFalse(future.cancel(false));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -18,6 +18,11 @@
  */
 package org.apache.brooklyn.util.core.task;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 
 import org.apache.brooklyn.api.mgmt.ExecutionContext;
@@ -32,6 +37,10 @@ import org.testng.Assert;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
 /**
  * see also {@link TasksTest} for more tests
  */
@@ -130,4 +139,23 @@ public class ValueResolverTest extends BrooklynAppUnitTestSupport {
         Assert.assertEquals(result.get(), "foo");
     }
 
+    public void testDeepResolutionOfPlainValuesCopiesStructure() {
+        Map<String, Object> map = ImmutableMap.<String, Object>of("a", "x", "b", ImmutableList.of("y", ImmutableSet.of("z")));
+        Object result = Tasks.resolving(map).as(Object.class).context(executionContext).deep(true).get();
+        
+        Assert.assertEquals(result, map);
+        Assert.assertTrue(result instanceof LinkedHashMap, "result="+result.getClass());
+        Object list = ((Map<?,?>)result).get("b");
+        Assert.assertTrue(list instanceof ArrayList, "list="+list.getClass());
+        Assert.assertTrue(((List<?>)list).get(1) instanceof LinkedHashSet, "set="+((List<?>)list).get(1).getClass());
+    }
+
+    public void testDeepResolutionOfNestedTask() {
+        Task<String> t = newSleepTask(Duration.ZERO, "foo");
+        Map<String, Object> map = ImmutableMap.<String, Object>of("a", "x", "b", ImmutableList.of("y", t));
+        Object result = Tasks.resolving(map).as(Object.class).context(executionContext).deep(true).get();
+        
+        Assert.assertEquals(result, ImmutableMap.of("a", "x", "b", ImmutableList.of("y", "foo")));
+    }
+
 }
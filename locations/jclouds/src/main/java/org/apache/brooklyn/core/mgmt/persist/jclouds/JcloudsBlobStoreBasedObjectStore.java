@@ -186,6 +186,11 @@ public class JcloudsBlobStoreBasedObjectStore implements PersistenceObjectStore
                 }).toList();
     }
 
+    @Override
+    public void commitBatch() {
+        // no-op; each blob is written as it is put
+    }
+
     @Override
     public void close() {
         if (context!=null)
@@ -162,6 +162,7 @@ import org.jclouds.util.Predicates2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
@@ -389,6 +390,20 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
         return checkNotNull(getConfig(MACHINE_CREATION_SEMAPHORE), MACHINE_CREATION_SEMAPHORE.getName());
     }
 
+    /** The scheduler of calls to create machines, shared with the other locations provisioning in the same cloud. */
+    protected JcloudsProvisioningScheduler getProvisioningScheduler(ConfigBag config) {
+        return JcloudsProvisioningScheduler.forCloud(getManagementContext(), config);
+    }
+
+    /**
+     * Returns the queue depth, calls and time-to-machine of the machines created in this location's cloud
+     * (by all locations there); see {@link JcloudsProvisioningScheduler#getMetrics()}.
+     */
+    @Beta
+    public Map<String, Object> getProvisioningMetrics() {
+        return getProvisioningScheduler(config().getBag()).getMetrics();
+    }
+
     protected CloudMachineNamer getCloudMachineNamer(ConfigBag config) {
         String namerClass = config.get(LocationConfigKeys.CLOUD_MACHINE_NAMER_CLASS);
         if (Strings.isNonBlank(namerClass)) {
@@ -723,7 +738,8 @@ public class JcloudsLocation extends AbstractCloudMachineProvisioningLocation im
                         LOG.debug("NOTE: unused flags passed to obtain VM in "+setup.getDescription()+": "
                                 + Sanitizer.sanitize(setup.getUnusedConfig()));
                 
-                nodes = computeService.createNodesInGroup(groupId, 1, template);
+                nodes = getProvisioningScheduler(setup).createNodeInGroup(computeService, groupId, template,
+                        setup.get(MACHINE_CREATION_BATCH_WINDOW), setup.get(MAX_MACHINE_CREATION_BATCH_SIZE));
                 provisionTimestamp = Duration.of(provisioningStopwatch);
             } finally {
                 machineCreationSemaphore.release();
@@ -37,6 +37,7 @@ import org.jclouds.compute.domain.OsFamily;
 import org.jclouds.compute.domain.TemplateBuilder;
 import org.jclouds.domain.LoginCredentials;
 import org.apache.brooklyn.util.core.internal.ssh.SshTool;
+import org.apache.brooklyn.util.time.Duration;
 
 import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
@@ -249,6 +250,29 @@ public interface JcloudsLocationConfig extends CloudLocationConfig {
     public static final ConfigKey<Semaphore> MACHINE_CREATION_SEMAPHORE = ConfigKeys.newConfigKey(
             Semaphore.class, "machineCreationSemaphore", "Semaphore for controlling concurrent machine creation", null);
 
+    @Beta
+    public static final ConfigKey<Integer> MAX_CONCURRENT_CREATE_NODES_CALLS = ConfigKeys.newIntegerConfigKey(
+            "maxConcurrentCreateNodesCalls", "Maximum number of concurrent calls to create machines in a cloud "
+                    + "(i.e. with the same provider, region, endpoint and identity), by all locations there; "
+                    + "the limit is that of the first location to provision in the cloud", Integer.MAX_VALUE);
+
+    @Beta
+    public static final ConfigKey<Double> MAX_CREATE_NODES_CALLS_PER_SECOND = ConfigKeys.newDoubleConfigKey(
+            "maxCreateNodesCallsPerSecond", "Maximum rate of calls to create machines in a cloud (as for "
+                    + "maxConcurrentCreateNodesCalls); unlimited by default", null);
+
+    @Beta
+    public static final ConfigKey<Duration> MACHINE_CREATION_BATCH_WINDOW = ConfigKeys.newDurationConfigKey(
+            "machineCreationBatchWindow", "If set, concurrent requests for machines in the same group with the same template "
+                    + "and user metadata (other than the machine's name and creation date), made within this time of the first, "
+                    + "are combined into one call to create them all; the machines are given the user metadata common to all requests. "
+                    + "Not batched by default", null);
+
+    @Beta
+    public static final ConfigKey<Integer> MAX_MACHINE_CREATION_BATCH_SIZE = ConfigKeys.newIntegerConfigKey(
+            "maxMachineCreationBatchSize", "Maximum number of machines to create in one call, when batching "
+                    + "(see machineCreationBatchWindow)", 50);
+
     @SuppressWarnings("serial")
     public static final ConfigKey<Function<Iterable<? extends Image>,Image>> IMAGE_CHOOSER = ConfigKeys.newConfigKey(
         new TypeToken<Function<Iterable<? extends Image>,Image>>() {},
@@ -0,0 +1,345 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.brooklyn.api.mgmt.ManagementContext;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.config.ConfigBag;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.Template;
+import org.jclouds.compute.domain.internal.TemplateImpl;
+import org.jclouds.compute.options.TemplateOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.annotations.Beta;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Joiner;
+import com.google.common.base.Objects;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Governs the calls to create machines in a cloud (i.e. with the same provider, region, endpoint and identity),
+ * for all the {@link JcloudsLocation}s provisioning there: limiting the number of concurrent calls and their rate,
+ * and optionally combining concurrent requests for machines with the same template into one call.
+ * <p>
+ * There is one scheduler per cloud in each management context. The limits are those configured for the
+ * first location to provision in the cloud (others with different limits are logged); see
+ * {@link JcloudsLocationConfig#MAX_CONCURRENT_CREATE_NODES_CALLS} and {@link JcloudsLocationConfig#MAX_CREATE_NODES_CALLS_PER_SECOND}.
+ * Batching is configured for each request; see {@link JcloudsLocationConfig#MACHINE_CREATION_BATCH_WINDOW}.
+ */
+@Beta
+public class JcloudsProvisioningScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JcloudsProvisioningScheduler.class);
+
+    /** The schedulers of each management context, keyed by cloud; weak keys, so dropped with their management context. */
+    private static final ConcurrentMap<ManagementContext, ConcurrentMap<String, JcloudsProvisioningScheduler>> SCHEDULERS =
+            CacheBuilder.newBuilder().weakKeys().<ManagementContext, ConcurrentMap<String, JcloudsProvisioningScheduler>>build().asMap();
+
+    /**
+     * Returns the scheduler for the cloud of the given config in the given management context, creating it
+     * (with the limits in that config) if need be.
+     */
+    public static JcloudsProvisioningScheduler forCloud(ManagementContext managementContext, ConfigBag config) {
+        ConcurrentMap<String, JcloudsProvisioningScheduler> schedulers = SCHEDULERS.get(managementContext);
+        if (schedulers == null) {
+            ConcurrentMap<String, JcloudsProvisioningScheduler> newSchedulers = Maps.newConcurrentMap();
+            schedulers = SCHEDULERS.putIfAbsent(managementContext, newSchedulers);
+            if (schedulers == null) schedulers = newSchedulers;
+        }
+        String key = Joiner.on(" ").useForNull("").join(config.get(JcloudsLocationConfig.CLOUD_PROVIDER),
+                config.get(JcloudsLocationConfig.CLOUD_REGION_ID), config.get(JcloudsLocationConfig.CLOUD_ENDPOINT),
+                config.get(JcloudsLocationConfig.ACCESS_IDENTITY));
+        Integer maxConcurrentCalls = config.get(JcloudsLocationConfig.MAX_CONCURRENT_CREATE_NODES_CALLS);
+        Double maxCallsPerSecond = config.get(JcloudsLocationConfig.MAX_CREATE_NODES_CALLS_PER_SECOND);
+        JcloudsProvisioningScheduler result = schedulers.get(key);
+        if (result == null) {
+            JcloudsProvisioningScheduler newScheduler = new JcloudsProvisioningScheduler(maxConcurrentCalls, maxCallsPerSecond);
+            result = schedulers.putIfAbsent(key, newScheduler);
+            if (result == null) return newScheduler;
+        }
+        result.checkLimits(maxConcurrentCalls, maxCallsPerSecond);
+        return result;
+    }
+
+    @Nullable private final Integer maxConcurrentCalls;
+    @Nullable private final Double maxCallsPerSecond;
+    private final Set<List<?>> conflictingLimitsLogged = Sets.newConcurrentHashSet();
+    private final Semaphore callPermits;
+    @Nullable private final RateLimiter callRateLimiter;
+    private final Map<List<?>, Batch> openBatches = Maps.newHashMap();
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong calls = new AtomicLong();
+    private final AtomicLong machinesCreated = new AtomicLong();
+    private final AtomicLong totalTimeToMachineNanos = new AtomicLong();
+    private volatile long lastTimeToMachineNanos;
+
+    @VisibleForTesting
+    JcloudsProvisioningScheduler(@Nullable Integer maxConcurrentCalls, @Nullable Double maxCallsPerSecond) {
+        int permits = (maxConcurrentCalls == null) ? Integer.MAX_VALUE : maxConcurrentCalls;
+        if (permits < 1) {
+            throw new IllegalArgumentException(JcloudsLocationConfig.MAX_CONCURRENT_CREATE_NODES_CALLS.getName() + " must be >= 1, but was "+maxConcurrentCalls);
+        }
+        if (maxCallsPerSecond != null && maxCallsPerSecond <= 0) {
+            throw new IllegalArgumentException(JcloudsLocationConfig.MAX_CREATE_NODES_CALLS_PER_SECOND.getName() + " must be > 0, but was "+maxCallsPerSecond);
+        }
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxCallsPerSecond = maxCallsPerSecond;
+        this.callPermits = new Semaphore(permits, true);
+        this.callRateLimiter = (maxCallsPerSecond == null) ? null : RateLimiter.create(maxCallsPerSecond);
+    }
+
+    /**
+     * Creates one machine, as {@link ComputeService#createNodesInGroup(String, int, Template)}, within the limits
+     * of the cloud; if a batch window is given, the machine may be created in the same call as those of
+     * other requests in the same group with the same template (other than its per-machine user metadata,
+     * such as its name) made within that window.
+     */
+    public Set<? extends NodeMetadata> createNodeInGroup(ComputeService computeService, String group, Template template,
+            @Nullable Duration batchWindow, int maxBatchSize) throws RunNodesException {
+        long startTime = System.nanoTime();
+        Set<? extends NodeMetadata> result;
+        if (batchWindow == null || maxBatchSize <= 1) {
+            queued.incrementAndGet();
+            try {
+                acquirePermit();
+            } finally {
+                queued.decrementAndGet();
+            }
+            try {
+                calls.incrementAndGet();
+                result = computeService.createNodesInGroup(group, 1, template);
+            } finally {
+                callPermits.release();
+            }
+        } else {
+            result = createNodeInBatch(computeService, group, template, batchWindow, maxBatchSize);
+        }
+        long timeToMachine = System.nanoTime() - startTime;
+        machinesCreated.addAndGet(result.size());
+        totalTimeToMachineNanos.addAndGet(timeToMachine);
+        lastTimeToMachineNanos = timeToMachine;
+        return result;
+    }
+
+    /**
+     * Returns the number of requests queued (waiting for a permit, or for their batch to be sent), the number of
+     * calls made to create machines, the number of machines created, and the mean and last time to create
+     * a machine (from its request, so including the time queued).
+     */
+    public Map<String, Object> getMetrics() {
+        long machines = machinesCreated.get();
+        return MutableMap.<String, Object>builder()
+                .put("queueDepth", queued.get())
+                .put("calls", calls.get())
+                .put("machinesCreated", machines)
+                .put("meanTimeToMachine", Duration.nanos(machines > 0 ? totalTimeToMachineNanos.get() / machines : 0))
+                .put("lastTimeToMachine", Duration.nanos(lastTimeToMachineNanos))
+                .build();
+    }
+
+    /** Logs (once for each) limits configured for another location in the cloud that differ from those in use. */
+    private void checkLimits(@Nullable Integer otherMaxConcurrentCalls, @Nullable Double otherMaxCallsPerSecond) {
+        if (Objects.equal(maxConcurrentCalls, otherMaxConcurrentCalls) && Objects.equal(maxCallsPerSecond, otherMaxCallsPerSecond)) {
+            return;
+        }
+        if (conflictingLimitsLogged.add(Arrays.<Object>asList(otherMaxConcurrentCalls, otherMaxCallsPerSecond))) {
+            LOG.warn("Ignoring limits "+JcloudsLocationConfig.MAX_CONCURRENT_CREATE_NODES_CALLS.getName()+"="+otherMaxConcurrentCalls
+                    + " and "+JcloudsLocationConfig.MAX_CREATE_NODES_CALLS_PER_SECOND.getName()+"="+otherMaxCallsPerSecond
+                    + " for creating machines in a cloud already limited to "+maxConcurrentCalls+" and "+maxCallsPerSecond
+                    + " (as configured for the first location to provision there)");
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            callPermits.acquire();
+        } catch (InterruptedException e) {
+            throw Exceptions.propagate(e);
+        }
+        if (callRateLimiter != null) callRateLimiter.acquire();
+    }
+
+    private Set<? extends NodeMetadata> createNodeInBatch(ComputeService computeService, String group, Template template,
+            Duration batchWindow, int maxBatchSize) {
+        List<?> key = batchKey(computeService, group, template);
+        Batch batch;
+        int index;
+        synchronized (openBatches) {
+            queued.incrementAndGet();
+            batch = openBatches.get(key);
+            if (batch == null) {
+                batch = new Batch(computeService, group, template);
+                openBatches.put(key, batch);
+            }
+            index = batch.join(template.getOptions().getUserMetadata());
+            if (batch.size() >= maxBatchSize) {
+                openBatches.remove(key);
+                batch.full.countDown();
+            }
+        }
+
+        if (index == 0) {
+            // the first request waits for the others, then makes the call for them all
+            Uninterruptibles.awaitUninterruptibly(batch.full, batchWindow.toMilliseconds(), TimeUnit.MILLISECONDS);
+            synchronized (openBatches) {
+                if (openBatches.get(key) == batch) openBatches.remove(key);
+            }
+            batch.send();
+        }
+        return batch.awaitNode(index);
+    }
+
+    /**
+     * The user metadata which may differ between requests created in the same call, as it is unique to each machine
+     * rather than identifying who it is for; not kept when it differs (see {@link Batch#batchTemplate()}).
+     */
+    private static final Set<String> PER_MACHINE_USER_METADATA = ImmutableSet.of("Name", "brooklyn-server-creation-date");
+
+    /**
+     * Requests with equal keys can be created in the same call: those in the same group, with the same template and
+     * user metadata, other than that {@link #PER_MACHINE_USER_METADATA} (the metadata cannot be set for each machine
+     * created in a call, so e.g. the brooklyn entity and app ids must be the same).
+     */
+    private static List<?> batchKey(ComputeService computeService, String group, Template template) {
+        TemplateOptions options = template.getOptions().clone();
+        options.getUserMetadata().keySet().removeAll(PER_MACHINE_USER_METADATA);
+        return Arrays.asList(computeService, group,
+                template.getImage() == null ? null : template.getImage().getId(),
+                template.getHardware() == null ? null : template.getHardware().getId(),
+                template.getLocation() == null ? null : template.getLocation().getId(),
+                options);
+    }
+
+    /** Requests for machines to be created in one call; guarded by the scheduler's openBatches until sent. */
+    private class Batch {
+        final ComputeService computeService;
+        final String group;
+        final Template template;
+        final List<Map<String, String>> userMetadatas = Lists.newArrayList();
+        final CountDownLatch full = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        volatile List<NodeMetadata> nodes = ImmutableList.of();
+        volatile Exception failure;
+
+        Batch(ComputeService computeService, String group, Template template) {
+            this.computeService = computeService;
+            this.group = group;
+            this.template = template;
+        }
+
+        int join(Map<String, String> userMetadata) {
+            userMetadatas.add(MutableMap.copyOf(userMetadata));
+            return userMetadatas.size() - 1;
+        }
+
+        int size() {
+            return userMetadatas.size();
+        }
+
+        /** Called by the first request, once the batch is no longer open. */
+        void send() {
+            int count = size();
+            queued.addAndGet(-count);
+            try {
+                acquirePermit();
+                try {
+                    calls.incrementAndGet();
+                    LOG.debug("Creating {} machines in one call in group {} of {}", new Object[] {count, group, computeService});
+                    nodes = ImmutableList.copyOf(computeService.createNodesInGroup(group, count, batchTemplate()));
+                } finally {
+                    callPermits.release();
+                }
+            } catch (RunNodesException e) {
+                nodes = ImmutableList.copyOf(e.getSuccessfulNodes());
+                failure = e;
+                destroyFailedNodes(e);
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        Set<? extends NodeMetadata> awaitNode(int index) {
+            Uninterruptibles.awaitUninterruptibly(done);
+            List<NodeMetadata> result = nodes;
+            if (index < result.size()) {
+                return ImmutableSet.of(result.get(index));
+            }
+            throw new IllegalStateException("Failed to create machine in batch of "+size()+" in group "+group+" of "+computeService
+                    + (failure != null ? ": "+failure : ""), failure);
+        }
+
+        /**
+         * Destroys the machines created in error, as the caller would for a single machine; the requests that
+         * get no machine fail with an {@link IllegalStateException}, so cannot be given the machines to destroy.
+         */
+        private void destroyFailedNodes(RunNodesException e) {
+            for (NodeMetadata node : e.getNodeErrors().keySet()) {
+                try {
+                    LOG.debug("Destroying machine {} that failed when created in batch in group {} of {}", new Object[] {node.getId(), group, computeService});
+                    computeService.destroyNode(node.getId());
+                } catch (Exception e2) {
+                    Exceptions.propagateIfFatal(e2);
+                    LOG.warn("Error destroying machine "+node.getId()+" that failed when created in batch in group "+group
+                            + " of "+computeService+"; continuing", e2);
+                }
+            }
+        }
+
+        /** The template of the first request, with only the user metadata common to all requests. */
+        private Template batchTemplate() {
+            TemplateOptions options = template.getOptions().clone();
+            Map<String, String> userMetadata = options.getUserMetadata();
+            for (Map<String, String> other : userMetadatas) {
+                for (String key : ImmutableSet.copyOf(userMetadata.keySet())) {
+                    if (!Objects.equal(userMetadata.get(key), other.get(key))) userMetadata.remove(key);
+                }
+            }
+            return new TemplateImpl(template.getImage(), template.getHardware(), template.getLocation(), options);
+        }
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.location.jclouds;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.util.time.Duration;
+import org.jclouds.ContextBuilder;
+import org.jclouds.compute.ComputeService;
+import org.jclouds.compute.ComputeServiceContext;
+import org.jclouds.compute.RunNodesException;
+import org.jclouds.compute.domain.NodeMetadata;
+import org.jclouds.compute.domain.Template;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+/**
+ * Tests {@link JcloudsProvisioningScheduler} against jclouds' stub provider, which creates machines in memory.
+ */
+public class JcloudsProvisioningSchedulerTest {
+
+    private ComputeServiceContext context;
+    private RecordingComputeService computeService;
+    private ExecutorService executor;
+
+    @BeforeMethod(alwaysRun=true)
+    public void setUp() throws Exception {
+        context = ContextBuilder.newBuilder("stub").buildView(ComputeServiceContext.class);
+        computeService = new RecordingComputeService(context.getComputeService());
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterMethod(alwaysRun=true)
+    public void tearDown() throws Exception {
+        if (executor != null) executor.shutdownNow();
+        if (context != null) context.close();
+    }
+
+    @Test
+    public void testConcurrentCallsLimited() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(2, null);
+
+        List<NodeMetadata> nodes = createNodesConcurrently(scheduler, 10, null);
+
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 10);
+        assertEquals(computeService.calls.get(), 10);
+        assertTrue(computeService.maxConcurrentCalls.get() <= 2, "maxConcurrentCalls="+computeService.maxConcurrentCalls);
+        Map<String, Object> metrics = scheduler.getMetrics();
+        assertEquals(metrics.get("queueDepth"), 0);
+        assertEquals(metrics.get("calls"), 10L);
+        assertEquals(metrics.get("machinesCreated"), 10L);
+    }
+
+    @Test
+    public void testConcurrentRequestsWithSameTemplateCreatedInBatch() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(null, null);
+
+        List<NodeMetadata> nodes = createNodesConcurrently(scheduler, 20, Duration.ONE_SECOND);
+
+        // each request gets a machine of its own, but they are created in fewer calls
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 20);
+        assertTrue(computeService.calls.get() < 20, "calls="+computeService.calls);
+        assertEquals(scheduler.getMetrics().get("machinesCreated"), 20L);
+
+        // only the user metadata common to all requests is applied
+        Template batchTemplate = computeService.templates.get(0);
+        assertEquals(batchTemplate.getOptions().getUserMetadata().get("common"), "value");
+        assertFalse(batchTemplate.getOptions().getUserMetadata().containsKey("Name"), "metadata="+batchTemplate.getOptions().getUserMetadata());
+    }
+
+    @Test
+    public void testBatchSizeLimited() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(null, null);
+
+        List<Future<Set<? extends NodeMetadata>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 6; i++) {
+            futures.add(submit(scheduler, newTemplate(i), Duration.ONE_MINUTE, 3));
+        }
+        // full batches are sent without waiting for the window
+        List<NodeMetadata> nodes = getNodes(futures);
+
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 6);
+        assertEquals(computeService.calls.get(), 2);
+    }
+
+    @Test
+    public void testRequestsWithDifferentTemplatesNotBatched() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(null, null);
+
+        List<Future<Set<? extends NodeMetadata>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            Template template = newTemplate(i);
+            template.getOptions().inboundPorts((i % 2 == 0) ? new int[] {22} : new int[] {22, 8080});
+            futures.add(submit(scheduler, template, Duration.ONE_SECOND, 50));
+        }
+        List<NodeMetadata> nodes = getNodes(futures);
+
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 4);
+        assertEquals(computeService.calls.get(), 2);
+    }
+
+    @Test
+    public void testRequestsForDifferentEntitiesOrGroupsNotBatched() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(null, null);
+
+        List<Future<Set<? extends NodeMetadata>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 4; i++) {
+            Template template = newTemplate(i);
+            template.getOptions().getUserMetadata().put("brooklyn-entity-id", (i % 2 == 0) ? "entity1" : "entity2");
+            futures.add(submit(scheduler, "mygroup", template, Duration.ONE_SECOND, 50));
+        }
+        futures.add(submit(scheduler, "othergroup", newTemplate(4), Duration.ONE_SECOND, 50));
+        List<NodeMetadata> nodes = getNodes(futures);
+
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 5);
+        assertEquals(computeService.calls.get(), 3);
+        // the machines keep the brooklyn ids of their requests
+        Set<String> entityIds = Sets.newHashSet();
+        for (Template batchTemplate : computeService.templates) {
+            entityIds.add(batchTemplate.getOptions().getUserMetadata().get("brooklyn-entity-id"));
+        }
+        assertEquals(entityIds, Sets.newHashSet("entity1", "entity2", null));
+        assertEquals(computeService.groups, Sets.newHashSet("mygroup", "othergroup"));
+    }
+
+    @Test
+    public void testFailedMachinesInBatchDestroyed() throws Exception {
+        JcloudsProvisioningScheduler scheduler = new JcloudsProvisioningScheduler(null, null);
+        computeService.failures = 1;
+
+        List<Future<Set<? extends NodeMetadata>>> futures = Lists.newArrayList();
+        for (int i = 0; i < 3; i++) {
+            futures.add(submit(scheduler, newTemplate(i), Duration.ONE_MINUTE, 3));
+        }
+        List<NodeMetadata> nodes = Lists.newArrayList();
+        int failed = 0;
+        for (Future<Set<? extends NodeMetadata>> future : futures) {
+            try {
+                nodes.add(Iterables.getOnlyElement(future.get()));
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, "cause="+e.getCause());
+                failed++;
+            }
+        }
+
+        // the successful machines are given to requests; the failed one is destroyed, rather than leaked
+        assertEquals(Sets.newHashSet(ids(nodes)).size(), 2);
+        assertEquals(failed, 1);
+        assertEquals(computeService.destroyed.size(), 1);
+        assertFalse(ids(nodes).contains(computeService.destroyed.get(0)), "destroyed="+computeService.destroyed+"; nodes="+ids(nodes));
+    }
+
+    private List<NodeMetadata> createNodesConcurrently(JcloudsProvisioningScheduler scheduler, int count, Duration batchWindow) throws Exception {
+        List<Future<Set<? extends NodeMetadata>>> futures = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            futures.add(submit(scheduler, newTemplate(i), batchWindow, 50));
+        }
+        return getNodes(futures);
+    }
+
+    /** A template as for a request from a location, with user metadata some of which differs for each request. */
+    private Template newTemplate(int i) {
+        Template template = computeService.templateBuilder().build();
+        template.getOptions().getUserMetadata().put("Name", "machine-"+i);
+        template.getOptions().getUserMetadata().put("common", "value");
+        return template;
+    }
+
+    private Future<Set<? extends NodeMetadata>> submit(JcloudsProvisioningScheduler scheduler, Template template,
+            Duration batchWindow, int maxBatchSize) {
+        return submit(scheduler, "mygroup", template, batchWindow, maxBatchSize);
+    }
+
+    private Future<Set<? extends NodeMetadata>> submit(final JcloudsProvisioningScheduler scheduler, final String group, 
+            final Template template, final Duration batchWindow, final int maxBatchSize) {
+        return executor.submit(new Callable<Set<? extends NodeMetadata>>() {
+            public Set<? extends NodeMetadata> call() throws Exception {
+                return scheduler.createNodeInGroup(computeService, group, template, batchWindow, maxBatchSize);
+            }});
+    }
+
+    private List<NodeMetadata> getNodes(List<Future<Set<? extends NodeMetadata>>> futures) throws Exception {
+        List<NodeMetadata> result = Lists.newArrayList();
+        for (Future<Set<? extends NodeMetadata>> future : futures) {
+            result.add(Iterables.getOnlyElement(future.get()));
+        }
+        return result;
+    }
+
+    private List<String> ids(List<NodeMetadata> nodes) {
+        List<String> result = Lists.newArrayList();
+        for (NodeMetadata node : nodes) {
+            result.add(node.getId());
+        }
+        return result;
+    }
+
+    /**
+     * Records the calls to create nodes, the maximum number concurrently in progress, and the nodes destroyed;
+     * optionally reports the last nodes created in each call as failed.
+     */
+    private static class RecordingComputeService extends DelegatingComputeService {
+        final AtomicInteger calls = new AtomicInteger();
+        final AtomicInteger concurrentCalls = new AtomicInteger();
+        final AtomicInteger maxConcurrentCalls = new AtomicInteger();
+        final List<Template> templates = Lists.newCopyOnWriteArrayList();
+        final List<String> destroyed = Lists.newCopyOnWriteArrayList();
+        final Set<String> groups = Sets.newConcurrentHashSet();
+        volatile int failures;
+
+        RecordingComputeService(ComputeService delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public Set<? extends NodeMetadata> createNodesInGroup(String group, int count, Template template) throws RunNodesException {
+            calls.incrementAndGet();
+            templates.add(template);
+            groups.add(group);
+            int concurrent = concurrentCalls.incrementAndGet();
+            synchronized (maxConcurrentCalls) {
+                maxConcurrentCalls.set(Math.max(maxConcurrentCalls.get(), concurrent));
+            }
+            try {
+                Set<? extends NodeMetadata> result = super.createNodesInGroup(group, count, template);
+                if (failures > 0) {
+                    List<NodeMetadata> nodes = ImmutableList.copyOf(result);
+                    Map<NodeMetadata, Exception> failed = Maps.newLinkedHashMap();
+                    for (NodeMetadata node : nodes.subList(nodes.size() - failures, nodes.size())) {
+                        failed.put(node, new Exception("Simulated failure of "+node.getId()));
+                    }
+                    throw new RunNodesException(group, count, template, ImmutableSet.copyOf(nodes.subList(0, nodes.size() - failures)),
+                            ImmutableMap.<Object, Exception>of(), failed);
+                }
+                return result;
+            } finally {
+                concurrentCalls.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void destroyNode(String id) {
+            destroyed.add(id);
+            super.destroyNode(id);
+        }
+    }
+}
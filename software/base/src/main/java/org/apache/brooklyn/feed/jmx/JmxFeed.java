@@ -24,7 +24,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.management.Notification;
 import javax.management.NotificationFilter;
@@ -32,21 +34,32 @@ import javax.management.NotificationListener;
 import javax.management.ObjectName;
 
 import org.apache.brooklyn.api.entity.EntityLocal;
+import org.apache.brooklyn.api.sensor.Feed;
 import org.apache.brooklyn.config.ConfigKey;
 import org.apache.brooklyn.core.config.ConfigKeys;
+import org.apache.brooklyn.core.entity.EntityInternal;
 import org.apache.brooklyn.core.feed.AbstractFeed;
 import org.apache.brooklyn.core.feed.AttributePollHandler;
 import org.apache.brooklyn.core.feed.DelegatingPollHandler;
 import org.apache.brooklyn.core.feed.PollHandler;
 import org.apache.brooklyn.core.feed.Poller;
 import org.apache.brooklyn.entity.software.base.SoftwareProcessImpl;
+import org.apache.brooklyn.feed.jmx.JmxNotificationSubscriptionConfig.CoalesceMode;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.core.flags.TypeCoercions;
+import org.apache.brooklyn.util.exceptions.Exceptions;
 import org.apache.brooklyn.util.time.Duration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.annotations.Beta;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.SetMultimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
@@ -98,6 +111,11 @@ public class JmxFeed extends AbstractFeed {
     public static final ConfigKey<String> JMX_URI = ConfigKeys.newStringConfigKey("jmxUri");
     public static final ConfigKey<Long> JMX_CONNECTION_TIMEOUT = ConfigKeys.newLongConfigKey("jmxConnectionTimeout");
     
+    @Beta
+    public static final ConfigKey<Boolean> BULK_ATTRIBUTE_POLLS = ConfigKeys.newBooleanConfigKey("bulkAttributePolls", 
+            "Whether to read the polled attributes of each ObjectName (with the same period) together, in one request; "
+            + "if not, each attribute is read with its own request", false);
+    
     @SuppressWarnings("serial")
     public static final ConfigKey<SetMultimap<String, JmxAttributePollConfig<?>>> ATTRIBUTE_POLLS = ConfigKeys.newConfigKey(
             new TypeToken<SetMultimap<String, JmxAttributePollConfig<?>>>() {},
@@ -127,6 +145,7 @@ public class JmxFeed extends AbstractFeed {
         private List<JmxOperationPollConfig<?>> operationPolls = Lists.newArrayList();
         private List<JmxNotificationSubscriptionConfig<?>> notificationSubscriptions = Lists.newArrayList();
         private String uniqueTag;
+        private boolean bulkAttributePolls = false;
         private volatile boolean built;
         
         public Builder entity(EntityLocal val) {
@@ -164,6 +183,12 @@ public class JmxFeed extends AbstractFeed {
             this.uniqueTag = uniqueTag;
             return this;
         }
+        /** Whether to read attributes in bulk (not by default); see {@link JmxFeed#BULK_ATTRIBUTE_POLLS}. */
+        @Beta
+        public Builder bulkAttributePolls(boolean val) {
+            this.bulkAttributePolls = val;
+            return this;
+        }
         public JmxFeed build() {
             built = true;
             JmxFeed result = new JmxFeed(this);
@@ -177,7 +202,27 @@ public class JmxFeed extends AbstractFeed {
         }
     }
 
+    /**
+     * A helper created by a feed (rather than given to it), shared by the feeds of the entity with the same
+     * JMX URL so that they share its connection; guarded by itself.
+     */
+    private static class SharedHelper {
+        final JmxHelper helper;
+        int users;
+        
+        SharedHelper(JmxHelper helper) {
+            this.helper = helper;
+        }
+    }
+
     private final SetMultimap<ObjectName, NotificationListener> notificationListeners = HashMultimap.create();
+    
+    private final ConcurrentMap<Duration, PollMetrics> pollMetrics = Maps.newConcurrentMap();
+    
+    private final NotificationMetrics notificationMetrics = new NotificationMetrics();
+
+    /** The helper acquired in {@link #setEntity(EntityLocal)}, to be released on stop; null if given, or on rebind. */
+    private transient SharedHelper sharedHelper;
 
     /**
      * For rebind; do not call directly; use builder
@@ -194,6 +239,7 @@ public class JmxFeed extends AbstractFeed {
             setConfig(JMX_URI, helper.getUrl());
         }
         setConfig(JMX_CONNECTION_TIMEOUT, builder.jmxConnectionTimeout);
+        setConfig(BULK_ATTRIBUTE_POLLS, builder.bulkAttributePolls);
         
         SetMultimap<String, JmxAttributePollConfig<?>> attributePolls = HashMultimap.<String,JmxAttributePollConfig<?>>create();
         for (JmxAttributePollConfig<?> config : builder.attributePolls) {
@@ -227,7 +273,8 @@ public class JmxFeed extends AbstractFeed {
     @Override
     public void setEntity(EntityLocal entity) {
         if (getConfig(HELPER) == null) {
-            JmxHelper helper = new JmxHelper(entity);
+            sharedHelper = acquireSharedHelper(entity);
+            JmxHelper helper = sharedHelper.helper;
             setConfig(HELPER, helper);
             setConfig(OWN_HELPER, true);
             setConfig(JMX_URI, helper.getUrl());
@@ -273,22 +320,28 @@ public class JmxFeed extends AbstractFeed {
            });
         
         for (final NotificationFilter filter : notificationSubscriptions.keySet()) {
+            final Set<JmxNotificationSubscriptionConfig<?>> configs = notificationSubscriptions.get(filter);
+            // created here, rather than when registered, so that the emitting of coalesced notifications is scheduled
+            final NotificationListener listener = newNotificationListener(configs);
             getPoller().submit(new Callable<Void>() {
                 public Void call() {
                     // TODO Could config.getObjectName have wildcards? Is this code safe?
-                    Set<JmxNotificationSubscriptionConfig<?>> configs = notificationSubscriptions.get(filter);
-                    NotificationListener listener = registerNotificationListener(configs);
                     ObjectName objectName = Iterables.get(configs, 0).getObjectName();
+                    getHelper().addNotificationListener(objectName, listener, filter);
                     notificationListeners.put(objectName, listener);
                     return null;
                 }
-                @Override public String toString() { return "Register JMX notifications: "+notificationSubscriptions.get(filter); }
+                @Override public String toString() { return "Register JMX notifications: "+configs; }
             });
         }
         
         // Setup polling of sensors
-        for (final String jmxAttributeName : attributePolls.keys()) {
-            registerAttributePoller(attributePolls.get(jmxAttributeName));
+        if (Boolean.TRUE.equals(getConfig(BULK_ATTRIBUTE_POLLS))) {
+            registerBulkAttributePollers(attributePolls);
+        } else {
+            for (final String jmxAttributeName : attributePolls.keys()) {
+                registerAttributePoller(attributePolls.get(jmxAttributeName));
+            }
         }
         
         // Setup polling of operations
@@ -312,7 +365,78 @@ public class JmxFeed extends AbstractFeed {
         super.postStop();
         JmxHelper helper = getHelper();
         Boolean ownHelper = getConfig(OWN_HELPER);
-        if (helper != null && ownHelper) helper.terminate();
+        if (helper != null && ownHelper) releaseHelper(helper, sharedHelper);
+    }
+    
+    /**
+     * Returns, for each poll period, the number of times attributes were polled (in bulk, or singly if not
+     * {@link #BULK_ATTRIBUTE_POLLS}), the number of round-trips to the JMX server that took, and the mean 
+     * and last latency of those polls.
+     */
+    @Beta
+    public Map<Duration, Map<String, Object>> getAttributePollMetrics() {
+        Map<Duration, Map<String, Object>> result = Maps.newTreeMap();
+        for (Map.Entry<Duration, PollMetrics> entry : pollMetrics.entrySet()) {
+            PollMetrics metrics = entry.getValue();
+            long polls = metrics.polls.get();
+            result.put(entry.getKey(), MutableMap.<String, Object>builder()
+                    .put("polls", polls)
+                    .put("roundTrips", metrics.roundTrips.get())
+                    .put("meanLatency", Duration.nanos(polls > 0 ? metrics.totalLatencyNanos.get() / polls : 0))
+                    .put("lastLatency", Duration.nanos(metrics.lastLatencyNanos))
+                    .build());
+        }
+        return result;
+    }
+    
+    /**
+     * Returns the number of notifications received, and the number of times sensors were set for them; fewer
+     * than received if notifications are coalesced (see {@link JmxNotificationSubscriptionConfig#coalesce(Duration, CoalesceMode)}).
+     */
+    @Beta
+    public Map<String, Object> getNotificationMetrics() {
+        return ImmutableMap.<String, Object>of(
+                "received", notificationMetrics.received.get(),
+                "emitted", notificationMetrics.emitted.get());
+    }
+    
+    /** Shares the helper of another feed of the entity with the same JMX URL, if there is one still in use. */
+    private static SharedHelper acquireSharedHelper(EntityLocal entity) {
+        String url = JmxHelper.toJmxUrl(entity);
+        for (Feed feed : ((EntityInternal)entity).feeds().getFeeds()) {
+            SharedHelper shared = (feed instanceof JmxFeed) ? ((JmxFeed)feed).sharedHelper : null;
+            if (shared == null || !url.equals(shared.helper.getUrl())) continue;
+            synchronized (shared) {
+                if (shared.users > 0) {
+                    shared.users++;
+                    return shared;
+                }
+            }
+        }
+        SharedHelper result = new SharedHelper(new JmxHelper(entity));
+        result.users = 1;
+        return result;
+    }
+    
+    /** Terminates the helper, unless it is shared with another feed that has not yet stopped. */
+    private static void releaseHelper(JmxHelper helper, SharedHelper shared) {
+        // the helper is not shared if from before a rebind
+        if (shared != null && shared.helper == helper) {
+            synchronized (shared) {
+                if (--shared.users > 0) return;
+            }
+        }
+        helper.terminate();
+    }
+    
+    private PollMetrics getPollMetrics(long period) {
+        Duration key = Duration.millis(period);
+        PollMetrics result = pollMetrics.get(key);
+        if (result == null) {
+            pollMetrics.putIfAbsent(key, new PollMetrics());
+            result = pollMetrics.get(key);
+        }
+        return result;
     }
     
     /**
@@ -361,51 +485,165 @@ public class JmxFeed extends AbstractFeed {
             if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
         }
         
+        final PollMetrics metrics = getPollMetrics(minPeriod);
+        
         // TODO Not good calling this holding the synchronization lock
         getPoller().scheduleAtFixedRate(
                 new Callable<Object>() {
                     public Object call() throws Exception {
                         if (log.isTraceEnabled()) log.trace("jmx attribute polling for {} sensors at {} -> {}", new Object[] {getEntity(), getJmxUri(), jmxAttributeName});
-                        return getHelper().getAttribute(objectName, jmxAttributeName);
+                        long startTime = System.nanoTime();
+                        try {
+                            return getHelper().getAttribute(objectName, jmxAttributeName);
+                        } finally {
+                            metrics.record(objectName.isPattern() ? 2 : 1, System.nanoTime() - startTime);
+                        }
                     }
                 }, 
                 new DelegatingPollHandler<Object>(handlers), minPeriod);
     }
 
     /**
-     * Registers to subscribe to notifications for an ObjectName, where all the given configs are for that same ObjectName + filter.
+     * Registers to poll jmx-attributes in bulk: one poller for each ObjectName and period, reading all the attributes
+     * of that ObjectName whose configs have that (minimum) period.
      */
-    private NotificationListener registerNotificationListener(Set<JmxNotificationSubscriptionConfig<?>> configs) {
-        final List<AttributePollHandler<? super javax.management.Notification>> handlers = Lists.newArrayList();
+    private void registerBulkAttributePollers(SetMultimap<String, JmxAttributePollConfig<?>> attributePolls) {
+        Map<List<?>, Map<String, PollHandler<Object>>> handlersByObjectNameAndPeriod = Maps.newLinkedHashMap();
+        
+        for (String key : attributePolls.keySet()) {
+            Set<JmxAttributePollConfig<?>> configs = attributePolls.get(key);
+            Set<AttributePollHandler<? super Object>> handlers = Sets.newLinkedHashSet();
+            long minPeriod = Integer.MAX_VALUE;
+            for (JmxAttributePollConfig<?> config : configs) {
+                handlers.add(new AttributePollHandler<Object>(config, getEntity(), this));
+                if (config.getPeriod() > 0) minPeriod = Math.min(minPeriod, config.getPeriod());
+            }
+            
+            JmxAttributePollConfig<?> first = Iterables.get(configs, 0);
+            List<?> groupKey = ImmutableList.of(first.getObjectName(), minPeriod);
+            Map<String, PollHandler<Object>> group = handlersByObjectNameAndPeriod.get(groupKey);
+            if (group == null) {
+                group = Maps.newLinkedHashMap();
+                handlersByObjectNameAndPeriod.put(groupKey, group);
+            }
+            group.put(first.getAttributeName(), new DelegatingPollHandler<Object>(handlers));
+        }
+        
+        for (Map.Entry<List<?>, Map<String, PollHandler<Object>>> entry : handlersByObjectNameAndPeriod.entrySet()) {
+            final ObjectName objectName = (ObjectName) entry.getKey().get(0);
+            long period = (Long) entry.getKey().get(1);
+            final Set<String> attributeNames = ImmutableSet.copyOf(entry.getValue().keySet());
+            final PollMetrics metrics = getPollMetrics(period);
+            
+            getPoller().scheduleAtFixedRate(
+                    new Callable<Object>() {
+                        public Object call() throws Exception {
+                            if (log.isTraceEnabled()) log.trace("jmx attribute polling for {} sensors at {} -> {}", new Object[] {getEntity(), getJmxUri(), attributeNames});
+                            return readAttributes(objectName, attributeNames, metrics);
+                        }
+                    }, 
+                    new BulkAttributePollHandler(entry.getValue()), period);
+        }
+    }
+    
+    /**
+     * Reads the attributes in one request; any not read that way are read singly, so that the error
+     * (if any) for each is reported to its handlers as when not polling in bulk.
+     */
+    private Map<String, Object> readAttributes(ObjectName objectName, Set<String> attributeNames, PollMetrics metrics) {
+        long startTime = System.nanoTime();
+        int roundTrips = objectName.isPattern() ? 2 : 1;
+        try {
+            Map<String, Object> values;
+            try {
+                values = getHelper().getAttributes(objectName, attributeNames);
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                if (log.isDebugEnabled()) log.debug("Failed to read jmx attributes "+attributeNames+" of "+objectName+" at "+getJmxUri()+" in bulk; reading singly: "+e);
+                values = ImmutableMap.of();
+            }
+            
+            // accepts null values: for all attributes if the MBean is not found, as for getAttribute
+            Map<String, Object> result = Maps.newHashMap();
+            for (String attributeName : attributeNames) {
+                if (values == null) {
+                    result.put(attributeName, null);
+                } else if (values.containsKey(attributeName)) {
+                    result.put(attributeName, values.get(attributeName));
+                } else {
+                    roundTrips += objectName.isPattern() ? 2 : 1;
+                    try {
+                        result.put(attributeName, getHelper().getAttribute(objectName, attributeName));
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        result.put(attributeName, new FailedRead(e));
+                    }
+                }
+            }
+            return result;
+        } finally {
+            metrics.record(roundTrips, System.nanoTime() - startTime);
+        }
+    }
 
-        final ObjectName objectName = Iterables.get(configs, 0).getObjectName();
-        final NotificationFilter filter = Iterables.get(configs, 0).getNotificationFilter();
+    /**
+     * Creates a listener for notifications for an ObjectName, where all the given configs are for that same ObjectName + filter.
+     * The notifications for configs which coalesce them are buffered, and emitted by a poll job for each window.
+     */
+    private NotificationListener newNotificationListener(Set<JmxNotificationSubscriptionConfig<?>> configs) {
+        final List<AttributePollHandler<? super Notification>> handlers = Lists.newArrayList();
+        final List<NotificationCoalescer> coalescers = Lists.newArrayList();
+        Map<Duration, List<NotificationCoalescer>> coalescersByWindow = Maps.newLinkedHashMap();
 
-        for (final JmxNotificationSubscriptionConfig<?> config : configs) {
-            AttributePollHandler<javax.management.Notification> handler = new AttributePollHandler<javax.management.Notification>(config, getEntity(), this) {
-                @Override protected Object transformValueOnSuccess(javax.management.Notification val) {
-                    if (config.getOnNotification() != null) {
-                        return config.getOnNotification().apply(val);
-                    } else {
-                        Object result = super.transformValueOnSuccess(val);
-                        if (result instanceof javax.management.Notification)
-                            return ((javax.management.Notification)result).getUserData();
-                        return result;
-                    }
+        for (JmxNotificationSubscriptionConfig<?> config : configs) {
+            NotificationHandler handler = new NotificationHandler(config, getEntity(), this);
+            if (config.getCoalesceWindow() == null) {
+                handlers.add(handler);
+            } else {
+                NotificationCoalescer coalescer = new NotificationCoalescer(handler, config.getCoalesceMode(), notificationMetrics);
+                coalescers.add(coalescer);
+                List<NotificationCoalescer> windowCoalescers = coalescersByWindow.get(config.getCoalesceWindow());
+                if (windowCoalescers == null) {
+                    windowCoalescers = Lists.newArrayList();
+                    coalescersByWindow.put(config.getCoalesceWindow(), windowCoalescers);
                 }
-            };
-            handlers.add(handler);
+                windowCoalescers.add(coalescer);
+            }
         }
-        final PollHandler<javax.management.Notification> compoundHandler = new DelegatingPollHandler<javax.management.Notification>(handlers);
+        final PollHandler<Notification> compoundHandler = new DelegatingPollHandler<Notification>(handlers);
         
-        NotificationListener listener = new NotificationListener() {
+        for (Map.Entry<Duration, List<NotificationCoalescer>> entry : coalescersByWindow.entrySet()) {
+            final List<NotificationCoalescer> windowCoalescers = ImmutableList.copyOf(entry.getValue());
+            getPoller().scheduleAtFixedRate(
+                    new Callable<Object>() {
+                        public Object call() throws Exception {
+                            List<Object> values = Lists.newArrayList();
+                            for (NotificationCoalescer coalescer : windowCoalescers) {
+                                values.add(coalescer.drain());
+                            }
+                            return values;
+                        }
+                    }, 
+                    new CoalescedNotificationsHandler(windowCoalescers), entry.getKey());
+        }
+        
+        return new NotificationListener() {
             @Override public void handleNotification(Notification notification, Object handback) {
-                compoundHandler.onSuccess(notification);
+                notificationMetrics.received.incrementAndGet();
+                if (!handlers.isEmpty()) {
+                    notificationMetrics.emitted.addAndGet(handlers.size());
+                    compoundHandler.onSuccess(notification);
+                }
+                for (NotificationCoalescer coalescer : coalescers) {
+                    try {
+                        coalescer.add(notification);
+                    } catch (Exception e) {
+                        Exceptions.propagateIfFatal(e);
+                        coalescer.handler.onException(e);
+                    }
+                }
             }
         };
-        getHelper().addNotificationListener(objectName, listener, filter);
-        
-        return listener;
     }
     
     private void unregisterNotificationListener(ObjectName objectName, NotificationListener listener) {
@@ -416,6 +654,247 @@ public class JmxFeed extends AbstractFeed {
         }
     }
     
+    private static class PollMetrics {
+        final AtomicLong polls = new AtomicLong();
+        final AtomicLong roundTrips = new AtomicLong();
+        final AtomicLong totalLatencyNanos = new AtomicLong();
+        volatile long lastLatencyNanos;
+        
+        void record(int pollRoundTrips, long latencyNanos) {
+            polls.incrementAndGet();
+            roundTrips.addAndGet(pollRoundTrips);
+            totalLatencyNanos.addAndGet(latencyNanos);
+            lastLatencyNanos = latencyNanos;
+        }
+    }
+    
+    private static class NotificationMetrics {
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong emitted = new AtomicLong();
+    }
+    
+    /** Sets the sensor to the value for a notification (as given by its config, or else its user data). */
+    private static class NotificationHandler extends AttributePollHandler<Notification> {
+        private final JmxNotificationSubscriptionConfig<?> config;
+        
+        NotificationHandler(JmxNotificationSubscriptionConfig<?> config, EntityLocal entity, AbstractFeed feed) {
+            super(config, entity, feed);
+            this.config = config;
+        }
+        
+        @Override
+        protected Object transformValueOnSuccess(Notification val) {
+            if (config.getOnNotification() != null) {
+                return config.getOnNotification().apply(val);
+            } else {
+                Object result = super.transformValueOnSuccess(val);
+                if (result instanceof Notification)
+                    return ((Notification)result).getUserData();
+                return result;
+            }
+        }
+        
+        Object transform(Notification val) {
+            return transformValueOnSuccess(val);
+        }
+        
+        /** Sets the sensor to a value already computed from the notifications of a window. */
+        void onCoalescedValue(Object val) {
+            setSensor(val);
+        }
+    }
+    
+    /** Buffers the notifications for a config which coalesces them, until drained at the end of each window. */
+    private static class NotificationCoalescer {
+        final NotificationHandler handler;
+        private final CoalesceMode mode;
+        private final NotificationMetrics metrics;
+        private Notification latest;
+        private long count;
+        private long longSum;
+        private double doubleSum;
+        private boolean integralSum = true;
+        private boolean lastDrainedZero;
+        
+        NotificationCoalescer(NotificationHandler handler, CoalesceMode mode, NotificationMetrics metrics) {
+            this.handler = checkNotNull(handler, "handler");
+            this.mode = checkNotNull(mode, "mode");
+            this.metrics = metrics;
+        }
+        
+        void add(Notification notification) {
+            // computed outside the lock, as it calls user code
+            Object value = (mode == CoalesceMode.SUM) ? handler.transform(notification) : null;
+            synchronized (this) {
+                count++;
+                if (mode == CoalesceMode.LATEST) {
+                    latest = notification;
+                } else if (mode == CoalesceMode.SUM && value != null) {
+                    Number number = (value instanceof Number) ? (Number) value : TypeCoercions.coerce(value, Double.class);
+                    if (integralSum && (number instanceof Long || number instanceof Integer || number instanceof Short || number instanceof Byte)) {
+                        longSum += number.longValue();
+                    } else {
+                        if (integralSum) doubleSum = longSum;
+                        integralSum = false;
+                        doubleSum += number.doubleValue();
+                    }
+                }
+            }
+        }
+        
+        /** 
+         * Returns the value for the window just ended (the notification itself for {@link CoalesceMode#LATEST}),
+         * and starts the next window; returns null if there is nothing to emit, i.e. no notification for
+         * {@link CoalesceMode#LATEST}, or none for the other modes when zero was already the last value.
+         */
+        synchronized Object drain() {
+            Object result;
+            switch (mode) {
+            case LATEST: result = latest; break;
+            case COUNT: result = count; break;
+            case SUM: result = integralSum ? (Object) longSum : (Object) doubleSum; break;
+            default: throw new IllegalStateException("Unexpected coalesce mode "+mode);
+            }
+            if (mode != CoalesceMode.LATEST) {
+                // an empty window need not set the sensor to zero again
+                if (count == 0 && lastDrainedZero) result = null;
+                lastDrainedZero = (mode == CoalesceMode.COUNT) ? (count == 0) : (integralSum ? longSum == 0 : doubleSum == 0);
+            }
+            latest = null;
+            count = 0;
+            longSum = 0;
+            doubleSum = 0;
+            integralSum = true;
+            return result;
+        }
+        
+        void emit(Object value) {
+            if (value == null) return;
+            if (mode == CoalesceMode.LATEST) {
+                handler.onSuccess((Notification) value);
+            } else {
+                handler.onCoalescedValue(value);
+            }
+            metrics.emitted.incrementAndGet();
+        }
+    }
+    
+    /** Emits the values, drained at the end of a window, of each of the coalescers for that window. */
+    private static class CoalescedNotificationsHandler implements PollHandler<Object> {
+        private final List<NotificationCoalescer> coalescers;
+
+        CoalescedNotificationsHandler(List<NotificationCoalescer> coalescers) {
+            this.coalescers = coalescers;
+        }
+
+        @Override
+        public boolean checkSuccess(Object val) {
+            return true;
+        }
+
+        @Override
+        public void onSuccess(Object val) {
+            List<?> values = (List<?>) val;
+            for (int i = 0; i < coalescers.size(); i++) {
+                NotificationCoalescer coalescer = coalescers.get(i);
+                try {
+                    coalescer.emit(values.get(i));
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    coalescer.handler.onException(e);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Object val) {
+            onSuccess(val);
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            for (NotificationCoalescer coalescer : coalescers) {
+                coalescer.handler.onException(exception);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            List<String> descriptions = Lists.newArrayList();
+            for (NotificationCoalescer coalescer : coalescers) {
+                descriptions.add(coalescer.handler.getDescription());
+            }
+            return "coalesced" + descriptions;
+        }
+    }
+    
+    /** In place of the value of an attribute which could not be read. */
+    private static class FailedRead {
+        final Exception exception;
+        
+        FailedRead(Exception exception) {
+            this.exception = exception;
+        }
+    }
+    
+    /** Passes the value of each attribute, read in bulk, to the handlers for that attribute. */
+    private static class BulkAttributePollHandler implements PollHandler<Object> {
+        private final Map<String, PollHandler<Object>> handlers;
+
+        BulkAttributePollHandler(Map<String, PollHandler<Object>> handlers) {
+            this.handlers = ImmutableMap.copyOf(handlers);
+        }
+
+        @Override
+        public boolean checkSuccess(Object val) {
+            // checked for each attribute, in onSuccess
+            return true;
+        }
+
+        @Override
+        public void onSuccess(Object val) {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> values = (Map<String, Object>) val;
+            for (Map.Entry<String, PollHandler<Object>> entry : handlers.entrySet()) {
+                PollHandler<Object> handler = entry.getValue();
+                Object value = values.get(entry.getKey());
+                try {
+                    if (value instanceof FailedRead) {
+                        handler.onException(((FailedRead)value).exception);
+                    } else if (handler.checkSuccess(value)) {
+                        handler.onSuccess(value);
+                    } else {
+                        handler.onFailure(value);
+                    }
+                } catch (Exception e) {
+                    Exceptions.propagateIfFatal(e);
+                    handler.onException(e);
+                }
+            }
+        }
+
+        @Override
+        public void onFailure(Object val) {
+            onSuccess(val);
+        }
+
+        @Override
+        public void onException(Exception exception) {
+            for (PollHandler<Object> handler : handlers.values()) {
+                handler.onException(exception);
+            }
+        }
+
+        @Override
+        public String getDescription() {
+            List<String> descriptions = Lists.newArrayList();
+            for (PollHandler<Object> handler : handlers.values()) {
+                descriptions.add(handler.getDescription());
+            }
+            return "bulk" + descriptions;
+        }
+    }
+    
     @Override
     public String toString() {
         return "JmxFeed["+(getManagementContext()!=null&&getManagementContext().isRunning()?getJmxUri():"mgmt-not-running")+"]";
@@ -26,15 +26,33 @@ import javax.management.ObjectName;
 import org.apache.brooklyn.api.sensor.AttributeSensor;
 import org.apache.brooklyn.core.feed.FeedConfig;
 import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.time.Duration;
 
+import com.google.common.annotations.Beta;
 import com.google.common.base.Function;
 import com.google.common.base.Functions;
 
 public class JmxNotificationSubscriptionConfig<T> extends FeedConfig<javax.management.Notification, T, JmxNotificationSubscriptionConfig<T>>{
 
+    /**
+     * How the notifications received in each window are combined into the one value to which the sensor is set,
+     * when coalescing; see {@link JmxNotificationSubscriptionConfig#coalesce(Duration, CoalesceMode)}.
+     */
+    @Beta
+    public enum CoalesceMode {
+        /** The value for the last notification in the window; the sensor is not set if there were none. */
+        LATEST,
+        /** The number of notifications in the window (zero if there were none, not set again while there are none). */
+        COUNT,
+        /** The sum of the (numeric) values for the notifications in the window (zero if there were none, not set again while there are none). */
+        SUM
+    }
+
     private ObjectName objectName;
     private NotificationFilter notificationFilter;
     private Function<Notification, T> onNotification;
+    private Duration coalesceWindow;
+    private CoalesceMode coalesceMode;
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
     public JmxNotificationSubscriptionConfig(AttributeSensor<T> sensor) {
@@ -47,6 +65,8 @@ public class JmxNotificationSubscriptionConfig<T> extends FeedConfig<javax.manag
         this.objectName = other.objectName;
         this.notificationFilter = other.notificationFilter;
         this.onNotification = other.onNotification;
+        this.coalesceWindow = other.coalesceWindow;
+        this.coalesceMode = other.coalesceMode;
     }
 
     public ObjectName getObjectName() {
@@ -61,6 +81,16 @@ public class JmxNotificationSubscriptionConfig<T> extends FeedConfig<javax.manag
         return onNotification;
     }
     
+    @Beta
+    public Duration getCoalesceWindow() {
+        return coalesceWindow;
+    }
+    
+    @Beta
+    public CoalesceMode getCoalesceMode() {
+        return coalesceMode;
+    }
+    
     public JmxNotificationSubscriptionConfig<T> objectName(ObjectName val) {
         this.objectName = val; return this;
     }
@@ -81,6 +111,25 @@ public class JmxNotificationSubscriptionConfig<T> extends FeedConfig<javax.manag
         this.onNotification = val; return this;
     }
 
+    /**
+     * Buffers the notifications, rather than setting the sensor as each is received, setting it once
+     * at the end of each window to the value for that window's notifications, as given by the mode.
+     * <p>
+     * The value for a notification (as given by {@link #onNotification(Function)}, or else its user data) 
+     * is computed as it is received, for {@link CoalesceMode#SUM}, and only for the last in each window
+     * for {@link CoalesceMode#LATEST}; it is not computed for {@link CoalesceMode#COUNT}.
+     * 
+     * @param window the window, or null to set the sensor for each notification (the default)
+     */
+    @Beta
+    public JmxNotificationSubscriptionConfig<T> coalesce(Duration window, CoalesceMode mode) {
+        if (window != null && mode == null) throw new IllegalArgumentException("No coalesce mode given for window "+window);
+        if (window != null && window.compareTo(Duration.ZERO) <= 0) throw new IllegalArgumentException("Coalesce window must be positive: "+window);
+        this.coalesceWindow = window;
+        this.coalesceMode = (window == null) ? null : mode;
+        return this;
+    }
+
     @Override
     protected Object toStringPollSource() {
         return objectName;
@@ -89,7 +138,8 @@ public class JmxNotificationSubscriptionConfig<T> extends FeedConfig<javax.manag
     @Override
     protected MutableList<Object> equalsFields() {
         return super.equalsFields()
-            .appendIfNotNull(notificationFilter).appendIfNotNull(onNotification);
+            .appendIfNotNull(notificationFilter).appendIfNotNull(onNotification)
+            .appendIfNotNull(coalesceWindow).appendIfNotNull(coalesceMode);
     }
     
 }
@@ -22,6 +22,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.management.Attribute;
 import javax.management.AttributeList;
@@ -55,6 +56,7 @@ public class GeneralisedDynamicMBean implements DynamicMBean {
     private final MBeanInfo mBeanInfo;
     private final Map<String,Object> attributes = Maps.newLinkedHashMap();
     private final Map<String,Function> operations = Maps.newLinkedHashMap();
+    private final AtomicInteger getAttributesCount = new AtomicInteger();
     
     public GeneralisedDynamicMBean(Map<String,?> initialAttributes, Map<?,?> initialOperations) {
         attributes.putAll(initialAttributes);
@@ -110,12 +112,19 @@ public class GeneralisedDynamicMBean implements DynamicMBean {
         attributes.put(attribute.getName(), attribute.getValue());
     }
 
+    /** The number of calls to {@link #getAttributes(String[])}, i.e. of attributes read in bulk. */
+    public int getGetAttributesCount() {
+        return getAttributesCount.get();
+    }
+
     @Override
     public AttributeList getAttributes(String[] strings) {
+        getAttributesCount.incrementAndGet();
         AttributeList result = new AttributeList();
-        for (Object obj : mBeanInfo.getAttributes()) {
-            Attribute attrib = (Attribute) obj;
-            result.add(new Attribute(attrib.getName(), attributes.get(attrib.getName())));
+        for (String name : strings) {
+            if (attributes.containsKey(name)) {
+                result.add(new Attribute(name, attributes.get(name)));
+            }
         }
         return result;
     }
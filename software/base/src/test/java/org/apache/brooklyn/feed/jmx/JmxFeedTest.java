@@ -19,6 +19,7 @@
 package org.apache.brooklyn.feed.jmx;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 import java.util.Collections;
@@ -26,10 +27,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.management.MBeanOperationInfo;
 import javax.management.MBeanParameterInfo;
 import javax.management.Notification;
+import javax.management.NotificationFilter;
 import javax.management.NotificationListener;
 import javax.management.ObjectName;
 import javax.management.StandardEmitterMBean;
@@ -66,11 +70,13 @@ import org.apache.brooklyn.entity.java.UsesJmx;
 import org.apache.brooklyn.entity.java.UsesJmx.JmxAgentModes;
 import org.apache.brooklyn.entity.software.base.test.jmx.GeneralisedDynamicMBean;
 import org.apache.brooklyn.entity.software.base.test.jmx.JmxService;
+import org.apache.brooklyn.feed.jmx.JmxNotificationSubscriptionConfig.CoalesceMode;
 import org.apache.brooklyn.location.localhost.LocalhostMachineProvisioningLocation;
 import org.apache.brooklyn.test.Asserts;
 import org.apache.brooklyn.test.NetworkingTestUtils;
 import org.apache.brooklyn.util.core.config.ConfigBag;
 import org.apache.brooklyn.util.time.Duration;
+import org.apache.brooklyn.util.time.Time;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterMethod;
@@ -78,6 +84,8 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
 import com.google.common.base.Function;
+import com.google.common.base.Functions;
+import com.google.common.base.Stopwatch;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -177,6 +185,109 @@ public class JmxFeedTest {
         assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
     }
 
+    @Test
+    public void testJmxAttributesOfObjectNamePolledInBulk() throws Exception {
+        GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42, "mystringattrib", "myval"), objectName);
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("mystringattrib"))
+                .bulkAttributePolls(true)
+                .build();
+        
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "myval", TIMEOUT_MS);
+        mbean.updateAttributeValue(attributeName, 64);
+        assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
+        
+        // one round-trip for each poll of both attributes
+        Map<String, Object> metrics = feed.getAttributePollMetrics().get(Duration.millis(50));
+        assertTrue((Long)metrics.get("polls") > 0, "metrics="+metrics);
+        assertEquals(metrics.get("roundTrips"), metrics.get("polls"), "metrics="+metrics);
+    }
+
+    @Test
+    public void testJmxAttributeNotReadInBulkReportedToItsHandler() throws Exception {
+        jmxService.registerMBean(ImmutableMap.of(attributeName, 42), objectName);
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("doesNotExist")
+                        .onException(Functions.constant("myerror")))
+                .bulkAttributePolls(true)
+                .build();
+        
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "myerror", TIMEOUT_MS);
+    }
+
+    @Test
+    public void testJmxAttributesPolledSinglyByDefault() throws Exception {
+        GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42, "mystringattrib", "myval"), objectName);
+
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName(attributeName))
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("mystringattrib"))
+                .build();
+        
+        assertSensorEventually(intAttribute, 42, TIMEOUT_MS);
+        assertSensorEventually(stringAttribute, "myval", TIMEOUT_MS);
+        mbean.updateAttributeValue(attributeName, 64);
+        assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
+        
+        // each attribute read with its own request, never in bulk
+        assertEquals(mbean.getGetAttributesCount(), 0);
+    }
+
+    @Test
+    public void testFeedsOfEntityShareJmxHelper() throws Exception {
+        GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42, "mystringattrib", "myval"), objectName);
+
+        feed = entity.feeds().addFeed(JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName(attributeName))
+                .build());
+        JmxFeed feed2 = JmxFeed.builder()
+                .entity(entity)
+                .pollAttribute(new JmxAttributePollConfig<String>(stringAttribute)
+                        .objectName(objectName)
+                        .period(50)
+                        .attributeName("mystringattrib"))
+                .build();
+        assertSame(feed2.getHelper(), feed.getHelper());
+        assertSensorEventually(stringAttribute, "myval", TIMEOUT_MS);
+        
+        // stopping one feed leaves the other connected
+        feed2.stop();
+        assertTrue(feed.getHelper().isConnected());
+        mbean.updateAttributeValue(attributeName, 64);
+        assertSensorEventually(intAttribute, 64, TIMEOUT_MS);
+    }
+
     @Test
     public void testJmxAttributeSensor() throws Exception {
         GeneralisedDynamicMBean mbean = jmxService.registerMBean(ImmutableMap.of(attributeName, 42), objectName);
@@ -382,6 +493,86 @@ public class JmxFeedTest {
         assertSensorEventually(intAttribute, 456, TIMEOUT_MS);
     }
 
+    @Test
+    public void testJmxNotificationsCoalesced() throws Exception {
+        final String one = "notification.one";
+        final StandardEmitterMBean mbean = jmxService.registerMBean(ImmutableList.of(one), objectName);
+        final AttributeSensor<Long> countAttribute = Sensors.newLongSensor("brooklyn.test.countAttribute", "Brooklyn testing count attribute");
+        final AttributeSensor<Long> sumAttribute = Sensors.newLongSensor("brooklyn.test.sumAttribute", "Brooklyn testing sum attribute");
+        final AtomicLong countTotal = new AtomicLong();
+        final AtomicInteger countUpdates = new AtomicInteger();
+        // the value of the last notification received by the feed, which need not be the last sent
+        final AtomicReference<Integer> lastReceived = new AtomicReference<Integer>();
+        app.subscriptions().subscribe(entity, countAttribute, new SensorEventListener<Long>() {
+            public void onEvent(SensorEvent<Long> event) {
+                countTotal.addAndGet(event.getValue());
+                countUpdates.incrementAndGet();
+            }});
+        
+        // the same filter, so the notifications are received once for both
+        NotificationFilter filter = JmxNotificationFilters.matchesType(one);
+        feed = JmxFeed.builder()
+                .entity(entity)
+                .subscribeToNotification(new JmxNotificationSubscriptionConfig<Long>(countAttribute)
+                        .objectName(objectName)
+                        .notificationFilter(filter)
+                        .coalesce(Duration.millis(100), CoalesceMode.COUNT))
+                .subscribeToNotification(new JmxNotificationSubscriptionConfig<Integer>(intAttribute)
+                        .objectName(objectName)
+                        .notificationFilter(filter)
+                        .coalesce(Duration.millis(100), CoalesceMode.LATEST))
+                .subscribeToNotification(new JmxNotificationSubscriptionConfig<Long>(sumAttribute)
+                        .objectName(objectName)
+                        .notificationFilter(filter)
+                        .onNotification(new Function<Notification, Long>() {
+                            public Long apply(Notification notification) {
+                                lastReceived.set((Integer) notification.getUserData());
+                                return 1L;
+                            }})
+                        .coalesce(Duration.millis(100), CoalesceMode.SUM))
+                .build();
+        
+        // Note that subscription is done async, so can't just send notifications immediately during test.
+        final AtomicInteger sequence = new AtomicInteger(0);
+        Asserts.succeedsEventually(ImmutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            public void run() {
+                sendNotification(mbean, one, sequence.getAndIncrement(), -1);
+                assertEquals(entity.getAttribute(intAttribute), (Integer)(-1));
+            }});
+        
+        // 50k notifications in a second
+        int batches = 10, batchSize = 5000;
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        for (int i = 0; i < batches; i++) {
+            for (int j = 0; j < batchSize; j++) {
+                sendNotification(mbean, one, sequence.getAndIncrement(), i*batchSize + j);
+            }
+            Time.sleep(Duration.millis(100));
+        }
+        log.info("Sent "+(batches*batchSize)+" notifications in "+Duration.of(stopwatch));
+        
+        // the sensor is set to the last received, but not for every one; not necessarily all sent are received,
+        // as the JMX connector's notification buffer may overflow
+        Asserts.succeedsEventually(ImmutableMap.of("timeout", TIMEOUT_MS), new Runnable() {
+            public void run() {
+                long received = (Long) feed.getNotificationMetrics().get("received");
+                assertEquals(countTotal.get(), received);
+                assertEquals(entity.getAttribute(intAttribute), lastReceived.get());
+            }});
+        
+        // windows without notifications set the count to zero only once
+        int updates = countUpdates.get();
+        Time.sleep(Duration.millis(500));
+        assertTrue(countUpdates.get() <= updates + 1, "countUpdates="+countUpdates+"; before="+updates);
+        Map<String, Object> metrics = feed.getNotificationMetrics();
+        long received = (Long) metrics.get("received");
+        long emitted = (Long) metrics.get("emitted");
+        log.info("Coalesced notifications: received "+received+", emitted "+emitted+" sensor updates");
+        assertTrue(received > batchSize, "metrics="+metrics);
+        assertTrue(emitted < received / 10, "metrics="+metrics);
+        assertTrue(countUpdates.get() < received / 10, "countUpdates="+countUpdates+"; metrics="+metrics);
+    }
+
     // Test reproduces functionality used in Monterey, for Venue entity being told of requestActor
     @Test
     public void testSubscribeToJmxNotificationAndEmitCorrespondingNotificationSensor() throws Exception {
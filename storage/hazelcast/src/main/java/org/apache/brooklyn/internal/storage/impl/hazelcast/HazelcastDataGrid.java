@@ -18,39 +18,140 @@
  */
 package org.apache.brooklyn.internal.storage.impl.hazelcast;
 
-import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.brooklyn.api.entity.Entity;
+import org.apache.brooklyn.config.ConfigKey;
+import org.apache.brooklyn.config.StringConfigMap;
+import org.apache.brooklyn.core.config.ConfigKeys;
 import org.apache.brooklyn.core.internal.storage.DataGrid;
 import org.apache.brooklyn.core.mgmt.internal.ManagementContextInternal;
+import org.apache.brooklyn.util.collections.MutableMap;
+import org.apache.brooklyn.util.exceptions.Exceptions;
+import org.apache.brooklyn.util.text.Strings;
+import org.apache.brooklyn.util.time.Duration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.ImmutableMap;
+import com.google.common.annotations.Beta;
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.hazelcast.config.Config;
+import com.hazelcast.config.InMemoryFormat;
+import com.hazelcast.config.JoinConfig;
+import com.hazelcast.config.MapConfig;
+import com.hazelcast.config.NearCacheConfig;
 import com.hazelcast.config.SerializerConfig;
 import com.hazelcast.core.Hazelcast;
 import com.hazelcast.core.HazelcastInstance;
 import com.hazelcast.core.HazelcastInstanceNotActiveException;
+import com.hazelcast.core.IMap;
+import com.hazelcast.monitor.NearCacheStats;
 
+/**
+ * A {@link DataGrid} backed by Hazelcast maps.
+ * <p>
+ * When this creates the Hazelcast instance, it can configure a near-cache for all maps (see {@link #NEAR_CACHE}),
+ * so that reads of entries which have not changed are local rather than remote calls, and can join a fixed list
+ * of members (see {@link #MEMBERS}) rather than using multicast. Puts to the maps of entities' attributes
+ * can also be batched (see {@link #WRITE_BEHIND_DELAY}).
+ */
 public class HazelcastDataGrid implements DataGrid {
 
+    private static final Logger LOG = LoggerFactory.getLogger(HazelcastDataGrid.class);
+
+    /** Only used if this creates the Hazelcast instance. */
+    @Beta
+    public static final ConfigKey<Boolean> NEAR_CACHE = ConfigKeys.newBooleanConfigKey(
+            "brooklyn.storage.hazelcast.nearCache",
+            "Whether to keep a local copy of map entries read, invalidated when they are changed by any member "
+            + "(so, as for in-memory storage, gets return the same instance until it is changed)", false);
+
+    /** Only used if this creates the Hazelcast instance. */
+    @Beta
+    public static final ConfigKey<String> MEMBERS = ConfigKeys.newStringConfigKey(
+            "brooklyn.storage.hazelcast.members",
+            "Comma-separated addresses of the members of the cluster to join; if not set, members are found by multicast");
+
+    @Beta
+    public static final ConfigKey<Duration> WRITE_BEHIND_DELAY = ConfigKeys.newDurationConfigKey(
+            "brooklyn.storage.hazelcast.writeBehindDelay",
+            "How long puts to the maps of entities' attributes may be held locally before they are written to the cluster "
+            + "in a batch (gets on this member see them straight away); if not set, puts are written immediately");
+
+    @Beta
+    public static final ConfigKey<Integer> WRITE_BEHIND_MAX_PENDING = ConfigKeys.newIntegerConfigKey(
+            "brooklyn.storage.hazelcast.writeBehindMaxPending",
+            "Maximum number of puts held locally for any one map, before they are written without waiting for the delay", 1000);
+
     private final HazelcastInstance hz;
     private final ManagementContextInternal managementContext;
+    private final boolean nearCache;
+    private final Duration writeBehindDelay;
+    private final int writeBehindMaxPending;
+    private final Set<String> mapIds = Sets.newConcurrentHashSet();
+    private final ConcurrentMap<String, WriteBehindMap<?, ?>> writeBehindMaps = Maps.newConcurrentMap();
+    private final ScheduledExecutorService writeBehindExecutor;
+
+    /** 
+     * The suffix of the ids of the maps whose puts are written behind, if enabled: those of entities' attributes.
+     * Other maps, e.g. of an entity's children or a group's members, are read back on put to tell whether they changed.
+     */
+    private static final String WRITE_BEHIND_MAP_SUFFIX = "-attributes";
 
     public HazelcastDataGrid(ManagementContextInternal managementContext, HazelcastInstance hazelcastInstance) {
         this.managementContext = managementContext;
+        StringConfigMap brooklynConfig = managementContext.getConfig();
         if (hazelcastInstance == null) {
             Config config = new Config();
             SerializerConfig entitySerializeConfig = new SerializerConfig();
             entitySerializeConfig.setTypeClassName(Entity.class.getName());
             entitySerializeConfig.setImplementation(new EntityStreamSerializer(this));
             config.getSerializationConfig().addSerializerConfig(entitySerializeConfig);
+            
+            String members = brooklynConfig.getConfig(MEMBERS);
+            if (Strings.isNonBlank(members)) {
+                JoinConfig join = config.getNetworkConfig().getJoin();
+                join.getMulticastConfig().setEnabled(false);
+                join.getTcpIpConfig().setEnabled(true).setMembers(Splitter.on(',').trimResults().omitEmptyStrings().splitToList(members));
+            }
+            
+            nearCache = Boolean.TRUE.equals(brooklynConfig.getConfig(NEAR_CACHE));
+            if (nearCache) {
+                NearCacheConfig nearCacheConfig = new NearCacheConfig()
+                        .setInMemoryFormat(InMemoryFormat.OBJECT)
+                        .setInvalidateOnChange(true)
+                        // cache the entries owned by this member too, as otherwise they are deserialized on each get
+                        .setCacheLocalEntries(true);
+                config.addMapConfig(new MapConfig("*").setNearCacheConfig(nearCacheConfig));
+            }
             this.hz = Hazelcast.newHazelcastInstance(config);
         } else {
+            nearCache = false;
             this.hz = hazelcastInstance;
         }
+        
+        writeBehindDelay = brooklynConfig.getConfig(WRITE_BEHIND_DELAY);
+        writeBehindMaxPending = Math.max(1, brooklynConfig.getConfig(WRITE_BEHIND_MAX_PENDING));
+        if (writeBehindDelay != null) {
+            writeBehindExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("brooklyn-hazelcast-write-behind-%d").setDaemon(true).build());
+            writeBehindExecutor.scheduleWithFixedDelay(new Runnable() {
+                    @Override public void run() {
+                        flushWriteBehind();
+                    }},
+                    writeBehindDelay.toMilliseconds(), writeBehindDelay.toMilliseconds(), TimeUnit.MILLISECONDS);
+        } else {
+            writeBehindExecutor = null;
+        }
     }
 
     public ManagementContextInternal getManagementContext() {
@@ -58,17 +159,64 @@ public class HazelcastDataGrid implements DataGrid {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public <K, V> ConcurrentMap<K, V> getMap(String id) {
-        return hz.getMap(id);
+        mapIds.add(id);
+        if (writeBehindExecutor == null || !id.endsWith(WRITE_BEHIND_MAP_SUFFIX)) {
+            return hz.getMap(id);
+        }
+        WriteBehindMap<?, ?> result = writeBehindMaps.get(id);
+        if (result == null) {
+            WriteBehindMap<K, V> newMap = new WriteBehindMap<K, V>(hz.<K, V>getMap(id), writeBehindMaxPending);
+            result = writeBehindMaps.putIfAbsent(id, newMap);
+            if (result == null) result = newMap;
+        }
+        return (ConcurrentMap<K, V>) result;
+    }
+
+    @Override
+    public <K, V> Map<K, V> getAll(String id, Set<K> keys) {
+        WriteBehindMap<?, ?> writeBehindMap = writeBehindMaps.get(id);
+        if (writeBehindMap != null) writeBehindMap.flush();
+        mapIds.add(id);
+        return hz.<K, V>getMap(id).getAll(keys);
+    }
+
+    @Override
+    public <K, V> void putAll(String id, Map<? extends K, ? extends V> values) {
+        this.<K, V>getMap(id).putAll(values);
     }
 
     @Override
     public void remove(String id) {
+        WriteBehindMap<?, ?> writeBehindMap = writeBehindMaps.remove(id);
+        if (writeBehindMap != null) writeBehindMap.discardPending();
+        mapIds.remove(id);
         hz.getMap(id).destroy();
     }
 
+    /** Writes the puts held locally for all maps; called periodically if {@link #WRITE_BEHIND_DELAY} is set. */
+    @Beta
+    public void flushWriteBehind() {
+        for (WriteBehindMap<?, ?> map : writeBehindMaps.values()) {
+            try {
+                map.flush();
+            } catch (HazelcastInstanceNotActiveException e) {
+                LOG.debug("Not writing pending puts to "+map+", as hazelcast is no longer active");
+                return;
+            } catch (Exception e) {
+                Exceptions.propagateIfFatal(e);
+                LOG.warn("Error writing pending puts to "+map+" (will retry)", e);
+            }
+        }
+    }
+
     @Override
     public void terminate() {
+        if (writeBehindExecutor != null) {
+            writeBehindExecutor.shutdownNow();
+            flushWriteBehind();
+        }
         try {
             hz.getLifecycleService().shutdown();
         } catch (HazelcastInstanceNotActiveException ignore) {
@@ -77,13 +225,40 @@ public class HazelcastDataGrid implements DataGrid {
     
     @Override
     public Map<String, Object> getDatagridMetrics() {
-        // TODO would like to have better metrics
-        return ImmutableMap.<String,Object>of("name", hz.getName(), "isRunning", hz.getLifecycleService().isRunning());
+        MutableMap.Builder<String, Object> result = MutableMap.<String, Object>builder()
+                .put("name", hz.getName())
+                .put("isRunning", hz.getLifecycleService().isRunning())
+                .put("maps", mapIds.size());
+        if (nearCache && hz.getLifecycleService().isRunning()) {
+            long hits = 0;
+            long misses = 0;
+            long entries = 0;
+            for (String id : mapIds) {
+                NearCacheStats stats = hz.getMap(id).getLocalMapStats().getNearCacheStats();
+                if (stats == null) continue;
+                hits += stats.getHits();
+                misses += stats.getMisses();
+                entries += stats.getOwnedEntryCount();
+            }
+            result.put("nearCacheHits", hits).put("nearCacheMisses", misses).put("nearCacheEntries", entries);
+        }
+        if (writeBehindExecutor != null) {
+            long pending = 0;
+            long flushes = 0;
+            long flushed = 0;
+            for (WriteBehindMap<?, ?> map : writeBehindMaps.values()) {
+                pending += map.getPendingCount();
+                flushes += map.getFlushCount();
+                flushed += map.getFlushedEntryCount();
+            }
+            result.put("writeBehindPending", pending).put("writeBehindFlushes", flushes).put("writeBehindFlushed", flushed);
+        }
+        return result.build();
     }
     
+    /** Returns the ids of the maps used through this member. */
     @Override
     public Set<String> getKeys() {
-        // TODO would like to have all known keys (for tests)
-        return Collections.emptySet();
+        return ImmutableSet.copyOf(mapIds);
     }
 }
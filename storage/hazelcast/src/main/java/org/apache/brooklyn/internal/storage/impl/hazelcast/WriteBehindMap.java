@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.internal.storage.impl.hazelcast;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.collect.Maps;
+import com.hazelcast.core.IMap;
+
+/**
+ * A view of a Hazelcast map whose puts are held locally and written to the map in batches,
+ * when {@link #flush()} is called (periodically, by {@link HazelcastDataGrid}) or when there are
+ * too many pending.
+ * <p>
+ * Gets through this view see its pending writes; other members see them once flushed.
+ * All other operations flush first, and then go to the map.
+ * <p>
+ * As for {@link Map#put(Object, Object)}, {@link #put(Object, Object)} returns the previous value: that
+ * pending in this view, or else the map's (a local read, if the map has a near-cache with the entry).
+ */
+class WriteBehindMap<K, V> implements ConcurrentMap<K, V> {
+
+    private final IMap<K, V> delegate;
+    private final int maxPending;
+    private final ConcurrentMap<K, V> pending = new ConcurrentHashMap<K, V>();
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushedEntryCount = new AtomicLong();
+
+    WriteBehindMap(IMap<K, V> delegate, int maxPending) {
+        this.delegate = delegate;
+        this.maxPending = maxPending;
+    }
+
+    /** Writes all pending puts to the map, returning the number written. */
+    synchronized int flush() {
+        if (pending.isEmpty()) return 0;
+        Map<K, V> batch = Maps.newHashMap(pending);
+        delegate.putAll(batch);
+        for (Map.Entry<K, V> entry : batch.entrySet()) {
+            // unless it has been put again since
+            if (pending.remove(entry.getKey(), entry.getValue())) pendingCount.decrementAndGet();
+        }
+        flushCount.incrementAndGet();
+        flushedEntryCount.addAndGet(batch.size());
+        return batch.size();
+    }
+
+    /** Drops the pending puts, e.g. because the map has been destroyed. */
+    synchronized void discardPending() {
+        pending.clear();
+        pendingCount.set(0);
+    }
+
+    int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    long getFlushCount() {
+        return flushCount.get();
+    }
+
+    long getFlushedEntryCount() {
+        return flushedEntryCount.get();
+    }
+
+    @Override
+    public V get(Object key) {
+        V result = pending.get(key);
+        return (result != null) ? result : delegate.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        if (value == null) {
+            // not held locally, so that hazelcast rejects it as before
+            flush();
+            return delegate.put(key, value);
+        }
+        V old = pending.put(key, value);
+        if (old == null) {
+            old = delegate.get(key);
+            if (pendingCount.incrementAndGet() >= maxPending) flush();
+        }
+        return old;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> values) {
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return pending.containsKey(key) || delegate.containsKey(key);
+    }
+
+    @Override
+    public V remove(Object key) {
+        flush();
+        return delegate.remove(key);
+    }
+
+    @Override
+    public V putIfAbsent(K key, V value) {
+        flush();
+        return delegate.putIfAbsent(key, value);
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        flush();
+        return delegate.remove(key, value);
+    }
+
+    @Override
+    public boolean replace(K key, V oldValue, V newValue) {
+        flush();
+        return delegate.replace(key, oldValue, newValue);
+    }
+
+    @Override
+    public V replace(K key, V value) {
+        flush();
+        return delegate.replace(key, value);
+    }
+
+    @Override
+    public int size() {
+        flush();
+        return delegate.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        flush();
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        flush();
+        return delegate.containsValue(value);
+    }
+
+    @Override
+    public synchronized void clear() {
+        discardPending();
+        delegate.clear();
+    }
+
+    @Override
+    public Set<K> keySet() {
+        flush();
+        return delegate.keySet();
+    }
+
+    @Override
+    public Collection<V> values() {
+        flush();
+        return delegate.values();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        flush();
+        return delegate.entrySet();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        flush();
+        return delegate.equals(obj);
+    }
+
+    @Override
+    public int hashCode() {
+        flush();
+        return delegate.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindMap["+delegate.getName()+"; "+pendingCount.get()+" pending]";
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.storage.impl.hazelcast;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.internal.storage.BrooklynStorage;
+import org.apache.brooklyn.core.internal.storage.DataGridFactory;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.internal.storage.impl.hazelcast.HazelcastDataGrid;
+import org.apache.brooklyn.internal.storage.impl.hazelcast.HazelcastDataGridFactory;
+import org.apache.brooklyn.test.Asserts;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.hazelcast.core.Hazelcast;
+
+/**
+ * Tests storage with a near-cache and write-behind, in a cluster of two embedded Hazelcast members.
+ */
+@Test(groups="Integration")
+public class HazelcastClusterStorageTest {
+
+    private LocalManagementContext managementContext1;
+    private LocalManagementContext managementContext2;
+    private BrooklynStorage storage1;
+    private BrooklynStorage storage2;
+
+    @BeforeMethod(alwaysRun = true)
+    public void setUp() {
+        managementContext1 = new LocalManagementContext(newProperties());
+        managementContext2 = new LocalManagementContext(newProperties());
+        storage1 = managementContext1.getStorage();
+        storage2 = managementContext2.getStorage();
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        if (managementContext1 != null) managementContext1.terminate();
+        if (managementContext2 != null) managementContext2.terminate();
+        Hazelcast.shutdownAll();
+    }
+
+    protected BrooklynProperties newProperties() {
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(DataGridFactory.class.getName(), HazelcastDataGridFactory.class.getName());
+        properties.put(HazelcastDataGrid.MEMBERS, "127.0.0.1");
+        properties.put(HazelcastDataGrid.NEAR_CACHE, true);
+        properties.put(HazelcastDataGrid.WRITE_BEHIND_DELAY, Duration.millis(50));
+        return properties;
+    }
+
+    @Test
+    public void testPutsSeenLocallyAndThenByOtherMember() {
+        final Map<String,String> map1 = storage1.getMap("someentity-attributes");
+        final Map<String,String> map2 = storage2.getMap("someentity-attributes");
+
+        map1.put("foo", "bar");
+        assertEquals(map1.get("foo"), "bar");
+        assertEventually(map2, "foo", "bar");
+
+        // the other member's near-cache entry is invalidated when changed
+        assertEquals(map1.put("foo", "baz"), "bar");
+        assertEventually(map2, "foo", "baz");
+        map2.put("foo", "qux");
+        assertEventually(map1, "foo", "qux");
+    }
+
+    @Test
+    public void testRemoveAfterPendingPut() {
+        final Map<String,String> map1 = storage1.getMap("someentity-attributes");
+        final Map<String,String> map2 = storage2.getMap("someentity-attributes");
+
+        map1.put("foo", "bar");
+        assertEquals(map1.remove("foo"), "bar");
+        assertEquals(map1.get("foo"), null);
+        assertEquals(map2.get("foo"), null);
+    }
+
+    @Test
+    public void testGetAllAndPutAll() {
+        storage1.putAll("someentity-attributes", ImmutableMap.of("k1", "v1", "k2", "v2"));
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(storage2.getAll("someentity-attributes", ImmutableSet.of("k1", "k2", "notthere")), ImmutableMap.of("k1", "v1", "k2", "v2"));
+            }});
+        // pending puts are written before getting all
+        storage2.getMap("someentity-attributes").put("k3", "v3");
+        assertEquals(storage2.getAll("someentity-attributes", ImmutableSet.of("k3")), ImmutableMap.of("k3", "v3"));
+    }
+
+    @Test
+    public void testPutReturnsPreviousValueFromOtherMember() {
+        Map<String,Boolean> children1 = storage1.getMap("someentity-children");
+        Map<String,Boolean> children2 = storage2.getMap("someentity-children");
+        assertEquals(children1.put("child", true), null);
+        // not written behind, so the other member sees it has already been added
+        assertEquals(children2.put("child", true), Boolean.TRUE);
+
+        Map<String,String> attributes1 = storage1.getMap("someentity-attributes");
+        Map<String,String> attributes2 = storage2.getMap("someentity-attributes");
+        attributes1.put("foo", "bar");
+        assertEventually(attributes2, "foo", "bar");
+        assertEquals(attributes2.put("foo", "baz"), "bar");
+    }
+
+    @Test
+    public void testRepeatedGetsUseNearCache() {
+        Map<String,String> map1 = storage1.getMap("someentity-attributes");
+        Map<String,String> map2 = storage2.getMap("someentity-attributes");
+        map1.put("foo", "bar");
+        assertEventually(map2, "foo", "bar");
+        for (int i = 0; i < 10; i++) {
+            assertEquals(map2.get("foo"), "bar");
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metrics = (Map<String, Object>) storage2.getStorageMetrics().get("datagrid");
+        assertTrue(((Long)metrics.get("nearCacheHits")) > 0, "metrics="+metrics);
+    }
+
+    private void assertEventually(final Map<String,String> map, final String key, final String expected) {
+        Asserts.succeedsEventually(new Runnable() {
+            @Override public void run() {
+                assertEquals(map.get(key), expected);
+            }});
+    }
+}
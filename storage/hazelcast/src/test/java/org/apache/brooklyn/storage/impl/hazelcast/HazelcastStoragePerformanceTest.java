@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.brooklyn.storage.impl.hazelcast;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.brooklyn.core.internal.BrooklynProperties;
+import org.apache.brooklyn.core.internal.storage.BrooklynStorage;
+import org.apache.brooklyn.core.internal.storage.DataGridFactory;
+import org.apache.brooklyn.core.mgmt.internal.LocalManagementContext;
+import org.apache.brooklyn.internal.storage.impl.hazelcast.HazelcastDataGrid;
+import org.apache.brooklyn.internal.storage.impl.hazelcast.HazelcastDataGridFactory;
+import org.apache.brooklyn.test.performance.PerformanceMeasurer;
+import org.apache.brooklyn.test.performance.PerformanceTestDescriptor;
+import org.apache.brooklyn.util.collections.MutableList;
+import org.apache.brooklyn.util.collections.MutableSet;
+import org.apache.brooklyn.util.time.Duration;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import com.hazelcast.core.Hazelcast;
+
+/**
+ * Measures the rate (and latency) of gets, puts and bulk gets of entries in storage maps, as done for entity
+ * attributes, with in-memory storage and with Hazelcast storage (in a cluster of two members) with and without
+ * a near-cache and write-behind.
+ */
+@Test(groups={"Integration", "Acceptance"})
+public class HazelcastStoragePerformanceTest {
+
+    private static final int NUM_ITERATIONS = 10000;
+    private static final int NUM_KEYS = 100;
+
+    private final List<LocalManagementContext> managementContexts = MutableList.of();
+
+    @AfterMethod(alwaysRun = true)
+    public void tearDown() {
+        for (LocalManagementContext managementContext : managementContexts) {
+            managementContext.terminate();
+        }
+        managementContexts.clear();
+        Hazelcast.shutdownAll();
+    }
+
+    public void testInMemoryStorage() {
+        measureStorage("inMemory", newManagementContext(BrooklynProperties.Factory.newEmpty()).getStorage(), 10000);
+    }
+
+    public void testHazelcastStorage() {
+        measureStorage("hazelcast", newHazelcastStorage(false, null), 100);
+    }
+
+    public void testHazelcastStorageWithNearCacheAndWriteBehind() {
+        measureStorage("hazelcastNearCacheWriteBehind", newHazelcastStorage(true, Duration.millis(100)), 1000);
+    }
+
+    protected BrooklynStorage newHazelcastStorage(boolean nearCache, Duration writeBehindDelay) {
+        BrooklynProperties properties = BrooklynProperties.Factory.newEmpty();
+        properties.put(DataGridFactory.class.getName(), HazelcastDataGridFactory.class.getName());
+        properties.put(HazelcastDataGrid.MEMBERS, "127.0.0.1");
+        properties.put(HazelcastDataGrid.NEAR_CACHE, nearCache);
+        if (writeBehindDelay != null) properties.put(HazelcastDataGrid.WRITE_BEHIND_DELAY, writeBehindDelay);
+        // another member, so that some entries are owned remotely
+        newManagementContext(properties);
+        return newManagementContext(properties).getStorage();
+    }
+
+    protected LocalManagementContext newManagementContext(BrooklynProperties properties) {
+        LocalManagementContext result = new LocalManagementContext(properties);
+        managementContexts.add(result);
+        return result;
+    }
+
+    protected void measureStorage(String name, final BrooklynStorage storage, double minRatePerSec) {
+        final Map<String, Object> map = storage.getMap("perfmap");
+        final Set<String> keys = MutableSet.of();
+        for (int i = 0; i < NUM_KEYS; i++) {
+            map.put("attribute-"+i, "value-"+i);
+            if (i < 10) keys.add("attribute-"+i);
+        }
+        final AtomicInteger counter = new AtomicInteger();
+
+        measure(name+".get", minRatePerSec, new Runnable() {
+            @Override
+            public void run() {
+                map.get("attribute-"+(counter.incrementAndGet() % NUM_KEYS));
+            }});
+        measure(name+".put", minRatePerSec, new Runnable() {
+            @Override
+            public void run() {
+                int i = counter.incrementAndGet();
+                map.put("attribute-"+(i % NUM_KEYS), "value-"+i);
+            }});
+        measure(name+".getAll", minRatePerSec/10, new Runnable() {
+            @Override
+            public void run() {
+                storage.getAll("perfmap", keys);
+            }});
+    }
+
+    protected void measure(String summary, double minRatePerSec, Runnable job) {
+        PerformanceTestDescriptor options = PerformanceTestDescriptor.create()
+                .summary("HazelcastStoragePerformanceTest."+summary)
+                .warmupIterations(NUM_ITERATIONS/10)
+                .iterations(NUM_ITERATIONS)
+                .minAcceptablePerSecond(minRatePerSec)
+                .job(job);
+        System.out.println("test="+options+"; result="+PerformanceMeasurer.run(options));
+    }
+}